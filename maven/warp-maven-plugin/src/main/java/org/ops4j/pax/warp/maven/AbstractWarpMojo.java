@@ -51,7 +51,8 @@ public abstract class AbstractWarpMojo extends AbstractMojo {
     protected String username;
 
     /**
-     * Change log file.
+     * Change log file. GZIP compressed input files are detected automatically. The
+     * {@code import-data} goal also accepts a dump directory.
      */
     @Parameter(required = true, property = "warp.changeLog")
     protected File changeLog;
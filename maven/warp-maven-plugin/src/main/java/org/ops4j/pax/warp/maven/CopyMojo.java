@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.maven;
+
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.ops4j.pax.warp.core.command.CommandRunner;
+import org.ops4j.pax.warp.core.update.CopyOptions;
+
+/**
+ * Copies all data from a source database to a target database, without an intermediate change
+ * log. The copied tables are truncated in the target database first. Foreign key constraints are
+ * disabled during the copy.
+ */
+@Mojo(name = "copy", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST)
+public class CopyMojo extends AbstractMojo {
+
+    /**
+     * JDBC URL of source database.
+     */
+    @Parameter(required = true, property = "warp.url")
+    protected String url;
+
+    /**
+     * Password for source database connection.
+     */
+    @Parameter(property = "warp.password")
+    protected String password;
+
+    /**
+     * User name for source database connection.
+     */
+    @Parameter(property = "warp.username")
+    protected String username;
+
+    /**
+     * JDBC URL of target database.
+     */
+    @Parameter(required = true, property = "warp.targetUrl")
+    protected String targetUrl;
+
+    /**
+     * Password for target database connection.
+     */
+    @Parameter(property = "warp.targetPassword")
+    protected String targetPassword;
+
+    /**
+     * User name for target database connection.
+     */
+    @Parameter(property = "warp.targetUsername")
+    protected String targetUsername;
+
+    /**
+     * List of tables to be copied. By default, all tables are copied.
+     */
+    @Parameter(property = "warp.tables")
+    protected List<String> tables;
+
+    /**
+     * Number of rows inserted by a single JDBC batch.
+     */
+    @Parameter(property = "warp.batchSize", defaultValue = "1000")
+    protected int batchSize;
+
+    /**
+     * Maximum number of batches read from the source database, but not yet written to the
+     * target database.
+     */
+    @Parameter(property = "warp.queueSize", defaultValue = "16")
+    protected int queueSize;
+
+    @Inject
+    protected CommandRunner commandRunner;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        CopyOptions options = new CopyOptions();
+        if (tables != null) {
+            options.setTables(tables);
+        }
+        options.setBatchSize(batchSize);
+        options.setQueueSize(queueSize);
+        commandRunner.copy(url, username, password, targetUrl, targetUsername, targetPassword,
+            options);
+    }
+}
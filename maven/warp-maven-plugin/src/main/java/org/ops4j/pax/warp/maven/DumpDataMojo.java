@@ -18,10 +18,14 @@ package org.ops4j.pax.warp.maven;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.ops4j.pax.warp.core.dump.DumpOptions;
 
 /**
  * Retrieves all data from the given database with the given connection and writes a change log with
@@ -34,10 +38,139 @@ import org.apache.maven.plugins.annotations.Mojo;
 @Mojo(name = "dump-data", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST)
 public class DumpDataMojo extends AbstractWarpMojo {
 
+    /**
+     * Compresses the change log in GZIP format, using multiple threads.
+     */
+    @Parameter(property = "warp.compress", defaultValue = "false")
+    protected boolean compress;
+
+    /**
+     * Number of compression threads. The default is one thread per available processor.
+     */
+    @Parameter(property = "warp.compressionThreads", defaultValue = "0")
+    protected int compressionThreads;
+
+    /**
+     * Writes a dump directory with chunk files and a manifest instead of a single change log. The
+     * {@code changeLog} parameter is the path of the directory.
+     */
+    @Parameter(property = "warp.directory", defaultValue = "false")
+    protected boolean directory;
+
+    /**
+     * Maximum size of chunk files in a dump directory in bytes. The default is 64 MiB.
+     */
+    @Parameter(property = "warp.maxChunkSize", defaultValue = "67108864")
+    protected long maxChunkSize;
+
+    /**
+     * Shares chunk files with the same content between successive dumps to the same directory.
+     * Each dump writes a manifest of its own. This option requires {@code directory}.
+     */
+    @Parameter(property = "warp.chunkStore", defaultValue = "false")
+    protected boolean chunkStore;
+
+    /**
+     * Writes a checkpoint after each chunk and resumes an interrupted dump from its checkpoint.
+     * This option requires {@code directory}.
+     */
+    @Parameter(property = "warp.resume", defaultValue = "false")
+    protected boolean resume;
+
+    /**
+     * Reads tables with a primary key in pages of the given number of rows, ordered by the key,
+     * committing after each page unless all tables are read in a common snapshot for a parallel
+     * or incremental dump. By default, each table is read by a single query.
+     */
+    @Parameter(property = "warp.pageSize", defaultValue = "0")
+    protected int pageSize;
+
+    /**
+     * Patterns of tables to be dumped, where {@code *} matches any sequence of characters and
+     * {@code ?} matches any single character. By default, all tables are dumped.
+     */
+    @Parameter(property = "warp.includeTables")
+    protected List<String> includeTables;
+
+    /**
+     * Patterns of tables not to be dumped.
+     */
+    @Parameter(property = "warp.excludeTables")
+    protected List<String> excludeTables;
+
+    /**
+     * SQL row conditions of individual tables, indexed by table names.
+     */
+    @Parameter
+    protected Map<String, String> tableConditions;
+
+    /**
+     * Percentage of rows to be sampled from each table. The default is 100.
+     */
+    @Parameter(property = "warp.samplePercent", defaultValue = "100")
+    protected double samplePercent;
+
+    /**
+     * Root tables of a subset dump, each with an SQL condition selecting the root rows. The dump
+     * contains the root rows and all rows related to them by foreign keys.
+     */
+    @Parameter
+    protected Map<String, String> subsetRoots;
+
+    /**
+     * Only dumps the rows added or changed since the last incremental dump of the database. The
+     * rows are selected by a watermark column of each table. This option requires
+     * {@code directory}.
+     */
+    @Parameter(property = "warp.incremental", defaultValue = "false")
+    protected boolean incremental;
+
+    /**
+     * Default watermark column for incremental dumps, used for all tables with a column of this
+     * name.
+     */
+    @Parameter(property = "warp.watermarkColumn")
+    protected String watermarkColumn;
+
+    /**
+     * Watermark columns of individual tables for incremental dumps, indexed by table names.
+     */
+    @Parameter
+    protected Map<String, String> watermarkColumns;
+
     @Override
     public void execute() throws MojoExecutionException {
+        DumpOptions options = new DumpOptions();
+        options.setCompress(compress);
+        options.setCompressionThreads(compressionThreads);
+        options.setMaxChunkSize(maxChunkSize);
+        options.setChunkStore(chunkStore);
+        options.setResume(resume);
+        options.setPageSize(pageSize);
+        if (includeTables != null) {
+            options.setIncludeTables(includeTables);
+        }
+        if (excludeTables != null) {
+            options.setExcludeTables(excludeTables);
+        }
+        if (tableConditions != null) {
+            options.setTableConditions(tableConditions);
+        }
+        options.setSamplePercent(samplePercent);
+        if (subsetRoots != null) {
+            options.getSubsetRoots().putAll(subsetRoots);
+        }
+        options.setIncremental(incremental);
+        options.setWatermarkColumn(watermarkColumn);
+        if (watermarkColumns != null) {
+            options.setWatermarkColumns(watermarkColumns);
+        }
+        if (directory) {
+            commandRunner.dumpData(url, username, password, changeLog, options);
+            return;
+        }
         try (OutputStream os = new FileOutputStream(changeLog)) {
-            commandRunner.dumpData(url, username, password, os);
+            commandRunner.dumpData(url, username, password, os, options);
         }
         catch (IOException exc) {
             throw new MojoExecutionException("error writing change log", exc);
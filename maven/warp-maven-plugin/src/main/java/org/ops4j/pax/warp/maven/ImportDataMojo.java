@@ -24,6 +24,7 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.ops4j.pax.warp.core.update.ImportOptions;
 
 /**
  * Deletes all existing data in the given database, except from the excluded tables, and imports the
@@ -42,11 +43,40 @@ public class ImportDataMojo extends AbstractWarpMojo {
     @Parameter(required = true, property = "warp.excludedTables")
     protected List<String> excludedTables;
 
+    /**
+     * List of tables to be imported from a dump directory. By default, all tables are imported.
+     */
+    @Parameter(property = "warp.tables")
+    protected List<String> tables;
+
+    /**
+     * Number of rows inserted by a single JDBC batch.
+     */
+    @Parameter(property = "warp.batchSize", defaultValue = "1000")
+    protected int batchSize;
+
+    /**
+     * Minimum number of rows inserted by a transaction. By default, all rows are inserted by a
+     * single transaction.
+     */
+    @Parameter(property = "warp.commitInterval", defaultValue = "0")
+    protected int commitInterval;
+
     @Override
     public void execute() throws MojoExecutionException {
+        ImportOptions options = new ImportOptions();
+        options.setBatchSize(batchSize);
+        options.setCommitInterval(commitInterval);
+        if (changeLog.isDirectory()) {
+            if (tables != null) {
+                options.setTables(tables);
+            }
+            commandRunner.importData(url, username, password, changeLog, options);
+            return;
+        }
 
         try (InputStream is = new FileInputStream(changeLog)) {
-            commandRunner.importData(url, username, password, is, excludedTables);
+            commandRunner.importData(url, username, password, is, excludedTables, options);
         }
         catch (IOException exc) {
             throw new MojoExecutionException("error reading change log", exc);
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.benchmark;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.warp.core.changelog.impl.JaxbChangeLogWriter;
+import org.ops4j.pax.warp.core.dbms.H2Profile;
+import org.ops4j.pax.warp.core.dump.DumpOptions;
+import org.ops4j.pax.warp.core.dump.impl.DumpServiceImpl;
+import org.ops4j.pax.warp.jaxb.WarpJaxbContext;
+
+/**
+ * Measures the cost per row of dumping table data from an in-memory H2 database. The output is
+ * discarded, so the result is dominated by reading values and writing the change log.
+ * <p>
+ * Run with the GC profiler to see the allocation per row ({@code gc.alloc.rate.norm}):
+ *
+ * <pre>
+ * java -jar pax-warp-benchmark/target/benchmarks.jar DumpDataBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DumpDataBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    @Param({ "false", "true" })
+    private boolean compactData;
+
+    private Connection dbc;
+
+    private DumpServiceImpl dumpService;
+
+    private H2Profile dbms;
+
+    private DumpOptions options;
+
+    /**
+     * Output stream discarding all data.
+     */
+    private static class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+            // discard
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            // discard
+        }
+    }
+
+    @Setup
+    public void setUp() throws SQLException {
+        dbc = DriverManager.getConnection("jdbc:h2:mem:benchmark", "sa", "");
+        try (Statement st = dbc.createStatement()) {
+            st.executeUpdate("create table bench (id bigint primary key, qty int, flag boolean, "
+                + "price decimal(12,2), ratio double, name varchar(80), created timestamp)");
+        }
+        try (PreparedStatement ps = dbc
+            .prepareStatement("insert into bench values (?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < ROWS; i++) {
+                ps.setLong(1, i);
+                ps.setInt(2, i % 1000);
+                ps.setBoolean(3, i % 2 == 0);
+                ps.setBigDecimal(4, BigDecimal.valueOf(i, 2));
+                ps.setDouble(5, i / 7.0);
+                if (i % 10 == 0) {
+                    ps.setNull(6, Types.VARCHAR);
+                }
+                else {
+                    ps.setString(6, "name " + i);
+                }
+                ps.setTimestamp(7, new Timestamp(1_500_000_000_000L + i * 1000L));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        JaxbChangeLogWriter changeLogWriter = new JaxbChangeLogWriter();
+        changeLogWriter.setContext(new WarpJaxbContext());
+        dumpService = new DumpServiceImpl();
+        dumpService.setChangeLogWriter(changeLogWriter);
+        dbms = new H2Profile();
+        options = new DumpOptions();
+        options.setCompactData(compactData);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        dbc.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void dumpData() {
+        dumpService.dumpData(dbc, new NullOutputStream(), dbms, Optional.empty(), options);
+    }
+}
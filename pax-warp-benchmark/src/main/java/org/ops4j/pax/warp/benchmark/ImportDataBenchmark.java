@@ -0,0 +1,184 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ops4j.pax.warp.core.dbms.H2Profile;
+import org.ops4j.pax.warp.core.update.ImportOptions;
+import org.ops4j.pax.warp.core.update.impl.ImportDataSqlGenerator;
+import org.ops4j.pax.warp.jaxb.WarpJaxbContext;
+import org.ops4j.pax.warp.jaxb.gen.ChangeLog;
+import org.ops4j.pax.warp.jaxb.gen.ChangeSet;
+import org.ops4j.pax.warp.jaxb.gen.ColumnValue;
+import org.ops4j.pax.warp.jaxb.gen.DataColumn;
+import org.ops4j.pax.warp.jaxb.gen.Insert;
+import org.ops4j.pax.warp.jaxb.gen.Row;
+import org.ops4j.pax.warp.jaxb.gen.RowValue;
+import org.ops4j.pax.warp.jaxb.gen.TableData;
+
+/**
+ * Measures the cost per row of inserting parsed change log data into an in-memory H2 table
+ * without indexes, i.e. converting values, finding the insert plan and batching. Parsing the
+ * change log is not included.
+ * <p>
+ * Run with the GC profiler to see the allocation per row ({@code gc.alloc.rate.norm}):
+ *
+ * <pre>
+ * java -jar pax-warp-benchmark/target/benchmarks.jar ImportDataBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImportDataBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private static final String[] NAMES = { "id", "qty", "flag", "price", "ratio", "name",
+        "created" };
+
+    private static final String[] TYPES = { "BIGINT", "INTEGER", "BOOLEAN", "DECIMAL", "DOUBLE",
+        "VARCHAR", "TIMESTAMP" };
+
+    @Param({ "false", "true" })
+    private boolean compactData;
+
+    private Connection dbc;
+
+    private H2Profile dbms;
+
+    private WarpJaxbContext context;
+
+    private ChangeLog changeLog;
+
+    @Setup
+    public void setUp() throws SQLException {
+        dbc = DriverManager.getConnection("jdbc:h2:mem:importBenchmark", "sa", "");
+        dbc.setAutoCommit(false);
+        try (Statement st = dbc.createStatement()) {
+            st.executeUpdate("create table bench (id bigint, qty int, flag boolean, "
+                + "price decimal(12,2), ratio double, name varchar(80), created timestamp)");
+        }
+        dbms = new H2Profile();
+        context = new WarpJaxbContext();
+
+        ChangeSet changeSet = new ChangeSet();
+        changeSet.setId("bench");
+        if (compactData) {
+            changeSet.getChanges().add(createTableData());
+        }
+        else {
+            for (int i = 0; i < ROWS; i++) {
+                changeSet.getChanges().add(createInsert(i));
+            }
+        }
+        changeLog = new ChangeLog();
+        changeLog.setVersion("0.1");
+        changeLog.getChangeSet().add(changeSet);
+    }
+
+    private String[] createValues(int i) {
+        String name = (i % 10 == 0) ? null : "name " + i;
+        return new String[] { Integer.toString(i), Integer.toString(i % 1000),
+            Boolean.toString(i % 2 == 0), String.format("%d.%02d", i / 100, i % 100),
+            Double.toString(i / 7.0), name, "2017-07-14 02:40:00.0" };
+    }
+
+    private Insert createInsert(int i) {
+        Insert insert = new Insert();
+        insert.setTableName("bench");
+        String[] values = createValues(i);
+        for (int c = 0; c < NAMES.length; c++) {
+            ColumnValue column = new ColumnValue();
+            column.setName(NAMES[c]);
+            column.setType(TYPES[c]);
+            column.setValue(values[c]);
+            column.setNull(values[c] == null);
+            insert.getColumn().add(column);
+        }
+        return insert;
+    }
+
+    private TableData createTableData() {
+        TableData tableData = new TableData();
+        tableData.setTableName("bench");
+        for (int c = 0; c < NAMES.length; c++) {
+            DataColumn column = new DataColumn();
+            column.setName(NAMES[c]);
+            column.setType(TYPES[c]);
+            tableData.getColumn().add(column);
+        }
+        for (int i = 0; i < ROWS; i++) {
+            Row row = new Row();
+            for (String value : createValues(i)) {
+                RowValue rowValue = new RowValue();
+                rowValue.setValue(value);
+                rowValue.setNull(value == null);
+                row.getV().add(rowValue);
+            }
+            tableData.getRow().add(row);
+        }
+        return tableData;
+    }
+
+    @Setup(Level.Invocation)
+    public void truncate() throws SQLException {
+        try (Statement st = dbc.createStatement()) {
+            st.executeUpdate("truncate table bench");
+        }
+        dbc.commit();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        dbc.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void importData() {
+        try (ImportDataSqlGenerator generator = new ImportDataSqlGenerator(dbms, dbc, s -> {
+        }, context)) {
+            generator.setBatchSize(ImportOptions.DEFAULT_BATCH_SIZE);
+            changeLog.accept(generator);
+            generator.flush();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.cli;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
+
+import org.ops4j.pax.warp.core.command.CommandRunner;
+import org.ops4j.pax.warp.core.update.CopyOptions;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+
+/**
+ * Copy command.
+ */
+@Dependent
+@Parameters(commandDescription = "copies all data from one database to another")
+public class CopyCommand implements Command {
+
+    @Inject
+    private CommandRunner commandRunner;
+
+    @Parameter(names = "--url", description = "JDBC URL of source database", required = true)
+    private String url;
+
+    @Parameter(names = "--username", description = "JDBC username of source database")
+    private String username;
+
+    @Parameter(names = "--password", description = "JDBC password of source database")
+    private String password;
+
+    @Parameter(names = "--target-url", description = "JDBC URL of target database",
+        required = true)
+    private String targetUrl;
+
+    @Parameter(names = "--target-username", description = "JDBC username of target database")
+    private String targetUsername;
+
+    @Parameter(names = "--target-password", description = "JDBC password of target database")
+    private String targetPassword;
+
+    @Parameter(names = "--tables", description = "comma-separated tables to copy (default: all)")
+    private List<String> tables = new ArrayList<>();
+
+    @Parameter(names = "--batch-size",
+        description = "number of rows inserted by a single JDBC batch (default: 1000)")
+    private int batchSize = CopyOptions.DEFAULT_BATCH_SIZE;
+
+    @Parameter(names = "--queue-size",
+        description = "maximum number of batches read but not yet written (default: 16)")
+    private int queueSize = CopyOptions.DEFAULT_QUEUE_SIZE;
+
+    @Override
+    public void run() {
+        CopyOptions options = new CopyOptions();
+        options.setTables(tables);
+        options.setBatchSize(batchSize);
+        options.setQueueSize(queueSize);
+        commandRunner.copy(url, username, password, targetUrl, targetUsername, targetPassword,
+            options);
+    }
+
+    @Override
+    public String getCommandName() {
+        return "copy";
+    }
+}
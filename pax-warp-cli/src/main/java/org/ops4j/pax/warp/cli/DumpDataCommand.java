@@ -17,14 +17,18 @@
  */
 package org.ops4j.pax.warp.cli;
 
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 
 import org.ops4j.pax.warp.core.command.CommandRunner;
+import org.ops4j.pax.warp.core.dump.DumpOptions;
 import org.ops4j.pax.warp.exc.WarpException;
 
 import com.beust.jcommander.Parameter;
@@ -55,6 +59,66 @@ public class DumpDataCommand implements Command {
     @Parameter(names = "--output", description = "output file path")
     private String output;
 
+    @Parameter(names = "--compress", description = "compress output in GZIP format")
+    private boolean compress;
+
+    @Parameter(names = "--compression-threads",
+        description = "number of compression threads (default: number of processors)")
+    private int compressionThreads;
+
+    @Parameter(names = "--directory",
+        description = "write a dump directory with chunk files and a manifest to the output path")
+    private boolean directory;
+
+    @Parameter(names = "--max-chunk-size",
+        description = "maximum size of chunk files in bytes (default: 64 MiB)")
+    private long maxChunkSize = DumpOptions.DEFAULT_MAX_CHUNK_SIZE;
+
+    @Parameter(names = "--chunk-store",
+        description = "share chunk files with the same content between dumps to the output path")
+    private boolean chunkStore;
+
+    @Parameter(names = "--resume",
+        description = "write checkpoints to the output path and resume an interrupted dump")
+    private boolean resume;
+
+    @Parameter(names = "--page-size",
+        description = "read tables with a primary key in pages of the given number of rows")
+    private int pageSize;
+
+    @Parameter(names = "--include-tables",
+        description = "comma-separated patterns of tables to be dumped (default: all)")
+    private List<String> includeTables = new ArrayList<>();
+
+    @Parameter(names = "--exclude-tables",
+        description = "comma-separated patterns of tables not to be dumped")
+    private List<String> excludeTables = new ArrayList<>();
+
+    @Parameter(names = "--where", splitter = NoSplitter.class,
+        description = "row condition of a table (table:condition), may be repeated")
+    private List<String> conditions = new ArrayList<>();
+
+    @Parameter(names = "--sample-percent",
+        description = "percentage of rows to be sampled from each table (default: 100)")
+    private double samplePercent = 100;
+
+    @Parameter(names = "--subset-root", splitter = NoSplitter.class,
+        description = "root table of a subset dump with a row condition (table:condition), "
+            + "may be repeated")
+    private List<String> subsetRoots = new ArrayList<>();
+
+    @Parameter(names = "--incremental",
+        description = "only dump rows added or changed since the last incremental dump")
+    private boolean incremental;
+
+    @Parameter(names = "--watermark-column",
+        description = "default watermark column for incremental dumps")
+    private String watermarkColumn;
+
+    @Parameter(names = "--watermark-columns",
+        description = "comma-separated watermark columns of individual tables (table.column)")
+    private List<String> watermarkColumns = new ArrayList<>();
+
     /**
      * @return the url
      */
@@ -102,13 +166,52 @@ public class DumpDataCommand implements Command {
 
     @Override
     public void run() {
+        DumpOptions options = new DumpOptions();
+        options.setCompress(compress);
+        options.setCompressionThreads(compressionThreads);
+        options.setMaxChunkSize(maxChunkSize);
+        options.setChunkStore(chunkStore);
+        options.setResume(resume);
+        options.setPageSize(pageSize);
+        options.setIncludeTables(includeTables);
+        options.setExcludeTables(excludeTables);
+        for (String condition : conditions) {
+            int colon = condition.indexOf(':');
+            if (colon <= 0) {
+                throw new WarpException("--where expects table:condition, not " + condition);
+            }
+            options.getTableConditions().put(condition.substring(0, colon),
+                condition.substring(colon + 1));
+        }
+        options.setSamplePercent(samplePercent);
+        for (String root : subsetRoots) {
+            int colon = root.indexOf(':');
+            String table = (colon < 0) ? root : root.substring(0, colon);
+            String condition = (colon < 0) ? "" : root.substring(colon + 1);
+            options.getSubsetRoots().put(table, condition);
+        }
+        options.setIncremental(incremental);
+        options.setWatermarkColumn(watermarkColumn);
+        for (String entry : watermarkColumns) {
+            int dot = entry.lastIndexOf('.');
+            if (dot <= 0 || dot == entry.length() - 1) {
+                throw new WarpException("--watermark-columns expects table.column, not " + entry);
+            }
+            options.getWatermarkColumns().put(entry.substring(0, dot), entry.substring(dot + 1));
+        }
         try {
-            if (output == null) {
-                commandRunner.dumpData(url, username, password, System.out);
+            if (directory) {
+                if (output == null) {
+                    throw new WarpException("--directory requires --output");
+                }
+                commandRunner.dumpData(url, username, password, new File(output), options);
+            }
+            else if (output == null) {
+                commandRunner.dumpData(url, username, password, System.out, options);
             }
             else {
                 OutputStream os = new FileOutputStream(output);
-                commandRunner.dumpData(url, username, password, os);
+                commandRunner.dumpData(url, username, password, os, options);
                 os.close();
             }
         }
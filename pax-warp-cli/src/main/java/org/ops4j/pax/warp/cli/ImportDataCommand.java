@@ -17,14 +17,19 @@
  */
 package org.ops4j.pax.warp.cli;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 
 import org.ops4j.pax.warp.core.command.CommandRunner;
+import org.ops4j.pax.warp.core.update.ImportOptions;
 import org.ops4j.pax.warp.exc.WarpException;
 
 import com.beust.jcommander.Parameter;
@@ -52,9 +57,34 @@ public class ImportDataCommand implements Command {
     @Parameter(names = "--password", description = "JDBC password")
     private String password;
 
-    @Parameter(names = "--change-log", description = "change log file")
+    @Parameter(names = "--change-log",
+        description = "change log file, optionally GZIP compressed, or dump directory")
     private String changeLog;
 
+    @Parameter(names = "--tables",
+        description = "comma-separated tables to import from a dump directory (default: all)")
+    private List<String> tables = new ArrayList<>();
+
+    @Parameter(names = "--batch-size",
+        description = "number of rows inserted by a single JDBC batch (default: 1000)")
+    private int batchSize = ImportOptions.DEFAULT_BATCH_SIZE;
+
+    @Parameter(names = "--commit-interval",
+        description = "minimum number of rows per transaction (default: 0, a single transaction)")
+    private int commitInterval = ImportOptions.DEFAULT_COMMIT_INTERVAL;
+
+    @Parameter(names = "--resume",
+        description = "resume a failed import of the same change log file or dump directory")
+    private boolean resume;
+
+    @Parameter(names = "--bulk-load",
+        description = "load rows by the bulk loader of an embedded H2 or Derby database")
+    private boolean bulkLoad;
+
+    @Parameter(names = "--rebuild-indexes",
+        description = "drop secondary indexes before importing and rebuild them afterwards")
+    private boolean rebuildIndexes;
+
     /**
      * @return the url
      */
@@ -85,9 +115,22 @@ public class ImportDataCommand implements Command {
 
     @Override
     public void run() {
+        File changeLogFile = new File(changeLog);
+        ImportOptions options = new ImportOptions();
+        options.setBatchSize(batchSize);
+        options.setCommitInterval(commitInterval);
+        options.setResumable(resume);
+        options.setBulkLoad(bulkLoad);
+        options.setRebuildIndexes(rebuildIndexes);
+        if (changeLogFile.isDirectory() || resume) {
+            options.setTables(tables);
+            commandRunner.importData(url, username, password, changeLogFile, options);
+            return;
+        }
         try {
             InputStream is = new FileInputStream(changeLog);
-            commandRunner.importData(url, username, password, is);
+            commandRunner.importData(url, username, password, is, Collections.emptyList(),
+                options);
             is.close();
         }
         catch (IOException exc) {
@@ -52,7 +52,7 @@ public class MigrateCommand implements Command {
     @Parameter(names = "--password", description = "JDBC password")
     private String password;
 
-    @Parameter(names = "--change-log", description = "change log file")
+    @Parameter(names = "--change-log", description = "change log file, optionally GZIP compressed")
     private String changeLog;
 
     /**
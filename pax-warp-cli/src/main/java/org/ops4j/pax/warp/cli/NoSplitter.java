@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.cli;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.beust.jcommander.converters.IParameterSplitter;
+
+/**
+ * Keeps an option value as a whole, for list options with values containing commas, like SQL
+ * conditions. Each occurrence of the option adds one element to the list.
+ */
+public class NoSplitter implements IParameterSplitter {
+
+    @Override
+    public List<String> split(String value) {
+        return Collections.singletonList(value);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.changelog;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A streaming change log writer which also accepts change set fragments written by other
+ * writers, e.g. for merging the tables of a parallel dump into a single change log.
+ */
+public interface AppendableChangeLogWriter extends StreamingChangeLogWriter {
+
+    /**
+     * Copies a fragment of complete change sets, written by a writer obtained from
+     * {@link ChangeLogWriter#openChangeSetFragment(OutputStream)}, to this change log.
+     * There must be no current change set.
+     *
+     * @param is
+     *            input stream with change set fragment
+     */
+    void appendChangeSets(InputStream is);
+}
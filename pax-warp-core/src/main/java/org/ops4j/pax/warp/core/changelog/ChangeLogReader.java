@@ -20,6 +20,8 @@ package org.ops4j.pax.warp.core.changelog;
 import java.io.Reader;
 
 import org.ops4j.pax.warp.jaxb.gen.ChangeLog;
+import org.ops4j.pax.warp.jaxb.gen.DumpManifest;
+import org.ops4j.pax.warp.jaxb.gen.visitor.Visitor;
 
 /**
  * Unmarshals change logs from XML.
@@ -37,4 +39,41 @@ public interface ChangeLogReader {
      * @return change log model object
      */
     ChangeLog parse(Reader reader);
+
+    /**
+     * Unmarshals a change log from XML one change set at a time and passes each change set to
+     * the given visitor. Memory usage is bounded by the largest change set, not by the size of
+     * the change log. The change log passed to the visitor has no change sets.
+     *
+     * @param reader
+     *            reader for XML data
+     * @param visitor
+     *            change log visitor
+     */
+    void parse(Reader reader, Visitor visitor);
+
+    /**
+     * Unmarshals a change log from XML one change at a time and passes each change to the given
+     * visitor. Memory usage is bounded by the largest change. The change log and the change sets
+     * passed to the visitor have no children.
+     * <p>
+     * This method is meant for data change logs with large change sets. Visitors requiring the
+     * complete contents of a change set, e.g. for computing a checksum, should use
+     * {@link #parse(Reader, Visitor)}.
+     *
+     * @param reader
+     *            reader for XML data
+     * @param visitor
+     *            change log visitor
+     */
+    void parseChanges(Reader reader, Visitor visitor);
+
+    /**
+     * Unmarshals the manifest of a dump directory from XML.
+     *
+     * @param reader
+     *            reader for XML data
+     * @return dump manifest model object
+     */
+    DumpManifest parseManifest(Reader reader);
 }
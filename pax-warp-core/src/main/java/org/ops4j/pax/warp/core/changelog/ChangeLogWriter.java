@@ -22,6 +22,7 @@ import java.io.OutputStream;
 import java.io.Writer;
 
 import org.ops4j.pax.warp.jaxb.gen.ChangeLog;
+import org.ops4j.pax.warp.jaxb.gen.DumpManifest;
 
 /**
  * Marshals change logs to XML.
@@ -60,4 +61,36 @@ public interface ChangeLogWriter {
      *            output stream
      */
     void writeChangeLog(ChangeLog changeLog, OutputStream os);
+
+    /**
+     * Opens a streaming writer for a new change log on the given output stream. Use this method
+     * instead of {@link #writeChangeLog(ChangeLog, OutputStream)} for change logs which are too
+     * large to be kept in memory.
+     *
+     * @param os
+     *            output stream
+     * @return streaming change log writer, to be closed by the caller
+     */
+    AppendableChangeLogWriter openChangeLog(OutputStream os);
+
+    /**
+     * Opens a streaming writer for a sequence of change sets without an enclosing change log
+     * element. The fragment can be appended to a change log by
+     * {@link AppendableChangeLogWriter#appendChangeSets(java.io.InputStream)}.
+     *
+     * @param os
+     *            output stream
+     * @return streaming change set writer, to be closed by the caller
+     */
+    StreamingChangeLogWriter openChangeSetFragment(OutputStream os);
+
+    /**
+     * Marshals the manifest of a dump directory as XML to the given output file.
+     *
+     * @param manifest
+     *            dump manifest model
+     * @param outputFile
+     *            output file
+     */
+    void writeManifest(DumpManifest manifest, File outputFile);
 }
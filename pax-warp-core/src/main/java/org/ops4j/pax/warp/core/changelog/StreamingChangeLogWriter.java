@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.changelog;
+
+import java.io.Writer;
+
+/**
+ * Writes a change log incrementally, one change at a time, without building a complete change log
+ * model in memory.
+ * <p>
+ * The root element is written when the writer is opened and closed by {@link #close()}. Change
+ * sets must not be nested, and each change set must contain at least one change.
+ * <p>
+ * Closing this writer flushes, but does not close the underlying output stream. After a failure,
+ * the writer is aborted instead, so an incomplete change log is not mistaken for a complete one.
+ * <p>
+ * A writer for a change set fragment omits the XML declaration and the root element. The change
+ * set elements inherit their namespace from the change log they are appended to.
+ * <p>
+ * Table data can be written row by row without building a model object for each row: Start a
+ * sequence of rows with {@link #startRows(Object)}, write each row with {@link #startRow()},
+ * one call of {@link #writeValue(String)}, {@link #writeValue(char[], int, int)},
+ * {@link #openValue()} or {@link #writeNull()} per column, and {@link #endRow()}, and end the sequence with
+ * {@link #endRows()}. The output is the same as for writing the equivalent changes with
+ * {@link #writeChange(Object)}.
+ */
+public interface StreamingChangeLogWriter extends AutoCloseable {
+
+    /**
+     * Starts a new change set with the given identity.
+     *
+     * @param id
+     *            change set identity
+     */
+    void startChangeSet(String id);
+
+    /**
+     * Writes a change to the current change set.
+     *
+     * @param change
+     *            change model object, e.g. {@code Insert}
+     */
+    void writeChange(Object change);
+
+    /**
+     * Starts a sequence of rows in the current change set. The template is a change model object
+     * without values, defining the table and the column names and types:
+     * <ul>
+     * <li>For an {@code Insert} template with column values, each row is written as an
+     * {@code insert} change.</li>
+     * <li>For a {@code TableData} template with columns and without rows, all rows up to
+     * {@link #endRows()} are written to a single {@code tableData} change.</li>
+     * </ul>
+     *
+     * @param template
+     *            {@code Insert} or {@code TableData} template
+     */
+    void startRows(Object template);
+
+    /**
+     * Starts a new row in the current sequence of rows.
+     */
+    void startRow();
+
+    /**
+     * Writes the value of the next column of the current row.
+     *
+     * @param value
+     *            column value, not null
+     */
+    void writeValue(String value);
+
+    /**
+     * Writes the value of the next column of the current row from a character buffer. The buffer
+     * may be reused by the caller after this method has returned.
+     *
+     * @param chars
+     *            character buffer
+     * @param offset
+     *            offset of first character
+     * @param length
+     *            number of characters
+     */
+    void writeValue(char[] chars, int offset, int length);
+
+    /**
+     * Opens a writer for the value of the next column of the current row, for large values which
+     * should not be kept in memory as a whole. The characters are escaped as needed and written
+     * through to the change log. The value ends when the returned writer is closed, and no other
+     * method of this writer may be called before.
+     *
+     * @return writer for column value
+     */
+    Writer openValue();
+
+    /**
+     * Writes a null value for the next column of the current row.
+     */
+    void writeNull();
+
+    /**
+     * Ends the current row.
+     */
+    void endRow();
+
+    /**
+     * Ends the current sequence of rows.
+     */
+    void endRows();
+
+    /**
+     * Ends the current change set.
+     */
+    void endChangeSet();
+
+    /**
+     * Flushes buffered output to the underlying output stream.
+     */
+    void flush();
+
+    /**
+     * Ends the change log document and flushes all pending output. Does nothing when this writer
+     * has been aborted.
+     */
+    @Override
+    void close();
+
+    /**
+     * Abandons the change log after a failure. Pending output is flushed without ending the open
+     * elements, so the change log is not well-formed.
+     */
+    void abort();
+}
@@ -23,8 +23,10 @@ import javax.inject.Named;
 
 import org.ops4j.pax.warp.core.jdbc.DatabaseModel;
 import org.ops4j.pax.warp.jaxb.gen.AddForeignKey;
+import org.ops4j.pax.warp.jaxb.gen.CreateIndex;
 import org.ops4j.pax.warp.jaxb.gen.CreateTable;
 import org.ops4j.pax.warp.jaxb.gen.DropForeignKey;
+import org.ops4j.pax.warp.jaxb.gen.DropIndex;
 import org.ops4j.pax.warp.jaxb.gen.TruncateTable;
 import org.ops4j.pax.warp.scope.CdiDependent;
 import org.osgi.service.component.annotations.Component;
@@ -58,6 +60,25 @@ public class ChangeLogService {
         }
     }
 
+    /**
+     * Adds actions for dropping the given indexes to the given change log model.
+     *
+     * @param changes
+     *            list of changes of a given change set in a change log model
+     * @param indexes
+     *            indexes to be dropped
+     */
+    public void dropIndexes(List<Object> changes, List<CreateIndex> indexes) {
+        for (CreateIndex createIndex : indexes) {
+            DropIndex dropIndex = new DropIndex();
+            dropIndex.setCatalogName(createIndex.getCatalogName());
+            dropIndex.setSchemaName(createIndex.getSchemaName());
+            dropIndex.setTableName(createIndex.getTableName());
+            dropIndex.setIndexName(createIndex.getIndexName());
+            changes.add(dropIndex);
+        }
+    }
+
     /**
      * Adds actions for truncating all tables from the given database model to the given change
      * log model.
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.changelog.impl;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.UnmarshallerHandler;
+
+import org.ops4j.pax.warp.jaxb.gen.ChangeLog;
+import org.ops4j.pax.warp.jaxb.gen.ChangeSet;
+import org.ops4j.pax.warp.jaxb.gen.visitor.Visitable;
+import org.ops4j.pax.warp.jaxb.gen.visitor.Visitor;
+import org.ops4j.pax.warp.jaxb.gen.visitor.VisitorAction;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.NamespaceSupport;
+
+/**
+ * SAX content handler splitting a change log into fragments, unmarshalling each fragment on its
+ * own and passing it to a visitor, so that only one fragment at a time is held in memory.
+ * <p>
+ * A fragment is either a change set, or a single change. In the latter case, the change is
+ * wrapped in a copy of the enclosing change set element, and the visitor enters and leaves a
+ * change set with the attributes and the comment of the enclosing change set, but without any
+ * changes.
+ * <p>
+ * The visitor sees the same sequence of calls and results as when visiting a change log tree.
+ * This handler does not validate the input. It is meant to receive the events of a validator
+ * handler.
+ */
+class ChangeLogSplitter extends DefaultHandler {
+
+    private static final int CHANGE_LOG_DEPTH = 1;
+    private static final int CHANGE_SET_DEPTH = 2;
+    private static final int CHANGE_DEPTH = 3;
+
+    private static final String COMMENT = "comment";
+
+    private Unmarshaller unmarshaller;
+
+    private Visitor visitor;
+
+    private boolean splitChangeSets;
+
+    private NamespaceSupport namespaces = new NamespaceSupport();
+
+    private boolean namespaceContextPushed;
+
+    private List<String> fragmentPrefixes = new ArrayList<>();
+
+    private UnmarshallerHandler fragmentHandler;
+
+    private int depth;
+
+    private ChangeLog changeLog;
+
+    private boolean changeLogDone;
+
+    private ChangeSet changeSet;
+
+    private String changeSetUri;
+
+    private String changeSetLocalName;
+
+    private String changeSetQName;
+
+    private AttributesImpl changeSetAttributes;
+
+    private boolean changeSetEntered;
+
+    private VisitorAction changeSetResult;
+
+    private StringBuilder comment;
+
+    /**
+     * Creates a handler for the given visitor.
+     *
+     * @param unmarshaller
+     *            unmarshaller for change sets
+     * @param visitor
+     *            change log visitor
+     * @param splitChangeSets
+     *            if true, each change is a separate fragment. Otherwise, each change set is a
+     *            fragment.
+     */
+    ChangeLogSplitter(Unmarshaller unmarshaller, Visitor visitor, boolean splitChangeSets) {
+        this.unmarshaller = unmarshaller;
+        this.visitor = visitor;
+        this.splitChangeSets = splitChangeSets;
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        if (!namespaceContextPushed) {
+            namespaces.pushContext();
+            namespaceContextPushed = true;
+        }
+        namespaces.declarePrefix(prefix, uri);
+        if (fragmentHandler != null) {
+            fragmentHandler.startPrefixMapping(prefix, uri);
+        }
+    }
+
+    @Override
+    public void endPrefixMapping(String prefix) throws SAXException {
+        if (fragmentHandler != null) {
+            fragmentHandler.endPrefixMapping(prefix);
+        }
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts)
+        throws SAXException {
+        if (!namespaceContextPushed) {
+            namespaces.pushContext();
+        }
+        namespaceContextPushed = false;
+        depth++;
+
+        if (fragmentHandler != null) {
+            fragmentHandler.startElement(uri, localName, qName, atts);
+        }
+        else if (depth == CHANGE_LOG_DEPTH) {
+            startChangeLog(atts);
+        }
+        else if (depth == CHANGE_SET_DEPTH) {
+            startChangeSet(uri, localName, qName, atts);
+        }
+        else if (depth == CHANGE_DEPTH && changeSet != null) {
+            startChange(uri, localName, qName, atts);
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        if (fragmentHandler != null) {
+            fragmentHandler.endElement(uri, localName, qName);
+        }
+        if (depth == CHANGE_LOG_DEPTH) {
+            visitor.leave(changeLog);
+        }
+        else if (depth == CHANGE_SET_DEPTH) {
+            endChangeSet();
+        }
+        else if (depth == CHANGE_DEPTH && changeSet != null) {
+            endChange();
+        }
+        depth--;
+        namespaces.popContext();
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        if (fragmentHandler != null) {
+            fragmentHandler.characters(ch, start, length);
+        }
+        else if (comment != null) {
+            comment.append(ch, start, length);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        if (fragmentHandler != null) {
+            fragmentHandler.ignorableWhitespace(ch, start, length);
+        }
+    }
+
+    private void startChangeLog(Attributes atts) {
+        changeLog = new ChangeLog();
+        changeLog.setVersion(atts.getValue("version"));
+        String incremental = atts.getValue("incremental");
+        if (incremental != null) {
+            changeLog.setIncremental(Boolean.valueOf(incremental));
+        }
+        visitor.enter(changeLog);
+    }
+
+    private void startChangeSet(String uri, String localName, String qName, Attributes atts)
+        throws SAXException {
+        if (changeLogDone) {
+            return;
+        }
+        if (!splitChangeSets) {
+            startFragment(uri, localName, qName, atts);
+            return;
+        }
+        changeSet = new ChangeSet();
+        changeSet.setId(atts.getValue("id"));
+        changeSet.setDbms(atts.getValue("dbms"));
+        changeSetUri = uri;
+        changeSetLocalName = localName;
+        changeSetQName = qName;
+        changeSetAttributes = new AttributesImpl(atts);
+        changeSetEntered = false;
+    }
+
+    private void endChangeSet() throws SAXException {
+        VisitorAction result;
+        if (changeSet != null) {
+            enterChangeSet();
+            result = leave(changeSet, changeSetResult);
+            changeSet = null;
+        }
+        else if (fragmentHandler != null) {
+            ChangeSet fragment = endFragment();
+            result = fragment.accept(visitor);
+        }
+        else {
+            return;
+        }
+        if (result != VisitorAction.CONTINUE) {
+            changeLogDone = true;
+        }
+    }
+
+    private void startChange(String uri, String localName, String qName, Attributes atts)
+        throws SAXException {
+        if (COMMENT.equals(localName)) {
+            comment = new StringBuilder();
+            return;
+        }
+        enterChangeSet();
+        if (changeSetResult != VisitorAction.CONTINUE) {
+            return;
+        }
+        startFragment(changeSetUri, changeSetLocalName, changeSetQName, changeSetAttributes);
+        fragmentHandler.startElement(uri, localName, qName, atts);
+    }
+
+    private void endChange() throws SAXException {
+        if (comment != null) {
+            changeSet.setComment(comment.toString());
+            comment = null;
+            return;
+        }
+        if (fragmentHandler == null) {
+            return;
+        }
+        fragmentHandler.endElement(changeSetUri, changeSetLocalName, changeSetQName);
+        ChangeSet fragment = endFragment();
+        for (Object change : fragment.getChanges()) {
+            if (change instanceof JAXBElement) {
+                change = ((JAXBElement<?>) change).getValue();
+            }
+            if (change instanceof Visitable) {
+                changeSetResult = ((Visitable) change).accept(visitor);
+            }
+        }
+    }
+
+    /**
+     * Enters the current change set, unless already done. This is delayed until the first change,
+     * since the change set comment is only known at this point.
+     */
+    private void enterChangeSet() {
+        if (!changeSetEntered) {
+            changeSetResult = visitor.enter(changeSet);
+            changeSetEntered = true;
+        }
+    }
+
+    /**
+     * Leaves the given change set, translating results like {@link ChangeSet#accept(Visitor)}.
+     */
+    private VisitorAction leave(ChangeSet visitedChangeSet, VisitorAction result) {
+        VisitorAction leaveResult = visitor.leave(visitedChangeSet);
+        if (leaveResult == VisitorAction.TERMINATE) {
+            return leaveResult;
+        }
+        return (result == VisitorAction.SKIP) ? VisitorAction.CONTINUE : result;
+    }
+
+    private void startFragment(String uri, String localName, String qName, Attributes atts)
+        throws SAXException {
+        fragmentHandler = unmarshaller.getUnmarshallerHandler();
+        fragmentHandler.startDocument();
+        Enumeration<?> prefixes = namespaces.getPrefixes();
+        while (prefixes.hasMoreElements()) {
+            String prefix = (String) prefixes.nextElement();
+            if (!"xml".equals(prefix)) {
+                fragmentPrefixes.add(prefix);
+            }
+        }
+        if (namespaces.getURI("") != null) {
+            fragmentPrefixes.add("");
+        }
+        for (String prefix : fragmentPrefixes) {
+            fragmentHandler.startPrefixMapping(prefix, namespaces.getURI(prefix));
+        }
+        fragmentHandler.startElement(uri, localName, qName, atts);
+    }
+
+    private ChangeSet endFragment() throws SAXException {
+        for (String prefix : fragmentPrefixes) {
+            fragmentHandler.endPrefixMapping(prefix);
+        }
+        fragmentPrefixes.clear();
+        fragmentHandler.endDocument();
+        try {
+            Object result = fragmentHandler.getResult();
+            if (result instanceof JAXBElement) {
+                result = ((JAXBElement<?>) result).getValue();
+            }
+            return (ChangeSet) result;
+        }
+        catch (JAXBException exc) {
+            throw new SAXException(exc);
+        }
+        finally {
+            fragmentHandler = null;
+        }
+    }
+}
@@ -17,20 +17,29 @@
  */
 package org.ops4j.pax.warp.core.changelog.impl;
 
+import java.io.IOException;
 import java.io.Reader;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.validation.ValidatorHandler;
 
 import org.ops4j.pax.warp.core.changelog.ChangeLogReader;
 import org.ops4j.pax.warp.exc.WarpException;
 import org.ops4j.pax.warp.jaxb.WarpJaxbContext;
 import org.ops4j.pax.warp.jaxb.gen.ChangeLog;
+import org.ops4j.pax.warp.jaxb.gen.DumpManifest;
+import org.ops4j.pax.warp.jaxb.gen.visitor.Visitor;
 import org.ops4j.pax.warp.scope.CdiDependent;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 /**
  * Implements {@link ChangeLogReader} using a JAXB unmarshaller.
@@ -57,6 +66,56 @@ public class JaxbChangeLogReader implements ChangeLogReader {
         }
     }
 
+    @Override
+    public void parse(Reader reader, Visitor visitor) {
+        stream(reader, visitor, false);
+    }
+
+    @Override
+    public void parseChanges(Reader reader, Visitor visitor) {
+        stream(reader, visitor, true);
+    }
+
+    /**
+     * Streams a change log to the given visitor. The XML parser feeds a schema validator which
+     * feeds a splitter unmarshalling fragments of the change log. Thus, the entire document is
+     * validated without building a tree.
+     */
+    private void stream(Reader reader, Visitor visitor, boolean splitChangeSets) {
+        try {
+            ChangeLogSplitter splitter = new ChangeLogSplitter(
+                context.createFragmentUnmarshaller(), visitor, splitChangeSets);
+            ValidatorHandler validator = context.createValidatorHandler();
+            validator.setContentHandler(splitter);
+
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            XMLReader xmlReader = factory.newSAXParser().getXMLReader();
+            xmlReader.setContentHandler(validator);
+            xmlReader.parse(new InputSource(reader));
+        }
+        catch (SAXException exc) {
+            if (exc.getException() instanceof RuntimeException) {
+                throw (RuntimeException) exc.getException();
+            }
+            throw new WarpException(exc);
+        }
+        catch (JAXBException | ParserConfigurationException | IOException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    public DumpManifest parseManifest(Reader reader) {
+        try {
+            Unmarshaller unmarshaller = context.createValidatingUnmarshaller();
+            return (DumpManifest) unmarshaller.unmarshal(reader);
+        }
+        catch (JAXBException | ClassCastException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
     /**
      * Sets the JAXB context.
      *
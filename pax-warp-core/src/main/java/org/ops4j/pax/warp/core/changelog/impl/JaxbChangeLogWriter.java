@@ -28,10 +28,13 @@ import javax.inject.Named;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 
+import org.ops4j.pax.warp.core.changelog.AppendableChangeLogWriter;
 import org.ops4j.pax.warp.core.changelog.ChangeLogWriter;
+import org.ops4j.pax.warp.core.changelog.StreamingChangeLogWriter;
 import org.ops4j.pax.warp.exc.WarpException;
 import org.ops4j.pax.warp.jaxb.WarpJaxbContext;
 import org.ops4j.pax.warp.jaxb.gen.ChangeLog;
+import org.ops4j.pax.warp.jaxb.gen.DumpManifest;
 import org.ops4j.pax.warp.scope.CdiDependent;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
@@ -85,8 +88,27 @@ public class JaxbChangeLogWriter implements ChangeLogWriter {
         }
     }
 
+    @Override
+    public AppendableChangeLogWriter openChangeLog(OutputStream os) {
+        return new JaxbStreamingChangeLogWriter(context, os, false);
+    }
 
+    @Override
+    public StreamingChangeLogWriter openChangeSetFragment(OutputStream os) {
+        return new JaxbStreamingChangeLogWriter(context, os, true);
+    }
 
+    @Override
+    public void writeManifest(DumpManifest manifest, File outputFile) {
+        try {
+            Marshaller marshaller = context.createValidatingMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+            marshaller.marshal(manifest, outputFile);
+        }
+        catch (JAXBException exc) {
+            throw new WarpException(exc);
+        }
+    }
 
     /**
      * Sets the JAXB context.
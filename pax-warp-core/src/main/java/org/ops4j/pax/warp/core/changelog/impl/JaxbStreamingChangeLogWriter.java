@@ -0,0 +1,424 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.changelog.impl;
+
+import static org.ops4j.pax.warp.jaxb.WarpJaxbContext.NAMESPACE;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.ops4j.pax.warp.core.changelog.AppendableChangeLogWriter;
+import org.ops4j.pax.warp.exc.WarpException;
+import org.ops4j.pax.warp.jaxb.WarpJaxbContext;
+import org.ops4j.pax.warp.jaxb.gen.ColumnValue;
+import org.ops4j.pax.warp.jaxb.gen.DataColumn;
+import org.ops4j.pax.warp.jaxb.gen.Insert;
+import org.ops4j.pax.warp.jaxb.gen.TableData;
+
+/**
+ * Implements {@link AppendableChangeLogWriter} by writing the change log and change set elements
+ * with a StAX writer and marshalling each change as a JAXB fragment.
+ * <p>
+ * Changes are not validated individually, but the resulting document is valid with respect to
+ * the change log schema if all changes are valid.
+ * <p>
+ * Rows are written directly with the StAX writer, producing the same output as the marshaller
+ * for the equivalent {@code insert} or {@code tableData} changes.
+ */
+class JaxbStreamingChangeLogWriter implements AppendableChangeLogWriter {
+
+    private static final String CHANGE_SET_INDENT = "\n    ";
+    private static final String CHANGE_INDENT = "\n        ";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private WarpJaxbContext context;
+    private OutputStream os;
+    private boolean fragment;
+    private XMLStreamWriter writer;
+    private Marshaller marshaller;
+    private boolean inChangeSet;
+    private boolean aborted;
+
+    /** Template of current insert rows, or null. */
+    private Insert insertTemplate;
+
+    /** Template of current table data, or null. */
+    private TableData tableDataTemplate;
+
+    /** Element name of current insert rows. */
+    private String insertElementName;
+
+    /** Index of next column in current row. */
+    private int columnIndex;
+
+    /**
+     * Creates a streaming writer on the given output stream. Unless writing a fragment, the start
+     * of the change log document is written immediately.
+     *
+     * @param context
+     *            JAXB context for change log model
+     * @param os
+     *            output stream
+     * @param fragment
+     *            write change sets only, without XML declaration and root element?
+     */
+    JaxbStreamingChangeLogWriter(WarpJaxbContext context, OutputStream os, boolean fragment) {
+        this.context = context;
+        this.os = os;
+        this.fragment = fragment;
+        try {
+            this.marshaller = context.createFragmentMarshaller();
+            this.writer = new EscapingXmlStreamWriter(
+                XMLOutputFactory.newInstance().createXMLStreamWriter(os, "UTF-8"));
+            writer.setDefaultNamespace(NAMESPACE);
+            if (!fragment) {
+                writer.writeStartDocument("UTF-8", "1.0");
+                writer.writeCharacters("\n");
+                writer.writeStartElement(NAMESPACE, "changeLog");
+                writer.writeDefaultNamespace(NAMESPACE);
+                writer.writeAttribute("version", "0.1");
+            }
+        }
+        catch (JAXBException | XMLStreamException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    public void startChangeSet(String id) {
+        if (inChangeSet) {
+            throw new IllegalStateException("change sets cannot be nested");
+        }
+        try {
+            writer.writeCharacters(CHANGE_SET_INDENT);
+            writer.writeStartElement(NAMESPACE, "changeSet");
+            writer.writeAttribute("id", id);
+            inChangeSet = true;
+        }
+        catch (XMLStreamException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void writeChange(Object change) {
+        if (!inChangeSet) {
+            throw new IllegalStateException("no current change set");
+        }
+        QName elementName = context.getChangeElementName(change.getClass());
+        try {
+            writer.writeCharacters(CHANGE_INDENT);
+            marshaller.marshal(new JAXBElement(elementName, change.getClass(), change), writer);
+        }
+        catch (JAXBException | XMLStreamException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    public void startRows(Object template) {
+        if (!inChangeSet) {
+            throw new IllegalStateException("no current change set");
+        }
+        if (insertTemplate != null || tableDataTemplate != null) {
+            throw new IllegalStateException("rows cannot be nested");
+        }
+        if (template instanceof Insert) {
+            insertTemplate = (Insert) template;
+            insertElementName = elementName(template);
+        }
+        else if (template instanceof TableData) {
+            tableDataTemplate = (TableData) template;
+            try {
+                writer.writeCharacters(CHANGE_INDENT);
+                writer.writeStartElement(NAMESPACE, elementName(template));
+                writeTableName(tableDataTemplate.getCatalogName(),
+                    tableDataTemplate.getSchemaName(), tableDataTemplate.getTableName());
+                for (DataColumn column : tableDataTemplate.getColumn()) {
+                    writer.writeStartElement(NAMESPACE, "column");
+                    writer.writeAttribute("name", column.getName());
+                    writer.writeAttribute("type", column.getType());
+                    writer.writeEndElement();
+                }
+            }
+            catch (XMLStreamException exc) {
+                throw new WarpException(exc);
+            }
+        }
+        else {
+            throw new IllegalArgumentException("not a row template: " + template);
+        }
+    }
+
+    @Override
+    public void startRow() {
+        try {
+            if (insertTemplate != null) {
+                writer.writeCharacters(CHANGE_INDENT);
+                writer.writeStartElement(NAMESPACE, insertElementName);
+                writeTableName(insertTemplate.getCatalogName(), insertTemplate.getSchemaName(),
+                    insertTemplate.getTableName());
+            }
+            else if (tableDataTemplate != null) {
+                writer.writeStartElement(NAMESPACE, "row");
+            }
+            else {
+                throw new IllegalStateException("no current rows");
+            }
+            columnIndex = 0;
+        }
+        catch (XMLStreamException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    public void writeValue(String value) {
+        try {
+            startValue();
+            writer.writeCharacters(value);
+            writer.writeEndElement();
+        }
+        catch (XMLStreamException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    public void writeValue(char[] chars, int offset, int length) {
+        try {
+            startValue();
+            writer.writeCharacters(chars, offset, length);
+            writer.writeEndElement();
+        }
+        catch (XMLStreamException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    public Writer openValue() {
+        try {
+            startValue();
+        }
+        catch (XMLStreamException exc) {
+            throw new WarpException(exc);
+        }
+        return new ValueWriter();
+    }
+
+    @Override
+    public void writeNull() {
+        try {
+            startValue();
+            writer.writeAttribute("null", "true");
+            writer.writeEndElement();
+        }
+        catch (XMLStreamException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    public void endRow() {
+        try {
+            writer.writeEndElement();
+        }
+        catch (XMLStreamException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    public void endRows() {
+        try {
+            if (tableDataTemplate != null) {
+                writer.writeEndElement();
+            }
+            insertTemplate = null;
+            tableDataTemplate = null;
+        }
+        catch (XMLStreamException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    private void startValue() throws XMLStreamException {
+        if (insertTemplate != null) {
+            List<ColumnValue> columns = insertTemplate.getColumn();
+            ColumnValue column = columns.get(columnIndex++);
+            writer.writeStartElement(NAMESPACE, "column");
+            writer.writeAttribute("name", column.getName());
+            writer.writeAttribute("type", column.getType());
+        }
+        else {
+            writer.writeStartElement(NAMESPACE, "v");
+        }
+    }
+
+    /**
+     * Writes the characters of a column value to the StAX writer and ends the value element on
+     * closing.
+     */
+    private class ValueWriter extends Writer {
+
+        private boolean closed;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("value writer is closed");
+            }
+            try {
+                writer.writeCharacters(cbuf, off, len);
+            }
+            catch (XMLStreamException exc) {
+                throw new IOException(exc);
+            }
+        }
+
+        @Override
+        public void flush() {
+            // nothing to flush, the characters are passed on immediately
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                writer.writeEndElement();
+            }
+            catch (XMLStreamException exc) {
+                throw new IOException(exc);
+            }
+        }
+    }
+
+    private void writeTableName(String catalogName, String schemaName, String tableName)
+        throws XMLStreamException {
+        if (catalogName != null) {
+            writer.writeAttribute("catalogName", catalogName);
+        }
+        if (schemaName != null) {
+            writer.writeAttribute("schemaName", schemaName);
+        }
+        writer.writeAttribute("tableName", tableName);
+    }
+
+    private String elementName(Object change) {
+        return context.getChangeElementName(change.getClass()).getLocalPart();
+    }
+
+    @Override
+    public void endChangeSet() {
+        if (!inChangeSet) {
+            throw new IllegalStateException("no current change set");
+        }
+        try {
+            writer.writeCharacters(CHANGE_SET_INDENT);
+            writer.writeEndElement();
+            inChangeSet = false;
+        }
+        catch (XMLStreamException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    public void appendChangeSets(InputStream is) {
+        if (inChangeSet) {
+            throw new IllegalStateException("cannot append change sets to a change set");
+        }
+        try {
+            // closes any pending start tag before writing to the underlying stream
+            writer.writeCharacters("");
+            writer.flush();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int numBytes;
+            while ((numBytes = is.read(buffer)) != -1) {
+                os.write(buffer, 0, numBytes);
+            }
+        }
+        catch (XMLStreamException | IOException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            writer.flush();
+        }
+        catch (XMLStreamException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (aborted) {
+            return;
+        }
+        try {
+            if (inChangeSet) {
+                endChangeSet();
+            }
+            if (!fragment) {
+                writer.writeCharacters("\n");
+                writer.writeEndElement();
+                writer.writeEndDocument();
+                writer.writeCharacters("\n");
+            }
+            writer.flush();
+            writer.close();
+        }
+        catch (XMLStreamException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    public void abort() {
+        if (aborted) {
+            return;
+        }
+        aborted = true;
+        try {
+            // the StAX writer is not closed, as some implementations end all open elements
+            writer.flush();
+        }
+        catch (XMLStreamException exc) {
+            throw new WarpException(exc);
+        }
+    }
+}
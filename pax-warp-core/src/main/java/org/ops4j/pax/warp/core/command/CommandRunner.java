@@ -17,13 +17,20 @@
  */
 package org.ops4j.pax.warp.core.command;
 
+import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.sql.Connection;
 import java.util.List;
+import java.util.stream.Stream;
 
 import javax.sql.DataSource;
 
+import org.ops4j.pax.warp.core.dump.DumpOptions;
+import org.ops4j.pax.warp.core.dump.TableRow;
+import org.ops4j.pax.warp.core.update.CopyOptions;
+import org.ops4j.pax.warp.core.update.ImportOptions;
+
 /**
  * Interface for embedding Pax Warp into client applications via dependency injection.
  *
@@ -103,6 +110,25 @@ public interface CommandRunner {
      */
     void dumpData(String jdbcUrl, String username, String password, OutputStream os);
 
+    /**
+     * Retrieves all data from the database with the given URL and writes a change log with these
+     * data to the given output stream, using the given options. The change log does not contain
+     * any structural information like constraints or indexes.
+     *
+     * @param jdbcUrl
+     *            JDBC URL of database
+     * @param username
+     *            database username
+     * @param password
+     *            database password
+     * @param os
+     *            output stream for change log
+     * @param options
+     *            dump options
+     */
+    void dumpData(String jdbcUrl, String username, String password, OutputStream os,
+        DumpOptions options);
+
     /**
      * Retrieves all data from the database with the given connection and writes a change log with
      * these data to the given output stream. The change log does not contain any structural
@@ -115,6 +141,20 @@ public interface CommandRunner {
      */
     void dumpData(Connection dbc, OutputStream os);
 
+    /**
+     * Retrieves all data from the database with the given connection and writes a change log with
+     * these data to the given output stream, using the given options. The change log does not
+     * contain any structural information like constraints or indexes.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param os
+     *            output stream for change log
+     * @param options
+     *            dump options
+     */
+    void dumpData(Connection dbc, OutputStream os, DumpOptions options);
+
     /**
      * Retrieves all data from the tables of the given schema of the database with the given
      * connection and writes a change log with these data to the given output stream. The change log
@@ -141,6 +181,67 @@ public interface CommandRunner {
      */
     void dumpData(DataSource ds, OutputStream os);
 
+    /**
+     * Retrieves all data from the database with the given data source and writes a change log with
+     * these data to the given output stream, using the given options. The change log does not
+     * contain any structural information like constraints or indexes.
+     *
+     * @param ds
+     *            JDBC data source
+     * @param os
+     *            output stream for change log
+     * @param options
+     *            dump options
+     */
+    void dumpData(DataSource ds, OutputStream os, DumpOptions options);
+
+    /**
+     * Retrieves all data from the database with the given URL and writes them to chunk files in
+     * the given directory, with a manifest listing all tables, chunk files and checksums. The
+     * manifest can be imported by {@link #importData(String, String, String, File, ImportOptions)}.
+     *
+     * @param jdbcUrl
+     *            JDBC URL of database
+     * @param username
+     *            database username
+     * @param password
+     *            database password
+     * @param directory
+     *            output directory
+     * @param options
+     *            dump options
+     */
+    void dumpData(String jdbcUrl, String username, String password, File directory,
+        DumpOptions options);
+
+    /**
+     * Retrieves all data from the database with the given connection and writes them to chunk
+     * files in the given directory, with a manifest listing all tables, chunk files and
+     * checksums.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param directory
+     *            output directory
+     * @param options
+     *            dump options
+     */
+    void dumpData(Connection dbc, File directory, DumpOptions options);
+
+    /**
+     * Retrieves all data from the database with the given data source and writes them to chunk
+     * files in the given directory, with a manifest listing all tables, chunk files and
+     * checksums.
+     *
+     * @param ds
+     *            JDBC data source
+     * @param directory
+     *            output directory
+     * @param options
+     *            dump options
+     */
+    void dumpData(DataSource ds, File directory, DumpOptions options);
+
     /**
      * Analyzes the structure of the database with the given URL and writes a change log
      * corresponding to the database structure to the given output stream, also including
@@ -156,6 +257,25 @@ public interface CommandRunner {
      *            output stream for change log
      */
     void dumpAll(String jdbcUrl, String username, String password, OutputStream os);
+
+    /**
+     * Analyzes the structure of the database with the given URL and writes a change log
+     * corresponding to the database structure to the given output stream, also including
+     * change sets for all data records, using the given options.
+     *
+     * @param jdbcUrl
+     *            JDBC URL of database
+     * @param username
+     *            database username
+     * @param password
+     *            database password
+     * @param os
+     *            output stream for change log
+     * @param options
+     *            dump options
+     */
+    void dumpAll(String jdbcUrl, String username, String password, OutputStream os,
+        DumpOptions options);
     
     /**
      * Analyzes the structure of the database with the given URL and writes a change log
@@ -168,6 +288,106 @@ public interface CommandRunner {
      *            output stream for change log
      */
     void dumpAll(Connection dbc, OutputStream os);
+
+    /**
+     * Analyzes the structure of the database with the given connection and writes a change log
+     * corresponding to the database structure to the given output stream, also including
+     * change sets for all data records, using the given options.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param os
+     *            output stream for change log
+     * @param options
+     *            dump options
+     */
+    void dumpAll(Connection dbc, OutputStream os, DumpOptions options);
+
+    /**
+     * Analyzes the structure of the database with the given data source and writes a change log
+     * corresponding to the database structure to the given output stream, also including
+     * change sets for all data records.
+     *
+     * @param ds
+     *            JDBC data source
+     * @param os
+     *            output stream for change log
+     */
+    void dumpAll(DataSource ds, OutputStream os);
+
+    /**
+     * Analyzes the structure of the database with the given data source and writes a change log
+     * corresponding to the database structure to the given output stream, also including
+     * change sets for all data records, using the given options.
+     *
+     * @param ds
+     *            JDBC data source
+     * @param os
+     *            output stream for change log
+     * @param options
+     *            dump options
+     */
+    void dumpAll(DataSource ds, OutputStream os, DumpOptions options);
+
+    /**
+     * Analyzes the structure of the database with the given URL and writes a dump directory with
+     * a structure change log, chunk files for all data and a manifest listing all tables, chunk
+     * files and checksums.
+     *
+     * @param jdbcUrl
+     *            JDBC URL of database
+     * @param username
+     *            database username
+     * @param password
+     *            database password
+     * @param directory
+     *            output directory
+     * @param options
+     *            dump options
+     */
+    void dumpAll(String jdbcUrl, String username, String password, File directory,
+        DumpOptions options);
+
+    /**
+     * Analyzes the structure of the database with the given connection and writes a dump
+     * directory with a structure change log, chunk files for all data and a manifest listing all
+     * tables, chunk files and checksums.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param directory
+     *            output directory
+     * @param options
+     *            dump options
+     */
+    void dumpAll(Connection dbc, File directory, DumpOptions options);
+
+    /**
+     * Analyzes the structure of the database with the given data source and writes a dump
+     * directory with a structure change log, chunk files for all data and a manifest listing all
+     * tables, chunk files and checksums.
+     *
+     * @param ds
+     *            JDBC data source
+     * @param directory
+     *            output directory
+     * @param options
+     *            dump options
+     */
+    void dumpAll(DataSource ds, File directory, DumpOptions options);
+
+    /**
+     * Streams all rows from the database with the given connection, table by table, without
+     * writing a change log. The stream reads rows lazily and must be closed. The connection must
+     * be kept open until the stream is closed.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param options
+     *            dump options selecting tables and rows
+     * @return stream of rows
+     */
+    Stream<TableRow> streamRows(Connection dbc, DumpOptions options);
     
     /**
      * Migrates the database with the given URL by applying the change log from the given input
@@ -239,6 +459,29 @@ public interface CommandRunner {
     void importData(String jdbcUrl, String username, String password, InputStream is,
         List<String> excludedTables);
 
+    /**
+     * Deletes all existing data in the given database, except from the excluded tables, and imports
+     * the data from the given change log stream, using the given options. Foreign key constraints
+     * are disabled during the import, so that the order of data in the change log does not matter.
+     * Additional connections for importing tables concurrently are opened as required by the
+     * options.
+     *
+     * @param jdbcUrl
+     *            JDBC URL of database
+     * @param username
+     *            database username
+     * @param password
+     *            database password
+     * @param is
+     *            input stream for change log
+     * @param excludedTables
+     *            list of tables which will not be deleted
+     * @param options
+     *            import options
+     */
+    void importData(String jdbcUrl, String username, String password, InputStream is,
+        List<String> excludedTables, ImportOptions options);
+
     /**
      * Deletes all existing data in the given database, and imports the data from the given change
      * log stream. Foreign key constraints are disabled during the import, so that the order of data
@@ -296,6 +539,23 @@ public interface CommandRunner {
      */
     void importData(Connection dbc, InputStream is, List<String> excludedTables);
 
+    /**
+     * Deletes all existing data in the given database, except from the excluded tables, and imports
+     * the data from the given change log stream, using the given options. Foreign key constraints
+     * are disabled during the import, so that the order of data in the change log does not matter.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param is
+     *            input stream for change log
+     * @param excludedTables
+     *            list of tables which will not be deleted
+     * @param options
+     *            import options
+     */
+    void importData(Connection dbc, InputStream is, List<String> excludedTables,
+        ImportOptions options);
+
     /**
      * Deletes all existing data in the given database and imports the data from the given change
      * log stream. Foreign key constraints are disabled during the import, so that the order of data
@@ -321,4 +581,131 @@ public interface CommandRunner {
      *            list of tables which will not be deleted
      */
     void importData(DataSource ds, InputStream is, List<String> excludedTables);
+
+    /**
+     * Deletes all existing data in the given database, except from the excluded tables, and imports
+     * the data from the given change log stream, using the given options. Foreign key constraints
+     * are disabled during the import, so that the order of data in the change log does not matter.
+     * Additional connections for importing tables concurrently are taken from the data source as
+     * required by the options.
+     *
+     * @param ds
+     *            JDBC data source
+     * @param is
+     *            input stream for change log
+     * @param excludedTables
+     *            list of tables which will not be deleted
+     * @param options
+     *            import options
+     */
+    void importData(DataSource ds, InputStream is, List<String> excludedTables,
+        ImportOptions options);
+
+    /**
+     * Imports the data from the dump directory with the given manifest into the database with the
+     * given URL. The checksums of all chunk files are verified first. Only the tables selected by
+     * the options are truncated and imported. Foreign key constraints are disabled during the
+     * import. Additional connections for importing tables concurrently are opened as required by
+     * the options.
+     *
+     * @param jdbcUrl
+     *            JDBC URL of database
+     * @param username
+     *            database username
+     * @param password
+     *            database password
+     * @param manifest
+     *            manifest file of a dump directory, the dump directory itself, or a change log
+     *            file, which is imported like a change log stream
+     * @param options
+     *            import options
+     */
+    void importData(String jdbcUrl, String username, String password, File manifest,
+        ImportOptions options);
+
+    /**
+     * Imports the data from the dump directory with the given manifest into the database with the
+     * given connection. The checksums of all chunk files are verified first. Only the tables
+     * selected by the options are truncated and imported. Foreign key constraints are disabled
+     * during the import.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param manifest
+     *            manifest file of a dump directory, the dump directory itself, or a change log
+     *            file, which is imported like a change log stream
+     * @param options
+     *            import options
+     */
+    void importData(Connection dbc, File manifest, ImportOptions options);
+
+    /**
+     * Imports the data from the dump directory with the given manifest into the database with the
+     * given data source. The checksums of all chunk files are verified first. Only the tables
+     * selected by the options are truncated and imported. Foreign key constraints are disabled
+     * during the import. Additional connections for importing tables concurrently are taken from
+     * the data source as required by the options.
+     *
+     * @param ds
+     *            JDBC data source
+     * @param manifest
+     *            manifest file of a dump directory, the dump directory itself, or a change log
+     *            file, which is imported like a change log stream
+     * @param options
+     *            import options
+     */
+    void importData(DataSource ds, File manifest, ImportOptions options);
+
+    /**
+     * Copies all data from the source database to the target database with the given URLs,
+     * without an intermediate change log. Only the tables selected by the options are truncated
+     * and copied. Foreign key constraints of the target database are disabled during the copy.
+     *
+     * @param sourceUrl
+     *            JDBC URL of source database
+     * @param sourceUsername
+     *            source database username
+     * @param sourcePassword
+     *            source database password
+     * @param targetUrl
+     *            JDBC URL of target database
+     * @param targetUsername
+     *            target database username
+     * @param targetPassword
+     *            target database password
+     * @param options
+     *            copy options
+     */
+    void copy(String sourceUrl, String sourceUsername, String sourcePassword, String targetUrl,
+        String targetUsername, String targetPassword, CopyOptions options);
+
+    /**
+     * Copies all data from the source database to the target database with the given
+     * connections, without an intermediate change log. Only the tables selected by the options
+     * are truncated and copied. Foreign key constraints of the target database are disabled
+     * during the copy.
+     *
+     * @param source
+     *            JDBC connection of source database
+     * @param target
+     *            JDBC connection of target database
+     * @param options
+     *            copy options
+     */
+    void copy(Connection source, Connection target, CopyOptions options);
+
+    /**
+     * Copies all data from the source database to the target database with the given data
+     * sources, without an intermediate change log. Only the tables selected by the options are
+     * truncated and copied. Foreign key constraints of the target database are disabled during
+     * the copy.
+     *
+     * @param source
+     *            JDBC data source of source database
+     * @param target
+     *            JDBC data source of target database
+     * @param options
+     *            copy options
+     */
+    void copy(DataSource source, DataSource target, CopyOptions options);
 }
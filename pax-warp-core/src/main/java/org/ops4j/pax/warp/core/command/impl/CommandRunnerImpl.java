@@ -17,6 +17,7 @@
  */
 package org.ops4j.pax.warp.core.command.impl;
 
+import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.sql.Connection;
@@ -25,6 +26,7 @@ import java.sql.SQLException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -33,7 +35,12 @@ import javax.sql.DataSource;
 import org.ops4j.pax.warp.core.command.CommandRunner;
 import org.ops4j.pax.warp.core.dbms.DbmsProfile;
 import org.ops4j.pax.warp.core.dbms.DbmsProfileSelector;
+import org.ops4j.pax.warp.core.dump.DumpOptions;
 import org.ops4j.pax.warp.core.dump.DumpService;
+import org.ops4j.pax.warp.core.dump.TableRow;
+import org.ops4j.pax.warp.core.jdbc.ConnectionFactory;
+import org.ops4j.pax.warp.core.update.CopyOptions;
+import org.ops4j.pax.warp.core.update.ImportOptions;
 import org.ops4j.pax.warp.core.update.UpdateService;
 import org.ops4j.pax.warp.exc.WarpException;
 import org.ops4j.pax.warp.scope.CdiDependent;
@@ -92,23 +99,60 @@ public class CommandRunnerImpl implements CommandRunner {
 
     @Override
     public void dumpData(Connection dbc, OutputStream os) {
-        dumpDataService.dumpData(dbc, os, getDbms(dbc), Optional.empty());
+        dumpData(dbc, os, new DumpOptions());
+    }
+
+    @Override
+    public void dumpData(Connection dbc, OutputStream os, DumpOptions options) {
+        dumpDataService.dumpData(dbc, os, getDbms(dbc), Optional.empty(), options);
     }
 
     @Override
     public void dumpAll(Connection dbc, OutputStream os) {
-        dumpDataService.dumpAll(dbc, os, getDbms(dbc), Optional.empty());
+        dumpAll(dbc, os, new DumpOptions());
+    }
+
+    @Override
+    public void dumpAll(Connection dbc, OutputStream os, DumpOptions options) {
+        dumpDataService.dumpAll(dbc, os, getDbms(dbc), Optional.empty(), options);
+    }
+
+    @Override
+    public Stream<TableRow> streamRows(Connection dbc, DumpOptions options) {
+        return dumpDataService.streamRows(dbc, getDbms(dbc), Optional.empty(), options);
     }
 
     @Override
     public void dumpData(Connection dbc, OutputStream os, String schema) {
-        dumpDataService.dumpData(dbc, os, getDbms(dbc), Optional.of(schema));
+        dumpDataService.dumpData(dbc, os, getDbms(dbc), Optional.of(schema), new DumpOptions());
     }
 
     @Override
     public void dumpData(DataSource ds, OutputStream os) {
-        try (Connection dbc = ds.getConnection()) {
-            dumpDataService.dumpData(dbc, os, getDbms(dbc), Optional.empty());
+        dumpData(ds, os, new DumpOptions());
+    }
+
+    @Override
+    public void dumpData(DataSource ds, OutputStream os, DumpOptions options) {
+        dumpData(ds::getConnection, os, options);
+    }
+
+    @Override
+    public void dumpData(String jdbcUrl, String username, String password, OutputStream os) {
+        dumpData(jdbcUrl, username, password, os, new DumpOptions());
+    }
+
+    @Override
+    public void dumpData(String jdbcUrl, String username, String password, OutputStream os,
+        DumpOptions options) {
+        dumpData(() -> DriverManager.getConnection(jdbcUrl, username, password), os, options);
+    }
+
+    private void dumpData(ConnectionFactory connectionFactory, OutputStream os,
+        DumpOptions options) {
+        try (Connection dbc = connectionFactory.getConnection()) {
+            dumpDataService.dumpData(dbc, connectionFactory, os, getDbms(dbc), Optional.empty(),
+                options);
         }
         catch (SQLException exc) {
             throw new WarpException(exc);
@@ -116,9 +160,31 @@ public class CommandRunnerImpl implements CommandRunner {
     }
 
     @Override
-    public void dumpData(String jdbcUrl, String username, String password, OutputStream os) {
-        try (Connection dbc = DriverManager.getConnection(jdbcUrl, username, password)) {
-            dumpData(dbc, os);
+    public void dumpAll(String jdbcUrl, String username, String password, OutputStream os) {
+        dumpAll(jdbcUrl, username, password, os, new DumpOptions());
+    }
+
+    @Override
+    public void dumpAll(String jdbcUrl, String username, String password, OutputStream os,
+        DumpOptions options) {
+        dumpAll(() -> DriverManager.getConnection(jdbcUrl, username, password), os, options);
+    }
+
+    @Override
+    public void dumpAll(DataSource ds, OutputStream os) {
+        dumpAll(ds, os, new DumpOptions());
+    }
+
+    @Override
+    public void dumpAll(DataSource ds, OutputStream os, DumpOptions options) {
+        dumpAll(ds::getConnection, os, options);
+    }
+
+    private void dumpAll(ConnectionFactory connectionFactory, OutputStream os,
+        DumpOptions options) {
+        try (Connection dbc = connectionFactory.getConnection()) {
+            dumpDataService.dumpAll(dbc, connectionFactory, os, getDbms(dbc), Optional.empty(),
+                options);
         }
         catch (SQLException exc) {
             throw new WarpException(exc);
@@ -126,9 +192,55 @@ public class CommandRunnerImpl implements CommandRunner {
     }
 
     @Override
-    public void dumpAll(String jdbcUrl, String username, String password, OutputStream os) {
-        try (Connection dbc = DriverManager.getConnection(jdbcUrl, username, password)) {
-            dumpAll(dbc, os);
+    public void dumpData(String jdbcUrl, String username, String password, File directory,
+        DumpOptions options) {
+        dumpData(() -> DriverManager.getConnection(jdbcUrl, username, password), directory,
+            options);
+    }
+
+    @Override
+    public void dumpData(Connection dbc, File directory, DumpOptions options) {
+        dumpDataService.dumpData(dbc, null, directory, getDbms(dbc), Optional.empty(), options);
+    }
+
+    @Override
+    public void dumpData(DataSource ds, File directory, DumpOptions options) {
+        dumpData(ds::getConnection, directory, options);
+    }
+
+    private void dumpData(ConnectionFactory connectionFactory, File directory,
+        DumpOptions options) {
+        try (Connection dbc = connectionFactory.getConnection()) {
+            dumpDataService.dumpData(dbc, connectionFactory, directory, getDbms(dbc),
+                Optional.empty(), options);
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    public void dumpAll(String jdbcUrl, String username, String password, File directory,
+        DumpOptions options) {
+        dumpAll(() -> DriverManager.getConnection(jdbcUrl, username, password), directory,
+            options);
+    }
+
+    @Override
+    public void dumpAll(Connection dbc, File directory, DumpOptions options) {
+        dumpDataService.dumpAll(dbc, null, directory, getDbms(dbc), Optional.empty(), options);
+    }
+
+    @Override
+    public void dumpAll(DataSource ds, File directory, DumpOptions options) {
+        dumpAll(ds::getConnection, directory, options);
+    }
+
+    private void dumpAll(ConnectionFactory connectionFactory, File directory,
+        DumpOptions options) {
+        try (Connection dbc = connectionFactory.getConnection()) {
+            dumpDataService.dumpAll(dbc, connectionFactory, directory, getDbms(dbc),
+                Optional.empty(), options);
         }
         catch (SQLException exc) {
             throw new WarpException(exc);
@@ -169,12 +281,14 @@ public class CommandRunnerImpl implements CommandRunner {
     @Override
     public void importData(String jdbcUrl, String username, String password, InputStream is,
         List<String> excludedTables) {
-        try (Connection dbc = DriverManager.getConnection(jdbcUrl, username, password)) {
-            importData(dbc, is);
-        }
-        catch (SQLException exc) {
-            throw new WarpException(exc);
-        }
+        importData(jdbcUrl, username, password, is, excludedTables, new ImportOptions());
+    }
+
+    @Override
+    public void importData(String jdbcUrl, String username, String password, InputStream is,
+        List<String> excludedTables, ImportOptions options) {
+        importData(() -> DriverManager.getConnection(jdbcUrl, username, password), is,
+            excludedTables, options);
     }
 
     @Override
@@ -192,6 +306,13 @@ public class CommandRunnerImpl implements CommandRunner {
         updateService.importData(dbc, is, getDbms(dbc), Optional.empty(), excludedTables);
     }
 
+    @Override
+    public void importData(Connection dbc, InputStream is, List<String> excludedTables,
+        ImportOptions options) {
+        updateService.importData(dbc, is, getDbms(dbc), Optional.empty(), excludedTables,
+            options);
+    }
+
     @Override
     public void importData(Connection dbc, InputStream is, String schema) {
         updateService.importData(dbc, is, getDbms(dbc), Optional.of(schema),
@@ -214,6 +335,83 @@ public class CommandRunnerImpl implements CommandRunner {
         }
     }
 
+    @Override
+    public void importData(DataSource ds, InputStream is, List<String> excludedTables,
+        ImportOptions options) {
+        importData(ds::getConnection, is, excludedTables, options);
+    }
+
+    private void importData(ConnectionFactory connectionFactory, InputStream is,
+        List<String> excludedTables, ImportOptions options) {
+        try (Connection dbc = connectionFactory.getConnection()) {
+            updateService.importData(dbc, connectionFactory, is, getDbms(dbc), Optional.empty(),
+                excludedTables, options);
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    public void importData(String jdbcUrl, String username, String password, File manifest,
+        ImportOptions options) {
+        importData(() -> DriverManager.getConnection(jdbcUrl, username, password), manifest,
+            options);
+    }
+
+    @Override
+    public void importData(Connection dbc, File manifest, ImportOptions options) {
+        updateService.importData(dbc, manifest, getDbms(dbc), Optional.empty(), options);
+    }
+
+    @Override
+    public void importData(DataSource ds, File manifest, ImportOptions options) {
+        importData(ds::getConnection, manifest, options);
+    }
+
+    private void importData(ConnectionFactory connectionFactory, File manifest,
+        ImportOptions options) {
+        try (Connection dbc = connectionFactory.getConnection()) {
+            updateService.importData(dbc, connectionFactory, manifest, getDbms(dbc),
+                Optional.empty(), options);
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    public void copy(String sourceUrl, String sourceUsername, String sourcePassword,
+        String targetUrl, String targetUsername, String targetPassword, CopyOptions options) {
+        try (Connection source = DriverManager.getConnection(sourceUrl, sourceUsername,
+            sourcePassword);
+            Connection target = DriverManager.getConnection(targetUrl, targetUsername,
+                targetPassword)) {
+            copy(source, target, options);
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    public void copy(Connection source, Connection target, CopyOptions options) {
+        updateService.copyData(source, getDbms(source), target, getDbms(target), options);
+    }
+
+    @Override
+    public void copy(DataSource source, DataSource target, CopyOptions options) {
+        try (Connection sourceDbc = source.getConnection();
+            Connection targetDbc = target.getConnection()) {
+            targetDbc.setAutoCommit(false);
+            copy(sourceDbc, targetDbc, options);
+            targetDbc.commit();
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
     private DbmsProfile getDbms(Connection dbc) {
         return profileSelector.selectProfile(dbc);
     }
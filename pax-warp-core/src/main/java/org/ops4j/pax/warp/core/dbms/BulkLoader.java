@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dbms;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Loads rows into a table by a native bulk load mechanism of a DBMS, which is faster than
+ * inserting rows by JDBC batches.
+ * <p>
+ * Rows are passed to a {@link BulkLoad} one at a time and loaded in groups. A loader may write each
+ * group to a temporary file on the client, which is then read by the database server, so a loader
+ * may not be {@link #isSupported(Connection) supported} on all connections. Unless the loader is
+ * not {@link #isTransactional() transactional}, the rows are loaded in the current transaction
+ * of the connection.
+ */
+public interface BulkLoader {
+
+    /**
+     * Rows to be loaded into a table by a bulk loader.
+     */
+    interface BulkLoad extends AutoCloseable {
+
+        /**
+         * Adds a row to be loaded by the next {@link #execute()}.
+         *
+         * @param values
+         *            converted values, in the order of the columns, with null for SQL NULL
+         * @throws SQLException
+         *             on database error
+         */
+        void addRow(Object[] values) throws SQLException;
+
+        /**
+         * Loads all rows added since the last execution, if any.
+         *
+         * @throws SQLException
+         *             on database error
+         */
+        void execute() throws SQLException;
+
+        /**
+         * Discards all rows not yet loaded and releases all resources.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Checks if rows are loaded in the current transaction of the connection. Otherwise, the
+     * loader commits the transaction after each execution, including any rows inserted before.
+     *
+     * @return true if transactional
+     */
+    default boolean isTransactional() {
+        return true;
+    }
+
+    /**
+     * Checks if this loader can be used on the given connection. A loader reading files of the
+     * client is only supported for embedded databases.
+     *
+     * @param dbc
+     *            database connection
+     * @return true if supported
+     * @throws SQLException
+     *             on database error
+     */
+    default boolean isSupported(Connection dbc) throws SQLException {
+        return true;
+    }
+
+    /**
+     * Checks if the given failure of a bulk load means that this loader cannot be used on the
+     * connection at all, e.g. for lack of privileges or because the database server cannot read
+     * the file of the client. The rows can then be inserted by JDBC batches instead.
+     *
+     * @param exc
+     *            exception thrown by {@link BulkLoad#execute()}
+     * @return true if the loader is unavailable
+     */
+    default boolean isUnavailable(SQLException exc) {
+        return false;
+    }
+
+    /**
+     * Starts loading rows into the given table.
+     *
+     * @param dbc
+     *            database connection
+     * @param tableName
+     *            table name
+     * @param columnNames
+     *            names of the columns of each row
+     * @return bulk load, to be closed by the caller
+     * @throws SQLException
+     *             on database error
+     */
+    BulkLoad open(Connection dbc, String tableName, List<String> columnNames)
+        throws SQLException;
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dbms;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.ops4j.pax.warp.exc.WarpException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bulk loader for DBMS importing CSV files. The rows are written to a temporary file, which is
+ * loaded into the table by a statement of the DBMS.
+ * <p>
+ * Values are separated by commas. Strings are enclosed in double quotes, with embedded double
+ * quotes doubled, so that an empty string can be told from NULL, which is an empty unquoted
+ * value. Binary values are written in hexadecimal notation.
+ */
+abstract class CsvBulkLoader implements BulkLoader {
+
+    private static Logger log = LoggerFactory.getLogger(CsvBulkLoader.class);
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    @Override
+    public BulkLoad open(Connection dbc, String tableName, List<String> columnNames) {
+        return new CsvBulkLoad(dbc, tableName, columnNames);
+    }
+
+    /**
+     * Loads the given CSV file into the given table.
+     *
+     * @param dbc
+     *            database connection
+     * @param tableName
+     *            table name
+     * @param columnNames
+     *            names of the columns of the file, in order
+     * @param file
+     *            CSV file in UTF-8 encoding, without a header
+     * @throws SQLException
+     *             on database error
+     */
+    protected abstract void load(Connection dbc, String tableName, List<String> columnNames,
+        File file) throws SQLException;
+
+    /**
+     * Quotes a string for a string literal in SQL.
+     *
+     * @param value
+     *            string
+     * @return string literal
+     */
+    protected static String quoteLiteral(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    private static void writeValue(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof String) {
+            writer.write('"');
+            writer.write(((String) value).replace("\"", "\"\""));
+            writer.write('"');
+        }
+        else if (value instanceof byte[]) {
+            for (byte b : (byte[]) value) {
+                writer.write(HEX_DIGITS[(b >> 4) & 0xF]);
+                writer.write(HEX_DIGITS[b & 0xF]);
+            }
+        }
+        else if (value instanceof BigDecimal) {
+            writer.write(((BigDecimal) value).toPlainString());
+        }
+        else {
+            writer.write(value.toString());
+        }
+    }
+
+    /**
+     * Rows written to a temporary CSV file, which is created for the first row after each
+     * execution.
+     */
+    private class CsvBulkLoad implements BulkLoad {
+
+        private Connection dbc;
+
+        private String tableName;
+
+        private List<String> columnNames;
+
+        private File file;
+
+        private Writer writer;
+
+        CsvBulkLoad(Connection dbc, String tableName, List<String> columnNames) {
+            this.dbc = dbc;
+            this.tableName = tableName;
+            this.columnNames = columnNames;
+        }
+
+        @Override
+        public void addRow(Object[] values) {
+            try {
+                if (writer == null) {
+                    file = File.createTempFile("warp-", ".csv");
+                    writer = new BufferedWriter(
+                        new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+                }
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writeValue(writer, values[i]);
+                }
+                writer.write('\n');
+            }
+            catch (IOException exc) {
+                throw new WarpException(exc);
+            }
+        }
+
+        @Override
+        public void execute() throws SQLException {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.close();
+                writer = null;
+                load(dbc, tableName, columnNames, file);
+            }
+            catch (IOException exc) {
+                throw new WarpException(exc);
+            }
+            finally {
+                close();
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+            catch (IOException exc) {
+                log.warn("cannot close {}", file, exc);
+            }
+            finally {
+                writer = null;
+                if (file != null && file.exists() && !file.delete()) {
+                    log.warn("cannot delete {}", file);
+                }
+                file = null;
+            }
+        }
+    }
+}
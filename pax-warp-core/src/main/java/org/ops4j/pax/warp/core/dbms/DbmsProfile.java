@@ -17,6 +17,11 @@
  */
 package org.ops4j.pax.warp.core.dbms;
 
+import java.sql.Connection;
+import java.sql.JDBCType;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Provides information about specific behaviour of a given database management system.
  *
@@ -107,6 +112,124 @@ public interface DbmsProfile {
         return false;
     }
 
+    /**
+     * Gets the default JDBC fetch size for reading table data when dumping a database. The fetch
+     * size is passed to {@link java.sql.Statement#setFetchSize(int)} on a forward-only, read-only
+     * statement.
+     *
+     * @return fetch size
+     */
+    default int getFetchSize() {
+        return 1000;
+    }
+
+    /**
+     * Does the JDBC driver only use a server-side cursor for a query with a fetch size when auto
+     * commit is disabled? Otherwise, the driver reads the entire result set into memory.
+     *
+     * @return true if auto-commit must be disabled while reading table data
+     */
+    default boolean getCursorRequiresTransaction() {
+        return false;
+    }
+
+    /**
+     * Gets the transaction isolation level for reading all tables from a consistent snapshot
+     * when dumping data over multiple connections.
+     *
+     * @return isolation level, as defined by {@link Connection}
+     */
+    default int getSnapshotIsolationLevel() {
+        return Connection.TRANSACTION_REPEATABLE_READ;
+    }
+
+    /**
+     * Can a transaction export its snapshot to be used by other transactions? If so, the
+     * {@code exportSnapshot} and {@code importSnapshot} templates must be defined for this
+     * DBMS.
+     *
+     * @return true if snapshots can be shared by concurrent transactions
+     */
+    default boolean getSnapshotCanBeShared() {
+        return false;
+    }
+
+    /**
+     * Gets the clause limiting the number of rows returned by a query, to be appended to an
+     * ordered query.
+     *
+     * @param numRows
+     *            maximum number of rows
+     * @return limit clause
+     */
+    default String limitRows(int numRows) {
+        return "fetch first " + numRows + " rows only";
+    }
+
+    /**
+     * Gets the clause selecting a random sample of a table, to be appended to the table name in
+     * the from clause of a query. The sample should be repeatable, so that a table can be read in
+     * multiple pages.
+     *
+     * @param percent
+     *            percentage of rows, greater than 0 and less than 100
+     * @return sample clause, or null if the DBMS does not support table samples
+     */
+    default String getTableSample(double percent) {
+        return null;
+    }
+
+    /**
+     * Gets the native bulk loader of the DBMS, which is used by {@code importData} instead of
+     * inserting rows by JDBC batches.
+     *
+     * @return bulk loader, or null if the DBMS has no bulk loader supported by Pax Warp
+     */
+    default BulkLoader getBulkLoader() {
+        return null;
+    }
+
+    /**
+     * Gets statements configuring a session for rebuilding the indexes dropped by
+     * {@code importData}, e.g. for enabling parallel index builds by the DBMS. The statements are
+     * run on each connection rebuilding indexes, before the first index.
+     *
+     * @return list of SQL statements, possibly empty
+     */
+    default List<String> getIndexBuildSettings() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Gets a statement resetting attributes of an index which were set by the
+     * {@link #getIndexBuildSettings() index build settings}, but should not be kept after the
+     * index is built.
+     *
+     * @param indexName
+     *            index name
+     * @return SQL statement, or null
+     */
+    default String getIndexBuildCleanup(String indexName) {
+        return null;
+    }
+
+    /**
+     * Maps the type of a column, as reported by the JDBC driver, to the JDBC type of its values.
+     * This is needed when copying data between different DBMS, for types which are represented by
+     * a more general type in the metadata, e.g. integers by numbers with a scale of 0.
+     *
+     * @param jdbcType
+     *            JDBC type from result set metadata
+     * @param precision
+     *            precision from result set metadata
+     * @param scale
+     *            scale from result set metadata
+     * @return JDBC type of values
+     */
+    default JDBCType getValueType(JDBCType jdbcType, int precision, int scale) {
+        return jdbcType;
+    }
+
     /**
      * Quotes the given identifier with the appropriate syntax for the DBMS.
      * 
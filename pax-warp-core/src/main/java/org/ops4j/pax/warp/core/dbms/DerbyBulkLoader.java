@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dbms;
+
+import java.io.File;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk loader for Derby, importing CSV files by the {@code SYSCS_UTIL.SYSCS_IMPORT_DATA}
+ * procedure in append mode. The rows are loaded into the table of the current schema with the
+ * given name, which is not case sensitive, like all table and column names of Pax Warp on
+ * Derby. The names are converted to upper case and passed as arguments of the procedure, which
+ * quotes them.
+ * <p>
+ * This loader is not transactional, since the procedure commits on success and rolls back on
+ * failure. It is only supported for embedded databases, since the file is read by the database
+ * server.
+ */
+class DerbyBulkLoader extends CsvBulkLoader {
+
+    private static final String DATA_FILE_NOT_FOUND = "XIE04";
+
+    private static final String NO_EXECUTE_PERMISSION = "42504";
+
+    @Override
+    public boolean isSupported(Connection dbc) throws SQLException {
+        return !dbc.getMetaData().getURL().startsWith("jdbc:derby://");
+    }
+
+    /**
+     * Checks the exception and its causes, since errors of the procedure may be wrapped.
+     */
+    @Override
+    public boolean isUnavailable(SQLException exc) {
+        for (Throwable cause = exc; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                String sqlState = ((SQLException) cause).getSQLState();
+                if (DATA_FILE_NOT_FOUND.equals(sqlState)
+                    || NO_EXECUTE_PERMISSION.equals(sqlState)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isTransactional() {
+        return false;
+    }
+
+    @Override
+    protected void load(Connection dbc, String tableName, List<String> columnNames, File file)
+        throws SQLException {
+        String columns = columnNames.stream().map(String::toUpperCase)
+            .collect(Collectors.joining(","));
+        try (CallableStatement st = dbc.prepareCall(
+            "CALL SYSCS_UTIL.SYSCS_IMPORT_DATA(NULL, ?, ?, NULL, ?, ',', '\"', 'UTF-8', 0)")) {
+            st.setString(1, tableName.toUpperCase());
+            st.setString(2, columns);
+            st.setString(3, file.getAbsolutePath());
+            st.execute();
+        }
+    }
+}
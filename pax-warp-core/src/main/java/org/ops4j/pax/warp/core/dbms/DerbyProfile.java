@@ -35,4 +35,17 @@ public class DerbyProfile implements DbmsProfile {
     public boolean getSchemaNameIsCaseSensitive() {
         return true;
     }
+
+    /**
+     * Indexes backing constraints have generated names like {@code SQL170301123456780}.
+     */
+    @Override
+    public boolean isGeneratedIndex(String indexName) {
+        return indexName.matches("SQL\\d+");
+    }
+
+    @Override
+    public BulkLoader getBulkLoader() {
+        return new DerbyBulkLoader();
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dbms;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk loader for H2, reading CSV files by the {@code CSVREAD} function. The rows are inserted
+ * directly, without buffering the result of the query.
+ * <p>
+ * Table and column names are converted to upper case, like the unquoted names of the insert
+ * statements for JDBC batches, and quoted.
+ * <p>
+ * The function is only supported for embedded databases, since the file is read by the database
+ * server, and newer versions of H2 require admin rights for it.
+ */
+class H2BulkLoader extends CsvBulkLoader {
+
+    private static final int ADMIN_RIGHTS_REQUIRED = 90040;
+
+    private static final int IO_EXCEPTION_1 = 90028;
+
+    private static final int IO_EXCEPTION_2 = 90031;
+
+    private static final int FILE_NOT_FOUND_1 = 90124;
+
+    private DbmsProfile dbms;
+
+    /**
+     * Creates a bulk loader quoting identifiers as the given profile.
+     *
+     * @param dbms
+     *            H2 profile
+     */
+    H2BulkLoader(DbmsProfile dbms) {
+        this.dbms = dbms;
+    }
+
+    @Override
+    public boolean isSupported(Connection dbc) throws SQLException {
+        String url = dbc.getMetaData().getURL();
+        return !(url.startsWith("jdbc:h2:tcp:") || url.startsWith("jdbc:h2:ssl:"));
+    }
+
+    @Override
+    public boolean isUnavailable(SQLException exc) {
+        switch (exc.getErrorCode()) {
+            case ADMIN_RIGHTS_REQUIRED:
+            case IO_EXCEPTION_1:
+            case IO_EXCEPTION_2:
+            case FILE_NOT_FOUND_1:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected void load(Connection dbc, String tableName, List<String> columnNames, File file)
+        throws SQLException {
+        String columns = columnNames.stream().map(c -> dbms.quoteIdentifier(c.toUpperCase()))
+            .collect(Collectors.joining(", "));
+        String sql = String.format(
+            "INSERT INTO %s (%s) DIRECT SELECT * FROM CSVREAD(%s, %s, 'charset=UTF-8')",
+            dbms.quoteIdentifier(tableName.toUpperCase()), columns, quoteLiteral(file.getAbsolutePath()),
+            quoteLiteral(String.join(",", columnNames)));
+        try (Statement st = dbc.createStatement()) {
+            st.executeUpdate(sql);
+        }
+    }
+}
@@ -37,4 +37,9 @@ public class H2Profile implements DbmsProfile {
     public boolean isGeneratedIndex(String indexName) {
         return indexName.startsWith("PRIMARY_KEY_") || indexName.startsWith("FK_");
     }
+
+    @Override
+    public BulkLoader getBulkLoader() {
+        return new H2BulkLoader(this);
+    }
 }
@@ -26,4 +26,13 @@ public class MariaDBProfile extends MysqlProfile {
     public String getSubprotocolAlias() {
         return "mariadb";
     }
+
+    /**
+     * Unlike MySQL Connector/J, the MariaDB driver streams result sets for any positive fetch
+     * size.
+     */
+    @Override
+    public int getFetchSize() {
+        return 1000;
+    }
 }
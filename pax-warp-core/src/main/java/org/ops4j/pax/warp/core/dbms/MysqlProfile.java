@@ -17,8 +17,7 @@
  */
 package org.ops4j.pax.warp.core.dbms;
 
-
-
+import java.sql.JDBCType;
 
 /**
  * @author Harald Wellmann
@@ -51,6 +50,20 @@ public class MysqlProfile implements DbmsProfile {
         return true;
     }
 
+    /**
+     * MySQL Connector/J streams result sets row by row only for this special fetch size and
+     * reads the entire result set into memory otherwise.
+     */
+    @Override
+    public int getFetchSize() {
+        return Integer.MIN_VALUE;
+    }
+
+    @Override
+    public String limitRows(int numRows) {
+        return "limit " + numRows;
+    }
+
     @Override
     public String quoteIdentifier(String identifier) {
         StringBuilder builder = new StringBuilder();
@@ -59,4 +72,12 @@ public class MysqlProfile implements DbmsProfile {
         builder.append('`');
         return builder.toString();
     }
+
+    /**
+     * {@code BIT(1)} and {@code BOOL} columns hold boolean values.
+     */
+    @Override
+    public JDBCType getValueType(JDBCType jdbcType, int precision, int scale) {
+        return (jdbcType == JDBCType.BIT && precision <= 1) ? JDBCType.BOOLEAN : jdbcType;
+    }
 }
@@ -17,8 +17,11 @@
  */
 package org.ops4j.pax.warp.core.dbms;
 
-
-
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.JDBCType;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * @author Harald Wellmann
@@ -65,4 +68,50 @@ public class OracleProfile implements DbmsProfile {
     public boolean getEmptyStringIsNull() {
         return true;
     }
+
+    /**
+     * Oracle does not support repeatable read, but serializable transactions are read
+     * consistent.
+     */
+    @Override
+    public int getSnapshotIsolationLevel() {
+        return Connection.TRANSACTION_SERIALIZABLE;
+    }
+
+    /**
+     * Block sampling only reads the selected blocks of a table.
+     */
+    @Override
+    public String getTableSample(double percent) {
+        return "sample block (" + BigDecimal.valueOf(percent).toPlainString() + ") seed (0)";
+    }
+
+    /**
+     * Oracle has no integer types, {@code INTEGER} is a synonym for {@code NUMBER(38)}.
+     */
+    @Override
+    public JDBCType getValueType(JDBCType jdbcType, int precision, int scale) {
+        if ((jdbcType == JDBCType.NUMERIC || jdbcType == JDBCType.DECIMAL) && scale == 0
+            && precision > 0 && precision <= 18) {
+            return (precision <= 9) ? JDBCType.INTEGER : JDBCType.BIGINT;
+        }
+        return jdbcType;
+    }
+
+    /**
+     * Indexes are built by parallel DDL with the default degree of parallelism.
+     */
+    @Override
+    public List<String> getIndexBuildSettings() {
+        return Collections.singletonList("ALTER SESSION FORCE PARALLEL DDL");
+    }
+
+    /**
+     * An index built by parallel DDL keeps its degree of parallelism, which would also be used
+     * for queries.
+     */
+    @Override
+    public String getIndexBuildCleanup(String indexName) {
+        return "ALTER INDEX " + indexName + " NOPARALLEL";
+    }
 }
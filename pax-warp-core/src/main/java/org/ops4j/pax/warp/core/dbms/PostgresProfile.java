@@ -17,8 +17,8 @@
  */
 package org.ops4j.pax.warp.core.dbms;
 
-
-
+import java.math.BigDecimal;
+import java.sql.JDBCType;
 
 /**
  * @author Harald Wellmann
@@ -30,4 +30,31 @@ public class PostgresProfile implements DbmsProfile {
     public String getSubprotocol() {
         return "postgresql";
     }
+
+    @Override
+    public boolean getCursorRequiresTransaction() {
+        return true;
+    }
+
+    @Override
+    public boolean getSnapshotCanBeShared() {
+        return true;
+    }
+
+    /**
+     * Block sampling only reads the selected pages of a table.
+     */
+    @Override
+    public String getTableSample(double percent) {
+        return "tablesample system (" + BigDecimal.valueOf(percent).toPlainString()
+            + ") repeatable (0)";
+    }
+
+    /**
+     * The driver reports {@code boolean} columns as {@code BIT}.
+     */
+    @Override
+    public JDBCType getValueType(JDBCType jdbcType, int precision, int scale) {
+        return (jdbcType == JDBCType.BIT) ? JDBCType.BOOLEAN : jdbcType;
+    }
 }
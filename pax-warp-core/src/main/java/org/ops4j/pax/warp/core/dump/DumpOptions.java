@@ -0,0 +1,515 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+
+/**
+ * Options for dumping data from a database. All options are optional. Unset options are replaced
+ * by defaults from the {@link DbmsProfile} of the given database.
+ */
+public class DumpOptions {
+
+    /**
+     * Default maximum size of chunk files in a dump directory (64 MiB).
+     */
+    public static final long DEFAULT_MAX_CHUNK_SIZE = 64L * 1024 * 1024;
+
+    private Integer fetchSize;
+
+    private int threads = 1;
+
+    private boolean compactData;
+
+    private boolean compress;
+
+    private int compressionThreads;
+
+    private long maxChunkSize = DEFAULT_MAX_CHUNK_SIZE;
+
+    private int pageSize;
+
+    private boolean incremental;
+
+    private String watermarkColumn;
+
+    private Map<String, String> watermarkColumns = new HashMap<>();
+
+    private List<String> includeTables = new ArrayList<>();
+
+    private List<String> excludeTables = new ArrayList<>();
+
+    private Map<String, String> tableConditions = new HashMap<>();
+
+    private double samplePercent = 100;
+
+    private Map<String, String> subsetRoots = new LinkedHashMap<>();
+
+    private boolean chunkStore;
+
+    private boolean resume;
+
+    /**
+     * Gets the JDBC fetch size for reading table data.
+     *
+     * @return fetch size, or null to use the default of the DBMS profile
+     */
+    public Integer getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Sets the JDBC fetch size for reading table data. This is the number of rows the driver
+     * retrieves from the server in one roundtrip when iterating over a result set.
+     *
+     * @param fetchSize
+     *            fetch size, or null to use the default of the DBMS profile
+     */
+    public void setFetchSize(Integer fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Gets the number of tables to be read concurrently.
+     *
+     * @return number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of tables to be read concurrently, each on a connection of its own. The
+     * default is 1. This option only takes effect when the dump command has a data source or a
+     * JDBC URL for opening additional connections.
+     * <p>
+     * The change log is the same as for a sequential dump. All connections read from one snapshot
+     * on PostgreSQL. On other DBMS, each connection reads in a transaction of its own with the
+     * snapshot isolation level of the DBMS profile, and all connections are set up before any
+     * data are read. This does not guarantee a common snapshot when tables are modified during
+     * the dump.
+     *
+     * @param threads
+     *            number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Are table data written as compact {@code tableData} changes?
+     *
+     * @return true for {@code tableData}, false for {@code insert} changes
+     */
+    public boolean isCompactData() {
+        return compactData;
+    }
+
+    /**
+     * Selects the change type for table data. By default, each row is written as an
+     * {@code insert} change with column names and types. Compact {@code tableData} changes
+     * declare column names and types once and contain plain value tuples for up to 1000 rows.
+     *
+     * @param compactData
+     *            true for {@code tableData}, false for {@code insert} changes
+     */
+    public void setCompactData(boolean compactData) {
+        this.compactData = compactData;
+    }
+
+    /**
+     * Is the change log compressed?
+     *
+     * @return true for GZIP output
+     */
+    public boolean isCompress() {
+        return compress;
+    }
+
+    /**
+     * Enables GZIP compression of the change log. The output is split into blocks which are
+     * compressed concurrently, so compression keeps up with reading the data. The result is a
+     * multi-member GZIP file which can be read by {@code gzip} and by the {@code migrate} and
+     * {@code importData} commands.
+     *
+     * @param compress
+     *            true for GZIP output
+     */
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * Gets the number of compression threads.
+     *
+     * @return number of threads, or 0 for one thread per available processor
+     */
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    /**
+     * Sets the number of compression threads. The default is one thread per available
+     * processor. This option only takes effect when compression is enabled.
+     *
+     * @param compressionThreads
+     *            number of threads, or 0 for one thread per available processor
+     */
+    public void setCompressionThreads(int compressionThreads) {
+        this.compressionThreads = compressionThreads;
+    }
+
+    /**
+     * Gets the maximum size of chunk files in a dump directory.
+     *
+     * @return size in bytes
+     */
+    public long getMaxChunkSize() {
+        return maxChunkSize;
+    }
+
+    /**
+     * Sets the maximum size of chunk files in a dump directory. The size refers to the
+     * uncompressed change log. A new chunk is started with the first change beyond this size, so
+     * a chunk may be larger by the size of one change. This option only takes effect for dumps to
+     * a directory.
+     *
+     * @param maxChunkSize
+     *            size in bytes
+     */
+    public void setMaxChunkSize(long maxChunkSize) {
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    /**
+     * Gets the number of rows per page for reading tables in pages.
+     *
+     * @return page size, or 0 for reading each table by a single query
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Sets the number of rows per page for reading tables in pages. By default, each table is
+     * read by a single query, which keeps a snapshot open until the entire table has been read.
+     * For very large tables, this may cause table bloat on PostgreSQL or "snapshot too old"
+     * errors on Oracle.
+     * <p>
+     * With a page size, tables with a primary key are read in pages ordered by the key, each page
+     * starting after the last key of the previous page. The transaction is committed after each
+     * page unless the connection is in auto-commit mode. The pages of a table are not read from a
+     * common snapshot, so the dump may or may not reflect rows modified while the table is read.
+     * Tables without a primary key are read by a single query.
+     * <p>
+     * Parallel and incremental dumps read all pages in a single transaction, since a parallel
+     * dump shares a snapshot between its connections, and the range of an incremental dump is
+     * only valid in the transaction selecting it.
+     *
+     * @param pageSize
+     *            page size, or 0 for reading each table by a single query
+     */
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Is this an incremental dump?
+     *
+     * @return true for an incremental dump
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Enables incremental dumps, which only contain the rows added or changed since the last
+     * incremental dump of the same database. This option only takes effect for dumps to a
+     * directory.
+     * <p>
+     * Each table is filtered by a watermark column with values increasing monotonically with each
+     * insert or update, like a modification timestamp or an ascending primary key. The watermark
+     * column of a table is taken from {@link #getWatermarkColumns()}, or else it is
+     * {@link #getWatermarkColumn()} if the table has a column of this name, or else the primary
+     * key if it is a single integer column. Tables without a watermark column are dumped
+     * completely.
+     * <p>
+     * Since the rows of an incremental dump replace existing rows by primary key on import, tables
+     * without a primary key never have a watermark column. Configuring a watermark column for such
+     * a table in {@link #getWatermarkColumns()} is an error.
+     * <p>
+     * The greatest watermark value of each table is stored in the {@code warp_watermark} table of
+     * the dumped database when the dump is complete, and the next incremental dump starts after
+     * this value. Deleted rows are not detected.
+     *
+     * @param incremental
+     *            true for an incremental dump
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Gets the default watermark column for incremental dumps.
+     *
+     * @return column name, or null
+     */
+    public String getWatermarkColumn() {
+        return watermarkColumn;
+    }
+
+    /**
+     * Sets the default watermark column for incremental dumps, e.g. {@code updated_at}. This
+     * column is used for all tables which have a column of this name, unless there is a watermark
+     * column for the given table in {@link #getWatermarkColumns()}. Column names are compared
+     * ignoring case.
+     *
+     * @param watermarkColumn
+     *            column name, or null
+     */
+    public void setWatermarkColumn(String watermarkColumn) {
+        this.watermarkColumn = watermarkColumn;
+    }
+
+    /**
+     * Gets the watermark columns of individual tables for incremental dumps.
+     *
+     * @return map of column names, indexed by table names, possibly empty but not null
+     */
+    public Map<String, String> getWatermarkColumns() {
+        return watermarkColumns;
+    }
+
+    /**
+     * Sets the watermark columns of individual tables for incremental dumps. Table names are
+     * compared ignoring case.
+     *
+     * @param watermarkColumns
+     *            map of column names, indexed by table names
+     */
+    public void setWatermarkColumns(Map<String, String> watermarkColumns) {
+        this.watermarkColumns = watermarkColumns;
+    }
+
+    /**
+     * Gets the patterns of tables to be dumped.
+     *
+     * @return table name patterns, possibly empty but not null
+     */
+    public List<String> getIncludeTables() {
+        return includeTables;
+    }
+
+    /**
+     * Sets the patterns of tables to be dumped. A pattern is a table name, where {@code *}
+     * matches any sequence of characters and {@code ?} matches any single character. Patterns
+     * are matched ignoring case. By default, all tables are dumped.
+     * <p>
+     * Only the selected tables are inspected, so the dump does not read the metadata of any other
+     * tables. Foreign keys referencing tables which are not selected are omitted.
+     *
+     * @param includeTables
+     *            table name patterns
+     */
+    public void setIncludeTables(List<String> includeTables) {
+        this.includeTables = includeTables;
+    }
+
+    /**
+     * Gets the patterns of tables not to be dumped.
+     *
+     * @return table name patterns, possibly empty but not null
+     */
+    public List<String> getExcludeTables() {
+        return excludeTables;
+    }
+
+    /**
+     * Sets the patterns of tables not to be dumped, with the same syntax as
+     * {@link #setIncludeTables(List)}. Exclude patterns take precedence over include patterns.
+     *
+     * @param excludeTables
+     *            table name patterns
+     */
+    public void setExcludeTables(List<String> excludeTables) {
+        this.excludeTables = excludeTables;
+    }
+
+    /**
+     * Gets the row conditions of individual tables.
+     *
+     * @return map of SQL conditions, indexed by table names, possibly empty but not null
+     */
+    public Map<String, String> getTableConditions() {
+        return tableConditions;
+    }
+
+    /**
+     * Sets the row conditions of individual tables. Each condition is an SQL expression added to
+     * the where clause of the query reading the table, e.g. {@code created >= '2017-01-01'}, so
+     * only matching rows are read from the database. Table names are compared ignoring case.
+     *
+     * @param tableConditions
+     *            map of SQL conditions, indexed by table names
+     */
+    public void setTableConditions(Map<String, String> tableConditions) {
+        this.tableConditions = tableConditions;
+    }
+
+    /**
+     * Gets the percentage of rows to be sampled from each table.
+     *
+     * @return percentage, 100 for all rows
+     */
+    public double getSamplePercent() {
+        return samplePercent;
+    }
+
+    /**
+     * Sets the percentage of rows to be sampled from each table. The default is 100, i.e. all
+     * rows are dumped.
+     * <p>
+     * If the DBMS supports table samples, the sample is selected by the DBMS, reading only part of
+     * the table. Samples of different tables are independent, so foreign keys may refer to rows
+     * not contained in the dump. On other DBMS, tables with a single integer primary key are
+     * sampled by selecting each n-th key, where n is derived from the percentage. Other tables are
+     * dumped completely.
+     *
+     * @param samplePercent
+     *            percentage, greater than 0 and at most 100
+     */
+    public void setSamplePercent(double samplePercent) {
+        this.samplePercent = samplePercent;
+    }
+
+    /**
+     * Gets the root tables of a subset dump.
+     *
+     * @return map of SQL conditions, indexed by table names, possibly empty but not null
+     */
+    public Map<String, String> getSubsetRoots() {
+        return subsetRoots;
+    }
+
+    /**
+     * Sets the root tables of a subset dump, each with an SQL condition selecting the root rows.
+     * An empty condition selects all rows of a root table. By default, there are no root tables,
+     * and all rows are dumped.
+     * <p>
+     * A subset dump contains the root rows and, transitively, all rows referencing a row of the
+     * subset by a foreign key, unless this row has only been added to the subset as a parent. For
+     * each row of the subset, the rows it references are added as well, so the subset is
+     * referentially closed. Tables are ordered such that referenced tables precede referencing
+     * tables, unless there are cyclic references.
+     * <p>
+     * The primary keys of all rows of the subset are kept in memory. Tables without a primary key
+     * are not included. Row conditions, samples and paged reads do not apply to subset dumps.
+     *
+     * @param subsetRoots
+     *            map of SQL conditions, indexed by table names
+     */
+    public void setSubsetRoots(Map<String, String> subsetRoots) {
+        this.subsetRoots = subsetRoots;
+    }
+
+    /**
+     * Gets the effective number of compression threads.
+     *
+     * @return number of threads
+     */
+    public int getEffectiveCompressionThreads() {
+        return (compressionThreads > 0) ? compressionThreads
+            : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Gets the effective fetch size for the given DBMS.
+     *
+     * @param dbms
+     *            DBMS profile
+     * @return fetch size
+     */
+    public int getFetchSize(DbmsProfile dbms) {
+        return (fetchSize == null) ? dbms.getFetchSize() : fetchSize;
+    }
+
+    /**
+     * Is the dump directory a chunk store?
+     *
+     * @return true for a chunk store
+     */
+    public boolean isChunkStore() {
+        return chunkStore;
+    }
+
+    /**
+     * Enables a chunk store, where successive dumps to the same directory share all chunk files
+     * with the same content. This option only takes effect for dumps to a directory.
+     * <p>
+     * Chunk files are stored in the {@code objects} subdirectory, named after their SHA-256
+     * checksum. Chunk boundaries are defined by the content, so a change in a table only affects
+     * the chunks around the changed rows. The average chunk size is a sixteenth of the maximum
+     * chunk size. To make the content reproducible, tables with a primary key are read in key
+     * order, and change set IDs are derived from table names.
+     * <p>
+     * Each dump writes {@code manifest.xml} and a copy named after the time of the dump, which
+     * can be restored later. Chunk files no longer referenced by any manifest are not deleted.
+     *
+     * @param chunkStore
+     *            true for a chunk store
+     */
+    public void setChunkStore(boolean chunkStore) {
+        this.chunkStore = chunkStore;
+    }
+
+    /**
+     * Is this dump resumable?
+     *
+     * @return true if the dump writes checkpoints and continues from an existing checkpoint
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * Makes this dump resumable. This option only takes effect for dumps to a directory, and
+     * cannot be combined with incremental or subset dumps.
+     * <p>
+     * After each chunk, the dump writes {@code checkpoint.xml} to the directory, listing the
+     * complete tables and the chunks of all incomplete tables with the primary key of the last
+     * row in each chunk. If a dump with the same options finds a checkpoint, it keeps all chunks
+     * listed in the checkpoint with valid checksums, and continues each incomplete table after
+     * the last key. Tables without a primary key are dumped again. The checkpoint is deleted
+     * when the manifest has been written.
+     * <p>
+     * To make the result of a resumed dump identical to that of an uninterrupted dump, tables
+     * with a primary key are read in key order, and change set IDs are derived from table names.
+     *
+     * @param resume
+     *            true for a resumable dump
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+}
@@ -17,11 +17,14 @@
  */
 package org.ops4j.pax.warp.core.dump;
 
+import java.io.File;
 import java.io.OutputStream;
 import java.sql.Connection;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+import org.ops4j.pax.warp.core.jdbc.ConnectionFactory;
 
 /**
  * Dumps structure information or data from a database to a change log.
@@ -31,6 +34,11 @@ import org.ops4j.pax.warp.core.dbms.DbmsProfile;
  */
 public interface DumpService {
 
+    /**
+     * Name of the manifest file in a dump directory.
+     */
+    String MANIFEST_FILE = "manifest.xml";
+
     /**
      * Dumps structure information from the given database as an XML change log to the given output
      * stream.
@@ -59,8 +67,33 @@ public interface DumpService {
      * @param schema
      *            Optional database schema. If missing, the current schema will be used. If present,
      *            the given schema will be used.
+     * @param options
+     *            dump options
+     */
+    void dumpData(Connection dbc, OutputStream os, DbmsProfile dbms, Optional<String> schema,
+        DumpOptions options);
+
+    /**
+     * Dumps all data from the given database as an XML change log to the given output stream.
+     * Additional connections for reading tables concurrently are opened as required by the
+     * options.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param connectionFactory
+     *            opens additional connections to the same database
+     * @param os
+     *            output stream
+     * @param dbms
+     *            DBMS profile
+     * @param schema
+     *            Optional database schema. If missing, the current schema will be used. If present,
+     *            the given schema will be used.
+     * @param options
+     *            dump options
      */
-    void dumpData(Connection dbc, OutputStream os, DbmsProfile dbms, Optional<String> schema);
+    void dumpData(Connection dbc, ConnectionFactory connectionFactory, OutputStream os,
+        DbmsProfile dbms, Optional<String> schema, DumpOptions options);
 
     /**
      * Dumps structure information and all data from the given database as an XML change log to the
@@ -75,6 +108,107 @@ public interface DumpService {
      * @param schema
      *            Optional database schema. If missing, the current schema will be used. If present,
      *            the given schema will be used.
+     * @param options
+     *            dump options
+     */
+    void dumpAll(Connection dbc, OutputStream os, DbmsProfile dbms, Optional<String> schema,
+        DumpOptions options);
+
+    /**
+     * Dumps structure information and all data from the given database as an XML change log to the
+     * given output stream. Additional connections for reading tables concurrently are opened as
+     * required by the options.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param connectionFactory
+     *            opens additional connections to the same database
+     * @param os
+     *            output stream
+     * @param dbms
+     *            DBMS profile
+     * @param schema
+     *            Optional database schema. If missing, the current schema will be used. If present,
+     *            the given schema will be used.
+     * @param options
+     *            dump options
+     */
+    void dumpAll(Connection dbc, ConnectionFactory connectionFactory, OutputStream os,
+        DbmsProfile dbms, Optional<String> schema, DumpOptions options);
+
+    /**
+     * Dumps all data from the given database to the given directory. The data of each table are
+     * written to one or more chunk files, each of which is a complete change log. A manifest lists
+     * all tables with their row counts and chunk files and the checksums of these files.
+     * Additional connections for reading tables concurrently are opened as required by the
+     * options.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param connectionFactory
+     *            opens additional connections to the same database, or null
+     * @param directory
+     *            output directory, which will be created if needed
+     * @param dbms
+     *            DBMS profile
+     * @param schema
+     *            Optional database schema. If missing, the current schema will be used. If present,
+     *            the given schema will be used.
+     * @param options
+     *            dump options
+     */
+    void dumpData(Connection dbc, ConnectionFactory connectionFactory, File directory,
+        DbmsProfile dbms, Optional<String> schema, DumpOptions options);
+
+    /**
+     * Dumps structure information and all data from the given database to the given directory.
+     * The structure is written to a change log of its own, the data are written to chunk files as
+     * described for {@link #dumpData(Connection, ConnectionFactory, File, DbmsProfile, Optional,
+     * DumpOptions)}.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param connectionFactory
+     *            opens additional connections to the same database, or null
+     * @param directory
+     *            output directory, which will be created if needed
+     * @param dbms
+     *            DBMS profile
+     * @param schema
+     *            Optional database schema. If missing, the current schema will be used. If present,
+     *            the given schema will be used.
+     * @param options
+     *            dump options
+     */
+    void dumpAll(Connection dbc, ConnectionFactory connectionFactory, File directory,
+        DbmsProfile dbms, Optional<String> schema, DumpOptions options);
+
+    /**
+     * Streams the rows of all tables from the given database, without writing a change log. The
+     * tables and rows are selected by the options like for a data dump. Tables with a primary
+     * key are read in key order.
+     * <p>
+     * The stream is lazy and sequential: each table is queried when its first row is pulled, and
+     * rows are fetched from the database as the consumer proceeds, so a slow consumer does not
+     * accumulate rows in memory. The stream holds an open result set and must be closed, e.g. by
+     * a try-with-resources statement. If the driver needs a transaction for streaming result sets
+     * and the connection is in auto-commit mode, auto-commit is disabled until the stream is
+     * closed.
+     * <p>
+     * Incremental dumps, chunk stores, resumable dumps and subsets are not supported. Database
+     * errors while pulling rows are thrown as {@link org.ops4j.pax.warp.exc.WarpException}.
+     *
+     * @param dbc
+     *            JDBC database connection, to be kept open until the stream is closed
+     * @param dbms
+     *            DBMS profile
+     * @param schema
+     *            Optional database schema. If missing, the current schema will be used. If present,
+     *            the given schema will be used.
+     * @param options
+     *            dump options
+     * @return stream of rows, table by table
      */
-    void dumpAll(Connection dbc, OutputStream os, DbmsProfile dbms, Optional<String> schema);
+    Stream<TableRow> streamRows(Connection dbc, DbmsProfile dbms, Optional<String> schema,
+        DumpOptions options);
 }
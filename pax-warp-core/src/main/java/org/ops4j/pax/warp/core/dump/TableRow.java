@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A row of a table streamed by {@link DumpService#streamRows}.
+ * <p>
+ * Values have the Java types of {@link org.ops4j.pax.warp.core.jdbc.ValueReaders}. The list of
+ * column names is shared by all rows of a table.
+ */
+public class TableRow {
+
+    private String tableName;
+
+    private List<String> columnNames;
+
+    private Object[] values;
+
+    /**
+     * Creates a row.
+     *
+     * @param tableName
+     *            table name
+     * @param columnNames
+     *            unmodifiable list of column names
+     * @param values
+     *            column values, in the order of the column names
+     */
+    public TableRow(String tableName, List<String> columnNames, Object[] values) {
+        this.tableName = tableName;
+        this.columnNames = columnNames;
+        this.values = values;
+    }
+
+    /**
+     * Gets the table name.
+     *
+     * @return table name
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Gets the column names.
+     *
+     * @return unmodifiable list of column names
+     */
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * Gets the column values.
+     *
+     * @return unmodifiable list of values, in the order of the column names
+     */
+    public List<Object> getValues() {
+        return Collections.unmodifiableList(Arrays.asList(values));
+    }
+
+    /**
+     * Gets the value of the column with the given index.
+     *
+     * @param index
+     *            column index, starting at 0
+     * @return value, or null
+     */
+    public Object getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Gets the value of the column with the given name, ignoring case.
+     *
+     * @param columnName
+     *            column name
+     * @return value, or null
+     * @throws IllegalArgumentException
+     *             if there is no such column
+     */
+    public Object getValue(String columnName) {
+        for (int i = 0; i < values.length; i++) {
+            if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+                return values[i];
+            }
+        }
+        throw new IllegalArgumentException("no column " + columnName + " in " + tableName);
+    }
+
+    @Override
+    public String toString() {
+        return tableName + Arrays.toString(values);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import java.util.Random;
+
+/**
+ * Finds content-defined chunk boundaries in a byte stream, using a gear hash over the last 64
+ * bytes. A boundary is found when the highest bits of the hash are zero, which happens every
+ * {@code 2^n} bytes on average, where {@code n} is the number of bits.
+ * <p>
+ * Since the hash only depends on a small window of the content, boundaries are found at the same
+ * content positions in successive dumps, even when data have been inserted or removed elsewhere.
+ */
+class ChunkBoundary {
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // fixed seed, so boundaries do not change between runs
+        Random random = new Random(0x57415250L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private long mask;
+
+    private long hash;
+
+    private boolean found;
+
+    /**
+     * Creates a boundary detector for the given average distance.
+     *
+     * @param averageSize
+     *            average distance of boundaries in bytes, rounded down to a power of two
+     */
+    ChunkBoundary(long averageSize) {
+        int bits = Math.max(1, 63 - Long.numberOfLeadingZeros(averageSize));
+        this.mask = -1L << (64 - bits);
+    }
+
+    /**
+     * Updates the hash with the given bytes.
+     *
+     * @param b
+     *            byte array
+     * @param off
+     *            offset
+     * @param len
+     *            number of bytes
+     */
+    void update(byte[] b, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            update(b[i]);
+        }
+    }
+
+    /**
+     * Updates the hash with the given byte.
+     *
+     * @param b
+     *            byte
+     */
+    void update(int b) {
+        hash = (hash << 1) + GEAR[b & 0xFF];
+        if ((hash & mask) == 0) {
+            found = true;
+        }
+    }
+
+    /**
+     * Has a boundary been found since the last reset?
+     *
+     * @return true if a boundary has been found
+     */
+    boolean isFound() {
+        return found;
+    }
+
+    /**
+     * Resets the hash and the boundary flag.
+     */
+    void reset() {
+        hash = 0;
+        found = false;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.ops4j.pax.warp.exc.WarpException;
+
+/**
+ * Content-addressed store for the chunk files of a dump directory. Each file is stored under a
+ * name derived from its SHA-256 checksum, so a file with the same content is stored only once,
+ * no matter how many dumps refer to it.
+ * <p>
+ * Each dump writes a manifest of its own, referring to the stored files by their paths relative
+ * to the store directory.
+ */
+final class ChunkStore {
+
+    /**
+     * Name of the subdirectory for stored files.
+     */
+    static final String OBJECTS_DIRECTORY = "objects";
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter
+        .ofPattern("yyyyMMdd'T'HHmmssSSS'Z'");
+
+    private ChunkStore() {
+        // hidden constructor
+    }
+
+    /**
+     * Moves the given file into the store, unless the store already contains a file with the
+     * same checksum, in which case the given file is deleted.
+     *
+     * @param directory
+     *            store directory
+     * @param file
+     *            path of the file, relative to the store directory
+     * @param sha256
+     *            checksum of the file
+     * @return path of the stored file, relative to the store directory
+     */
+    static String store(File directory, String file, String sha256) {
+        String suffix = file.endsWith(".gz") ? ".xml.gz" : ".xml";
+        String storedFile = String.format("%s/%s/%s%s", OBJECTS_DIRECTORY,
+            sha256.substring(0, 2), sha256, suffix);
+        Path source = new File(directory, file).toPath();
+        Path target = new File(directory, storedFile).toPath();
+        try {
+            if (Files.exists(target)) {
+                Files.delete(source);
+            }
+            else {
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.move(source, target);
+                }
+                catch (FileAlreadyExistsException exc) {
+                    // stored concurrently by another thread
+                    Files.delete(source);
+                }
+            }
+        }
+        catch (IOException exc) {
+            throw new WarpException(exc);
+        }
+        return storedFile;
+    }
+
+    /**
+     * Gets a new file for the manifest of a dump, named after the current time.
+     *
+     * @param directory
+     *            store directory
+     * @return manifest file, not yet existing
+     */
+    static File newManifestFile(File directory) {
+        String timestamp = TIMESTAMP_FORMAT.format(ZonedDateTime.now(ZoneOffset.UTC));
+        File file = new File(directory, "manifest-" + timestamp + ".xml");
+        for (int i = 1; file.exists(); i++) {
+            file = new File(directory, String.format("manifest-%s-%d.xml", timestamp, i));
+        }
+        return file;
+    }
+}
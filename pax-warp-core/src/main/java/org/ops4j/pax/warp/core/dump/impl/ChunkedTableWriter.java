@@ -0,0 +1,439 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ops4j.pax.warp.core.changelog.ChangeLogWriter;
+import org.ops4j.pax.warp.core.changelog.StreamingChangeLogWriter;
+import org.ops4j.pax.warp.core.dump.DumpOptions;
+import org.ops4j.pax.warp.core.io.Checksums;
+import org.ops4j.pax.warp.core.io.CountingOutputStream;
+import org.ops4j.pax.warp.core.io.ParallelGzipOutputStream;
+import org.ops4j.pax.warp.exc.WarpException;
+import org.ops4j.pax.warp.jaxb.gen.CreateTable;
+import org.ops4j.pax.warp.jaxb.gen.DumpChunk;
+import org.ops4j.pax.warp.jaxb.gen.DumpTable;
+import org.ops4j.pax.warp.jaxb.gen.Insert;
+import org.ops4j.pax.warp.jaxb.gen.TableData;
+
+/**
+ * Writes the data of a single table to a sequence of chunk files in a dump directory. Each chunk
+ * is a complete change log. When a chunk has reached the maximum size, the current change set is
+ * closed, and a new chunk is started with a new change set.
+ * <p>
+ * The chunk size is measured before compression and checked before each change or row, so a
+ * chunk may exceed the maximum size by the size of one change or row. To get an exact size, the
+ * change log writer is flushed before each check. The flush stops at the byte counter, so it
+ * does not cause a write to the file for each row.
+ * <p>
+ * When a chunk is full in the middle of a sequence of rows, the sequence is continued in the
+ * next chunk with the same template.
+ * <p>
+ * For a chunk store, chunk boundaries are defined by the content, so that unchanged data end up
+ * in identical chunks in successive dumps. A chunk ends after the row in which a
+ * {@link ChunkBoundary} has been found, once the chunk has reached a minimum size and contains at
+ * least one row. The average chunk size is a sixteenth of the maximum size. Each chunk is moved
+ * to the store when it is complete.
+ * <p>
+ * For a resumable dump, each chunk records the primary key of its last row, and the manifest
+ * entry is saved to the checkpoint after each chunk. A table interrupted by an earlier dump is
+ * continued with the chunks from the checkpoint, and the next row is read after the last key.
+ * <p>
+ * The resulting manifest entry with row counts and checksums is available after closing this
+ * writer. When the writer is aborted, the incomplete chunk is deleted.
+ */
+class ChunkedTableWriter implements StreamingChangeLogWriter, TableReader.KeyTracker {
+
+    private ChangeLogWriter changeLogWriter;
+
+    private File directory;
+
+    private String baseName;
+
+    private DumpOptions options;
+
+    private DumpTable dumpTable;
+
+    private DumpChunk chunk;
+
+    private MessageDigest digest;
+
+    private OutputStream fileStream;
+
+    private ParallelGzipOutputStream gzip;
+
+    private CountingOutputStream counter;
+
+    private StreamingChangeLogWriter writer;
+
+    private boolean inChangeSet;
+
+    private Object rowTemplate;
+
+    private String changeSetId;
+
+    private ChunkBoundary boundary;
+
+    private long minChunkSize;
+
+    private DumpCheckpoint checkpoint;
+
+    private List<String> resumeKey;
+
+    private long resumeRows;
+
+    private Object[] lastKey;
+
+    /**
+     * Creates a chunked writer for the given table.
+     *
+     * @param changeLogWriter
+     *            change log writer for opening chunks
+     * @param directory
+     *            dump directory
+     * @param createTable
+     *            table model
+     * @param baseName
+     *            base name of the chunk files, from {@link #getBaseNames(List)}
+     * @param options
+     *            dump options
+     */
+    ChunkedTableWriter(ChangeLogWriter changeLogWriter, File directory, CreateTable createTable,
+        String baseName, DumpOptions options) {
+        this.changeLogWriter = changeLogWriter;
+        this.directory = directory;
+        this.options = options;
+        this.baseName = DumpServiceImpl.DATA_DIRECTORY + "/" + baseName;
+        this.dumpTable = new DumpTable();
+        dumpTable.setCatalogName(createTable.getCatalogName());
+        dumpTable.setSchemaName(createTable.getSchemaName());
+        dumpTable.setTableName(createTable.getTableName());
+        if (options.isChunkStore()) {
+            long averageChunkSize = Math.max(1, options.getMaxChunkSize() / 16);
+            this.boundary = new ChunkBoundary(averageChunkSize);
+            this.minChunkSize = averageChunkSize / 4;
+        }
+    }
+
+    /**
+     * Gets the base names of the chunk files of the given tables. Characters other than letters,
+     * digits, underscores, dots and hyphens are replaced by underscores. Since this may map
+     * different tables to the same name, and file names may not be case sensitive, a name equal
+     * to the name of a preceding table, ignoring case, is suffixed by the index of the table.
+     *
+     * @param tables
+     *            tables in dump order
+     * @return base names indexed by table name
+     */
+    static Map<String, String> getBaseNames(List<CreateTable> tables) {
+        Map<String, String> baseNames = new HashMap<>();
+        Set<String> usedNames = new HashSet<>();
+        for (int i = 0; i < tables.size(); i++) {
+            String tableName = tables.get(i).getTableName();
+            String sanitized = tableName.replaceAll("[^A-Za-z0-9_.-]", "_");
+            String baseName = sanitized;
+            int suffix = i;
+            while (!usedNames.add(baseName.toLowerCase())) {
+                baseName = sanitized + "_" + suffix++;
+            }
+            baseNames.put(tableName, baseName);
+        }
+        return baseNames;
+    }
+
+    /**
+     * Saves the manifest entry to the given checkpoint after each chunk. If the checkpoint
+     * contains the chunks of this table from an interrupted dump, the table is continued after
+     * the last of these chunks.
+     *
+     * @param checkpoint
+     *            checkpoint of a resumable dump
+     */
+    void setCheckpoint(DumpCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+        DumpTable interrupted = checkpoint.getInterruptedTable(dumpTable.getTableName());
+        if (interrupted != null) {
+            DumpChunk last = interrupted.getChunk().get(interrupted.getChunk().size() - 1);
+            dumpTable.getChunk().addAll(interrupted.getChunk());
+            dumpTable.setRows(interrupted.getRows());
+            resumeKey = last.getKey();
+            resumeRows = interrupted.getRows();
+        }
+    }
+
+    @Override
+    public List<String> getResumeKey() {
+        return resumeKey;
+    }
+
+    @Override
+    public long getResumeRows() {
+        return resumeRows;
+    }
+
+    @Override
+    public void keyWritten(Object[] key) {
+        if (lastKey == null) {
+            lastKey = new Object[key.length];
+        }
+        System.arraycopy(key, 0, lastKey, 0, key.length);
+    }
+
+    /**
+     * Gets the manifest entry for the table written so far.
+     *
+     * @return manifest entry
+     */
+    DumpTable getDumpTable() {
+        return dumpTable;
+    }
+
+    @Override
+    public void startChangeSet(String id) {
+        if (writer == null) {
+            openChunk();
+        }
+        writer.startChangeSet(id);
+        changeSetId = id;
+        inChangeSet = true;
+    }
+
+    @Override
+    public void writeChange(Object change) {
+        if (isChunkFull()) {
+            nextChunk();
+        }
+        writer.writeChange(change);
+        addRows(countRows(change));
+    }
+
+    @Override
+    public void startRows(Object template) {
+        writer.startRows(template);
+        rowTemplate = template;
+    }
+
+    @Override
+    public void startRow() {
+        if (isChunkFull()) {
+            writer.endRows();
+            nextChunk();
+            writer.startRows(rowTemplate);
+        }
+        writer.startRow();
+        addRows(1);
+    }
+
+    @Override
+    public void writeValue(String value) {
+        writer.writeValue(value);
+    }
+
+    @Override
+    public void writeValue(char[] chars, int offset, int length) {
+        writer.writeValue(chars, offset, length);
+    }
+
+    @Override
+    public Writer openValue() {
+        return writer.openValue();
+    }
+
+    @Override
+    public void writeNull() {
+        writer.writeNull();
+    }
+
+    @Override
+    public void endRow() {
+        writer.endRow();
+    }
+
+    @Override
+    public void endRows() {
+        writer.endRows();
+        rowTemplate = null;
+    }
+
+    @Override
+    public void endChangeSet() {
+        writer.endChangeSet();
+        inChangeSet = false;
+    }
+
+    @Override
+    public void flush() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (writer != null) {
+            if (inChangeSet) {
+                endChangeSet();
+            }
+            closeChunk();
+        }
+    }
+
+    /**
+     * Deletes the current chunk, which is incomplete. The chunks completed before are kept, so a
+     * resumable dump continues after the last of them.
+     */
+    @Override
+    public void abort() {
+        if (writer == null) {
+            return;
+        }
+        writer.abort();
+        writer = null;
+        if (gzip != null) {
+            gzip.abort();
+            gzip = null;
+        }
+        try {
+            fileStream.close();
+            Files.delete(new File(directory, chunk.getFile()).toPath());
+        }
+        catch (IOException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    private boolean isChunkFull() {
+        writer.flush();
+        return counter.getCount() >= options.getMaxChunkSize()
+            || (boundary != null && boundary.isFound() && chunk.getRows() > 0);
+    }
+
+    /**
+     * Continues the current change set with the same ID in a new chunk.
+     */
+    private void nextChunk() {
+        writer.endChangeSet();
+        closeChunk();
+        openChunk();
+        writer.startChangeSet(changeSetId);
+    }
+
+    private void addRows(long rows) {
+        chunk.setRows(chunk.getRows() + rows);
+        dumpTable.setRows(dumpTable.getRows() + rows);
+    }
+
+    private static long countRows(Object change) {
+        if (change instanceof TableData) {
+            return ((TableData) change).getRow().size();
+        }
+        return (change instanceof Insert) ? 1 : 0;
+    }
+
+    private void openChunk() {
+        int number = dumpTable.getChunk().size() + 1;
+        String suffix = options.isCompress() ? ".xml.gz" : ".xml";
+        chunk = new DumpChunk();
+        chunk.setFile(String.format("%s-%05d%s", baseName, number, suffix));
+        try {
+            digest = Checksums.createDigest();
+            fileStream = new DigestOutputStream(new BufferedOutputStream(
+                new FileOutputStream(new File(directory, chunk.getFile())), 64 * 1024), digest);
+            OutputStream os = fileStream;
+            if (options.isCompress()) {
+                gzip = new ParallelGzipOutputStream(fileStream,
+                    options.getEffectiveCompressionThreads(),
+                    ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE);
+                os = gzip;
+            }
+            counter = new CountingOutputStream(os) {
+
+                @Override
+                public void write(int b) throws IOException {
+                    super.write(b);
+                    if (boundary != null && getCount() > minChunkSize) {
+                        boundary.update(b);
+                    }
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    super.write(b, off, len);
+                    if (boundary != null && getCount() > minChunkSize) {
+                        int skip = (int) Math.max(0, minChunkSize - (getCount() - len));
+                        boundary.update(b, off + skip, len - skip);
+                    }
+                }
+
+                @Override
+                public void flush() {
+                    // the file stream is flushed on closing the chunk
+                }
+            };
+            if (boundary != null) {
+                boundary.reset();
+            }
+            writer = changeLogWriter.openChangeLog(counter);
+        }
+        catch (IOException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    private void closeChunk() {
+        try {
+            writer.close();
+            writer = null;
+            if (gzip != null) {
+                gzip.finish();
+                gzip = null;
+            }
+            fileStream.close();
+            chunk.setSha256(Checksums.toHex(digest.digest()));
+            if (options.isChunkStore()) {
+                chunk.setFile(ChunkStore.store(directory, chunk.getFile(), chunk.getSha256()));
+            }
+            dumpTable.getChunk().add(chunk);
+            if (checkpoint != null) {
+                if (lastKey != null) {
+                    for (Object value : lastKey) {
+                        chunk.getKey().add(DumpCheckpoint.toString(value));
+                    }
+                }
+                checkpoint.saveTable(dumpTable, false);
+            }
+        }
+        catch (IOException exc) {
+            throw new WarpException(exc);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.ops4j.pax.warp.core.changelog.StreamingChangeLogWriter;
+
+/**
+ * Reads the value of a given column from the current row of a result set and writes it to a
+ * change log. Extractors are created once per table by {@link ColumnExtractors}, so the column
+ * type is not looked up for each value.
+ */
+@FunctionalInterface
+interface ColumnExtractor {
+
+    /**
+     * Reads the column value from the current row and writes it, or a null value, to the given
+     * writer.
+     *
+     * @param rs
+     *            result set
+     * @param writer
+     *            change log writer with current row
+     * @throws SQLException
+     *             on database error
+     */
+    void extract(ResultSet rs, StreamingChangeLogWriter writer) throws SQLException;
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.JDBCType;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Base64;
+
+import org.ops4j.pax.warp.core.io.AsciiOutputStream;
+import org.ops4j.pax.warp.exc.WarpException;
+
+/**
+ * Creates column extractors for the columns of a result set.
+ * <p>
+ * Each extractor uses the getter matching the column type. Integer values are formatted into a
+ * reusable buffer, so they are written without allocating any objects. Binary values and large
+ * character values are streamed to the change log writer, Base64 encoded in the case of binary
+ * values, so their size is not limited by the available memory. Other values are converted to
+ * strings.
+ * <p>
+ * NOTE: {@code rs.getObject(col)} should be sufficient for all types in theory, but at least for
+ * H2 CLOB columns, it returns strings like {@code clob0: 'Foobar'}, so we use
+ * {@code rs.getString(col)} for character types.
+ */
+final class ColumnExtractors {
+
+    private static final int MAX_LONG_LENGTH = 20;
+
+    private static final int STREAM_BUFFER_SIZE = 8 * 1024;
+
+    private ColumnExtractors() {
+        // hidden constructor
+    }
+
+    /**
+     * Gets the JDBC types of all columns of a result set.
+     *
+     * @param metaData
+     *            result set metadata
+     * @return array of JDBC types, indexed from 0
+     * @throws SQLException
+     *             on database error
+     */
+    static JDBCType[] getJdbcTypes(ResultSetMetaData metaData) throws SQLException {
+        JDBCType[] jdbcTypes = new JDBCType[metaData.getColumnCount()];
+        for (int i = 0; i < jdbcTypes.length; i++) {
+            jdbcTypes[i] = JDBCType.valueOf(metaData.getColumnType(i + 1));
+        }
+        return jdbcTypes;
+    }
+
+    /**
+     * Creates extractors for all columns of a result set. The extractors share a buffer, so they
+     * must not be used concurrently.
+     *
+     * @param metaData
+     *            result set metadata
+     * @param jdbcTypes
+     *            JDBC types of all columns, as returned by {@link #getJdbcTypes(ResultSetMetaData)}
+     * @return array of extractors, indexed from 0
+     * @throws SQLException
+     *             on database error
+     */
+    static ColumnExtractor[] createExtractors(ResultSetMetaData metaData, JDBCType[] jdbcTypes)
+        throws SQLException {
+        char[] buffer = new char[MAX_LONG_LENGTH];
+        ColumnExtractor[] extractors = new ColumnExtractor[jdbcTypes.length];
+        for (int i = 0; i < jdbcTypes.length; i++) {
+            int col = i + 1;
+            extractors[i] = createExtractor(jdbcTypes[i], metaData.isSigned(col), col, buffer);
+        }
+        return extractors;
+    }
+
+    private static ColumnExtractor createExtractor(JDBCType jdbcType, boolean signed, int col,
+        char[] buffer) {
+        switch (jdbcType) {
+            case TINYINT:
+            case SMALLINT:
+                return intExtractor(col, buffer);
+
+            case INTEGER:
+                // unsigned integers may exceed the int range
+                return signed ? intExtractor(col, buffer) : longExtractor(col, buffer);
+
+            case BIGINT:
+                // unsigned big integers may exceed the long range
+                return signed ? longExtractor(col, buffer) : objectExtractor(col);
+
+            case BOOLEAN:
+                return booleanExtractor(col);
+
+            case REAL:
+                return realExtractor(col);
+
+            case FLOAT:
+            case DOUBLE:
+                return doubleExtractor(col);
+
+            case DECIMAL:
+            case NUMERIC:
+                return decimalExtractor(col);
+
+            case CHAR:
+            case VARCHAR:
+            case NCHAR:
+            case NVARCHAR:
+                return stringExtractor(col);
+
+            case LONGVARCHAR:
+            case LONGNVARCHAR:
+            case CLOB:
+            case NCLOB:
+                return characterStreamExtractor(col);
+
+            case BINARY:
+            case VARBINARY:
+            case LONGVARBINARY:
+            case BLOB:
+                return binaryExtractor(col);
+
+            default:
+                return objectExtractor(col);
+        }
+    }
+
+    private static ColumnExtractor intExtractor(int col, char[] buffer) {
+        return (rs, writer) -> {
+            int value = rs.getInt(col);
+            if (rs.wasNull()) {
+                writer.writeNull();
+            }
+            else {
+                int offset = formatLong(value, buffer);
+                writer.writeValue(buffer, offset, buffer.length - offset);
+            }
+        };
+    }
+
+    private static ColumnExtractor longExtractor(int col, char[] buffer) {
+        return (rs, writer) -> {
+            long value = rs.getLong(col);
+            if (rs.wasNull()) {
+                writer.writeNull();
+            }
+            else {
+                int offset = formatLong(value, buffer);
+                writer.writeValue(buffer, offset, buffer.length - offset);
+            }
+        };
+    }
+
+    private static ColumnExtractor booleanExtractor(int col) {
+        return (rs, writer) -> {
+            boolean value = rs.getBoolean(col);
+            if (rs.wasNull()) {
+                writer.writeNull();
+            }
+            else {
+                writer.writeValue(Boolean.toString(value));
+            }
+        };
+    }
+
+    private static ColumnExtractor realExtractor(int col) {
+        return (rs, writer) -> {
+            float value = rs.getFloat(col);
+            if (rs.wasNull()) {
+                writer.writeNull();
+            }
+            else {
+                writer.writeValue(Float.toString(value));
+            }
+        };
+    }
+
+    private static ColumnExtractor doubleExtractor(int col) {
+        return (rs, writer) -> {
+            double value = rs.getDouble(col);
+            if (rs.wasNull()) {
+                writer.writeNull();
+            }
+            else {
+                writer.writeValue(Double.toString(value));
+            }
+        };
+    }
+
+    private static ColumnExtractor decimalExtractor(int col) {
+        return (rs, writer) -> {
+            BigDecimal value = rs.getBigDecimal(col);
+            if (value == null) {
+                writer.writeNull();
+            }
+            else {
+                writer.writeValue(value.toString());
+            }
+        };
+    }
+
+    private static ColumnExtractor stringExtractor(int col) {
+        return (rs, writer) -> {
+            String value = rs.getString(col);
+            if (value == null) {
+                writer.writeNull();
+            }
+            else {
+                writer.writeValue(value);
+            }
+        };
+    }
+
+    private static ColumnExtractor characterStreamExtractor(int col) {
+        char[] buffer = new char[STREAM_BUFFER_SIZE];
+        return (rs, writer) -> {
+            try (Reader reader = rs.getCharacterStream(col)) {
+                if (reader == null) {
+                    writer.writeNull();
+                    return;
+                }
+                try (Writer valueWriter = writer.openValue()) {
+                    int numChars;
+                    while ((numChars = reader.read(buffer)) != -1) {
+                        valueWriter.write(buffer, 0, numChars);
+                    }
+                }
+            }
+            catch (IOException exc) {
+                throw new WarpException(exc);
+            }
+        };
+    }
+
+    private static ColumnExtractor binaryExtractor(int col) {
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        return (rs, writer) -> {
+            try (InputStream is = rs.getBinaryStream(col)) {
+                if (is == null) {
+                    writer.writeNull();
+                    return;
+                }
+                // closing the encoder writes the padding and ends the value
+                try (OutputStream os = Base64.getEncoder()
+                    .wrap(new AsciiOutputStream(writer.openValue()))) {
+                    int numBytes;
+                    while ((numBytes = is.read(buffer)) != -1) {
+                        os.write(buffer, 0, numBytes);
+                    }
+                }
+            }
+            catch (IOException exc) {
+                throw new WarpException(exc);
+            }
+        };
+    }
+
+    private static ColumnExtractor objectExtractor(int col) {
+        return (rs, writer) -> {
+            Object value = rs.getObject(col);
+            if (value == null) {
+                writer.writeNull();
+            }
+            else {
+                writer.writeValue(value.toString());
+            }
+        };
+    }
+
+    /**
+     * Formats a long value in decimal notation into the end of the given buffer.
+     *
+     * @param value
+     *            value to be formatted
+     * @param buffer
+     *            buffer with at least 20 characters
+     * @return offset of the first character in the buffer
+     */
+    static int formatLong(long value, char[] buffer) {
+        int pos = buffer.length;
+        // negative values cover the full range, including Long.MIN_VALUE
+        long remaining = (value < 0) ? value : -value;
+        do {
+            buffer[--pos] = (char) ('0' - (remaining % 10));
+            remaining /= 10;
+        }
+        while (remaining != 0);
+        if (value < 0) {
+            buffer[--pos] = '-';
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.ops4j.pax.warp.core.changelog.ChangeLogReader;
+import org.ops4j.pax.warp.core.changelog.ChangeLogWriter;
+import org.ops4j.pax.warp.core.io.Checksums;
+import org.ops4j.pax.warp.exc.WarpException;
+import org.ops4j.pax.warp.jaxb.gen.DumpChunk;
+import org.ops4j.pax.warp.jaxb.gen.DumpManifest;
+import org.ops4j.pax.warp.jaxb.gen.DumpTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checkpoint of a resumable dump, saved in the dump directory after each chunk. The checkpoint
+ * has the format of a manifest, where incomplete tables are marked as such, and each chunk has the
+ * primary key of its last row.
+ * <p>
+ * The chunks of a table from an interrupted dump are only reused if all of them still have the
+ * checksums recorded in the checkpoint. The checkpoint file is replaced atomically, so an
+ * interruption leaves either the previous or the new checkpoint. This class is thread-safe.
+ */
+class DumpCheckpoint {
+
+    /**
+     * Name of the checkpoint file in a dump directory.
+     */
+    static final String CHECKPOINT_FILE = "checkpoint.xml";
+
+    private static Logger log = LoggerFactory.getLogger(DumpCheckpoint.class);
+
+    private File directory;
+
+    private ChangeLogWriter changeLogWriter;
+
+    private Map<String, DumpTable> interruptedTables = new TreeMap<>(
+        String.CASE_INSENSITIVE_ORDER);
+
+    private Map<String, DumpTable> tables = new LinkedHashMap<>();
+
+    /**
+     * Opens the checkpoint of the given dump directory, reading the checkpoint of an interrupted
+     * dump, if any.
+     *
+     * @param directory
+     *            dump directory
+     * @param changeLogWriter
+     *            change log writer for saving the checkpoint
+     * @param changeLogReader
+     *            change log reader for reading an existing checkpoint
+     */
+    DumpCheckpoint(File directory, ChangeLogWriter changeLogWriter,
+        ChangeLogReader changeLogReader) {
+        this.directory = directory;
+        this.changeLogWriter = changeLogWriter;
+        File file = new File(directory, CHECKPOINT_FILE);
+        if (file.exists()) {
+            try (Reader reader = new InputStreamReader(new FileInputStream(file),
+                StandardCharsets.UTF_8)) {
+                DumpManifest checkpoint = changeLogReader.parseManifest(reader);
+                for (DumpTable table : checkpoint.getTable()) {
+                    interruptedTables.put(table.getTableName(), table);
+                    tables.put(table.getTableName().toUpperCase(), table);
+                }
+            }
+            catch (IOException exc) {
+                throw new WarpException(exc);
+            }
+            log.info("resuming dump from checkpoint with {} tables", interruptedTables.size());
+        }
+    }
+
+    /**
+     * Gets the manifest entry of the given table, if the table was completed by an interrupted
+     * dump.
+     *
+     * @param tableName
+     *            table name
+     * @return manifest entry, or null if the table is to be dumped
+     */
+    DumpTable getCompleteTable(String tableName) {
+        DumpTable table = interruptedTables.get(tableName);
+        if (table == null || !table.isComplete() || !verifyChunks(table)) {
+            return null;
+        }
+        return table;
+    }
+
+    /**
+     * Gets the manifest entry of the given table with the chunks written by an interrupted dump,
+     * if the table can be continued after the last key of these chunks.
+     *
+     * @param tableName
+     *            table name
+     * @return manifest entry, or null if the table is to be dumped from the first row
+     */
+    DumpTable getInterruptedTable(String tableName) {
+        DumpTable table = interruptedTables.get(tableName);
+        if (table == null || table.isComplete() || table.getChunk().isEmpty()) {
+            return null;
+        }
+        DumpChunk last = table.getChunk().get(table.getChunk().size() - 1);
+        if (last.getKey().isEmpty() || !verifyChunks(table)) {
+            return null;
+        }
+        return table;
+    }
+
+    private boolean verifyChunks(DumpTable table) {
+        for (DumpChunk chunk : table.getChunk()) {
+            File file = new File(directory, chunk.getFile());
+            try {
+                if (!file.exists() || !Checksums.sha256(file).equals(chunk.getSha256())) {
+                    log.warn("chunk {} has changed, dumping table {} again", chunk.getFile(),
+                        table.getTableName());
+                    return false;
+                }
+            }
+            catch (IOException exc) {
+                throw new WarpException(exc);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Saves the given manifest entry of a table in the checkpoint.
+     *
+     * @param dumpTable
+     *            manifest entry with all chunks written so far
+     * @param complete
+     *            is the table complete?
+     */
+    synchronized void saveTable(DumpTable dumpTable, boolean complete) {
+        DumpTable table = new DumpTable();
+        table.setCatalogName(dumpTable.getCatalogName());
+        table.setSchemaName(dumpTable.getSchemaName());
+        table.setTableName(dumpTable.getTableName());
+        table.setRows(dumpTable.getRows());
+        table.getChunk().addAll(dumpTable.getChunk());
+        if (!complete) {
+            table.setComplete(false);
+        }
+        tables.put(table.getTableName().toUpperCase(), table);
+
+        DumpManifest checkpoint = new DumpManifest();
+        checkpoint.setVersion("0.1");
+        checkpoint.getTable().addAll(tables.values());
+        File file = new File(directory, CHECKPOINT_FILE);
+        File tempFile = new File(directory, CHECKPOINT_FILE + ".tmp");
+        changeLogWriter.writeManifest(checkpoint, tempFile);
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    /**
+     * Deletes the checkpoint when the dump is complete.
+     */
+    void delete() {
+        File file = new File(directory, CHECKPOINT_FILE);
+        if (file.exists() && !file.delete()) {
+            log.warn("cannot delete {}", file);
+        }
+    }
+
+    /**
+     * Gets the string representation of a key value, which is converted back by
+     * {@link IncrementalDump#convertValue(String, org.ops4j.pax.warp.jaxb.gen.Column)}.
+     *
+     * @param value
+     *            key value
+     * @return string representation
+     */
+    static String toString(Object value) {
+        if (value instanceof byte[]) {
+            return Base64.getEncoder().encodeToString((byte[]) value);
+        }
+        return value.toString();
+    }
+}
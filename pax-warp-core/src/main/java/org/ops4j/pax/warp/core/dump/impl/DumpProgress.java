@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.ops4j.pax.warp.jaxb.gen.CreateTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reports the progress of a data dump after each table, with an estimate of the remaining time.
+ * <p>
+ * Progress is measured by the weights of the dumped tables, relative to the total weight of all
+ * tables, and the remaining time is extrapolated from the time elapsed so far. This class is
+ * thread-safe.
+ */
+class DumpProgress {
+
+    private static Logger log = LoggerFactory.getLogger(DumpProgress.class);
+
+    private TableStatistics statistics;
+
+    private int numTables;
+
+    private long totalWeight;
+
+    private int doneTables;
+
+    private long doneWeight;
+
+    private long startTime = System.nanoTime();
+
+    /**
+     * Creates a progress report for the given tables.
+     *
+     * @param tables
+     *            tables to be dumped
+     * @param statistics
+     *            table statistics
+     */
+    DumpProgress(List<CreateTable> tables, TableStatistics statistics) {
+        this.statistics = statistics;
+        this.numTables = tables.size();
+        this.totalWeight = tables.stream().mapToLong(statistics::getWeight).sum();
+    }
+
+    /**
+     * Checks if progress is reported at all, since the table statistics are not needed otherwise.
+     *
+     * @return true if progress is logged
+     */
+    static boolean isEnabled() {
+        return log.isInfoEnabled();
+    }
+
+    /**
+     * Reports that the given table has been dumped.
+     *
+     * @param table
+     *            table model
+     */
+    synchronized void tableDone(CreateTable table) {
+        doneTables++;
+        doneWeight += statistics.getWeight(table);
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startTime;
+        double fraction = Math.min(1.0, (double) doneWeight / totalWeight);
+        long remaining = (long) (elapsed * (1 - fraction) / fraction);
+        log.info("dumped table {} ({} of {}), {}% done, about {} s remaining",
+            table.getTableName(), doneTables, numTables, Math.round(100 * fraction),
+            TimeUnit.NANOSECONDS.toSeconds(remaining));
+    }
+}
@@ -15,35 +15,50 @@
  */
 package org.ops4j.pax.warp.core.dump.impl;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.sql.Connection;
-import java.sql.JDBCType;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.ops4j.pax.warp.core.changelog.AppendableChangeLogWriter;
+import org.ops4j.pax.warp.core.changelog.ChangeLogReader;
 import org.ops4j.pax.warp.core.changelog.ChangeLogWriter;
+import org.ops4j.pax.warp.core.changelog.StreamingChangeLogWriter;
 import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+import org.ops4j.pax.warp.core.dump.DumpOptions;
 import org.ops4j.pax.warp.core.dump.DumpService;
+import org.ops4j.pax.warp.core.dump.TableRow;
+import org.ops4j.pax.warp.core.history.ImportCheckpointService;
+import org.ops4j.pax.warp.core.history.Watermark;
+import org.ops4j.pax.warp.core.history.WatermarkService;
+import org.ops4j.pax.warp.core.io.Checksums;
+import org.ops4j.pax.warp.core.io.ParallelGzipOutputStream;
+import org.ops4j.pax.warp.core.jdbc.ConnectionFactory;
 import org.ops4j.pax.warp.core.jdbc.DatabaseModel;
 import org.ops4j.pax.warp.core.jdbc.DatabaseModelBuilder;
 import org.ops4j.pax.warp.core.schema.SchemaHandler;
 import org.ops4j.pax.warp.exc.WarpException;
-import org.ops4j.pax.warp.jaxb.gen.ChangeLog;
-import org.ops4j.pax.warp.jaxb.gen.ChangeSet;
-import org.ops4j.pax.warp.jaxb.gen.Column;
-import org.ops4j.pax.warp.jaxb.gen.ColumnValue;
 import org.ops4j.pax.warp.jaxb.gen.CreateTable;
-import org.ops4j.pax.warp.jaxb.gen.Insert;
+import org.ops4j.pax.warp.jaxb.gen.DumpManifest;
+import org.ops4j.pax.warp.jaxb.gen.DumpTable;
 import org.ops4j.pax.warp.scope.CdiDependent;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
@@ -63,188 +78,546 @@ public class DumpServiceImpl implements DumpService {
 
     private static Logger log = LoggerFactory.getLogger(DumpServiceImpl.class);
 
+    /**
+     * Name of the structure change log in a dump directory, without compression suffix.
+     */
+    static final String STRUCTURE_FILE = "structure.xml";
+
+    /**
+     * Name of the subdirectory for chunk files in a dump directory.
+     */
+    static final String DATA_DIRECTORY = "data";
+
+    /**
+     * Reads tables from a connection.
+     */
+    @FunctionalInterface
+    private interface ReadAction {
+
+        /**
+         * Reads tables.
+         *
+         * @param ownTransaction
+         *            true if the transaction of the connection was started for reading and may be
+         *            committed between pages
+         * @throws SQLException
+         *             on database error
+         */
+        void run(boolean ownTransaction) throws SQLException;
+    }
+
     @Inject
     private ChangeLogWriter changeLogWriter;
 
+    @Inject
+    private ChangeLogReader changeLogReader;
+
+    @Inject
+    private WatermarkService watermarkService;
+
     @Override
     public void dumpStructure(Connection dbc, OutputStream os, DbmsProfile dbms,
         Optional<String> schema) {
-        DatabaseModel database = buildDatabaseModel(dbc, dbms, schema);
+        DatabaseModel database = buildDatabaseModel(dbc, dbms, schema, null);
 
-        ChangeLog changeLog = addTables(database);
-        addKeysAndIndexes(dbms, database, changeLog);
-
-        changeLogWriter.writeChangeLog(changeLog, os);
+        writeChangeSets(changeLogWriter.openChangeLog(os), writer -> {
+            Supplier<String> ids = createChangeSetIds(false);
+            addTables(writer, database, ids);
+            addKeysAndIndexes(dbms, database, writer, ids);
+        });
     }
 
-    private ChangeLog addTables(DatabaseModel database) {
-        ChangeLog changeLog = new ChangeLog();
-        changeLog.setVersion("0.1");
-        changeLog.getChangeSet();
+    private void addTables(StreamingChangeLogWriter writer, DatabaseModel database,
+        Supplier<String> ids) {
         database.getTables().stream().filter(t -> !isWarpTable(t))
-            .forEach(t -> addChangeSet(changeLog, t));
-        return changeLog;
+            .forEach(t -> addChangeSet(writer, t, ids));
     }
 
+    /**
+     * Creates a supplier of change set IDs for structure changes. Reproducible IDs are numbered
+     * sequentially, so an unchanged structure is written in the same way by successive dumps.
+     */
+    private static Supplier<String> createChangeSetIds(boolean reproducible) {
+        if (reproducible) {
+            AtomicInteger number = new AtomicInteger();
+            return () -> "structure-" + number.incrementAndGet();
+        }
+        return () -> UUID.randomUUID().toString();
+    }
+
+    /**
+     * Builds a model of the tables selected by the given options, or of all tables if the options
+     * are null.
+     */
     private DatabaseModel buildDatabaseModel(Connection dbc, DbmsProfile dbms,
-        Optional<String> schema) {
+        Optional<String> schema, DumpOptions options) {
         String currentSchema = new SchemaHandler(dbms.getSubprotocol()).getCurrentSchema(dbc);
         String schemaName = schema.orElse(currentSchema);
         DatabaseModelBuilder inspector = new DatabaseModelBuilder(dbc, null, schemaName);
+        if (options != null) {
+            TableFilter tableFilter = new TableFilter(options);
+            if (!tableFilter.acceptsAll()) {
+                inspector.setTableFilter(tableFilter);
+            }
+        }
         return inspector.buildDatabaseModel();
     }
 
     private boolean isWarpTable(CreateTable table) {
-        return table.getTableName().equalsIgnoreCase("warp_history");
+        return table.getTableName().equalsIgnoreCase("warp_history") || isMetadataTable(table);
     }
 
-    private void addChangeSet(ChangeLog changeLog, Object action) {
-        ChangeSet changeSet = new ChangeSet();
-        changeSet.setId(UUID.randomUUID().toString());
-        List<Object> changes = changeSet.getChanges();
-        changes.add(action);
-        assert !changeSet.getChanges().isEmpty();
-        changeLog.getChangeSet().add(changeSet);
+    /**
+     * The watermark and checkpoint tables belong to the dumped database and are excluded from
+     * all dumps.
+     */
+    private boolean isMetadataTable(CreateTable table) {
+        return table.getTableName().equalsIgnoreCase(WatermarkService.WATERMARK_TABLE)
+            || table.getTableName().equalsIgnoreCase(ImportCheckpointService.CHECKPOINT_TABLE);
     }
 
-    @Override
-    public void dumpData(Connection dbc, OutputStream os, DbmsProfile dbms, Optional<String> schema) {
-        DatabaseModel database = buildDatabaseModel(dbc, dbms, schema);
+    private List<CreateTable> getDataTables(DatabaseModel database) {
+        return database.getTables().stream().filter(t -> !isMetadataTable(t))
+            .collect(Collectors.toList());
+    }
 
-        ChangeLog changeLog = new ChangeLog();
-        changeLog.setVersion("0.1");
+    private void checkNotIncremental(DumpOptions options) {
+        if (options.isIncremental()) {
+            throw new WarpException("incremental dumps require a dump directory");
+        }
+        if (options.isChunkStore()) {
+            throw new WarpException("chunk stores require a dump directory");
+        }
+        if (options.isResume()) {
+            throw new WarpException("resumable dumps require a dump directory");
+        }
+    }
 
-        insertData(changeLog, database, dbc, dbms);
+    @Override
+    public void dumpData(Connection dbc, OutputStream os, DbmsProfile dbms, Optional<String> schema,
+        DumpOptions options) {
+        dumpData(dbc, null, os, dbms, schema, options);
+    }
+
+    @Override
+    public void dumpData(Connection dbc, ConnectionFactory connectionFactory, OutputStream os,
+        DbmsProfile dbms, Optional<String> schema, DumpOptions options) {
+        checkNotIncremental(options);
+        DatabaseModel database = buildDatabaseModel(dbc, dbms, schema, options);
 
-        changeLogWriter.writeChangeLog(changeLog, os);
+        writeChangeLog(os, options,
+            writer -> insertData(writer, database, dbc, connectionFactory, dbms, options));
     }
 
     @Override
     public void dumpAll(Connection dbc, OutputStream os, DbmsProfile dbms,
-        Optional<String> schema) {
-        DatabaseModel database = buildDatabaseModel(dbc, dbms, schema);
+        Optional<String> schema, DumpOptions options) {
+        dumpAll(dbc, null, os, dbms, schema, options);
+    }
 
-        ChangeLog changeLog = addTables(database);
-        insertData(changeLog, database, dbc, dbms);
-        addKeysAndIndexes(dbms, database, changeLog);
+    @Override
+    public void dumpAll(Connection dbc, ConnectionFactory connectionFactory, OutputStream os,
+        DbmsProfile dbms, Optional<String> schema, DumpOptions options) {
+        checkNotIncremental(options);
+        DatabaseModel database = buildDatabaseModel(dbc, dbms, schema, options);
 
-        changeLogWriter.writeChangeLog(changeLog, os);
+        writeChangeLog(os, options, writer -> {
+            Supplier<String> ids = createChangeSetIds(false);
+            addTables(writer, database, ids);
+            insertData(writer, database, dbc, connectionFactory, dbms, options);
+            addKeysAndIndexes(dbms, database, writer, ids);
+        });
+    }
+
+    @Override
+    public Stream<TableRow> streamRows(Connection dbc, DbmsProfile dbms, Optional<String> schema,
+        DumpOptions options) {
+        checkNotIncremental(options);
+        if (!options.getSubsetRoots().isEmpty()) {
+            throw new WarpException("subsets cannot be streamed");
+        }
+        DatabaseModel database = buildDatabaseModel(dbc, dbms, schema, options);
+        TableReader reader = new TableReader(database, dbms, options);
+        RowIterator rows = new RowIterator(getDataTables(database), reader, dbc, dbms);
+        return StreamSupport
+            .stream(Spliterators.spliteratorUnknownSize(rows,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(rows::close);
     }
 
     /**
-     * @param dbms
-     * @param database
-     * @param changeLog
+     * Opens a change log on the given stream, compressing it if required, and lets the given
+     * consumer write the change sets.
+     */
+    private void writeChangeLog(OutputStream os, DumpOptions options,
+        Consumer<AppendableChangeLogWriter> changeSetWriter) {
+        if (!options.isCompress()) {
+            writeChangeSets(changeLogWriter.openChangeLog(os), changeSetWriter);
+            return;
+        }
+
+        ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(os,
+            options.getEffectiveCompressionThreads(), ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE);
+        try {
+            writeChangeSets(changeLogWriter.openChangeLog(gzip), changeSetWriter);
+            gzip.finish();
+        }
+        catch (IOException exc) {
+            throw new WarpException(exc);
+        }
+        finally {
+            gzip.abort();
+        }
+    }
+
+    /**
+     * Lets the given consumer write the change sets and closes the writer. If the consumer fails,
+     * the writer is aborted, so the output is not a well-formed change log.
      */
-    private void addKeysAndIndexes(DbmsProfile dbms, DatabaseModel database, ChangeLog changeLog) {
-        database.getPrimaryKeys().forEach(t -> addChangeSet(changeLog, t));
-        database.getForeignKeys().forEach(t -> addChangeSet(changeLog, t));
+    private static void writeChangeSets(AppendableChangeLogWriter writer,
+        Consumer<AppendableChangeLogWriter> changeSetWriter) {
+        try {
+            changeSetWriter.accept(writer);
+        }
+        catch (RuntimeException | Error exc) {
+            abort(writer, exc);
+            throw exc;
+        }
+        writer.close();
+    }
+
+    /**
+     * Aborts the given writer after the given failure, which suppresses any exception on
+     * aborting.
+     */
+    private static void abort(StreamingChangeLogWriter writer, Throwable exc) {
+        try {
+            writer.abort();
+        }
+        catch (RuntimeException abortExc) {
+            exc.addSuppressed(abortExc);
+        }
+    }
+
+    private void addKeysAndIndexes(DbmsProfile dbms, DatabaseModel database,
+        StreamingChangeLogWriter writer, Supplier<String> ids) {
+        database.getPrimaryKeys().forEach(t -> addChangeSet(writer, t, ids));
+        database.getForeignKeys().forEach(t -> addChangeSet(writer, t, ids));
         database.getIndexes().stream().filter(t -> !dbms.isGeneratedIndex(t.getIndexName()))
-            .forEach(t -> addChangeSet(changeLog, t));
-    }
-
-    private void insertData(ChangeLog changeLog, DatabaseModel database, Connection dbc, DbmsProfile dbms) {
-        ChangeSet changeSet = new ChangeSet();
-        changeSet.setId(UUID.randomUUID().toString());
-        changeLog.getChangeSet().add(changeSet);
-        List<Object> changes = changeSet.getChanges();
-        for (CreateTable createTable : database.getTables()) {
-            insertData(changes, createTable, dbc, dbms);
-        }
-    }
-
-    private void insertData(List<Object> changes, CreateTable createTable, Connection dbc, DbmsProfile dbms) {
-        log.debug("selecting data from {}", createTable.getTableName());
-        String columns = createTable.getColumn().stream().map(c -> dbms.quoteIdentifier(c.getName()))
-            .collect(Collectors.joining(", "));
-        String sql = String.format("select %s from %s", columns, dbms.quoteIdentifier(createTable.getTableName()));
-        log.debug(sql);
-        try (Statement st = dbc.createStatement();
-            ResultSet rs = st.executeQuery(sql)) {
-            ResultSetMetaData metaData = rs.getMetaData();
-            while (rs.next()) {
-                Insert insert = new Insert();
-                insert.setCatalogName(createTable.getCatalogName());
-                insert.setSchemaName(createTable.getSchemaName());
-                insert.setTableName(createTable.getTableName());
-                List<ColumnValue> columnValues = insert.getColumn();
-
-                readColumnValues(createTable, rs, metaData, columnValues);
-                changes.add(insert);
+            .forEach(t -> addChangeSet(writer, t, ids));
+    }
+
+    private void addChangeSet(StreamingChangeLogWriter writer, Object action,
+        Supplier<String> ids) {
+        writer.startChangeSet(ids.get());
+        writer.writeChange(action);
+        writer.endChangeSet();
+    }
+
+    /**
+     * Writes the data of all tables. If the driver needs a transaction for streaming result sets
+     * and the connection is in auto-commit mode, auto-commit is disabled while reading and
+     * restored afterwards.
+     * <p>
+     * Tables are read concurrently if the options require more than one thread and there is a
+     * connection factory.
+     *
+     * @param writer
+     *            streaming change log writer
+     * @param database
+     *            database model
+     * @param dbc
+     *            database connection
+     * @param connectionFactory
+     *            connection factory, or null
+     * @param dbms
+     *            DBMS profile
+     * @param options
+     *            dump options
+     */
+    private void insertData(AppendableChangeLogWriter writer, DatabaseModel database,
+        Connection dbc, ConnectionFactory connectionFactory, DbmsProfile dbms,
+        DumpOptions options) {
+        TableReader reader = new TableReader(database, dbms, options);
+        List<CreateTable> tables = selectTables(database, reader, dbc, dbms, options);
+        boolean parallel = connectionFactory != null && options.getThreads() > 1;
+        TableStatistics statistics = readStatistics(dbc, dbms, tables, parallel);
+        DumpProgress progress = new DumpProgress(tables, statistics);
+        if (parallel) {
+            ParallelDataDump parallelDump = new ParallelDataDump(changeLogWriter,
+                connectionFactory, dbms, options.getThreads(), statistics);
+            parallelDump.dump(dbc, tables, writer, (w, t, c) -> {
+                reader.readTable(w, t, c, null);
+                progress.tableDone(t);
+            });
+            return;
+        }
+        readTables(dbc, dbms, ownTransaction -> {
+            reader.setOwnTransaction(ownTransaction);
+            for (CreateTable createTable : tables) {
+                reader.readTable(writer, createTable, dbc, null);
+                progress.tableDone(createTable);
+            }
+        });
+    }
+
+    /**
+     * Reads the table statistics if they are needed for scheduling a parallel dump or for
+     * reporting progress.
+     */
+    private TableStatistics readStatistics(Connection dbc, DbmsProfile dbms,
+        List<CreateTable> tables, boolean parallel) {
+        if (!parallel && !DumpProgress.isEnabled()) {
+            return TableStatistics.unknown();
+        }
+        return TableStatistics.read(dbc, dbms, tables);
+    }
+
+    /**
+     * Selects the tables to be dumped. For a subset dump, these are the tables with rows in the
+     * subset, and the given reader is restricted to the subset.
+     */
+    private List<CreateTable> selectTables(DatabaseModel database, TableReader reader,
+        Connection dbc, DbmsProfile dbms, DumpOptions options) {
+        List<CreateTable> tables = getDataTables(database);
+        if (options.getSubsetRoots().isEmpty()) {
+            return tables;
+        }
+        SubsetDump subset = new SubsetDump(tables, database, dbms, options);
+        readTables(dbc, dbms, ownTransaction -> subset.collect(dbc));
+        reader.setSubset(subset);
+        return subset.getTables();
+    }
+
+    /**
+     * Runs the given action for reading tables on the given connection. If the driver needs a
+     * transaction for streaming result sets and the connection is in auto-commit mode, auto-commit
+     * is disabled while reading. This transaction is committed when the action succeeds and rolled
+     * back when it fails, and the previous auto-commit mode is restored in either case.
+     */
+    private void readTables(Connection dbc, DbmsProfile dbms, ReadAction action) {
+        try {
+            boolean autoCommit = dbc.getAutoCommit();
+            if (!(dbms.getCursorRequiresTransaction() && autoCommit)) {
+                action.run(false);
+                return;
             }
             dbc.setAutoCommit(false);
-            dbc.commit();
+            try {
+                action.run(true);
+                dbc.commit();
+            }
+            catch (SQLException | RuntimeException exc) {
+                readFailed(dbc, autoCommit, exc);
+                throw exc;
+            }
+            dbc.setAutoCommit(autoCommit);
         }
         catch (SQLException exc) {
             throw new WarpException(exc);
         }
     }
 
-    private void readColumnValues(CreateTable createTable, ResultSet rs,
-        ResultSetMetaData metaData, List<ColumnValue> columnValues) throws SQLException {
-        int col = 1;
-        for (Column column : createTable.getColumn()) {
-            ColumnValue columnValue = readColumnValue(rs, metaData, col, column);
-            columnValues.add(columnValue);
-            col++;
+    /**
+     * Rolls back the transaction of a failed read and restores the given auto-commit mode. Any
+     * exceptions are suppressed by the original failure.
+     */
+    private static void readFailed(Connection dbc, boolean autoCommit, Exception exc) {
+        try {
+            dbc.rollback();
+        }
+        catch (SQLException rollbackExc) {
+            exc.addSuppressed(rollbackExc);
         }
+        try {
+            dbc.setAutoCommit(autoCommit);
+        }
+        catch (SQLException autoCommitExc) {
+            exc.addSuppressed(autoCommitExc);
+        }
+    }
+
+    @Override
+    public void dumpData(Connection dbc, ConnectionFactory connectionFactory, File directory,
+        DbmsProfile dbms, Optional<String> schema, DumpOptions options) {
+        DatabaseModel database = buildDatabaseModel(dbc, dbms, schema, options);
+        dumpToDirectory(directory, false, database, dbc, connectionFactory, dbms, options);
+    }
+
+    @Override
+    public void dumpAll(Connection dbc, ConnectionFactory connectionFactory, File directory,
+        DbmsProfile dbms, Optional<String> schema, DumpOptions options) {
+        DatabaseModel database = buildDatabaseModel(dbc, dbms, schema, options);
+        dumpToDirectory(directory, true, database, dbc, connectionFactory, dbms, options);
     }
 
     /**
-     * Reads a columns value from the result set and converts it to a string.
+     * Writes a dump directory with an optional structure change log, chunk files for all tables
+     * and a manifest. The manifest is written last, so a directory without a manifest contains
+     * an incomplete dump. For an incremental dump, the watermarks are saved after the manifest.
      * <p>
-     * NOTE: {@code rs.getObject(col)} should be sufficient in theory, but at least for H2 CLOB
-     * columns, it returns strings like {@code clob0: 'Foobar'}, so we switch on the type and use
-     * {@code rs.getString(col)} where appropriate.
-     *
-     * @param rs
-     *            result set
-     * @param metaData
-     *            metadata for the given table
-     * @param col
-     *            column index
-     * @param column
-     *            column descriptor
-     * @return column value
-     * @throws SQLException
+     * For a chunk store, all files are moved to the store when they are complete, and the
+     * manifest is also saved under a name of its own.
+     * <p>
+     * For a resumable dump, a checkpoint is saved after each chunk and deleted after the
+     * manifest.
      */
-    private ColumnValue readColumnValue(ResultSet rs, ResultSetMetaData metaData, int col,
-        Column column) throws SQLException {
-
-        Object value = null;
-        JDBCType jdbcType = JDBCType.valueOf(metaData.getColumnType(col));
-        switch (jdbcType) {
-            case CLOB:
-            case CHAR:
-            case VARCHAR:
-                value = rs.getString(col);
-                break;
-
-            case BLOB:
-            case BINARY:
-            case VARBINARY:
-            case LONGVARBINARY:
-                byte[] bytes = rs.getBytes(col);
-                if (bytes != null) {
-                    value = Base64.getEncoder().encodeToString(bytes);
-                }
-                break;
+    private void dumpToDirectory(File directory, boolean withStructure, DatabaseModel database,
+        Connection dbc, ConnectionFactory connectionFactory, DbmsProfile dbms,
+        DumpOptions options) {
+        File dataDirectory = new File(directory, DATA_DIRECTORY);
+        if (!dataDirectory.isDirectory() && !dataDirectory.mkdirs()) {
+            throw new WarpException("cannot create directory " + dataDirectory);
+        }
+        DumpManifest manifest = new DumpManifest();
+        manifest.setVersion("0.1");
+        IncrementalDump incremental = null;
+        if (options.isIncremental()) {
+            if (!options.getSubsetRoots().isEmpty()) {
+                throw new WarpException("incremental dumps cannot be subset dumps");
+            }
+            incremental = new IncrementalDump(database,
+                watermarkService.readWatermarks(dbc, dbms), options);
+            manifest.setIncremental(true);
+        }
+        DumpCheckpoint checkpoint = null;
+        if (options.isResume()) {
+            if (incremental != null || !options.getSubsetRoots().isEmpty()) {
+                throw new WarpException("resumable dumps cannot be incremental or subset dumps");
+            }
+            checkpoint = new DumpCheckpoint(directory, changeLogWriter, changeLogReader);
+        }
 
-            default:
-                value = rs.getObject(col);
+        if (withStructure) {
+            String structureFile = STRUCTURE_FILE + (options.isCompress() ? ".gz" : "");
+            try (OutputStream os = new BufferedOutputStream(
+                new FileOutputStream(new File(directory, structureFile)))) {
+                writeChangeLog(os, options, writer -> {
+                    Supplier<String> ids = createChangeSetIds(
+                        options.isChunkStore() || options.isResume());
+                    addTables(writer, database, ids);
+                    addKeysAndIndexes(dbms, database, writer, ids);
+                });
+            }
+            catch (IOException exc) {
+                throw new WarpException(exc);
+            }
+            if (options.isChunkStore()) {
+                structureFile = storeFile(directory, structureFile);
+            }
+            manifest.setStructure(structureFile);
         }
 
-        ColumnValue columnValue = new ColumnValue();
-        columnValue.setName(column.getName());
-        columnValue.setType(jdbcType.toString());
-        if (rs.wasNull()) {
-            columnValue.setNull(true);
+        List<DumpTable> dumpTables = manifest.getTable();
+        IncrementalDump incrementalDump = incremental;
+        DumpCheckpoint dumpCheckpoint = checkpoint;
+        TableReader reader = new TableReader(database, dbms, options);
+        List<CreateTable> tables = selectTables(database, reader, dbc, dbms, options);
+        Map<String, String> baseNames = ChunkedTableWriter.getBaseNames(tables);
+        boolean parallel = connectionFactory != null && options.getThreads() > 1;
+        TableStatistics statistics = readStatistics(dbc, dbms, tables, parallel);
+        DumpProgress progress = new DumpProgress(tables, statistics);
+        if (parallel) {
+            ParallelDataDump parallelDump = new ParallelDataDump(changeLogWriter,
+                connectionFactory, dbms, options.getThreads(), statistics);
+            parallelDump.dump(dbc, tables, (t, c) -> {
+                DumpTable dumpTable = writeChunks(directory, t, baseNames.get(t.getTableName()),
+                    c, reader, dbms, options, incrementalDump, dumpCheckpoint);
+                progress.tableDone(t);
+                return dumpTable;
+            }, dumpTables::add, t -> log.debug("discarding chunks of {}", t.getTableName()));
         }
         else {
-            assert value != null;
-            columnValue.setValue(value.toString());
+            readTables(dbc, dbms, ownTransaction -> {
+                reader.setOwnTransaction(ownTransaction);
+                for (CreateTable createTable : tables) {
+                    dumpTables.add(writeChunks(directory, createTable,
+                        baseNames.get(createTable.getTableName()), dbc, reader, dbms, options,
+                        incrementalDump, dumpCheckpoint));
+                    progress.tableDone(createTable);
+                }
+            });
+        }
+        changeLogWriter.writeManifest(manifest, new File(directory, MANIFEST_FILE));
+        if (options.isChunkStore()) {
+            changeLogWriter.writeManifest(manifest, ChunkStore.newManifestFile(directory));
+            if (dataDirectory.exists() && !dataDirectory.delete()) {
+                log.warn("cannot delete {}", dataDirectory);
+            }
+        }
+        if (checkpoint != null) {
+            checkpoint.delete();
+        }
+
+        if (incremental != null) {
+            List<Watermark> watermarks = dumpTables.stream().filter(t -> t.getWatermark() != null)
+                .map(this::toWatermark).collect(Collectors.toList());
+            watermarkService.saveWatermarks(dbc, dbms, watermarks);
+        }
+    }
+
+    private String storeFile(File directory, String file) {
+        try {
+            String sha256 = Checksums.sha256(new File(directory, file));
+            return ChunkStore.store(directory, file, sha256);
+        }
+        catch (IOException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    private Watermark toWatermark(DumpTable dumpTable) {
+        Watermark watermark = new Watermark();
+        watermark.setTableName(dumpTable.getTableName());
+        watermark.setColumnName(dumpTable.getWatermarkColumn());
+        watermark.setValue(dumpTable.getWatermark());
+        return watermark;
+    }
+
+    /**
+     * Writes the chunks of the given table. For a resumable dump, a table completed by an
+     * interrupted dump is not read again, and an incomplete table is continued. When reading
+     * fails, the incomplete chunk is deleted.
+     */
+    private DumpTable writeChunks(File directory, CreateTable createTable, String baseName,
+        Connection dbc, TableReader reader, DbmsProfile dbms, DumpOptions options,
+        IncrementalDump incremental, DumpCheckpoint checkpoint) throws SQLException {
+        if (checkpoint != null) {
+            DumpTable complete = checkpoint.getCompleteTable(createTable.getTableName());
+            if (complete != null) {
+                log.debug("keeping chunks of {} from checkpoint", createTable.getTableName());
+                return complete;
+            }
         }
-        return columnValue;
+        ChunkedTableWriter writer = new ChunkedTableWriter(changeLogWriter, directory,
+            createTable, baseName, options);
+        IncrementalDump.Range range = null;
+        try {
+            if (incremental != null) {
+                range = incremental.selectRange(createTable, dbc, dbms);
+            }
+            if (checkpoint != null) {
+                writer.setCheckpoint(checkpoint);
+                reader.readTable(writer, createTable, dbc, range, writer);
+            }
+            else {
+                reader.readTable(writer, createTable, dbc, range);
+            }
+        }
+        catch (SQLException | RuntimeException exc) {
+            abort(writer, exc);
+            throw exc;
+        }
+        writer.close();
+        DumpTable dumpTable = writer.getDumpTable();
+        if (range != null) {
+            dumpTable.setWatermarkColumn(range.getColumn());
+            dumpTable.setWatermark(range.getValue());
+        }
+        if (checkpoint != null) {
+            checkpoint.saveTable(dumpTable, true);
+        }
+        return dumpTable;
     }
 
     /**
@@ -257,4 +630,26 @@ public class DumpServiceImpl implements DumpService {
     public void setChangeLogWriter(ChangeLogWriter changeLogWriter) {
         this.changeLogWriter = changeLogWriter;
     }
+
+    /**
+     * Sets the change log reader.
+     *
+     * @param changeLogReader
+     *            change log reader
+     */
+    @Reference
+    public void setChangeLogReader(ChangeLogReader changeLogReader) {
+        this.changeLogReader = changeLogReader;
+    }
+
+    /**
+     * Sets the watermark service.
+     *
+     * @param watermarkService
+     *            watermark service
+     */
+    @Reference
+    public void setWatermarkService(WatermarkService watermarkService) {
+        this.watermarkService = watermarkService;
+    }
 }
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.JDBCType;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+
+import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+import org.ops4j.pax.warp.core.dump.DumpOptions;
+import org.ops4j.pax.warp.core.history.Watermark;
+import org.ops4j.pax.warp.core.jdbc.DatabaseModel;
+import org.ops4j.pax.warp.exc.WarpException;
+import org.ops4j.pax.warp.jaxb.gen.AddPrimaryKey;
+import org.ops4j.pax.warp.jaxb.gen.Column;
+import org.ops4j.pax.warp.jaxb.gen.CreateTable;
+
+/**
+ * Selects the watermark columns and the range of watermark values for the tables of an
+ * incremental dump.
+ */
+class IncrementalDump {
+
+    /**
+     * Range of watermark values of a table to be included in an incremental dump.
+     */
+    static class Range {
+
+        private String column;
+
+        private Object lower;
+
+        private Object upper;
+
+        private String value;
+
+        /**
+         * Gets the watermark column.
+         *
+         * @return column name
+         */
+        String getColumn() {
+            return column;
+        }
+
+        /**
+         * Gets the exclusive lower bound.
+         *
+         * @return lower bound, or null for a dump from the first row
+         */
+        Object getLower() {
+            return lower;
+        }
+
+        /**
+         * Gets the inclusive upper bound.
+         *
+         * @return upper bound, or null if there are no rows to be dumped
+         */
+        Object getUpper() {
+            return upper;
+        }
+
+        /**
+         * Gets the watermark reached by the dump.
+         *
+         * @return string representation of watermark, or null if the table has never had any
+         *         rows
+         */
+        String getValue() {
+            return value;
+        }
+    }
+
+    private DatabaseModel database;
+
+    private Map<String, Watermark> watermarks;
+
+    private DumpOptions options;
+
+    /**
+     * Creates an incremental dump for the given database.
+     *
+     * @param database
+     *            database model
+     * @param watermarks
+     *            watermarks of the previous dump, indexed by upper case table names
+     * @param options
+     *            dump options
+     */
+    IncrementalDump(DatabaseModel database, Map<String, Watermark> watermarks,
+        DumpOptions options) {
+        this.database = database;
+        this.watermarks = watermarks;
+        this.options = options;
+    }
+
+    /**
+     * Selects the range of watermark values of the given table to be dumped. The upper bound is
+     * the greatest watermark value visible to the given connection, so the range must be read on
+     * the same connection in the same transaction.
+     *
+     * @param createTable
+     *            table model
+     * @param dbc
+     *            database connection
+     * @param dbms
+     *            DBMS profile
+     * @return range, or null if the table has no watermark column and is to be dumped completely
+     * @throws SQLException
+     *             on database error
+     */
+    Range selectRange(CreateTable createTable, Connection dbc, DbmsProfile dbms)
+        throws SQLException {
+        String column = findWatermarkColumn(createTable);
+        if (column == null) {
+            return null;
+        }
+        Range range = new Range();
+        range.column = column;
+        String sql = String.format("select max(%s) from %s", dbms.quoteIdentifier(column),
+            dbms.quoteIdentifier(createTable.getTableName()));
+        JDBCType jdbcType;
+        try (Statement st = dbc.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            range.upper = rs.getObject(1);
+            jdbcType = JDBCType.valueOf(rs.getMetaData().getColumnType(1));
+        }
+
+        Watermark watermark = watermarks.get(createTable.getTableName().toUpperCase());
+        if (watermark != null && watermark.getColumnName().equalsIgnoreCase(column)) {
+            range.lower = convertValue(watermark.getValue(), jdbcType);
+            range.value = watermark.getValue();
+        }
+        if (range.upper != null) {
+            range.value = range.upper.toString();
+        }
+        return range;
+    }
+
+    /**
+     * Finds the watermark column of the given table, as explained for
+     * {@link DumpOptions#setIncremental(boolean)}. The rows of an incremental dump replace
+     * existing rows by primary key on import, so only tables with a primary key have a watermark
+     * column.
+     *
+     * @param createTable
+     *            table model
+     * @return column name, or null
+     * @throws WarpException
+     *             if a watermark column is configured for a table without primary key
+     */
+    private String findWatermarkColumn(CreateTable createTable) {
+        String tableName = createTable.getTableName();
+        Optional<AddPrimaryKey> primaryKey = database.getPrimaryKeys().stream()
+            .filter(pk -> pk.getTableName().equalsIgnoreCase(tableName)).findFirst();
+        Optional<String> configured = options.getWatermarkColumns().entrySet().stream()
+            .filter(e -> e.getKey().equalsIgnoreCase(tableName)).map(Map.Entry::getValue)
+            .findFirst();
+        if (configured.isPresent()) {
+            String columnName = findColumn(createTable, configured.get()).orElseThrow(
+                () -> new WarpException(String.format("watermark column %s not found in table %s",
+                    configured.get(), tableName))).getName();
+            if (!primaryKey.isPresent()) {
+                throw new WarpException(String.format(
+                    "watermark column %s requires a primary key in table %s", columnName,
+                    tableName));
+            }
+            return columnName;
+        }
+        if (!primaryKey.isPresent()) {
+            return null;
+        }
+        if (options.getWatermarkColumn() != null) {
+            Optional<Column> column = findColumn(createTable, options.getWatermarkColumn());
+            if (column.isPresent()) {
+                return column.get().getName();
+            }
+        }
+        if (primaryKey.get().getColumn().size() == 1) {
+            Optional<Column> column = findColumn(createTable, primaryKey.get().getColumn().get(0));
+            if (column.isPresent() && isInteger(column.get())) {
+                return column.get().getName();
+            }
+        }
+        return null;
+    }
+
+    static Optional<Column> findColumn(CreateTable createTable, String columnName) {
+        return createTable.getColumn().stream().filter(c -> c.getName().equalsIgnoreCase(columnName))
+            .findFirst();
+    }
+
+    static boolean isInteger(Column column) {
+        switch (column.getType()) {
+            case INT_8:
+            case INT_16:
+            case INT_32:
+            case INT_64:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Converts a value of the given column from its string representation to the corresponding
+     * Java type, e.g. a primary key value saved in a checkpoint.
+     *
+     * @param value
+     *            string representation, as returned by {@link Object#toString()}, or Base64
+     *            for binary values
+     * @param column
+     *            column model
+     * @return converted value
+     */
+    static Object convertValue(String value, Column column) {
+        switch (column.getType()) {
+            case INT_8:
+            case INT_16:
+            case INT_32:
+            case INT_64:
+                return Long.parseLong(value);
+            case DECIMAL:
+                return new BigDecimal(value);
+            case FLOAT:
+            case DOUBLE:
+                return Double.parseDouble(value);
+            case BOOLEAN:
+                return Boolean.parseBoolean(value);
+            case DATE:
+                return Date.valueOf(value);
+            case TIME:
+                return Time.valueOf(value);
+            case TIMESTAMP:
+                return Timestamp.valueOf(value);
+            case BLOB:
+                return Base64.getDecoder().decode(value);
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Converts a watermark from its string representation to the Java type corresponding to the
+     * given JDBC type.
+     */
+    private static Object convertValue(String value, JDBCType jdbcType) {
+        switch (jdbcType) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                return Long.parseLong(value);
+            case DECIMAL:
+            case NUMERIC:
+                return new BigDecimal(value);
+            case DATE:
+                return Date.valueOf(value);
+            case TIME:
+                return Time.valueOf(value);
+            case TIMESTAMP:
+                return Timestamp.valueOf(value);
+            default:
+                return value;
+        }
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import org.ops4j.pax.warp.core.changelog.ChangeLogWriter;
+import org.ops4j.pax.warp.core.changelog.AppendableChangeLogWriter;
+import org.ops4j.pax.warp.core.changelog.StreamingChangeLogWriter;
+import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+import org.ops4j.pax.warp.core.jdbc.ConnectionFactory;
+import org.ops4j.pax.warp.core.trimou.TemplateEngine;
+import org.ops4j.pax.warp.core.trimou.TemplateEngineSelector;
+import org.ops4j.pax.warp.exc.WarpException;
+import org.ops4j.pax.warp.jaxb.gen.CreateTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dumps the data of multiple tables concurrently, using a given number of worker threads with a
+ * connection of their own.
+ * <p>
+ * Each worker dumps a table to some intermediate result, e.g. a temporary file with the change
+ * sets for this table. The main thread consumes these results in the given table order, so the
+ * result does not depend on the number of workers.
+ * <p>
+ * With table statistics, the workers take the largest tables first, so that a large table late
+ * in table order does not keep a single worker busy after all other tables are done.
+ * <p>
+ * If the DBMS can share snapshots, the main connection exports its snapshot, and all workers
+ * import it. Otherwise, the workers just use the snapshot isolation level of the DBMS profile.
+ */
+class ParallelDataDump {
+
+    /**
+     * Writes the data of a table to a change log.
+     */
+    @FunctionalInterface
+    interface TableWriter {
+
+        /**
+         * Writes the data of the given table.
+         *
+         * @param writer
+         *            streaming change log writer
+         * @param table
+         *            table model
+         * @param dbc
+         *            database connection
+         * @throws SQLException
+         *             on database error
+         */
+        void writeTable(StreamingChangeLogWriter writer, CreateTable table, Connection dbc)
+            throws SQLException;
+    }
+
+    /**
+     * Dumps the data of a table to some result.
+     *
+     * @param <T>
+     *            result type
+     */
+    @FunctionalInterface
+    interface TableDumper<T> {
+
+        /**
+         * Dumps the data of the given table.
+         *
+         * @param table
+         *            table model
+         * @param dbc
+         *            database connection
+         * @return result
+         * @throws SQLException
+         *             on database error
+         * @throws IOException
+         *             on I/O error
+         */
+        T dumpTable(CreateTable table, Connection dbc) throws SQLException, IOException;
+    }
+
+    private static Logger log = LoggerFactory.getLogger(ParallelDataDump.class);
+
+    private ChangeLogWriter changeLogWriter;
+
+    private ConnectionFactory connectionFactory;
+
+    private DbmsProfile dbms;
+
+    private int numThreads;
+
+    private TableStatistics statistics;
+
+    private String snapshotId;
+
+    /**
+     * Creates a parallel dump.
+     *
+     * @param changeLogWriter
+     *            change log writer for opening fragments
+     * @param connectionFactory
+     *            opens worker connections
+     * @param dbms
+     *            DBMS profile
+     * @param numThreads
+     *            number of workers
+     * @param statistics
+     *            table statistics for scheduling the largest tables first, or null for table
+     *            order
+     */
+    ParallelDataDump(ChangeLogWriter changeLogWriter, ConnectionFactory connectionFactory,
+        DbmsProfile dbms, int numThreads, TableStatistics statistics) {
+        this.changeLogWriter = changeLogWriter;
+        this.connectionFactory = connectionFactory;
+        this.dbms = dbms;
+        this.numThreads = numThreads;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Dumps the data of the given tables to the given writer. Each worker writes the change sets
+     * of a table to a temporary fragment, and the main thread appends the fragments to the change
+     * log.
+     *
+     * @param dbc
+     *            main connection, used for exporting the snapshot
+     * @param tables
+     *            tables in change log order
+     * @param writer
+     *            streaming change log writer
+     * @param tableWriter
+     *            writes the data of a table
+     */
+    void dump(Connection dbc, List<CreateTable> tables, AppendableChangeLogWriter writer,
+        TableWriter tableWriter) {
+        dump(dbc, tables, (t, c) -> dumpFragment(tableWriter, t, c),
+            f -> appendFragment(writer, f), this::deleteFragment);
+    }
+
+    /**
+     * Dumps the data of the given tables to intermediate results, which are passed to the given
+     * consumer in table order.
+     *
+     * @param dbc
+     *            main connection, used for exporting the snapshot
+     * @param tables
+     *            tables in result order
+     * @param tableDumper
+     *            dumps a table to a result, called by worker threads
+     * @param consumer
+     *            consumes the results, called by the current thread
+     * @param discarder
+     *            cleans up results not consumed due to a failure
+     * @param <T>
+     *            result type
+     */
+    <T> void dump(Connection dbc, List<CreateTable> tables, TableDumper<T> tableDumper,
+        Consumer<T> consumer, Consumer<T> discarder) {
+        try {
+            if (dbms.getSnapshotCanBeShared()) {
+                int isolation = dbc.getTransactionIsolation();
+                boolean autoCommit = dbc.getAutoCommit();
+                try {
+                    beginTransaction(dbc);
+                    snapshotId = exportSnapshot(dbc);
+                    dumpConcurrently(tables, tableDumper, consumer, discarder);
+                }
+                finally {
+                    endTransaction(dbc, isolation, autoCommit);
+                }
+            }
+            else {
+                dumpConcurrently(tables, tableDumper, consumer, discarder);
+            }
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    private <T> void dumpConcurrently(List<CreateTable> tables, TableDumper<T> tableDumper,
+        Consumer<T> consumer, Consumer<T> discarder) {
+        if (tables.isEmpty()) {
+            return;
+        }
+        Queue<Integer> pending = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<T>> results = new ArrayList<>();
+        for (int i = 0; i < tables.size(); i++) {
+            results.add(new CompletableFuture<>());
+        }
+        if (statistics == null) {
+            IntStream.range(0, tables.size()).forEach(pending::add);
+        }
+        else {
+            pending.addAll(statistics.schedule(tables));
+        }
+
+        int numWorkers = Math.min(numThreads, tables.size());
+        CountDownLatch ready = new CountDownLatch(numWorkers);
+        ExecutorService executor = Executors.newFixedThreadPool(numWorkers);
+        int consumed = 0;
+        boolean success = false;
+        try {
+            for (int i = 0; i < numWorkers; i++) {
+                executor.execute(() -> runWorker(tables, tableDumper, pending, results, ready));
+            }
+            for (CompletableFuture<T> result : results) {
+                T value = awaitResult(result);
+                consumed++;
+                consumer.accept(value);
+            }
+            success = true;
+        }
+        finally {
+            pending.clear();
+            shutdown(executor, success);
+            if (!success) {
+                results.stream().skip(consumed)
+                    .filter(f -> f.isDone() && !f.isCompletedExceptionally())
+                    .forEach(f -> discarder.accept(f.join()));
+            }
+        }
+    }
+
+    private <T> T awaitResult(CompletableFuture<T> result) {
+        try {
+            return result.get();
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new WarpException(exc);
+        }
+        catch (ExecutionException exc) {
+            Throwable cause = exc.getCause();
+            if (cause instanceof WarpException) {
+                throw (WarpException) cause;
+            }
+            throw new WarpException(cause);
+        }
+    }
+
+    private void shutdown(ExecutorService executor, boolean success) {
+        if (success) {
+            executor.shutdown();
+        }
+        else {
+            executor.shutdownNow();
+        }
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes pending tables from the queue until it is empty and dumps each table. On failure, all
+     * remaining tables are marked as failed, so that the main thread does not wait forever.
+     */
+    private <T> void runWorker(List<CreateTable> tables, TableDumper<T> tableDumper,
+        Queue<Integer> pending, List<CompletableFuture<T>> results, CountDownLatch ready) {
+        Integer index = null;
+        boolean joined = false;
+        try (Connection dbc = connectionFactory.getConnection()) {
+            int isolation = dbc.getTransactionIsolation();
+            boolean autoCommit = dbc.getAutoCommit();
+            try {
+                try {
+                    beginTransaction(dbc);
+                    if (snapshotId != null) {
+                        importSnapshot(dbc, snapshotId);
+                    }
+                }
+                finally {
+                    joined = true;
+                    ready.countDown();
+                }
+                ready.await();
+
+                while ((index = pending.poll()) != null) {
+                    results.get(index).complete(tableDumper.dumpTable(tables.get(index), dbc));
+                }
+            }
+            finally {
+                endTransaction(dbc, isolation, autoCommit);
+            }
+        }
+        catch (SQLException | IOException | RuntimeException exc) {
+            log.error("worker failed", exc);
+            if (index != null) {
+                results.get(index).completeExceptionally(exc);
+            }
+            failPending(pending, results, exc);
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            failPending(pending, results, exc);
+        }
+        finally {
+            if (!joined) {
+                ready.countDown();
+            }
+        }
+    }
+
+    private <T> void failPending(Queue<Integer> pending, List<CompletableFuture<T>> results,
+        Exception exc) {
+        Integer index;
+        while ((index = pending.poll()) != null) {
+            results.get(index).completeExceptionally(exc);
+        }
+    }
+
+    private File dumpFragment(TableWriter tableWriter, CreateTable table, Connection dbc)
+        throws IOException, SQLException {
+        File fragment = File.createTempFile("warp-", ".xml");
+        boolean success = false;
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(fragment));
+            StreamingChangeLogWriter writer = changeLogWriter.openChangeSetFragment(os)) {
+            tableWriter.writeTable(writer, table, dbc);
+            success = true;
+        }
+        finally {
+            if (!success) {
+                deleteFragment(fragment);
+            }
+        }
+        return fragment;
+    }
+
+    private void appendFragment(AppendableChangeLogWriter writer, File fragment) {
+        try (InputStream is = new FileInputStream(fragment)) {
+            writer.appendChangeSets(is);
+        }
+        catch (IOException exc) {
+            throw new WarpException(exc);
+        }
+        finally {
+            deleteFragment(fragment);
+        }
+    }
+
+    private void deleteFragment(File fragment) {
+        if (fragment.exists() && !fragment.delete()) {
+            log.warn("cannot delete {}", fragment);
+        }
+    }
+
+    private void beginTransaction(Connection dbc) throws SQLException {
+        // the isolation level cannot be changed within a transaction
+        if (!dbc.getAutoCommit()) {
+            dbc.commit();
+        }
+        dbc.setTransactionIsolation(dbms.getSnapshotIsolationLevel());
+        dbc.setAutoCommit(false);
+    }
+
+    private void endTransaction(Connection dbc, int isolation, boolean autoCommit)
+        throws SQLException {
+        dbc.commit();
+        dbc.setAutoCommit(autoCommit);
+        dbc.setTransactionIsolation(isolation);
+    }
+
+    private String exportSnapshot(Connection dbc) throws SQLException {
+        String sql = getTemplateEngine().renderTemplate("exportSnapshot", new Object());
+        try (Statement st = dbc.createStatement();
+            ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            String id = rs.getString(1);
+            log.debug("exported snapshot {}", id);
+            return id;
+        }
+    }
+
+    private void importSnapshot(Connection dbc, String id) throws SQLException {
+        String sql = getTemplateEngine().renderTemplate("importSnapshot", id);
+        try (Statement st = dbc.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    private TemplateEngine getTemplateEngine() {
+        return TemplateEngineSelector.getTemplateEngine(dbms.getSubprotocol());
+    }
+}
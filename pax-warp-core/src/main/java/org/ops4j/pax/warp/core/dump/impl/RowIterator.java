@@ -0,0 +1,209 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+import org.ops4j.pax.warp.core.dump.TableRow;
+import org.ops4j.pax.warp.core.jdbc.ValueReader;
+import org.ops4j.pax.warp.core.jdbc.ValueReaders;
+import org.ops4j.pax.warp.exc.WarpException;
+import org.ops4j.pax.warp.jaxb.gen.Column;
+import org.ops4j.pax.warp.jaxb.gen.CreateTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Iterates over the rows of a list of tables, reading one table at a time by a query of a
+ * {@link TableReader}. The query of a table is executed when the first row is requested, and the
+ * result set is closed when it is exhausted, so at most one result set is open at any time.
+ * <p>
+ * If the driver needs a transaction for streaming result sets and the connection is in
+ * auto-commit mode, auto-commit is disabled by the first query and restored by
+ * {@link #close()}.
+ * <p>
+ * This iterator is not thread-safe.
+ */
+class RowIterator implements Iterator<TableRow>, AutoCloseable {
+
+    private static Logger log = LoggerFactory.getLogger(RowIterator.class);
+
+    private Iterator<CreateTable> tables;
+
+    private TableReader reader;
+
+    private Connection dbc;
+
+    private DbmsProfile dbms;
+
+    private boolean ownTransaction;
+
+    private boolean closed;
+
+    private CreateTable table;
+
+    private List<String> columnNames;
+
+    private PreparedStatement st;
+
+    private ResultSet rs;
+
+    private ValueReader[] readers;
+
+    private TableRow next;
+
+    /**
+     * Creates an iterator over the rows of the given tables.
+     *
+     * @param tables
+     *            table models
+     * @param reader
+     *            table reader for building queries
+     * @param dbc
+     *            database connection
+     * @param dbms
+     *            DBMS profile
+     */
+    RowIterator(List<CreateTable> tables, TableReader reader, Connection dbc, DbmsProfile dbms) {
+        this.tables = tables.iterator();
+        this.reader = reader;
+        this.dbc = dbc;
+        this.dbms = dbms;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !closed) {
+            try {
+                next = fetch();
+            }
+            catch (SQLException exc) {
+                WarpException warpException = new WarpException(exc);
+                try {
+                    close();
+                }
+                catch (WarpException closeException) {
+                    warpException.addSuppressed(closeException);
+                }
+                throw warpException;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public TableRow next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        TableRow row = next;
+        next = null;
+        return row;
+    }
+
+    /**
+     * Reads the next row, opening the query of the next table when the current table is
+     * exhausted.
+     *
+     * @return row, or null if all tables are exhausted
+     */
+    private TableRow fetch() throws SQLException {
+        while (true) {
+            if (rs == null) {
+                if (!tables.hasNext()) {
+                    close();
+                    return null;
+                }
+                openTable(tables.next());
+            }
+            if (rs.next()) {
+                Object[] values = new Object[readers.length];
+                for (int i = 0; i < readers.length; i++) {
+                    values[i] = readers[i].read(rs);
+                }
+                return new TableRow(table.getTableName(), columnNames, values);
+            }
+            closeTable();
+        }
+    }
+
+    private void openTable(CreateTable createTable) throws SQLException {
+        if (!ownTransaction && dbms.getCursorRequiresTransaction() && dbc.getAutoCommit()) {
+            dbc.setAutoCommit(false);
+            ownTransaction = true;
+        }
+        log.debug("streaming rows of {}", createTable.getTableName());
+        table = createTable;
+        columnNames = Collections.unmodifiableList(createTable.getColumn().stream()
+            .map(Column::getName).collect(Collectors.toList()));
+        st = reader.prepareQuery(createTable, dbc);
+        rs = st.executeQuery();
+        readers = ValueReaders.createReaders(rs.getMetaData(), dbms);
+    }
+
+    private void closeTable() throws SQLException {
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+        }
+        finally {
+            rs = null;
+            if (st != null) {
+                st.close();
+                st = null;
+            }
+        }
+    }
+
+    /**
+     * Closes the current query and ends the transaction started by this iterator, if any.
+     * Further calls have no effect.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        next = null;
+        try {
+            try {
+                closeTable();
+            }
+            finally {
+                if (ownTransaction) {
+                    dbc.commit();
+                    dbc.setAutoCommit(true);
+                }
+            }
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+}
@@ -0,0 +1,458 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+import org.ops4j.pax.warp.core.dump.DumpOptions;
+import org.ops4j.pax.warp.core.jdbc.DatabaseModel;
+import org.ops4j.pax.warp.exc.WarpException;
+import org.ops4j.pax.warp.jaxb.gen.AddForeignKey;
+import org.ops4j.pax.warp.jaxb.gen.AddPrimaryKey;
+import org.ops4j.pax.warp.jaxb.gen.ColumnPair;
+import org.ops4j.pax.warp.jaxb.gen.CreateTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selects a referentially closed subset of the rows of a database, starting from the rows of
+ * some root tables matching given conditions.
+ * <p>
+ * The subset contains all root rows and, transitively, all child rows referencing a row of the
+ * subset which has been selected as root row or as child row. For each row of the subset, the
+ * parent rows referenced by its foreign keys are added as well, but the children of rows only
+ * selected as parents are not, since this would pull in most of the database.
+ * <p>
+ * Rows are identified by their primary keys, which are kept in memory. The referencing or
+ * referenced rows of multiple rows are selected by a single query with a batch of key values.
+ * Tables without a primary key are not part of the subset.
+ */
+class SubsetDump {
+
+    /**
+     * Maximum number of key values per query. Oracle does not permit more than 1000 expressions
+     * in an in list.
+     */
+    static final int BATCH_SIZE = 500;
+
+    /**
+     * Row selected for the subset, with the values of all tracked columns of its table.
+     */
+    private static class Row {
+
+        private Object[] values;
+
+        private boolean followChildren;
+    }
+
+    /**
+     * Subset state of a table.
+     */
+    private static class TableInfo {
+
+        private CreateTable table;
+
+        private List<String> keyColumns;
+
+        private List<String> trackedColumns = new ArrayList<>();
+
+        private List<AddForeignKey> outgoing = new ArrayList<>();
+
+        private List<AddForeignKey> incoming = new ArrayList<>();
+
+        private Map<List<Object>, Row> rows = new LinkedHashMap<>();
+
+        private int indexOf(String columnName) {
+            for (int i = 0; i < trackedColumns.size(); i++) {
+                if (trackedColumns.get(i).equalsIgnoreCase(columnName)) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException(columnName);
+        }
+
+        private void track(String columnName) {
+            if (trackedColumns.stream().noneMatch(c -> c.equalsIgnoreCase(columnName))) {
+                trackedColumns.add(columnName);
+            }
+        }
+    }
+
+    /**
+     * Newly selected rows of a table, whose parents or children are still to be selected.
+     */
+    private static class Task {
+
+        private TableInfo info;
+
+        private List<Row> rows;
+
+        private boolean children;
+
+        Task(TableInfo info, List<Row> rows, boolean children) {
+            this.info = info;
+            this.rows = rows;
+            this.children = children;
+        }
+    }
+
+    private static Logger log = LoggerFactory.getLogger(SubsetDump.class);
+
+    private DbmsProfile dbms;
+
+    private DumpOptions options;
+
+    private Map<String, TableInfo> tableInfos = new LinkedHashMap<>();
+
+    private Deque<Task> tasks = new ArrayDeque<>();
+
+    /**
+     * Creates a subset dump of the given tables.
+     *
+     * @param tables
+     *            tables to be dumped, in model order
+     * @param database
+     *            database model with primary and foreign keys
+     * @param dbms
+     *            DBMS profile
+     * @param options
+     *            dump options with subset roots
+     */
+    SubsetDump(List<CreateTable> tables, DatabaseModel database, DbmsProfile dbms,
+        DumpOptions options) {
+        this.dbms = dbms;
+        this.options = options;
+        Map<String, List<String>> primaryKeys = new HashMap<>();
+        for (AddPrimaryKey primaryKey : database.getPrimaryKeys()) {
+            primaryKeys.put(primaryKey.getTableName().toUpperCase(), primaryKey.getColumn());
+        }
+        for (CreateTable table : tables) {
+            String key = table.getTableName().toUpperCase();
+            List<String> keyColumns = primaryKeys.get(key);
+            if (keyColumns == null || keyColumns.isEmpty()) {
+                log.warn("table {} has no primary key and is not part of the subset",
+                    table.getTableName());
+                continue;
+            }
+            TableInfo info = new TableInfo();
+            info.table = table;
+            info.keyColumns = keyColumns;
+            keyColumns.forEach(info::track);
+            tableInfos.put(key, info);
+        }
+        for (AddForeignKey foreignKey : database.getForeignKeys()) {
+            TableInfo base = findTableInfo(foreignKey.getBaseTable().getTableName());
+            TableInfo referenced = findTableInfo(foreignKey.getReferencedTable().getTableName());
+            if (base == null || referenced == null) {
+                continue;
+            }
+            base.outgoing.add(foreignKey);
+            referenced.incoming.add(foreignKey);
+            for (ColumnPair pair : foreignKey.getColumnPair()) {
+                base.track(pair.getBase().getColumnName());
+                referenced.track(pair.getReferenced().getColumnName());
+            }
+        }
+    }
+
+    private TableInfo findTableInfo(String tableName) {
+        return tableInfos.get(tableName.toUpperCase());
+    }
+
+    /**
+     * Selects the rows of the subset.
+     *
+     * @param dbc
+     *            database connection
+     * @throws SQLException
+     *             on database error
+     */
+    void collect(Connection dbc) throws SQLException {
+        for (Map.Entry<String, String> root : options.getSubsetRoots().entrySet()) {
+            TableInfo info = findTableInfo(root.getKey());
+            if (info == null) {
+                throw new WarpException(String.format(
+                    "subset root table %s not found or without primary key", root.getKey()));
+            }
+            String condition = root.getValue();
+            List<String> conditions = (condition == null || condition.trim().isEmpty())
+                ? Collections.emptyList() : Collections.singletonList("(" + condition + ")");
+            addRows(info, select(dbc, info, conditions, Collections.emptyList()), true);
+        }
+
+        Task task;
+        while ((task = tasks.poll()) != null) {
+            if (task.children) {
+                for (AddForeignKey foreignKey : task.info.incoming) {
+                    selectChildren(dbc, task.info, task.rows, foreignKey);
+                }
+            }
+            else {
+                for (AddForeignKey foreignKey : task.info.outgoing) {
+                    selectParents(dbc, task.info, task.rows, foreignKey);
+                }
+            }
+        }
+        for (TableInfo info : tableInfos.values()) {
+            if (!info.rows.isEmpty()) {
+                log.debug("subset of {}: {} rows", info.table.getTableName(), info.rows.size());
+            }
+        }
+    }
+
+    private void selectChildren(Connection dbc, TableInfo parent, List<Row> rows,
+        AddForeignKey foreignKey) throws SQLException {
+        TableInfo child = findTableInfo(foreignKey.getBaseTable().getTableName());
+        List<String> baseColumns = new ArrayList<>();
+        int[] indexes = new int[foreignKey.getColumnPair().size()];
+        int i = 0;
+        for (ColumnPair pair : foreignKey.getColumnPair()) {
+            baseColumns.add(pair.getBase().getColumnName());
+            indexes[i++] = parent.indexOf(pair.getReferenced().getColumnName());
+        }
+        for (List<List<Object>> batch : batches(rows, indexes)) {
+            addRows(child, selectTuples(dbc, child, baseColumns, batch), true);
+        }
+    }
+
+    private void selectParents(Connection dbc, TableInfo child, List<Row> rows,
+        AddForeignKey foreignKey) throws SQLException {
+        TableInfo parent = findTableInfo(foreignKey.getReferencedTable().getTableName());
+        List<String> referencedColumns = new ArrayList<>();
+        int[] indexes = new int[foreignKey.getColumnPair().size()];
+        int i = 0;
+        for (ColumnPair pair : foreignKey.getColumnPair()) {
+            referencedColumns.add(pair.getReferenced().getColumnName());
+            indexes[i++] = child.indexOf(pair.getBase().getColumnName());
+        }
+        for (List<List<Object>> batch : batches(rows, indexes)) {
+            addRows(parent, selectTuples(dbc, parent, referencedColumns, batch), false);
+        }
+    }
+
+    /**
+     * Collects the distinct non-null tuples of the given columns of the given rows in batches of
+     * at most {@link #BATCH_SIZE} tuples.
+     */
+    private List<List<List<Object>>> batches(List<Row> rows, int[] indexes) {
+        Set<List<Object>> tuples = new LinkedHashSet<>();
+        for (Row row : rows) {
+            Object[] tuple = new Object[indexes.length];
+            boolean hasNull = false;
+            for (int i = 0; i < indexes.length; i++) {
+                tuple[i] = row.values[indexes[i]];
+                hasNull |= (tuple[i] == null);
+            }
+            if (!hasNull) {
+                tuples.add(Arrays.asList(tuple));
+            }
+        }
+        List<List<List<Object>>> batches = new ArrayList<>();
+        List<List<Object>> batch = new ArrayList<>();
+        for (List<Object> tuple : tuples) {
+            batch.add(tuple);
+            if (batch.size() == BATCH_SIZE) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Selects the tracked columns of the rows of the given table where the given columns match
+     * any of the given tuples.
+     */
+    private List<Object[]> selectTuples(Connection dbc, TableInfo info, List<String> columns,
+        List<List<Object>> tuples) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        tuples.forEach(params::addAll);
+        return select(dbc, info,
+            Collections.singletonList(buildTupleCondition(dbms, columns, tuples.size())), params);
+    }
+
+    /**
+     * Selects the tracked columns of the rows of the given table where all given conditions hold.
+     */
+    private List<Object[]> select(Connection dbc, TableInfo info, List<String> conditions,
+        List<Object> params) throws SQLException {
+        String trackedColumns = info.trackedColumns.stream().map(dbms::quoteIdentifier)
+            .collect(Collectors.joining(", "));
+        String sql = String.format("select %s from %s", trackedColumns,
+            dbms.quoteIdentifier(info.table.getTableName()));
+        if (!conditions.isEmpty()) {
+            sql += conditions.stream().collect(Collectors.joining(" and ", " where ", ""));
+        }
+        log.debug(sql);
+
+        List<Object[]> result = new ArrayList<>();
+        try (PreparedStatement st = dbc.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+            ResultSet.CONCUR_READ_ONLY)) {
+            st.setFetchSize(options.getFetchSize(dbms));
+            int index = 1;
+            for (Object param : params) {
+                st.setObject(index++, param);
+            }
+            try (ResultSet rs = st.executeQuery()) {
+                int numColumns = info.trackedColumns.size();
+                while (rs.next()) {
+                    Object[] values = new Object[numColumns];
+                    for (int i = 0; i < numColumns; i++) {
+                        values[i] = rs.getObject(i + 1);
+                    }
+                    result.add(values);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Builds a condition matching any of the given number of tuples, as an in list for a single
+     * column, and as a disjunction of conjunctions for multiple columns, given that not all DBMS
+     * support row value expressions.
+     *
+     * @param dbms
+     *            DBMS profile
+     * @param columns
+     *            column names
+     * @param numTuples
+     *            number of tuples
+     * @return condition with a parameter for each value of each tuple
+     */
+    static String buildTupleCondition(DbmsProfile dbms, List<String> columns, int numTuples) {
+        if (columns.size() == 1) {
+            return String.format("%s in (%s)", dbms.quoteIdentifier(columns.get(0)),
+                String.join(", ", Collections.nCopies(numTuples, "?")));
+        }
+        String tuple = columns.stream().map(c -> dbms.quoteIdentifier(c) + " = ?")
+            .collect(Collectors.joining(" and ", "(", ")"));
+        return "(" + String.join(" or ", Collections.nCopies(numTuples, tuple)) + ")";
+    }
+
+    /**
+     * Adds the given rows to the subset of the given table and schedules the selection of their
+     * parents and, if required, their children.
+     */
+    private void addRows(TableInfo info, List<Object[]> values, boolean followChildren) {
+        int numKeys = info.keyColumns.size();
+        List<Row> newRows = new ArrayList<>();
+        List<Row> childRows = new ArrayList<>();
+        for (Object[] rowValues : values) {
+            List<Object> key = Arrays.asList(Arrays.copyOf(rowValues, numKeys));
+            Row row = info.rows.get(key);
+            if (row == null) {
+                row = new Row();
+                row.values = rowValues;
+                info.rows.put(key, row);
+                newRows.add(row);
+                if (followChildren) {
+                    row.followChildren = true;
+                    childRows.add(row);
+                }
+            }
+            else if (followChildren && !row.followChildren) {
+                row.followChildren = true;
+                childRows.add(row);
+            }
+        }
+        if (!newRows.isEmpty() && !info.outgoing.isEmpty()) {
+            tasks.add(new Task(info, newRows, false));
+        }
+        if (!childRows.isEmpty() && !info.incoming.isEmpty()) {
+            tasks.add(new Task(info, childRows, true));
+        }
+    }
+
+    /**
+     * Gets the tables with rows in the subset, with referenced tables preceding referencing
+     * tables where possible. Tables in a reference cycle keep their model order.
+     *
+     * @return tables in insertion order
+     */
+    List<CreateTable> getTables() {
+        List<TableInfo> remaining = tableInfos.values().stream().filter(t -> !t.rows.isEmpty())
+            .collect(Collectors.toList());
+        List<CreateTable> tables = new ArrayList<>();
+        Set<TableInfo> done = new LinkedHashSet<>();
+        boolean progress = true;
+        while (!remaining.isEmpty() && progress) {
+            progress = false;
+            for (TableInfo info : new ArrayList<>(remaining)) {
+                boolean ready = info.outgoing.stream()
+                    .map(fk -> findTableInfo(fk.getReferencedTable().getTableName()))
+                    .allMatch(p -> p == info || p.rows.isEmpty() || done.contains(p));
+                if (ready) {
+                    tables.add(info.table);
+                    done.add(info);
+                    remaining.remove(info);
+                    progress = true;
+                }
+            }
+        }
+        if (!remaining.isEmpty()) {
+            log.warn("tables with cyclic references: {}", remaining.stream()
+                .map(t -> t.table.getTableName()).collect(Collectors.joining(", ")));
+            remaining.forEach(t -> tables.add(t.table));
+        }
+        return tables;
+    }
+
+    /**
+     * Gets the primary key columns of the given table.
+     *
+     * @param table
+     *            table model
+     * @return key columns
+     */
+    List<String> getKeyColumns(CreateTable table) {
+        return findTableInfo(table.getTableName()).keyColumns;
+    }
+
+    /**
+     * Gets the primary keys of the rows of the given table in the subset.
+     *
+     * @param table
+     *            table model
+     * @return primary keys, each with the values of the key columns
+     */
+    Collection<List<Object>> getKeys(CreateTable table) {
+        TableInfo info = findTableInfo(table.getTableName());
+        return (info == null) ? Collections.emptyList() : info.rows.keySet();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.ops4j.pax.warp.core.dump.DumpOptions;
+
+/**
+ * Selects tables by include and exclude patterns. A pattern is a table name, where {@code *}
+ * matches any sequence of characters and {@code ?} matches any single character. Patterns are
+ * matched ignoring case.
+ * <p>
+ * A table is accepted if it matches any include pattern and no exclude pattern. If there are no
+ * include patterns, all tables not matching any exclude pattern are accepted.
+ */
+class TableFilter implements Predicate<String> {
+
+    private List<Pattern> includes;
+
+    private List<Pattern> excludes;
+
+    /**
+     * Creates a table filter with the given patterns.
+     *
+     * @param includes
+     *            include patterns, possibly empty
+     * @param excludes
+     *            exclude patterns, possibly empty
+     */
+    TableFilter(List<String> includes, List<String> excludes) {
+        this.includes = compile(includes);
+        this.excludes = compile(excludes);
+    }
+
+    /**
+     * Creates a table filter with the patterns of the given dump options.
+     *
+     * @param options
+     *            dump options
+     */
+    TableFilter(DumpOptions options) {
+        this(options.getIncludeTables(), options.getExcludeTables());
+    }
+
+    /**
+     * Does this filter accept all tables?
+     *
+     * @return true if there are no patterns
+     */
+    boolean acceptsAll() {
+        return includes.isEmpty() && excludes.isEmpty();
+    }
+
+    @Override
+    public boolean test(String tableName) {
+        if (!includes.isEmpty() && includes.stream().noneMatch(p -> matches(p, tableName))) {
+            return false;
+        }
+        return excludes.stream().noneMatch(p -> matches(p, tableName));
+    }
+
+    private static boolean matches(Pattern pattern, String tableName) {
+        return pattern.matcher(tableName).matches();
+    }
+
+    private static List<Pattern> compile(List<String> patterns) {
+        return patterns.stream().map(TableFilter::compile).collect(Collectors.toList());
+    }
+
+    private static Pattern compile(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : pattern.trim().toCharArray()) {
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append((c == '*') ? ".*" : ".");
+            }
+            else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+    }
+}
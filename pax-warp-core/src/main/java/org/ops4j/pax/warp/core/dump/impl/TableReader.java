@@ -0,0 +1,572 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.ops4j.pax.warp.core.changelog.StreamingChangeLogWriter;
+import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+import org.ops4j.pax.warp.core.dump.DumpOptions;
+import org.ops4j.pax.warp.core.jdbc.DatabaseModel;
+import org.ops4j.pax.warp.exc.WarpException;
+import org.ops4j.pax.warp.jaxb.gen.AddPrimaryKey;
+import org.ops4j.pax.warp.jaxb.gen.Column;
+import org.ops4j.pax.warp.jaxb.gen.CreateTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the rows of a table and writes them to a change log.
+ * <p>
+ * The query reading a table may be restricted by a row condition, a range of watermarks and a
+ * sample, as defined by the dump options.
+ * <p>
+ * By default, a table is read by a single query. With a page size, tables with a primary key are
+ * read in pages of the given size in key order, using the last key of the previous page as
+ * exclusive lower bound. If the transaction of the connection was started for reading tables, it
+ * is committed after each page, so no snapshot is kept open for the entire table. This does not
+ * apply to a range of watermarks, which must be read in the transaction selecting the range, nor
+ * to a shared snapshot of a parallel dump or a transaction of the caller. Tables without a
+ * primary key are read by a single query.
+ * <p>
+ * For a chunk store, tables with a primary key are always read in key order, and the change set
+ * of each table is named after the table, so unchanged tables are written in the same way by
+ * successive dumps.
+ * <p>
+ * For a resumable dump, the same applies, and the primary key of each row is passed to a
+ * {@link KeyTracker}. A table is continued after the last key of an interrupted dump.
+ */
+class TableReader {
+
+    /**
+     * Tracks the primary keys of the rows written, for resuming a dump.
+     */
+    interface KeyTracker {
+
+        /**
+         * Gets the primary key of the last row written by an interrupted dump.
+         *
+         * @return key values in string representation, or null to start with the first row
+         */
+        List<String> getResumeKey();
+
+        /**
+         * Gets the number of rows written by an interrupted dump.
+         *
+         * @return number of rows, or 0 to start with the first row
+         */
+        long getResumeRows();
+
+        /**
+         * Called after a row has been written.
+         *
+         * @param key
+         *            primary key values of the row, which may be reused by the caller
+         */
+        void keyWritten(Object[] key);
+    }
+
+    /**
+     * Query for reading a table, without columns and ordering.
+     */
+    private static class Query {
+
+        private String from;
+
+        private List<String> conditions = new ArrayList<>();
+
+        private List<Object> params = new ArrayList<>();
+    }
+
+    private static Logger log = LoggerFactory.getLogger(TableReader.class);
+
+    private DbmsProfile dbms;
+
+    private DumpOptions options;
+
+    private Map<String, List<String>> primaryKeys = new HashMap<>();
+
+    private SubsetDump subset;
+
+    private boolean ownTransaction;
+
+    /**
+     * Creates a table reader.
+     *
+     * @param database
+     *            database model with primary keys
+     * @param dbms
+     *            DBMS profile
+     * @param options
+     *            dump options
+     */
+    TableReader(DatabaseModel database, DbmsProfile dbms, DumpOptions options) {
+        if (!(options.getSamplePercent() > 0 && options.getSamplePercent() <= 100)) {
+            throw new WarpException("sample percentage must be greater than 0 and at most 100");
+        }
+        this.dbms = dbms;
+        this.options = options;
+        for (AddPrimaryKey primaryKey : database.getPrimaryKeys()) {
+            primaryKeys.put(primaryKey.getTableName().toUpperCase(), primaryKey.getColumn());
+        }
+    }
+
+    /**
+     * Restricts all tables to the rows of the given subset.
+     *
+     * @param subset
+     *            subset dump with selected rows
+     */
+    void setSubset(SubsetDump subset) {
+        this.subset = subset;
+    }
+
+    /**
+     * Indicates that the transaction of the connection was started for reading tables, so it may
+     * be committed between pages. By default, the transaction is not committed, as it may belong
+     * to the caller or to a snapshot shared by several connections.
+     *
+     * @param ownTransaction
+     *            true if the transaction was started for reading tables
+     */
+    void setOwnTransaction(boolean ownTransaction) {
+        this.ownTransaction = ownTransaction;
+    }
+
+    /**
+     * Writes the rows of the given table with watermarks in the given range, or all rows if the
+     * range is null.
+     *
+     * @param writer
+     *            streaming change log writer
+     * @param createTable
+     *            table model
+     * @param dbc
+     *            database connection
+     * @param range
+     *            range of watermarks, or null
+     * @throws SQLException
+     *             on database error
+     */
+    void readTable(StreamingChangeLogWriter writer, CreateTable createTable, Connection dbc,
+        IncrementalDump.Range range) throws SQLException {
+        readTable(writer, createTable, dbc, range, null);
+    }
+
+    /**
+     * Writes the rows of the given table with watermarks in the given range, or all rows if the
+     * range is null, passing the primary keys to the given tracker.
+     *
+     * @param writer
+     *            streaming change log writer
+     * @param createTable
+     *            table model
+     * @param dbc
+     *            database connection
+     * @param range
+     *            range of watermarks, or null
+     * @param tracker
+     *            key tracker for a resumable dump, or null
+     * @throws SQLException
+     *             on database error
+     */
+    void readTable(StreamingChangeLogWriter writer, CreateTable createTable, Connection dbc,
+        IncrementalDump.Range range, KeyTracker tracker) throws SQLException {
+        if (range != null && range.getUpper() == null) {
+            log.debug("no rows with watermark in {}", createTable.getTableName());
+            return;
+        }
+        log.debug("selecting data from {}", createTable.getTableName());
+        if (subset != null) {
+            readSubset(writer, createTable, dbc);
+            return;
+        }
+        Query query = buildQuery(createTable, range);
+        TableRowWriter rowWriter = createRowWriter(writer, createTable);
+        List<String> keyColumns = getKeyColumns(createTable);
+        if (keyColumns.isEmpty()) {
+            readAll(rowWriter, createTable, dbc, query, tracker);
+        }
+        else {
+            boolean commitPages = range == null && ownTransaction;
+            readPages(rowWriter, createTable, dbc, query, keyColumns, tracker, commitPages);
+        }
+        rowWriter.finish();
+    }
+
+    /**
+     * Prepares a single query for all rows of the given table, restricted by the row condition
+     * and the sample of the options. Tables with a primary key are read in key order.
+     *
+     * @param createTable
+     *            table model
+     * @param dbc
+     *            database connection
+     * @return prepared statement with parameters, to be closed by the caller
+     * @throws SQLException
+     *             on database error
+     */
+    PreparedStatement prepareQuery(CreateTable createTable, Connection dbc) throws SQLException {
+        Query query = buildQuery(createTable, null);
+        String sql = buildSelect(createTable, query.from, query.conditions);
+        List<String> keyColumns = primaryKeys.get(createTable.getTableName().toUpperCase());
+        if (keyColumns != null && !keyColumns.isEmpty()) {
+            sql += keyColumns.stream().map(dbms::quoteIdentifier)
+                .collect(Collectors.joining(", ", " order by ", ""));
+        }
+        log.debug(sql);
+        PreparedStatement st = prepareStatement(dbc, sql);
+        try {
+            setParameters(st, query.params, 1);
+        }
+        catch (SQLException exc) {
+            st.close();
+            throw exc;
+        }
+        return st;
+    }
+
+    /**
+     * Builds the query for the rows of the given table with watermarks in the given range, or
+     * all rows if the range is null.
+     */
+    private Query buildQuery(CreateTable createTable, IncrementalDump.Range range) {
+        Query query = new Query();
+        query.from = dbms.quoteIdentifier(createTable.getTableName());
+        String condition = findCondition(createTable);
+        if (condition != null) {
+            query.conditions.add("(" + condition + ")");
+        }
+        if (range != null) {
+            String watermark = dbms.quoteIdentifier(range.getColumn());
+            query.conditions.add(String.format("%s <= ?", watermark));
+            query.params.add(range.getUpper());
+            if (range.getLower() != null) {
+                query.conditions.add(String.format("%s > ?", watermark));
+                query.params.add(range.getLower());
+            }
+        }
+        if (options.getSamplePercent() < 100) {
+            addSample(query, createTable);
+        }
+        return query;
+    }
+
+    /**
+     * Reads the rows of the given table in the subset, selecting a batch of primary keys per
+     * query.
+     */
+    private void readSubset(StreamingChangeLogWriter writer, CreateTable createTable,
+        Connection dbc) throws SQLException {
+        TableRowWriter rowWriter = createRowWriter(writer, createTable);
+        List<String> keyColumns = subset.getKeyColumns(createTable);
+        List<Object> params = new ArrayList<>();
+        int numKeys = 0;
+        for (List<Object> key : subset.getKeys(createTable)) {
+            params.addAll(key);
+            numKeys++;
+            if (numKeys == SubsetDump.BATCH_SIZE) {
+                readKeys(rowWriter, createTable, dbc, keyColumns, numKeys, params);
+                params.clear();
+                numKeys = 0;
+            }
+        }
+        if (numKeys > 0) {
+            readKeys(rowWriter, createTable, dbc, keyColumns, numKeys, params);
+        }
+        rowWriter.finish();
+    }
+
+    private void readKeys(TableRowWriter rowWriter, CreateTable createTable, Connection dbc,
+        List<String> keyColumns, int numKeys, List<Object> params) throws SQLException {
+        String condition = SubsetDump.buildTupleCondition(dbms, keyColumns, numKeys);
+        String sql = buildSelect(createTable, dbms.quoteIdentifier(createTable.getTableName()),
+            Collections.singletonList(condition));
+        try (PreparedStatement st = prepareStatement(dbc, sql)) {
+            setParameters(st, params, 1);
+            try (ResultSet rs = st.executeQuery()) {
+                rowWriter.writeRows(rs, null);
+            }
+        }
+    }
+
+    private TableRowWriter createRowWriter(StreamingChangeLogWriter writer,
+        CreateTable createTable) {
+        String changeSetId = isReproducible() ? createTable.getTableName() : null;
+        return new TableRowWriter(writer, createTable, options.isCompactData(), changeSetId);
+    }
+
+    private boolean isReproducible() {
+        return options.isChunkStore() || options.isResume();
+    }
+
+    private String findCondition(CreateTable createTable) {
+        return options.getTableConditions().entrySet().stream()
+            .filter(e -> e.getKey().equalsIgnoreCase(createTable.getTableName()))
+            .map(Map.Entry::getValue).findFirst().orElse(null);
+    }
+
+    /**
+     * Adds a table sample to the given query, if supported by the DBMS. Otherwise, tables with a
+     * single integer primary key are sampled by selecting each n-th key. Other tables are read
+     * completely.
+     */
+    private void addSample(Query query, CreateTable createTable) {
+        String sample = dbms.getTableSample(options.getSamplePercent());
+        if (sample != null) {
+            query.from += " " + sample;
+            return;
+        }
+        List<String> keyColumns = primaryKeys.get(createTable.getTableName().toUpperCase());
+        if (keyColumns != null && keyColumns.size() == 1) {
+            Optional<Column> column = IncrementalDump.findColumn(createTable, keyColumns.get(0));
+            if (column.isPresent() && IncrementalDump.isInteger(column.get())) {
+                long step = Math.max(1, Math.round(100 / options.getSamplePercent()));
+                query.conditions.add(String.format("mod(%s, %d) = 0",
+                    dbms.quoteIdentifier(column.get().getName()), step));
+                return;
+            }
+        }
+        log.warn("cannot sample table {} without integer primary key, reading all rows",
+            createTable.getTableName());
+    }
+
+    /**
+     * Gets the primary key columns of the given table for a paged read.
+     *
+     * @return key columns, or an empty list for reading the table by a single query
+     */
+    private List<String> getKeyColumns(CreateTable createTable) {
+        if (options.getPageSize() <= 0) {
+            return Collections.emptyList();
+        }
+        List<String> keyColumns = primaryKeys.get(createTable.getTableName().toUpperCase());
+        if (keyColumns == null || keyColumns.isEmpty()) {
+            log.debug("no primary key, reading {} by a single query", createTable.getTableName());
+            return Collections.emptyList();
+        }
+        return keyColumns;
+    }
+
+    /**
+     * Reads the given table by a single query. For a reproducible dump, tables with a primary key
+     * are read in key order, and for a resumed dump, the query starts after the resume key.
+     */
+    private void readAll(TableRowWriter rowWriter, CreateTable createTable, Connection dbc,
+        Query query, KeyTracker tracker) throws SQLException {
+        List<String> keyColumns = primaryKeys.get(createTable.getTableName().toUpperCase());
+        if (!isReproducible() || keyColumns == null || keyColumns.isEmpty()) {
+            String sql = buildSelect(createTable, query.from, query.conditions);
+            log.debug(sql);
+            try (PreparedStatement st = prepareStatement(dbc, sql)) {
+                setParameters(st, query.params, 1);
+                try (ResultSet rs = st.executeQuery()) {
+                    rowWriter.writeRows(rs, null);
+                }
+            }
+            return;
+        }
+
+        int[] keyIndexes = getKeyIndexes(createTable, keyColumns);
+        Object[] resumeKey = getResumeKey(createTable, keyColumns, tracker, rowWriter);
+        List<String> conditions = new ArrayList<>(query.conditions);
+        if (resumeKey != null) {
+            conditions.add(buildKeyCondition(keyColumns));
+        }
+        String sql = buildSelect(createTable, query.from, conditions)
+            + keyColumns.stream().map(dbms::quoteIdentifier)
+                .collect(Collectors.joining(", ", " order by ", ""));
+        log.debug(sql);
+        Object[] key = new Object[keyIndexes.length];
+        try (PreparedStatement st = prepareStatement(dbc, sql)) {
+            int index = setParameters(st, query.params, 1);
+            if (resumeKey != null) {
+                setKeyParameters(st, resumeKey, index);
+            }
+            try (ResultSet rs = st.executeQuery()) {
+                rowWriter.writeRows(rs, (tracker == null) ? null
+                    : r -> tracker.keyWritten(readKey(r, keyIndexes, key)));
+            }
+        }
+    }
+
+    /**
+     * Gets the typed key after which an interrupted table is to be continued, and makes the
+     * given row writer continue after the rows already written.
+     *
+     * @return key values, or null to start with the first row
+     */
+    private Object[] getResumeKey(CreateTable createTable, List<String> keyColumns,
+        KeyTracker tracker, TableRowWriter rowWriter) {
+        if (tracker == null || tracker.getResumeKey() == null) {
+            return null;
+        }
+        List<String> values = tracker.getResumeKey();
+        if (values.size() != keyColumns.size()) {
+            throw new WarpException("invalid resume key for table " + createTable.getTableName());
+        }
+        Object[] key = new Object[values.size()];
+        for (int i = 0; i < key.length; i++) {
+            Column column = IncrementalDump.findColumn(createTable, keyColumns.get(i)).get();
+            key[i] = IncrementalDump.convertValue(values.get(i), column);
+        }
+        log.debug("resuming {} after key {}", createTable.getTableName(), values);
+        rowWriter.skipRows(tracker.getResumeRows());
+        return key;
+    }
+
+    private static Object[] readKey(ResultSet rs, int[] keyIndexes, Object[] key)
+        throws SQLException {
+        for (int i = 0; i < keyIndexes.length; i++) {
+            key[i] = rs.getObject(keyIndexes[i]);
+        }
+        return key;
+    }
+
+    /**
+     * Reads the given table in pages ordered by the given key columns. The key condition of the
+     * next page is {@code k1 > ? or (k1 = ? and k2 > ?) or ...}, which also works on DBMS without
+     * row value comparisons.
+     * <p>
+     * If {@code commitPages} is set, the transaction is committed after each page.
+     */
+    private void readPages(TableRowWriter rowWriter, CreateTable createTable, Connection dbc,
+        Query query, List<String> keyColumns, KeyTracker tracker, boolean commitPages)
+        throws SQLException {
+        int pageSize = options.getPageSize();
+        int[] keyIndexes = getKeyIndexes(createTable, keyColumns);
+        String orderBy = keyColumns.stream().map(dbms::quoteIdentifier)
+            .collect(Collectors.joining(", ", " order by ", " "));
+        String firstSql = buildSelect(createTable, query.from, query.conditions) + orderBy
+            + dbms.limitRows(pageSize);
+        List<String> nextConditions = new ArrayList<>(query.conditions);
+        nextConditions.add(buildKeyCondition(keyColumns));
+        String nextSql = buildSelect(createTable, query.from, nextConditions) + orderBy
+            + dbms.limitRows(pageSize);
+        log.debug(nextSql);
+
+        Object[] lastKey = new Object[keyIndexes.length];
+        Object[] resumeKey = getResumeKey(createTable, keyColumns, tracker, rowWriter);
+        try (PreparedStatement first = prepareStatement(dbc, firstSql);
+            PreparedStatement next = prepareStatement(dbc, nextSql)) {
+            PreparedStatement st = first;
+            if (resumeKey == null) {
+                setParameters(st, query.params, 1);
+            }
+            else {
+                st = next;
+                setKeyParameters(st, resumeKey, setParameters(st, query.params, 1));
+            }
+            while (true) {
+                long numRows;
+                try (ResultSet rs = st.executeQuery()) {
+                    numRows = rowWriter.writeRows(rs, r -> {
+                        readKey(r, keyIndexes, lastKey);
+                        if (tracker != null) {
+                            tracker.keyWritten(lastKey);
+                        }
+                    });
+                }
+                if (commitPages) {
+                    dbc.commit();
+                }
+                if (numRows < pageSize) {
+                    break;
+                }
+                st = next;
+                setKeyParameters(st, lastKey, setParameters(st, query.params, 1));
+            }
+        }
+    }
+
+    /**
+     * Sets the parameters of the key condition built by {@link #buildKeyCondition(List)}.
+     */
+    private void setKeyParameters(PreparedStatement st, Object[] key, int firstIndex)
+        throws SQLException {
+        int index = firstIndex;
+        for (int i = 0; i < key.length; i++) {
+            for (int j = 0; j < i; j++) {
+                st.setObject(index++, key[j]);
+            }
+            st.setObject(index++, key[i]);
+        }
+    }
+
+    private int[] getKeyIndexes(CreateTable createTable, List<String> keyColumns) {
+        List<Column> columns = createTable.getColumn();
+        int[] keyIndexes = new int[keyColumns.size()];
+        for (int i = 0; i < keyIndexes.length; i++) {
+            for (int col = 0; col < columns.size(); col++) {
+                if (columns.get(col).getName().equalsIgnoreCase(keyColumns.get(i))) {
+                    keyIndexes[i] = col + 1;
+                }
+            }
+        }
+        return keyIndexes;
+    }
+
+    private String buildKeyCondition(List<String> keyColumns) {
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < keyColumns.size(); i++) {
+            StringBuilder term = new StringBuilder();
+            for (int j = 0; j < i; j++) {
+                term.append(dbms.quoteIdentifier(keyColumns.get(j))).append(" = ? and ");
+            }
+            term.append(dbms.quoteIdentifier(keyColumns.get(i))).append(" > ?");
+            terms.add(term.toString());
+        }
+        return terms.stream().collect(Collectors.joining(") or (", "((", "))"));
+    }
+
+    private String buildSelect(CreateTable createTable, String from, List<String> conditions) {
+        String columns = createTable.getColumn().stream()
+            .map(c -> dbms.quoteIdentifier(c.getName())).collect(Collectors.joining(", "));
+        String sql = String.format("select %s from %s", columns, from);
+        if (!conditions.isEmpty()) {
+            sql += conditions.stream().collect(Collectors.joining(" and ", " where ", ""));
+        }
+        return sql;
+    }
+
+    private PreparedStatement prepareStatement(Connection dbc, String sql) throws SQLException {
+        PreparedStatement st = dbc.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+            ResultSet.CONCUR_READ_ONLY);
+        st.setFetchSize(options.getFetchSize(dbms));
+        return st;
+    }
+
+    private int setParameters(PreparedStatement st, List<Object> params, int firstIndex)
+        throws SQLException {
+        int index = firstIndex;
+        for (Object param : params) {
+            st.setObject(index++, param);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import java.sql.JDBCType;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.UUID;
+
+import org.ops4j.pax.warp.core.changelog.StreamingChangeLogWriter;
+import org.ops4j.pax.warp.jaxb.gen.Column;
+import org.ops4j.pax.warp.jaxb.gen.ColumnValue;
+import org.ops4j.pax.warp.jaxb.gen.CreateTable;
+import org.ops4j.pax.warp.jaxb.gen.DataColumn;
+import org.ops4j.pax.warp.jaxb.gen.Insert;
+import org.ops4j.pax.warp.jaxb.gen.TableData;
+
+/**
+ * Writes the rows of a table to a change set of its own, either as insert changes or as table
+ * data changes with at most {@link #ROWS_PER_TABLE_DATA} rows each. The rows may be read from
+ * multiple result sets with the same columns, e.g. one result set per page.
+ * <p>
+ * The column types are read from the metadata of the first result set, and each value is passed
+ * from the result set to the writer by a column extractor, without creating any model objects
+ * per row.
+ * <p>
+ * No change set is written for empty tables, given that a change set must not be empty. The
+ * change set has a random ID, unless a fixed ID is given, e.g. for reproducible dumps.
+ */
+class TableRowWriter {
+
+    /**
+     * Maximum number of rows per table data change.
+     */
+    static final int ROWS_PER_TABLE_DATA = 1000;
+
+    /**
+     * Callback for each row written.
+     */
+    @FunctionalInterface
+    interface RowListener {
+
+        /**
+         * Called after the current row of the given result set has been written.
+         *
+         * @param rs
+         *            result set
+         * @throws SQLException
+         *             on database error
+         */
+        void rowWritten(ResultSet rs) throws SQLException;
+    }
+
+    private StreamingChangeLogWriter writer;
+
+    private CreateTable createTable;
+
+    private boolean compactData;
+
+    private ColumnExtractor[] extractors;
+
+    private Object template;
+
+    private boolean empty = true;
+
+    private int numRows;
+
+    private String changeSetId;
+
+    /**
+     * Creates a row writer for the given table.
+     *
+     * @param writer
+     *            streaming change log writer
+     * @param createTable
+     *            table model
+     * @param compactData
+     *            write table data changes?
+     * @param changeSetId
+     *            change set ID, or null for a random ID
+     */
+    TableRowWriter(StreamingChangeLogWriter writer, CreateTable createTable, boolean compactData,
+        String changeSetId) {
+        this.writer = writer;
+        this.createTable = createTable;
+        this.compactData = compactData;
+        this.changeSetId = (changeSetId == null) ? UUID.randomUUID().toString() : changeSetId;
+    }
+
+    /**
+     * Continues a table after the given number of rows written by an earlier dump, so that the
+     * rows are grouped in table data changes in the same way as in a single dump.
+     *
+     * @param rows
+     *            number of rows already written
+     */
+    void skipRows(long rows) {
+        if (compactData) {
+            numRows = (int) (rows % ROWS_PER_TABLE_DATA);
+        }
+    }
+
+    /**
+     * Writes all rows of the given result set.
+     *
+     * @param rs
+     *            result set
+     * @param listener
+     *            row listener, or null
+     * @return number of rows written
+     * @throws SQLException
+     *             on database error
+     */
+    long writeRows(ResultSet rs, RowListener listener) throws SQLException {
+        if (extractors == null) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            JDBCType[] jdbcTypes = ColumnExtractors.getJdbcTypes(metaData);
+            extractors = ColumnExtractors.createExtractors(metaData, jdbcTypes);
+            template = compactData ? createTableData(jdbcTypes) : createInsert(jdbcTypes);
+        }
+        int rowsPerChange = compactData ? ROWS_PER_TABLE_DATA : Integer.MAX_VALUE;
+
+        long rowsWritten = 0;
+        while (rs.next()) {
+            if (empty) {
+                writer.startChangeSet(changeSetId);
+                writer.startRows(template);
+                empty = false;
+            }
+            else if (numRows == 0) {
+                writer.startRows(template);
+            }
+            writer.startRow();
+            for (ColumnExtractor extractor : extractors) {
+                extractor.extract(rs, writer);
+            }
+            writer.endRow();
+            if (listener != null) {
+                listener.rowWritten(rs);
+            }
+            rowsWritten++;
+            numRows++;
+            if (numRows == rowsPerChange) {
+                writer.endRows();
+                numRows = 0;
+            }
+        }
+        return rowsWritten;
+    }
+
+    /**
+     * Ends the current change and the change set, if any.
+     */
+    void finish() {
+        if (numRows > 0) {
+            writer.endRows();
+            numRows = 0;
+        }
+        if (!empty) {
+            writer.endChangeSet();
+        }
+    }
+
+    private Insert createInsert(JDBCType[] jdbcTypes) {
+        Insert insert = new Insert();
+        insert.setCatalogName(createTable.getCatalogName());
+        insert.setSchemaName(createTable.getSchemaName());
+        insert.setTableName(createTable.getTableName());
+        int col = 0;
+        for (Column column : createTable.getColumn()) {
+            ColumnValue columnValue = new ColumnValue();
+            columnValue.setName(column.getName());
+            columnValue.setType(jdbcTypes[col].toString());
+            insert.getColumn().add(columnValue);
+            col++;
+        }
+        return insert;
+    }
+
+    private TableData createTableData(JDBCType[] jdbcTypes) {
+        TableData tableData = new TableData();
+        tableData.setCatalogName(createTable.getCatalogName());
+        tableData.setSchemaName(createTable.getSchemaName());
+        tableData.setTableName(createTable.getTableName());
+        int col = 0;
+        for (Column column : createTable.getColumn()) {
+            DataColumn dataColumn = new DataColumn();
+            dataColumn.setName(column.getName());
+            dataColumn.setType(jdbcTypes[col].toString());
+            tableData.getColumn().add(dataColumn);
+            col++;
+        }
+        return tableData;
+    }
+}
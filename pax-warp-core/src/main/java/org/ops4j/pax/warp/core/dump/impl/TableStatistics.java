@@ -0,0 +1,171 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+import org.ops4j.pax.warp.core.trimou.TemplateEngine;
+import org.ops4j.pax.warp.core.trimou.TemplateEngineSelector;
+import org.ops4j.pax.warp.jaxb.gen.CreateTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Estimated sizes of the tables to be dumped, used for scheduling and progress reporting.
+ * <p>
+ * The estimates are read by the {@code tableStatistics} template, which returns the table name,
+ * the number of rows and the size in bytes for each table of a schema. Most DBMS keep these
+ * numbers in their catalog, so the query is cheap, but the numbers are only as recent as the
+ * last statistics update. Derby only provides the allocated space of each table. The shared
+ * template is empty, so there are no estimates for other DBMS, since counting the rows would scan
+ * all tables.
+ * <p>
+ * The weight of a table is its size in bytes if the sizes of all tables are known, and its number
+ * of rows otherwise. Tables without estimates have the smallest weight.
+ */
+class TableStatistics {
+
+    private static Logger log = LoggerFactory.getLogger(TableStatistics.class);
+
+    private Map<String, long[]> estimates = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    private boolean useBytes;
+
+    /**
+     * Creates statistics without estimates, where all tables have the same weight.
+     *
+     * @return table statistics
+     */
+    static TableStatistics unknown() {
+        return new TableStatistics();
+    }
+
+    /**
+     * Reads the estimates for the given tables. If the estimates cannot be read, a warning is
+     * logged, and all tables have the same weight.
+     *
+     * @param dbc
+     *            database connection
+     * @param dbms
+     *            DBMS profile
+     * @param tables
+     *            tables of a single schema
+     * @return table statistics
+     */
+    static TableStatistics read(Connection dbc, DbmsProfile dbms, List<CreateTable> tables) {
+        TableStatistics statistics = new TableStatistics();
+        if (tables.isEmpty()) {
+            return statistics;
+        }
+        Map<String, Object> model = new HashMap<>();
+        model.put("schemaName", tables.get(0).getSchemaName());
+        model.put("tables",
+            tables.stream().map(CreateTable::getTableName).collect(Collectors.toList()));
+        TemplateEngine engine = TemplateEngineSelector.getTemplateEngine(dbms.getSubprotocol());
+        String sql = engine.renderTemplate("tableStatistics", model);
+        if (sql.trim().isEmpty()) {
+            log.debug("no table statistics for {}", dbms.getSubprotocol());
+            return statistics;
+        }
+        try (Statement st = dbc.createStatement();
+            ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                statistics.estimates.put(rs.getString(1),
+                    new long[] { getLong(rs, 2), getLong(rs, 3) });
+            }
+        }
+        catch (SQLException exc) {
+            log.warn("cannot read table statistics", exc);
+            statistics.estimates.clear();
+        }
+        statistics.useBytes = tables.stream().allMatch(t -> statistics.getBytes(t) >= 0);
+        return statistics;
+    }
+
+    private static long getLong(ResultSet rs, int column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? -1 : Math.max(value, 0);
+    }
+
+    /**
+     * Gets the estimated number of rows of the given table.
+     *
+     * @param table
+     *            table model
+     * @return number of rows, or -1 if unknown
+     */
+    long getRows(CreateTable table) {
+        long[] estimate = estimates.get(table.getTableName());
+        return estimate == null ? -1 : estimate[0];
+    }
+
+    /**
+     * Gets the estimated size of the given table.
+     *
+     * @param table
+     *            table model
+     * @return size in bytes, or -1 if unknown
+     */
+    long getBytes(CreateTable table) {
+        long[] estimate = estimates.get(table.getTableName());
+        return estimate == null ? -1 : estimate[1];
+    }
+
+    /**
+     * Gets the weight of the given table, which is at least 1, so that tables without rows or
+     * estimates still count for progress reporting.
+     *
+     * @param table
+     *            table model
+     * @return weight
+     */
+    long getWeight(CreateTable table) {
+        long estimate = useBytes ? getBytes(table) : getRows(table);
+        return Math.max(estimate, 0) + 1;
+    }
+
+    /**
+     * Orders the given tables by descending weight. With a number of workers taking tables in this
+     * order, the largest tables are started first (longest processing time first), so that no
+     * large table is left over when all other tables are done. Tables of equal weight keep their
+     * relative order.
+     *
+     * @param tables
+     *            tables
+     * @return indexes of the tables in schedule order
+     */
+    List<Integer> schedule(List<CreateTable> tables) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < tables.size(); i++) {
+            indexes.add(i);
+        }
+        indexes.sort(Comparator.comparingLong((Integer i) -> getWeight(tables.get(i))).reversed());
+        return indexes;
+    }
+}
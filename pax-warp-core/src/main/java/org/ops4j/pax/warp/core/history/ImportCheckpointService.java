@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.history;
+
+import java.sql.Connection;
+import java.util.Map;
+
+import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+
+/**
+ * Manages the checkpoint of a resumable import. The checkpoint is stored in a metadata table
+ * named {@code warp_checkpoint} in the target database, which gets created by this service when
+ * required.
+ * <p>
+ * The checkpoint identifies the imported change log or dump by the SHA-256 hash of its file or
+ * manifest, and contains the number of committed rows of each table, in change log order. The
+ * table only holds the checkpoint of the latest import.
+ */
+public interface ImportCheckpointService {
+
+    /**
+     * Name of the checkpoint metadata table.
+     */
+    String CHECKPOINT_TABLE = "warp_checkpoint";
+
+    /**
+     * Reads the checkpoint of an import of the given source from the given database.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param dbms
+     *            DBMS profile
+     * @param sourceHash
+     *            SHA-256 hash of the imported source
+     * @return map of committed row counts, indexed by upper case table names, empty if the
+     *         database does not have a checkpoint for the given source
+     */
+    Map<String, Long> readCheckpoint(Connection dbc, DbmsProfile dbms, String sourceHash);
+
+    /**
+     * Saves the checkpoint of an import of the given source, replacing any previous checkpoint.
+     * The checkpoint table must exist. This method does not commit, so that the checkpoint can be
+     * committed together with the imported rows.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param dbms
+     *            DBMS profile
+     * @param sourceHash
+     *            SHA-256 hash of the imported source
+     * @param committedRows
+     *            map of committed row counts, indexed by table names
+     */
+    void saveCheckpoint(Connection dbc, DbmsProfile dbms, String sourceHash,
+        Map<String, Long> committedRows);
+
+    /**
+     * Creates the checkpoint table, unless it exists.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param dbms
+     *            DBMS profile
+     */
+    void createCheckpointTable(Connection dbc, DbmsProfile dbms);
+
+    /**
+     * Deletes the checkpoint, if any. This method does not commit.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param dbms
+     *            DBMS profile
+     */
+    void deleteCheckpoint(Connection dbc, DbmsProfile dbms);
+}
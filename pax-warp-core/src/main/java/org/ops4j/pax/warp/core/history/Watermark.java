@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.history;
+
+/**
+ * Watermark of a table reached by an incremental dump. The next incremental dump of the table
+ * only includes rows with a greater value in the watermark column.
+ */
+public class Watermark {
+
+    private String tableName;
+
+    private String columnName;
+
+    private String value;
+
+    /**
+     * Gets the table name.
+     *
+     * @return table name
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Sets the table name.
+     *
+     * @param tableName
+     *            table name
+     */
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    /**
+     * Gets the name of the watermark column.
+     *
+     * @return column name
+     */
+    public String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * Sets the name of the watermark column.
+     *
+     * @param columnName
+     *            column name
+     */
+    public void setColumnName(String columnName) {
+        this.columnName = columnName;
+    }
+
+    /**
+     * Gets the greatest value of the watermark column included in the dump.
+     *
+     * @return string representation of value
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Sets the greatest value of the watermark column included in the dump.
+     *
+     * @param value
+     *            string representation of value
+     */
+    public void setValue(String value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.history;
+
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.Map;
+
+import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+
+/**
+ * Manages the watermarks of incremental dumps. The watermarks are stored in a metadata table named
+ * {@code warp_watermark} in the dumped database, which gets created by this service when
+ * required.
+ */
+public interface WatermarkService {
+
+    /**
+     * Name of the watermark metadata table.
+     */
+    String WATERMARK_TABLE = "warp_watermark";
+
+    /**
+     * Reads the watermarks of all tables from the given database.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param dbms
+     *            DBMS profile
+     * @return map of watermarks, indexed by upper case table names, empty if the database does
+     *         not have a watermark table
+     */
+    Map<String, Watermark> readWatermarks(Connection dbc, DbmsProfile dbms);
+
+    /**
+     * Saves the given watermarks in the given database, replacing any watermarks of the same
+     * tables, in a single transaction. Watermarks of other tables are left unchanged.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param dbms
+     *            DBMS profile
+     * @param watermarks
+     *            watermarks to be saved
+     */
+    void saveWatermarks(Connection dbc, DbmsProfile dbms, Collection<Watermark> watermarks);
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.history.impl;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+import org.ops4j.pax.warp.core.history.ImportCheckpointService;
+import org.ops4j.pax.warp.core.schema.SchemaHandler;
+import org.ops4j.pax.warp.core.update.impl.UpdateSqlGenerator;
+import org.ops4j.pax.warp.exc.WarpException;
+import org.ops4j.pax.warp.jaxb.WarpJaxbContext;
+import org.ops4j.pax.warp.jaxb.gen.Column;
+import org.ops4j.pax.warp.jaxb.gen.CreateTable;
+import org.ops4j.pax.warp.jaxb.gen.SqlType;
+import org.ops4j.pax.warp.scope.CdiDependent;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+/**
+ * Implements {@link ImportCheckpointService}.
+ */
+@Component
+@Named
+@CdiDependent
+public class ImportCheckpointServiceImpl implements ImportCheckpointService {
+
+    @Inject
+    private WarpJaxbContext context;
+
+    @Override
+    public Map<String, Long> readCheckpoint(Connection dbc, DbmsProfile dbms,
+        String sourceHash) {
+        Map<String, Long> committedRows = new HashMap<>();
+        if (!hasCheckpointTable(dbc, dbms)) {
+            return committedRows;
+        }
+        try (PreparedStatement st = dbc.prepareStatement("SELECT table_name, committed_rows FROM "
+            + CHECKPOINT_TABLE + " WHERE source_hash = ?")) {
+            st.setString(1, sourceHash);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    committedRows.put(rs.getString(1).toUpperCase(), rs.getLong(2));
+                }
+            }
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+        return committedRows;
+    }
+
+    @Override
+    public void saveCheckpoint(Connection dbc, DbmsProfile dbms, String sourceHash,
+        Map<String, Long> committedRows) {
+        try (
+            Statement delete = dbc.createStatement();
+            PreparedStatement insert = dbc.prepareStatement("INSERT INTO " + CHECKPOINT_TABLE
+                + " (source_hash, table_name, committed_rows, updated) VALUES (?, ?, ?, ?)")) {
+            delete.executeUpdate("DELETE FROM " + CHECKPOINT_TABLE);
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            for (Map.Entry<String, Long> entry : committedRows.entrySet()) {
+                insert.setString(1, sourceHash);
+                insert.setString(2, entry.getKey());
+                insert.setLong(3, entry.getValue());
+                insert.setTimestamp(4, now);
+                insert.executeUpdate();
+            }
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    @Override
+    public void createCheckpointTable(Connection dbc, DbmsProfile dbms) {
+        if (hasCheckpointTable(dbc, dbms)) {
+            return;
+        }
+        try (UpdateSqlGenerator generator = new UpdateSqlGenerator(dbms, dbc, this::runUpdate,
+            context)) {
+            createCheckpointTableAction().accept(generator);
+        }
+    }
+
+    @Override
+    public void deleteCheckpoint(Connection dbc, DbmsProfile dbms) {
+        if (!hasCheckpointTable(dbc, dbms)) {
+            return;
+        }
+        try (Statement st = dbc.createStatement()) {
+            st.executeUpdate("DELETE FROM " + CHECKPOINT_TABLE);
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    private CreateTable createCheckpointTableAction() {
+        CreateTable action = new CreateTable();
+        action.setTableName(CHECKPOINT_TABLE);
+        List<Column> columns = action.getColumn();
+        columns.add(createColumn("source_hash", SqlType.VARCHAR, 64, false));
+        columns.add(createColumn("table_name", SqlType.VARCHAR, 255, false));
+        columns.add(createColumn("committed_rows", SqlType.INT_64, null, false));
+        columns.add(createColumn("updated", SqlType.TIMESTAMP, null, true));
+        return action;
+    }
+
+    private Column createColumn(String name, SqlType type, Integer length, boolean nullable) {
+        Column column = new Column();
+        column.setName(name);
+        column.setType(type);
+        column.setLength(length);
+        column.setNullable(nullable);
+        return column;
+    }
+
+    private boolean hasCheckpointTable(Connection dbc, DbmsProfile dbms) {
+        try {
+            DatabaseMetaData metaData = dbc.getMetaData();
+            String tableName = CHECKPOINT_TABLE;
+            if (metaData.storesUpperCaseIdentifiers()) {
+                tableName = tableName.toUpperCase();
+            }
+            String schemaName = new SchemaHandler(dbms.getSubprotocol()).getCurrentSchema(dbc);
+            try (ResultSet rs = metaData.getTables(null, schemaName, tableName,
+                new String[] { "TABLE" })) {
+                return rs.next();
+            }
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    private void runUpdate(PreparedStatement st) {
+        try {
+            st.execute();
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    /**
+     * Injects the JAXB context.
+     *
+     * @param context
+     *            the context to set
+     */
+    @Reference
+    public void setContext(WarpJaxbContext context) {
+        this.context = context;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.history.impl;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+import org.ops4j.pax.warp.core.history.Watermark;
+import org.ops4j.pax.warp.core.history.WatermarkService;
+import org.ops4j.pax.warp.core.schema.SchemaHandler;
+import org.ops4j.pax.warp.core.update.impl.UpdateSqlGenerator;
+import org.ops4j.pax.warp.exc.WarpException;
+import org.ops4j.pax.warp.jaxb.WarpJaxbContext;
+import org.ops4j.pax.warp.jaxb.gen.Column;
+import org.ops4j.pax.warp.jaxb.gen.CreateTable;
+import org.ops4j.pax.warp.jaxb.gen.SqlType;
+import org.ops4j.pax.warp.scope.CdiDependent;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+/**
+ * Implements {@link WatermarkService}.
+ */
+@Component
+@Named
+@CdiDependent
+public class WatermarkServiceImpl implements WatermarkService {
+
+    @Inject
+    private WarpJaxbContext context;
+
+    @Override
+    public Map<String, Watermark> readWatermarks(Connection dbc, DbmsProfile dbms) {
+        Map<String, Watermark> watermarks = new HashMap<>();
+        if (!hasWatermarkTable(dbc, dbms)) {
+            return watermarks;
+        }
+        try (Statement st = dbc.createStatement();
+            ResultSet rs = st.executeQuery(
+                "SELECT table_name, column_name, watermark FROM " + WATERMARK_TABLE)) {
+            while (rs.next()) {
+                Watermark watermark = new Watermark();
+                watermark.setTableName(rs.getString(1));
+                watermark.setColumnName(rs.getString(2));
+                watermark.setValue(rs.getString(3));
+                watermarks.put(watermark.getTableName().toUpperCase(), watermark);
+            }
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+        return watermarks;
+    }
+
+    @Override
+    public void saveWatermarks(Connection dbc, DbmsProfile dbms,
+        Collection<Watermark> watermarks) {
+        if (!hasWatermarkTable(dbc, dbms)) {
+            UpdateSqlGenerator generator = new UpdateSqlGenerator(dbms, dbc, this::runUpdate,
+                context);
+            createWatermarkTableAction().accept(generator);
+        }
+        try {
+            boolean autoCommit = dbc.getAutoCommit();
+            dbc.setAutoCommit(false);
+            try (
+                PreparedStatement delete = dbc.prepareStatement(
+                    "DELETE FROM " + WATERMARK_TABLE + " WHERE table_name = ?");
+                PreparedStatement insert = dbc.prepareStatement("INSERT INTO " + WATERMARK_TABLE
+                    + " (table_name, column_name, watermark, dumped) VALUES (?, ?, ?, ?)")) {
+                Timestamp now = new Timestamp(System.currentTimeMillis());
+                for (Watermark watermark : watermarks) {
+                    delete.setString(1, watermark.getTableName());
+                    delete.executeUpdate();
+                    insert.setString(1, watermark.getTableName());
+                    insert.setString(2, watermark.getColumnName());
+                    insert.setString(3, watermark.getValue());
+                    insert.setTimestamp(4, now);
+                    insert.executeUpdate();
+                }
+                dbc.commit();
+            }
+            catch (SQLException exc) {
+                dbc.rollback();
+                throw exc;
+            }
+            finally {
+                dbc.setAutoCommit(autoCommit);
+            }
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    private CreateTable createWatermarkTableAction() {
+        CreateTable action = new CreateTable();
+        action.setTableName(WATERMARK_TABLE);
+        List<Column> columns = action.getColumn();
+        columns.add(createColumn("table_name", SqlType.VARCHAR, 255, false));
+        columns.add(createColumn("column_name", SqlType.VARCHAR, 255, false));
+        columns.add(createColumn("watermark", SqlType.VARCHAR, 255, false));
+        columns.add(createColumn("dumped", SqlType.TIMESTAMP, null, true));
+        return action;
+    }
+
+    private Column createColumn(String name, SqlType type, Integer length, boolean nullable) {
+        Column column = new Column();
+        column.setName(name);
+        column.setType(type);
+        column.setLength(length);
+        column.setNullable(nullable);
+        return column;
+    }
+
+    private boolean hasWatermarkTable(Connection dbc, DbmsProfile dbms) {
+        try {
+            DatabaseMetaData metaData = dbc.getMetaData();
+            String tableName = WATERMARK_TABLE;
+            if (metaData.storesUpperCaseIdentifiers()) {
+                tableName = tableName.toUpperCase();
+            }
+            String schemaName = new SchemaHandler(dbms.getSubprotocol()).getCurrentSchema(dbc);
+            try (ResultSet rs = metaData.getTables(null, schemaName, tableName,
+                new String[] { "TABLE" })) {
+                return rs.next();
+            }
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    private void runUpdate(PreparedStatement st) {
+        try {
+            st.execute();
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    /**
+     * Injects the JAXB context.
+     *
+     * @param context
+     *            the context to set
+     */
+    @Reference
+    public void setContext(WarpJaxbContext context) {
+        this.context = context;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Output stream passing bytes to a writer as characters, one character per byte. This is meant for
+ * ASCII output of encoders like {@link java.util.Base64.Encoder#wrap(OutputStream)}, without the
+ * overhead of a charset encoder.
+ * <p>
+ * Closing this stream closes the writer.
+ */
+public class AsciiOutputStream extends OutputStream {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private Writer writer;
+
+    private char[] buffer = new char[BUFFER_SIZE];
+
+    private int count;
+
+    /**
+     * Creates a stream writing to the given writer.
+     *
+     * @param writer
+     *            writer for ASCII characters
+     */
+    public AsciiOutputStream(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = (char) (b & 0xFF);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+            buffer[count++] = (char) (b[i] & 0xFF);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            writer.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
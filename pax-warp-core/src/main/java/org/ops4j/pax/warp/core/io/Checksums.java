@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.ops4j.pax.warp.exc.WarpException;
+
+/**
+ * Helper methods for SHA-256 checksums of dump files.
+ */
+public class Checksums {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private Checksums() {
+        // hidden constructor
+    }
+
+    /**
+     * Creates a SHA-256 message digest.
+     *
+     * @return message digest
+     */
+    public static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    /**
+     * Converts a digest to a string of lower case hex digits.
+     *
+     * @param digest
+     *            digest bytes
+     * @return hex string
+     */
+    public static String toHex(byte[] digest) {
+        char[] hex = new char[2 * digest.length];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Computes the SHA-256 checksum of the given file.
+     *
+     * @param file
+     *            file
+     * @return checksum as hex string
+     * @throws IOException
+     *             on read error
+     */
+    public static String sha256(File file) throws IOException {
+        MessageDigest digest = createDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream is = Files.newInputStream(file.toPath())) {
+            int len;
+            while ((len = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, len);
+            }
+        }
+        return toHex(digest.digest());
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.io;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Helper methods for reading compressed change logs.
+ */
+public class Compression {
+
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Compression() {
+        // hidden constructor
+    }
+
+    /**
+     * Returns a stream with the uncompressed contents of the given stream. If the stream starts
+     * with the GZIP magic bytes, the result decompresses it on the fly. Otherwise, the result
+     * returns the bytes of the given stream unchanged.
+     *
+     * @param is
+     *            input stream, possibly compressed
+     * @return uncompressed input stream
+     * @throws IOException
+     *             on read error
+     */
+    public static InputStream decompressIfNeeded(InputStream is) throws IOException {
+        BufferedInputStream bis = new BufferedInputStream(is, BUFFER_SIZE);
+        bis.mark(2);
+        int b1 = bis.read();
+        int b2 = bis.read();
+        bis.reset();
+        if (b1 == GZIP_MAGIC_1 && b2 == GZIP_MAGIC_2) {
+            return new GZIPInputStream(bis, BUFFER_SIZE);
+        }
+        return bis;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream counting the number of bytes written to the underlying stream.
+ */
+public class CountingOutputStream extends FilterOutputStream {
+
+    private long count;
+
+    /**
+     * Creates a counting stream.
+     *
+     * @param os
+     *            underlying output stream
+     */
+    public CountingOutputStream(OutputStream os) {
+        super(os);
+    }
+
+    /**
+     * Gets the number of bytes written so far.
+     *
+     * @return number of bytes
+     */
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+}
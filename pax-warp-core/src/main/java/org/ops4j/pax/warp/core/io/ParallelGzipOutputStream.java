@@ -0,0 +1,222 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Output stream compressing data in the GZIP format, using multiple threads.
+ * <p>
+ * The data are split into blocks of a fixed size. Each block is compressed independently as a
+ * GZIP member by a worker thread, and the compressed members are written to the underlying
+ * stream in their original order. A sequence of GZIP members is a valid GZIP file which can be
+ * decompressed by {@code gzip} or {@link java.util.zip.GZIPInputStream}.
+ * <p>
+ * The number of blocks in flight is bounded, so a slow consumer blocks the producer instead of
+ * using up memory.
+ * <p>
+ * This stream is not thread-safe.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    /**
+     * Default block size (1 MiB). Smaller blocks reduce the compression ratio, larger blocks
+     * increase memory usage and latency.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private OutputStream os;
+
+    private int blockSize;
+
+    private int maxPendingBlocks;
+
+    private ExecutorService executor;
+
+    private Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+
+    private byte[] buffer;
+
+    private int count;
+
+    private boolean finished;
+
+    /**
+     * Creates a compressing stream with the default block size and one thread per available
+     * processor.
+     *
+     * @param os
+     *            underlying output stream
+     */
+    public ParallelGzipOutputStream(OutputStream os) {
+        this(os, Runtime.getRuntime().availableProcessors(), DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a compressing stream with the given number of threads and block size.
+     *
+     * @param os
+     *            underlying output stream
+     * @param numThreads
+     *            number of compression threads
+     * @param blockSize
+     *            size of uncompressed blocks in bytes
+     */
+    public ParallelGzipOutputStream(OutputStream os, int numThreads, int blockSize) {
+        this.os = os;
+        this.blockSize = blockSize;
+        this.maxPendingBlocks = 2 * numThreads;
+        this.buffer = new byte[blockSize];
+        this.executor = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread thread = new Thread(r, "warp-gzip");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == blockSize) {
+            submitBlock();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            if (count == blockSize) {
+                submitBlock();
+            }
+            int numBytes = Math.min(remaining, blockSize - count);
+            System.arraycopy(b, offset, buffer, count, numBytes);
+            count += numBytes;
+            offset += numBytes;
+            remaining -= numBytes;
+        }
+    }
+
+    /**
+     * Writes all blocks compressed so far and flushes the underlying stream. Like
+     * {@link GZIPOutputStream}, this does not compress the current incomplete block, since each
+     * block is a GZIP member of its own, and small blocks reduce the compression ratio.
+     */
+    @Override
+    public void flush() throws IOException {
+        while (isNextBlockDone()) {
+            writeNextBlock();
+        }
+        os.flush();
+    }
+
+    /**
+     * Finishes writing compressed data to the underlying stream without closing it.
+     *
+     * @throws IOException
+     *             on write error
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        try {
+            if (count > 0) {
+                submitBlock();
+            }
+            while (!pendingBlocks.isEmpty()) {
+                writeNextBlock();
+            }
+            os.flush();
+        }
+        finally {
+            abort();
+        }
+    }
+
+    /**
+     * Discards all data not yet written and stops the compression threads, without closing the
+     * underlying stream. Does nothing when the stream is finished.
+     */
+    public void abort() {
+        finished = true;
+        pendingBlocks.forEach(f -> f.cancel(true));
+        pendingBlocks.clear();
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        }
+        finally {
+            os.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        if (finished) {
+            throw new IOException("stream is finished");
+        }
+        byte[] block = buffer;
+        int length = count;
+        pendingBlocks.add(executor.submit(() -> compress(block, length)));
+        buffer = new byte[blockSize];
+        count = 0;
+        while (pendingBlocks.size() > maxPendingBlocks || isNextBlockDone()) {
+            writeNextBlock();
+        }
+    }
+
+    private boolean isNextBlockDone() {
+        return !pendingBlocks.isEmpty() && pendingBlocks.peek().isDone();
+    }
+
+    private void writeNextBlock() throws IOException {
+        try {
+            os.write(pendingBlocks.poll().get());
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException exc) {
+            throw new IOException(exc.getCause());
+        }
+    }
+
+    private static byte[] compress(byte[] block, int length) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(baos, 64 * 1024)) {
+            gzip.write(block, 0, length);
+        }
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Opens new connections to a given database. Used by commands working with more than one
+ * connection at a time.
+ * <p>
+ * Typical implementations are {@code DataSource::getConnection} or a lambda calling
+ * {@code DriverManager.getConnection()}.
+ */
+@FunctionalInterface
+public interface ConnectionFactory {
+
+    /**
+     * Opens a new connection. The caller is responsible for closing it.
+     *
+     * @return database connection
+     * @throws SQLException
+     *             if the connection cannot be opened
+     */
+    Connection getConnection() throws SQLException;
+}
@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.function.Predicate;
 
 import org.ops4j.pax.warp.core.dbms.DbmsProfile;
 import org.ops4j.pax.warp.core.dbms.DbmsProfileSelector;
@@ -64,6 +65,8 @@ public class DatabaseModelBuilder {
 
     private DbmsProfile dbms;
 
+    private Predicate<String> tableFilter = t -> true;
+
     /**
      * Constructs a model builder for the given database, working on the default schema.
      *
@@ -91,6 +94,18 @@ public class DatabaseModelBuilder {
         this.dbms = new DbmsProfileSelector().selectProfile(dbc);
     }
 
+    /**
+     * Restricts the model to the tables accepted by the given filter. No metadata are read for
+     * other tables, and foreign keys referencing other tables are omitted. By default, the model
+     * contains all tables.
+     *
+     * @param tableFilter
+     *            predicate on table names
+     */
+    public void setTableFilter(Predicate<String> tableFilter) {
+        this.tableFilter = tableFilter;
+    }
+
     /**
      * Builds a model of the given database.
      *
@@ -115,6 +130,10 @@ public class DatabaseModelBuilder {
         try (ResultSet rs = metaData.getTables(catalog, schema, null, new String[] { "TABLE" })) {
             while (rs.next()) {
                 String tableName = rs.getString("TABLE_NAME");
+                if (!tableFilter.test(tableName)) {
+                    log.debug("skipping table: {}", tableName);
+                    continue;
+                }
                 CreateTable createTable = new CreateTable();
                 createTable.setCatalogName(catalog);
                 createTable.setSchemaName(schema);
@@ -216,6 +235,7 @@ public class DatabaseModelBuilder {
         }
         if (!fks.isEmpty()) {
             fks.get(fks.size() - 1).getColumnPair().addAll(columnPairs);
+            fks.removeIf(fk -> !tableFilter.test(fk.getReferencedTable().getTableName()));
             database.getForeignKeys().addAll(fks);
         }
     }
@@ -315,7 +335,7 @@ public class DatabaseModelBuilder {
 
     private void buildIndexes(CreateTable table) throws SQLException {
         CreateIndex index = null;
-        String tableName = dbms.quoteIdentifier(table.getTableName());
+        String tableName = table.getTableName();
         log.debug("build indexes for {}", tableName);
         try (ResultSet rs = metaData.getIndexInfo(catalog, schema, tableName, false, false)) {
             while (rs.next()) {
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads the value of a given column from the current row of a result set. Readers are created
+ * once per query by {@link ValueReaders}, so the column type is not looked up for each value.
+ */
+@FunctionalInterface
+public interface ValueReader {
+
+    /**
+     * Reads the column value from the current row.
+     *
+     * @param rs
+     *            result set
+     * @return value, or null
+     * @throws SQLException
+     *             on database error
+     */
+    Object read(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.jdbc;
+
+import java.sql.JDBCType;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+
+/**
+ * Creates readers for typed column values of a result set. The Java type of a value depends on
+ * the JDBC type of the column, as mapped by {@link DbmsProfile#getValueType(JDBCType, int, int)}:
+ * integers are read as {@code Long}, approximate numbers as {@code Float} or {@code Double},
+ * exact numbers as {@code BigDecimal}, character data including CLOBs as {@code String}, binary
+ * data including BLOBs as {@code byte[]}, and temporal values as {@code java.sql.Date},
+ * {@code Time} or {@code Timestamp}. Large objects are read into memory.
+ */
+public class ValueReaders {
+
+    private ValueReaders() {
+        // hidden constructor
+    }
+
+    /**
+     * Gets the value types of all columns of the given result set metadata.
+     *
+     * @param metaData
+     *            result set metadata
+     * @param dbms
+     *            DBMS profile
+     * @return JDBC types of values
+     * @throws SQLException
+     *             on database error
+     */
+    public static JDBCType[] getValueTypes(ResultSetMetaData metaData, DbmsProfile dbms)
+        throws SQLException {
+        JDBCType[] jdbcTypes = new JDBCType[metaData.getColumnCount()];
+        for (int i = 0; i < jdbcTypes.length; i++) {
+            int col = i + 1;
+            jdbcTypes[i] = dbms.getValueType(toJdbcType(metaData.getColumnType(col)),
+                metaData.getPrecision(col), metaData.getScale(col));
+        }
+        return jdbcTypes;
+    }
+
+    /**
+     * Creates readers for all columns of the given result set metadata.
+     *
+     * @param metaData
+     *            result set metadata
+     * @param dbms
+     *            DBMS profile
+     * @return value readers, indexed by column index - 1
+     * @throws SQLException
+     *             on database error
+     */
+    public static ValueReader[] createReaders(ResultSetMetaData metaData, DbmsProfile dbms)
+        throws SQLException {
+        JDBCType[] jdbcTypes = getValueTypes(metaData, dbms);
+        ValueReader[] readers = new ValueReader[jdbcTypes.length];
+        for (int i = 0; i < readers.length; i++) {
+            int col = i + 1;
+            readers[i] = createReader(jdbcTypes[i], metaData.isSigned(col), col);
+        }
+        return readers;
+    }
+
+    private static JDBCType toJdbcType(int type) {
+        try {
+            return JDBCType.valueOf(type);
+        }
+        catch (IllegalArgumentException exc) {
+            // vendor specific type
+            return JDBCType.OTHER;
+        }
+    }
+
+    /**
+     * Creates a reader using the getter for the given type. Character values are read by
+     * {@code getString()}, since {@code getObject()} does not return the value of CLOB columns
+     * for all drivers.
+     */
+    private static ValueReader createReader(JDBCType jdbcType, boolean signed, int col) {
+        switch (jdbcType) {
+            case BIT:
+            case BOOLEAN:
+                return rs -> {
+                    boolean value = rs.getBoolean(col);
+                    return rs.wasNull() ? null : value;
+                };
+
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+                return rs -> {
+                    long value = rs.getLong(col);
+                    return rs.wasNull() ? null : value;
+                };
+
+            case BIGINT:
+                // unsigned big integers may exceed the long range
+                if (!signed) {
+                    return rs -> rs.getBigDecimal(col);
+                }
+                return rs -> {
+                    long value = rs.getLong(col);
+                    return rs.wasNull() ? null : value;
+                };
+
+            case REAL:
+                return rs -> {
+                    float value = rs.getFloat(col);
+                    return rs.wasNull() ? null : value;
+                };
+
+            case FLOAT:
+            case DOUBLE:
+                return rs -> {
+                    double value = rs.getDouble(col);
+                    return rs.wasNull() ? null : value;
+                };
+
+            case DECIMAL:
+            case NUMERIC:
+                return rs -> rs.getBigDecimal(col);
+
+            case CHAR:
+            case VARCHAR:
+            case NCHAR:
+            case NVARCHAR:
+            case LONGVARCHAR:
+            case LONGNVARCHAR:
+            case CLOB:
+            case NCLOB:
+                return rs -> rs.getString(col);
+
+            case BINARY:
+            case VARBINARY:
+            case LONGVARBINARY:
+            case BLOB:
+                return rs -> rs.getBytes(col);
+
+            case DATE:
+                return rs -> rs.getDate(col);
+
+            case TIME:
+                return rs -> rs.getTime(col);
+
+            case TIMESTAMP:
+                return rs -> rs.getTimestamp(col);
+
+            default:
+                return rs -> rs.getObject(col);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.update;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Options for copying data from one database to another. All options are optional.
+ */
+public class CopyOptions {
+
+    /**
+     * Default number of rows per batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Default number of batches buffered between reader and writer.
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 16;
+
+    private List<String> tables = new ArrayList<>();
+
+    private Integer fetchSize;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+
+    /**
+     * Gets the names of the tables to be copied.
+     *
+     * @return list of table names, possibly empty but not null
+     */
+    public List<String> getTables() {
+        return tables;
+    }
+
+    /**
+     * Sets the names of the tables to be copied. Only these tables are truncated and copied in
+     * the target database, all other tables are left unchanged. By default, all tables of the
+     * source database are copied. Table names are compared ignoring case.
+     *
+     * @param tables
+     *            list of table names, or an empty list for all tables
+     */
+    public void setTables(List<String> tables) {
+        this.tables = tables;
+    }
+
+    /**
+     * Gets the JDBC fetch size for reading from the source database.
+     *
+     * @return fetch size, or null to use the default of the DBMS profile
+     */
+    public Integer getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Sets the JDBC fetch size for reading from the source database.
+     *
+     * @param fetchSize
+     *            fetch size, or null to use the default of the DBMS profile
+     */
+    public void setFetchSize(Integer fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Gets the number of rows inserted into the target database by a single JDBC batch.
+     *
+     * @return batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of rows inserted into the target database by a single JDBC batch. The
+     * default is {@value #DEFAULT_BATCH_SIZE}.
+     *
+     * @param batchSize
+     *            batch size
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Gets the maximum number of batches read from the source database, but not yet written to
+     * the target database.
+     *
+     * @return queue size
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * Sets the maximum number of batches read from the source database, but not yet written to
+     * the target database. When the queue is full, the reader waits for the writer, so the memory
+     * used by a copy is bounded by the queue size and the batch size. The default is
+     * {@value #DEFAULT_QUEUE_SIZE}.
+     *
+     * @param queueSize
+     *            queue size
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+}
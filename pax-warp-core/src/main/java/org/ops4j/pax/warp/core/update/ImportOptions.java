@@ -0,0 +1,238 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.update;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Options for importing data into a database. All options are optional.
+ */
+public class ImportOptions {
+
+    /**
+     * Default number of rows per batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Default commit interval. Zero means that all rows are committed at the end of the import.
+     */
+    public static final int DEFAULT_COMMIT_INTERVAL = 0;
+
+    private List<String> tables = new ArrayList<>();
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private int commitInterval = DEFAULT_COMMIT_INTERVAL;
+
+    private boolean resumable;
+
+    private int threads = 1;
+
+    private boolean bulkLoad;
+
+    private boolean rebuildIndexes;
+
+    /**
+     * Gets the names of the tables to be imported from a dump directory.
+     *
+     * @return list of table names, possibly empty but not null
+     */
+    public List<String> getTables() {
+        return tables;
+    }
+
+    /**
+     * Sets the names of the tables to be imported from a dump directory. Only these tables are
+     * truncated and imported, all other tables are left unchanged. By default, all tables listed
+     * in the manifest are imported. Table names are compared ignoring case.
+     *
+     * @param tables
+     *            list of table names, or an empty list for all tables
+     */
+    public void setTables(List<String> tables) {
+        this.tables = tables;
+    }
+
+    /**
+     * Gets the maximum number of rows inserted by a single JDBC batch.
+     *
+     * @return batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the maximum number of rows inserted by a single JDBC batch. Consecutive rows for the
+     * same table and columns are inserted by a batch. If a batch fails, the exception reports the
+     * first failing row with its values, if the driver indicates that row. A batch size of 1
+     * inserts each row by a statement of its own. The default is {@value #DEFAULT_BATCH_SIZE}.
+     *
+     * @param batchSize
+     *            batch size
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Gets the minimum number of rows inserted by a transaction.
+     *
+     * @return commit interval, or zero for a single transaction
+     */
+    public int getCommitInterval() {
+        return commitInterval;
+    }
+
+    /**
+     * Sets the minimum number of rows inserted by a transaction. The import commits after
+     * executing a batch when at least this number of rows has been inserted since the last commit,
+     * so transactions end at batch boundaries. When the import fails, the rows of the current
+     * transaction are rolled back, while the rows committed so far remain in the database, and the
+     * exception lists the number of committed rows per table.
+     * <p>
+     * By default ({@value #DEFAULT_COMMIT_INTERVAL}), all rows are inserted by a single
+     * transaction. In either case, truncating the tables and dropping the foreign keys is committed
+     * before inserting any rows, and the foreign keys are restored in a separate transaction, even
+     * when the import fails.
+     *
+     * @param commitInterval
+     *            commit interval, or zero for a single transaction
+     */
+    public void setCommitInterval(int commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    /**
+     * Checks if the import is resumable.
+     *
+     * @return true if resumable
+     */
+    public boolean isResumable() {
+        return resumable;
+    }
+
+    /**
+     * Sets the import to be resumable. A resumable import records the number of committed rows
+     * of each table in the {@code warp_checkpoint} table of the target database, in the same
+     * transaction as the rows. When an import of the same change log file or dump directory is
+     * restarted after a failure, tables with committed rows are not truncated, and their
+     * committed rows are skipped. The source is identified by the SHA-256 hash of the change log
+     * file or the manifest. The checkpoint is deleted when the import is complete, or when the
+     * database is changed by a different import.
+     * <p>
+     * Use a {@link #setCommitInterval(int) commit interval} to make progress between failures.
+     * Imports from streams cannot be resumable. The default is false.
+     *
+     * @param resumable
+     *            true if resumable
+     */
+    public void setResumable(boolean resumable) {
+        this.resumable = resumable;
+    }
+
+    /**
+     * Gets the number of tables to be imported concurrently.
+     *
+     * @return number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of tables to be imported concurrently, each on a connection of its own. The
+     * default is 1. This option only takes effect when the import command has a data source or a
+     * JDBC URL for opening additional connections.
+     * <p>
+     * The foreign keys are dropped before any rows are inserted, so the tables can be loaded
+     * independently. Each table is assigned to one of the connections, which inserts all rows
+     * of this table by batches and commits according to the commit interval. The rows of all
+     * connections are committed when all tables are complete, and only then are the foreign keys
+     * restored. These commits are not atomic, so a failure may leave the rows of some tables
+     * committed, which is reported like a failure with a commit interval.
+     * <p>
+     * Resumable imports cannot be parallel.
+     *
+     * @param threads
+     *            number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Checks if rows are loaded by the native bulk loader of the DBMS.
+     *
+     * @return true if bulk loading is enabled
+     */
+    public boolean isBulkLoad() {
+        return bulkLoad;
+    }
+
+    /**
+     * Enables or disables the native bulk loader of the DBMS. When enabled and supported by the
+     * DBMS, each batch of rows is written to a temporary file and loaded by a single bulk load
+     * ({@code CSVREAD} on H2, {@code SYSCS_IMPORT_DATA} on Derby), instead of being inserted by a
+     * JDBC batch. Rows replacing existing rows are always inserted by JDBC batches.
+     * <p>
+     * Since the temporary file is read by the database server, the bulk loader is only used for
+     * embedded databases. When a bulk load fails for lack of privileges or file access, e.g. on
+     * newer versions of H2 without admin rights, the rows are inserted by JDBC batches instead.
+     * <p>
+     * The Derby procedure commits each batch of rows on its own. It is only used with a
+     * {@link #setCommitInterval(int) commit interval} and without a
+     * {@link #setResumable(boolean) resumable} import, and the import then commits after each
+     * batch. The default is false.
+     *
+     * @param bulkLoad
+     *            true to enable bulk loading
+     */
+    public void setBulkLoad(boolean bulkLoad) {
+        this.bulkLoad = bulkLoad;
+    }
+
+    /**
+     * Checks if secondary indexes are dropped before importing and rebuilt afterwards.
+     *
+     * @return true if indexes are rebuilt
+     */
+    public boolean isRebuildIndexes() {
+        return rebuildIndexes;
+    }
+
+    /**
+     * Drops the secondary indexes of the imported tables before inserting any rows and rebuilds
+     * them afterwards, so that each index is built once from the complete data instead of being
+     * updated row by row. Secondary indexes are all non-unique indexes not generated by the DBMS
+     * for a constraint. The default is false.
+     * <p>
+     * The indexes are rebuilt before the foreign keys are restored, also after a failed import.
+     * With a data source or a JDBC URL, the indexes of different tables are rebuilt concurrently
+     * on up to {@link #setThreads(int) threads} connections. DBMS specific settings for parallel
+     * index builds are applied to each of these connections.
+     *
+     * @param rebuildIndexes
+     *            true to rebuild indexes
+     */
+    public void setRebuildIndexes(boolean rebuildIndexes) {
+        this.rebuildIndexes = rebuildIndexes;
+    }
+}
@@ -17,12 +17,14 @@
  */
 package org.ops4j.pax.warp.core.update;
 
+import java.io.File;
 import java.io.InputStream;
 import java.sql.Connection;
 import java.util.List;
 import java.util.Optional;
 
 import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+import org.ops4j.pax.warp.core.jdbc.ConnectionFactory;
 
 /**
  * Updates a database with information from a change log.
@@ -75,4 +77,133 @@ public interface UpdateService {
      */
     void importData(Connection dbc, InputStream is, DbmsProfile dbms, Optional<String> schema,
         List<String> excludedTables);
+
+    /**
+     * Imports all data from the given change log into the given database, as for
+     * {@link #importData(Connection, InputStream, DbmsProfile, Optional, List)}, using the given
+     * options. The tables of the options do not apply to a change log. A stream cannot be
+     * imported resumably.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param is
+     *            change log input stream
+     * @param dbms
+     *            profile identifying a database management system
+     * @param schema
+     *            Optional database schema. If missing, the default schema will be used.
+     *            If present, the given schema will be used.
+     * @param excludedTables
+     *            list of names of tables which will not be truncated
+     * @param options
+     *            import options
+     */
+    void importData(Connection dbc, InputStream is, DbmsProfile dbms, Optional<String> schema,
+        List<String> excludedTables, ImportOptions options);
+
+    /**
+     * Imports all data from the given change log into the given database, as for
+     * {@link #importData(Connection, InputStream, DbmsProfile, Optional, List, ImportOptions)}.
+     * Additional connections for importing tables concurrently are opened as required by the
+     * options.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param connectionFactory
+     *            opens additional connections to the same database, or null
+     * @param is
+     *            change log input stream
+     * @param dbms
+     *            profile identifying a database management system
+     * @param schema
+     *            Optional database schema. If missing, the default schema will be used.
+     *            If present, the given schema will be used.
+     * @param excludedTables
+     *            list of names of tables which will not be truncated
+     * @param options
+     *            import options
+     */
+    void importData(Connection dbc, ConnectionFactory connectionFactory, InputStream is,
+        DbmsProfile dbms, Optional<String> schema, List<String> excludedTables,
+        ImportOptions options);
+
+    /**
+     * Imports data from the dump directory with the given manifest into the given database. The
+     * checksums of all chunk files are verified before changing the database. Foreign key
+     * constraints are dropped, the imported tables are truncated, all chunks of these tables are
+     * imported and finally, the constraints are recreated, as for
+     * {@link #importData(Connection, InputStream, DbmsProfile, Optional, List)}. Tables not
+     * imported are not truncated.
+     * <p>
+     * Tables with a watermark in an incremental dump are not truncated either. Instead, each
+     * imported row replaces any existing row with the same primary key.
+     * <p>
+     * The given file may also be a change log file, which is imported like a change log stream by
+     * {@link #importData(Connection, InputStream, DbmsProfile, Optional, List, ImportOptions)}.
+     * Unlike a stream, a file can be imported {@link ImportOptions#setResumable(boolean)
+     * resumably}.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param manifest
+     *            manifest file of a dump directory, the dump directory itself, or a change log
+     *            file
+     * @param dbms
+     *            profile identifying a database management system
+     * @param schema
+     *            Optional database schema. If missing, the default schema will be used.
+     *            If present, the given schema will be used.
+     * @param options
+     *            import options
+     */
+    void importData(Connection dbc, File manifest, DbmsProfile dbms, Optional<String> schema,
+        ImportOptions options);
+
+    /**
+     * Imports data from the dump directory with the given manifest into the given database, as
+     * for {@link #importData(Connection, File, DbmsProfile, Optional, ImportOptions)}. Additional
+     * connections for importing tables concurrently are opened as required by the options.
+     *
+     * @param dbc
+     *            JDBC database connection
+     * @param connectionFactory
+     *            opens additional connections to the same database, or null
+     * @param manifest
+     *            manifest file of a dump directory, the dump directory itself, or a change log
+     *            file
+     * @param dbms
+     *            profile identifying a database management system
+     * @param schema
+     *            Optional database schema. If missing, the default schema will be used.
+     *            If present, the given schema will be used.
+     * @param options
+     *            import options
+     */
+    void importData(Connection dbc, ConnectionFactory connectionFactory, File manifest,
+        DbmsProfile dbms, Optional<String> schema, ImportOptions options);
+
+    /**
+     * Copies all data from the source database to the target database, without an intermediate
+     * change log. Foreign key constraints of the target database are dropped, the copied tables
+     * are truncated, the rows of all tables are copied and finally, the constraints are
+     * recreated, as for {@link #importData(Connection, InputStream, DbmsProfile, Optional, List)}.
+     * Tables not copied are not truncated.
+     * <p>
+     * The tables must exist in both databases. Rows are read from the source database in a
+     * separate thread and inserted into the target database in JDBC batches, mapping column types
+     * by means of the DBMS profiles of both databases.
+     *
+     * @param source
+     *            JDBC connection of the source database
+     * @param sourceDbms
+     *            profile identifying the DBMS of the source database
+     * @param target
+     *            JDBC connection of the target database
+     * @param targetDbms
+     *            profile identifying the DBMS of the target database
+     * @param options
+     *            copy options
+     */
+    void copyData(Connection source, DbmsProfile sourceDbms, Connection target,
+        DbmsProfile targetDbms, CopyOptions options);
 }
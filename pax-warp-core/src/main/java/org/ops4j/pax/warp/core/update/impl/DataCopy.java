@@ -0,0 +1,347 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.update.impl;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.JDBCType;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+import org.ops4j.pax.warp.core.jdbc.ValueReader;
+import org.ops4j.pax.warp.core.jdbc.ValueReaders;
+import org.ops4j.pax.warp.core.update.CopyOptions;
+import org.ops4j.pax.warp.exc.WarpException;
+import org.ops4j.pax.warp.jaxb.gen.Column;
+import org.ops4j.pax.warp.jaxb.gen.CreateTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies the rows of tables from a source database to a target database, without an
+ * intermediate change log.
+ * <p>
+ * Each table is read by a single query on the source connection in a reader thread, which passes
+ * batches of rows through a bounded queue to the calling thread. The calling thread inserts each
+ * batch into the target table by a JDBC batch, so reading and writing overlap. When the queue is
+ * full, the reader waits for the writer.
+ * <p>
+ * Values are read with the getter matching the type of the source column and converted to the
+ * type of the target column, where both types are mapped by
+ * {@link DbmsProfile#getValueType(JDBCType, int, int)} of the respective DBMS. Large objects are
+ * read into memory, so the memory used by a copy is bounded by the queue size, the batch size and
+ * the size of LOB values.
+ */
+class DataCopy {
+
+    private static Logger log = LoggerFactory.getLogger(DataCopy.class);
+
+    /**
+     * Marks the end of a table in the queue. All other batches are non-empty.
+     */
+    private static final List<Object[]> END_OF_TABLE = Collections.emptyList();
+
+    private Connection source;
+
+    private DbmsProfile sourceDbms;
+
+    private Connection target;
+
+    private DbmsProfile targetDbms;
+
+    private CopyOptions options;
+
+    /**
+     * Creates a copy between the given databases.
+     *
+     * @param source
+     *            source database connection, not used by any other thread during the copy
+     * @param sourceDbms
+     *            source DBMS profile
+     * @param target
+     *            target database connection
+     * @param targetDbms
+     *            target DBMS profile
+     * @param options
+     *            copy options
+     */
+    DataCopy(Connection source, DbmsProfile sourceDbms, Connection target, DbmsProfile targetDbms,
+        CopyOptions options) {
+        if (options.getBatchSize() <= 0 || options.getQueueSize() <= 0) {
+            throw new WarpException("batch size and queue size must be greater than 0");
+        }
+        this.source = source;
+        this.sourceDbms = sourceDbms;
+        this.target = target;
+        this.targetDbms = targetDbms;
+        this.options = options;
+    }
+
+    /**
+     * Copies all rows of the given source table to the given target table. Only the columns of
+     * the target table which exist in the source table are copied, matching column names ignoring
+     * case. Other target columns get their default values.
+     *
+     * @param sourceTable
+     *            source table model
+     * @param targetTable
+     *            target table model
+     * @return number of rows copied
+     */
+    long copyTable(CreateTable sourceTable, CreateTable targetTable) {
+        List<String> sourceColumns = new ArrayList<>();
+        List<String> targetColumns = new ArrayList<>();
+        for (Column column : targetTable.getColumn()) {
+            Optional<Column> sourceColumn = sourceTable.getColumn().stream()
+                .filter(c -> c.getName().equalsIgnoreCase(column.getName())).findFirst();
+            if (sourceColumn.isPresent()) {
+                sourceColumns.add(sourceColumn.get().getName());
+                targetColumns.add(column.getName());
+            }
+        }
+        if (targetColumns.isEmpty()) {
+            log.warn("no common columns in {}, skipping table", targetTable.getTableName());
+            return 0;
+        }
+        String select = buildSelect(sourceDbms, sourceTable, sourceColumns);
+        log.debug(select);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "warp-copy");
+            thread.setDaemon(true);
+            return thread;
+        });
+        BlockingQueue<List<Object[]>> queue = new ArrayBlockingQueue<>(options.getQueueSize());
+        try {
+            JDBCType[] targetTypes = getTargetTypes(targetTable, targetColumns);
+            Future<?> reader = executor.submit(() -> {
+                readRows(select, queue);
+                return null;
+            });
+            long numRows = writeRows(targetTable, targetColumns, targetTypes, queue);
+            reader.get();
+            log.debug("copied {} rows to {}", numRows, targetTable.getTableName());
+            return numRows;
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new WarpException(exc);
+        }
+        catch (ExecutionException exc) {
+            throw new WarpException("cannot read " + sourceTable.getTableName(), exc.getCause());
+        }
+        finally {
+            // interrupts the reader if the writer has failed
+            executor.shutdownNow();
+        }
+    }
+
+    private static String buildSelect(DbmsProfile dbms, CreateTable table, List<String> columns) {
+        return columns.stream().map(dbms::quoteIdentifier)
+            .collect(Collectors.joining(", ", "select ", " from "))
+            + dbms.quoteIdentifier(table.getTableName());
+    }
+
+    /**
+     * Gets the types of the given target columns from the metadata of an empty query.
+     */
+    private JDBCType[] getTargetTypes(CreateTable table, List<String> columns)
+        throws SQLException {
+        String sql = buildSelect(targetDbms, table, columns) + " where 1 = 0";
+        try (PreparedStatement st = target.prepareStatement(sql);
+            ResultSet rs = st.executeQuery()) {
+            return ValueReaders.getValueTypes(rs.getMetaData(), targetDbms);
+        }
+    }
+
+    /**
+     * Reads all rows of the source table and puts them into the given queue in batches, followed
+     * by the end marker, even if reading fails. When interrupted by a failing writer, the reader
+     * stops without an end marker.
+     */
+    private void readRows(String sql, BlockingQueue<List<Object[]>> queue)
+        throws SQLException, InterruptedException {
+        int batchSize = options.getBatchSize();
+        boolean interrupted = false;
+        try (PreparedStatement st = source.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+            ResultSet.CONCUR_READ_ONLY)) {
+            Integer fetchSize = options.getFetchSize();
+            st.setFetchSize((fetchSize == null) ? sourceDbms.getFetchSize() : fetchSize);
+            try (ResultSet rs = st.executeQuery()) {
+                ValueReader[] readers = ValueReaders.createReaders(rs.getMetaData(), sourceDbms);
+                List<Object[]> batch = new ArrayList<>(batchSize);
+                while (rs.next()) {
+                    Object[] row = new Object[readers.length];
+                    for (int i = 0; i < readers.length; i++) {
+                        row[i] = readers[i].read(rs);
+                    }
+                    batch.add(row);
+                    if (batch.size() == batchSize) {
+                        queue.put(batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    queue.put(batch);
+                }
+            }
+        }
+        catch (InterruptedException exc) {
+            interrupted = true;
+            throw exc;
+        }
+        finally {
+            if (!interrupted) {
+                queue.put(END_OF_TABLE);
+            }
+        }
+    }
+
+    private long writeRows(CreateTable table, List<String> columns, JDBCType[] jdbcTypes,
+        BlockingQueue<List<Object[]>> queue) throws SQLException, InterruptedException {
+        String sql = columns.stream().map(targetDbms::quoteIdentifier)
+            .collect(Collectors.joining(", ",
+                "insert into " + targetDbms.quoteIdentifier(table.getTableName()) + " (", ")"))
+            + columns.stream().map(c -> "?").collect(Collectors.joining(", ", " values (", ")"));
+        long numRows = 0;
+        try (PreparedStatement st = target.prepareStatement(sql)) {
+            List<Object[]> batch;
+            while ((batch = queue.take()) != END_OF_TABLE) {
+                for (Object[] row : batch) {
+                    for (int i = 0; i < jdbcTypes.length; i++) {
+                        Object value = convertValue(row[i], jdbcTypes[i]);
+                        if (value == null) {
+                            st.setNull(i + 1, jdbcTypes[i].getVendorTypeNumber());
+                        }
+                        else {
+                            st.setObject(i + 1, value);
+                        }
+                    }
+                    st.addBatch();
+                }
+                st.executeBatch();
+                numRows += batch.size();
+            }
+        }
+        return numRows;
+    }
+
+    /**
+     * Converts a value read from the source database to the type of the target column.
+     */
+    private Object convertValue(Object value, JDBCType jdbcType) {
+        if (value == null) {
+            return null;
+        }
+        switch (jdbcType) {
+            case BIT:
+            case BOOLEAN:
+                if (value instanceof Number) {
+                    return ((Number) value).doubleValue() != 0;
+                }
+                return value;
+
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                if (value instanceof Boolean) {
+                    return ((Boolean) value) ? 1L : 0L;
+                }
+                if (value instanceof BigDecimal) {
+                    return ((BigDecimal) value).longValueExact();
+                }
+                return value;
+
+            case REAL:
+            case FLOAT:
+            case DOUBLE:
+                if (value instanceof Number) {
+                    return ((Number) value).doubleValue();
+                }
+                return value;
+
+            case DECIMAL:
+            case NUMERIC:
+                if (value instanceof Boolean) {
+                    return ((Boolean) value) ? BigDecimal.ONE : BigDecimal.ZERO;
+                }
+                if (value instanceof Double || value instanceof Float) {
+                    return BigDecimal.valueOf(((Number) value).doubleValue());
+                }
+                if (value instanceof Number && !(value instanceof BigDecimal)) {
+                    return BigDecimal.valueOf(((Number) value).longValue());
+                }
+                return value;
+
+            case CHAR:
+            case VARCHAR:
+            case NCHAR:
+            case NVARCHAR:
+            case LONGVARCHAR:
+            case LONGNVARCHAR:
+            case CLOB:
+            case NCLOB:
+                String string = value.toString();
+                if (string.isEmpty() && targetDbms.getEmptyStringIsNull()) {
+                    return " ";
+                }
+                return string;
+
+            case DATE:
+                if (value instanceof java.util.Date && !(value instanceof Date)) {
+                    return new Date(((java.util.Date) value).getTime());
+                }
+                return value;
+
+            case TIME:
+                if (value instanceof java.util.Date && !(value instanceof Time)) {
+                    return new Time(((java.util.Date) value).getTime());
+                }
+                return value;
+
+            case TIMESTAMP:
+                if (value instanceof java.util.Date && !(value instanceof Timestamp)) {
+                    return new Timestamp(((java.util.Date) value).getTime());
+                }
+                return value;
+
+            default:
+                return value;
+        }
+    }
+}
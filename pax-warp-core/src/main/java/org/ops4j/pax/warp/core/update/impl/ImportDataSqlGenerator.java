@@ -38,6 +38,7 @@ import org.ops4j.pax.warp.jaxb.gen.Insert;
 import org.ops4j.pax.warp.jaxb.gen.RenameColumn;
 import org.ops4j.pax.warp.jaxb.gen.RenameTable;
 import org.ops4j.pax.warp.jaxb.gen.RunSql;
+import org.ops4j.pax.warp.jaxb.gen.TableData;
 import org.ops4j.pax.warp.jaxb.gen.TruncateTable;
 import org.ops4j.pax.warp.jaxb.gen.visitor.Visitable;
 import org.ops4j.pax.warp.jaxb.gen.visitor.VisitorAction;
@@ -125,6 +126,11 @@ public class ImportDataSqlGenerator extends InsertSqlGenerator {
         return generateInsert(action);
     }
 
+    @Override
+    public VisitorAction enter(TableData action) {
+        return generateTableData(action);
+    }
+
     @Override
     public VisitorAction enter(DropTable action) {
         return notSupported(action);
@@ -150,6 +156,27 @@ public class ImportDataSqlGenerator extends InsertSqlGenerator {
         return notSupported(action);
     }
 
+    /**
+     * Imports rows of the given table by the given importer, e.g. a chunk of a dump directory.
+     * This generator runs the importer immediately.
+     *
+     * @param tableName
+     *            table name
+     * @param importer
+     *            inserts rows of the given table into the generator passed to it
+     */
+    protected void importTable(String tableName, Consumer<ImportDataSqlGenerator> importer) {
+        importer.accept(this);
+    }
+
+    /**
+     * Inserts all pending rows of the imported tables, before resetting the sequences. This
+     * generator just {@link #flush() flushes} its batch.
+     */
+    protected void finishTables() {
+        flush();
+    }
+
     protected void resetSequences(String schema) {
         Map<String, String> params = new HashMap<>();
         params.put("schemaName", schema);
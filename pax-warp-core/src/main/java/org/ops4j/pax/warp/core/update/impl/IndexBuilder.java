@@ -0,0 +1,237 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.update.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+import org.ops4j.pax.warp.core.jdbc.ConnectionFactory;
+import org.ops4j.pax.warp.exc.WarpException;
+import org.ops4j.pax.warp.jaxb.WarpJaxbContext;
+import org.ops4j.pax.warp.jaxb.gen.CreateIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rebuilds indexes dropped before importing data, either on the main connection or concurrently
+ * on a given number of additional connections.
+ * <p>
+ * Each connection takes the indexes of the next table from a shared queue, so that a large index
+ * does not hold up the tables behind it. The indexes of a table are built one after the other on
+ * the same connection, since building indexes of the same table concurrently may deadlock on the
+ * table lock, e.g. on Derby. Each connection is configured by the
+ * {@link DbmsProfile#getIndexBuildSettings() index build settings} of the DBMS. A failing index
+ * does not stop the other rebuilds, so that as many indexes as possible are restored. All
+ * failures are reported by a single exception when all rebuilds are done.
+ */
+class IndexBuilder {
+
+    private static Logger log = LoggerFactory.getLogger(IndexBuilder.class);
+
+    private DbmsProfile dbms;
+
+    private Connection dbc;
+
+    private Consumer<PreparedStatement> consumer;
+
+    private WarpJaxbContext context;
+
+    private ConnectionFactory connectionFactory;
+
+    private int numThreads;
+
+    /**
+     * Creates an index builder.
+     *
+     * @param dbms
+     *            DBMS profile
+     * @param dbc
+     *            main database connection
+     * @param consumer
+     *            prepared statement consumer
+     * @param context
+     *            JAXB context for Warp schema
+     * @param connectionFactory
+     *            opens additional connections, or null
+     * @param numThreads
+     *            number of additional connections
+     */
+    IndexBuilder(DbmsProfile dbms, Connection dbc, Consumer<PreparedStatement> consumer,
+        WarpJaxbContext context, ConnectionFactory connectionFactory, int numThreads) {
+        this.dbms = dbms;
+        this.dbc = dbc;
+        this.consumer = consumer;
+        this.context = context;
+        this.connectionFactory = connectionFactory;
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Builds the given indexes. Without a connection factory or with a single thread, the indexes
+     * are built and committed on the main connection.
+     *
+     * @param indexes
+     *            indexes to be built
+     */
+    void buildIndexes(List<CreateIndex> indexes) {
+        Map<String, List<CreateIndex>> tableIndexes = new LinkedHashMap<>();
+        for (CreateIndex index : indexes) {
+            tableIndexes.computeIfAbsent(index.getTableName().toUpperCase(),
+                t -> new ArrayList<>()).add(index);
+        }
+        Queue<List<CreateIndex>> pendingIndexes = new ConcurrentLinkedQueue<>(
+            tableIndexes.values());
+        List<RuntimeException> failures;
+        if (connectionFactory == null || numThreads <= 1 || tableIndexes.size() <= 1) {
+            failures = buildIndexes(dbc, pendingIndexes);
+            commit(dbc, failures);
+        }
+        else {
+            failures = buildIndexesConcurrently(pendingIndexes,
+                Math.min(numThreads, tableIndexes.size()));
+        }
+        if (!failures.isEmpty()) {
+            WarpException exc = new WarpException(
+                String.format("cannot rebuild %d of %d indexes", failures.size(), indexes.size()),
+                failures.get(0));
+            failures.stream().skip(1).forEach(exc::addSuppressed);
+            throw exc;
+        }
+    }
+
+    private List<RuntimeException> buildIndexesConcurrently(
+        Queue<List<CreateIndex>> pendingIndexes, int numWorkers) {
+        ExecutorService executor = Executors.newFixedThreadPool(numWorkers, r -> {
+            Thread thread = new Thread(r, "warp-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<List<RuntimeException>>> results = new ArrayList<>();
+            for (int i = 0; i < numWorkers; i++) {
+                results.add(executor.submit(() -> buildIndexesOnNewConnection(pendingIndexes)));
+            }
+            List<RuntimeException> failures = new ArrayList<>();
+            for (Future<List<RuntimeException>> result : results) {
+                failures.addAll(result.get());
+            }
+            return failures;
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new WarpException(exc);
+        }
+        catch (ExecutionException exc) {
+            throw new WarpException(exc.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<RuntimeException> buildIndexesOnNewConnection(
+        Queue<List<CreateIndex>> pendingIndexes) {
+        try (Connection connection = connectionFactory.getConnection()) {
+            connection.setAutoCommit(true);
+            return buildIndexes(connection, pendingIndexes);
+        }
+        catch (SQLException exc) {
+            List<RuntimeException> failures = new ArrayList<>();
+            failures.add(new WarpException(exc));
+            return failures;
+        }
+    }
+
+    /**
+     * Builds the indexes of the tables from the given queue on the given connection until the
+     * queue is empty.
+     *
+     * @return failures, possibly empty
+     */
+    private List<RuntimeException> buildIndexes(Connection connection,
+        Queue<List<CreateIndex>> pendingIndexes) {
+        List<RuntimeException> failures = new ArrayList<>();
+        try (UpdateSqlGenerator generator = new UpdateSqlGenerator(dbms, connection, consumer,
+            context)) {
+            runStatements(connection, dbms.getIndexBuildSettings());
+            List<CreateIndex> indexes;
+            while ((indexes = pendingIndexes.poll()) != null) {
+                for (CreateIndex index : indexes) {
+                    buildIndex(connection, generator, index, failures);
+                }
+            }
+        }
+        catch (RuntimeException exc) {
+            failures.add(exc);
+        }
+        return failures;
+    }
+
+    private void buildIndex(Connection connection, UpdateSqlGenerator generator,
+        CreateIndex index, List<RuntimeException> failures) {
+        try {
+            log.debug("building index {} on {}", index.getIndexName(), index.getTableName());
+            index.accept(generator);
+            String cleanup = dbms.getIndexBuildCleanup(index.getIndexName());
+            if (cleanup != null) {
+                runStatements(connection, Collections.singletonList(cleanup));
+            }
+        }
+        catch (RuntimeException exc) {
+            log.error("cannot build index {}", index.getIndexName(), exc);
+            failures.add(exc);
+        }
+    }
+
+    private static void runStatements(Connection connection, List<String> statements) {
+        try (Statement st = connection.createStatement()) {
+            for (String sql : statements) {
+                st.execute(sql);
+            }
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    private static void commit(Connection connection, List<RuntimeException> failures) {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }
+        catch (SQLException exc) {
+            failures.add(new WarpException(exc));
+        }
+    }
+}
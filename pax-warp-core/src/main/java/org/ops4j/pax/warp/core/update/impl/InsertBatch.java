@@ -0,0 +1,302 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.update.impl;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.JDBCType;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ops4j.pax.warp.core.dbms.BulkLoader;
+import org.ops4j.pax.warp.core.dbms.BulkLoader.BulkLoad;
+import org.ops4j.pax.warp.exc.WarpException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects rows inserted by the same {@link InsertPlan} and inserts them by JDBC batches of a
+ * given size. The prepared statements are reused until a row with a different plan is added.
+ * <p>
+ * For tables whose imported rows replace existing rows, each insert is preceded by a delete of
+ * the row with the same primary key. Deletes are batched as well and executed before the inserts
+ * of the same batch, assuming that a key occurs at most once per batch.
+ * <p>
+ * The values of the pending rows are kept until the batch is executed, so that a failing row
+ * can be reported with its values.
+ * <p>
+ * With a bulk loader, rows of plans without replaced keys are passed to the loader instead, and
+ * each batch is loaded by a single bulk load. If the bulk loader turns out to be unavailable on
+ * the connection, the pending rows and all further rows are inserted by JDBC batches.
+ */
+class InsertBatch implements AutoCloseable {
+
+    private static Logger log = LoggerFactory.getLogger(InsertBatch.class);
+
+    private static final int MAX_VALUE_LENGTH = 100;
+
+    private Connection dbc;
+
+    private int batchSize;
+
+    private InsertPlan plan;
+
+    private PreparedStatement insert;
+
+    private PreparedStatement delete;
+
+    private List<Object[]> rows = new ArrayList<>();
+
+    private BulkLoader bulkLoader;
+
+    private BulkLoad bulkLoad;
+
+    /**
+     * Creates an empty batch.
+     *
+     * @param dbc
+     *            database connection
+     * @param batchSize
+     *            maximum number of rows per JDBC batch or bulk load
+     * @param bulkLoader
+     *            bulk loader, or null
+     */
+    InsertBatch(Connection dbc, int batchSize, BulkLoader bulkLoader) {
+        this.dbc = dbc;
+        this.batchSize = Math.max(1, batchSize);
+        this.bulkLoader = bulkLoader;
+    }
+
+    /**
+     * Prepares the statements of the given plan for the following rows. If the plan differs from
+     * the current one, the pending rows are executed first.
+     *
+     * @param insertPlan
+     *            insert plan
+     * @throws SQLException
+     *             on database error
+     */
+    void prepare(InsertPlan insertPlan) throws SQLException {
+        if (insertPlan == plan) {
+            return;
+        }
+        execute();
+        closeStatements();
+        if (bulkLoader != null && insertPlan.getDeleteSql() == null) {
+            bulkLoad = bulkLoader.open(dbc, insertPlan.getTableName(),
+                insertPlan.getColumnNames());
+        }
+        else {
+            insert = dbc.prepareStatement(insertPlan.getInsertSql());
+            if (insertPlan.getDeleteSql() != null) {
+                delete = dbc.prepareStatement(insertPlan.getDeleteSql());
+            }
+        }
+        plan = insertPlan;
+    }
+
+    /**
+     * Adds a row to the batch, executing the batch when it is full.
+     *
+     * @param values
+     *            converted values, in the order of the columns of the plan
+     * @throws SQLException
+     *             on database error
+     */
+    void addRow(Object[] values) throws SQLException {
+        if (bulkLoad != null) {
+            bulkLoad.addRow(values);
+        }
+        else {
+            addToBatch(values);
+        }
+        rows.add(values);
+        if (rows.size() >= batchSize) {
+            execute();
+        }
+    }
+
+    private void addToBatch(Object[] values) throws SQLException {
+        if (delete != null) {
+            int[] keyIndexes = plan.getKeyIndexes();
+            for (int k = 0; k < keyIndexes.length; k++) {
+                delete.setObject(k + 1, values[keyIndexes[k]]);
+            }
+            delete.addBatch();
+        }
+        JDBCType[] jdbcTypes = plan.getJdbcTypes();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                insert.setNull(i + 1, jdbcTypes[i].getVendorTypeNumber());
+            }
+            else {
+                insert.setObject(i + 1, values[i]);
+            }
+        }
+        insert.addBatch();
+    }
+
+    /**
+     * Checks if there are any pending rows.
+     *
+     * @return true if all rows have been executed
+     */
+    boolean isEmpty() {
+        return rows.isEmpty();
+    }
+
+    /**
+     * Executes the pending rows, if any.
+     *
+     * @throws SQLException
+     *             on database error
+     */
+    void execute() throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        if (bulkLoad != null && executeBulkLoad()) {
+            return;
+        }
+        try {
+            if (delete != null) {
+                delete.executeBatch();
+            }
+            insert.executeBatch();
+        }
+        catch (BatchUpdateException exc) {
+            throw new WarpException(describeFailure(exc), exc);
+        }
+        finally {
+            rows.clear();
+        }
+    }
+
+    /**
+     * Loads the pending rows by the bulk loader. If the bulk loader is unavailable, it is no longer
+     * used, and the pending rows are added to a JDBC batch instead.
+     *
+     * @return true if the rows have been loaded, false if they have been added to a JDBC batch
+     */
+    private boolean executeBulkLoad() throws SQLException {
+        try {
+            bulkLoad.execute();
+            rows.clear();
+            return true;
+        }
+        catch (SQLException exc) {
+            if (!bulkLoader.isUnavailable(exc)) {
+                int numRows = rows.size();
+                rows.clear();
+                throw new WarpException(String.format("cannot load %d rows into %s: %s",
+                    numRows, plan.getTableName(), exc.getMessage()), exc);
+            }
+            log.warn("cannot use bulk loader, inserting rows by JDBC batches: {}",
+                exc.getMessage());
+        }
+        bulkLoader = null;
+        bulkLoad.close();
+        bulkLoad = null;
+        insert = dbc.prepareStatement(plan.getInsertSql());
+        for (Object[] values : rows) {
+            addToBatch(values);
+        }
+        return false;
+    }
+
+    /**
+     * Describes the first failing row of a batch. Drivers either stop at the failing row, so that
+     * there are fewer update counts than rows, or mark failing rows by
+     * {@link Statement#EXECUTE_FAILED}.
+     */
+    private String describeFailure(BatchUpdateException exc) {
+        int[] counts = exc.getUpdateCounts();
+        int failed = (counts == null) ? rows.size() : counts.length;
+        if (counts != null) {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == Statement.EXECUTE_FAILED) {
+                    failed = i;
+                    break;
+                }
+            }
+        }
+        if (failed >= rows.size()) {
+            return String.format("cannot insert batch of %d rows into %s: %s", rows.size(),
+                plan.getTableName(), exc.getMessage());
+        }
+        List<String> columnNames = plan.getColumnNames();
+        Object[] values = rows.get(failed);
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                row.append(", ");
+            }
+            row.append(columnNames.get(i)).append('=').append(formatValue(values[i]));
+        }
+        return String.format("cannot insert row %d of batch into %s: [%s]: %s", failed + 1,
+            plan.getTableName(), row, exc.getMessage());
+    }
+
+    private static String formatValue(Object value) {
+        if (value instanceof byte[]) {
+            return String.format("<%d bytes>", ((byte[]) value).length);
+        }
+        String s = String.valueOf(value);
+        if (s.length() > MAX_VALUE_LENGTH) {
+            return s.substring(0, MAX_VALUE_LENGTH) + "...";
+        }
+        return s;
+    }
+
+    private void closeStatements() throws SQLException {
+        plan = null;
+        if (bulkLoad != null) {
+            bulkLoad.close();
+            bulkLoad = null;
+        }
+        try {
+            if (insert != null) {
+                insert.close();
+            }
+        }
+        finally {
+            insert = null;
+            if (delete != null) {
+                delete.close();
+                delete = null;
+            }
+        }
+    }
+
+    /**
+     * Discards the pending rows and closes the statements.
+     */
+    @Override
+    public void close() {
+        rows.clear();
+        try {
+            closeStatements();
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.update.impl;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.JDBCType;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.List;
+
+import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+import org.ops4j.pax.warp.jaxb.gen.ColumnValue;
+
+/**
+ * Compiled plan for inserting rows with a given column signature into a table. The plan holds
+ * the rendered insert statement, the JDBC types of the columns and a converter per column, so
+ * that none of them is computed for each row.
+ * <p>
+ * A plan is identified by the table name and the names and types of its columns, in the order of
+ * the values of each row.
+ */
+class InsertPlan {
+
+    /**
+     * Converts a non-null value from its string representation in the change log to the Java
+     * type of a column.
+     */
+    @FunctionalInterface
+    interface ValueConverter {
+
+        Object convert(String value);
+    }
+
+    private String tableName;
+
+    private List<String> columnNames;
+
+    private List<String> columnTypes;
+
+    private JDBCType[] jdbcTypes;
+
+    private ValueConverter[] converters;
+
+    private String insertSql;
+
+    private String deleteSql;
+
+    private int[] keyIndexes;
+
+    private TableProgress progress;
+
+    /**
+     * Creates a plan.
+     *
+     * @param tableName
+     *            table name
+     * @param columnNames
+     *            column names
+     * @param columnTypes
+     *            names of JDBC types of the columns
+     * @param insertSql
+     *            insert statement with a parameter per column
+     * @param dbms
+     *            DBMS profile
+     */
+    InsertPlan(String tableName, List<String> columnNames, List<String> columnTypes,
+        String insertSql, DbmsProfile dbms) {
+        this.tableName = tableName;
+        this.columnNames = columnNames;
+        this.columnTypes = columnTypes;
+        this.insertSql = insertSql;
+        this.jdbcTypes = new JDBCType[columnTypes.size()];
+        this.converters = new ValueConverter[jdbcTypes.length];
+        for (int i = 0; i < jdbcTypes.length; i++) {
+            jdbcTypes[i] = JDBCType.valueOf(columnTypes.get(i));
+            converters[i] = createConverter(jdbcTypes[i], dbms);
+        }
+    }
+
+    /**
+     * Builds the key of a plan.
+     *
+     * @param tableName
+     *            table name
+     * @param columnNames
+     *            column names
+     * @param columnTypes
+     *            names of JDBC types of the columns
+     * @return plan key
+     */
+    static String signature(String tableName, List<String> columnNames, List<String> columnTypes) {
+        StringBuilder key = new StringBuilder(tableName);
+        for (int i = 0; i < columnNames.size(); i++) {
+            key.append('|').append(columnNames.get(i)).append(':').append(columnTypes.get(i));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Checks if this plan matches the given insert action, without allocating any objects.
+     *
+     * @param tableName
+     *            table name of the action
+     * @param columns
+     *            column values of the action
+     * @return true if the table and the column names and types are equal
+     */
+    boolean matches(String tableName, List<ColumnValue> columns) {
+        if (!this.tableName.equals(tableName) || columns.size() != jdbcTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < jdbcTypes.length; i++) {
+            ColumnValue column = columns.get(i);
+            if (!columnNames.get(i).equals(column.getName())
+                || !columnTypes.get(i).equals(column.getType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes each row replace an existing row with the same primary key.
+     *
+     * @param sql
+     *            statement deleting a row by its primary key
+     * @param indexes
+     *            indexes of the primary key values in each row
+     */
+    void setReplacedKey(String sql, int[] indexes) {
+        this.deleteSql = sql;
+        this.keyIndexes = indexes;
+    }
+
+    /**
+     * Converts the value of the column with the given index.
+     *
+     * @param index
+     *            column index, starting at 0
+     * @param value
+     *            string value, or null
+     * @return converted value, or null
+     */
+    Object convert(int index, String value) {
+        return (value == null) ? null : converters[index].convert(value);
+    }
+
+    /**
+     * Gets the progress of the table of this plan, which is shared by all plans for the table.
+     *
+     * @return table progress
+     */
+    TableProgress getProgress() {
+        return progress;
+    }
+
+    void setProgress(TableProgress progress) {
+        this.progress = progress;
+    }
+
+    String getTableName() {
+        return tableName;
+    }
+
+    List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    JDBCType[] getJdbcTypes() {
+        return jdbcTypes;
+    }
+
+    String getInsertSql() {
+        return insertSql;
+    }
+
+    /**
+     * Gets the statement deleting a replaced row.
+     *
+     * @return SQL, or null if rows are not replaced
+     */
+    String getDeleteSql() {
+        return deleteSql;
+    }
+
+    int[] getKeyIndexes() {
+        return keyIndexes;
+    }
+
+    /**
+     * Creates a converter from the string representation in the change log to the Java type
+     * corresponding to the given JDBC type. For unsupported types, the converter fails on the
+     * first non-null value.
+     */
+    private static ValueConverter createConverter(JDBCType jdbcType, DbmsProfile dbms) {
+        switch (jdbcType) {
+            case BIGINT:
+                return Long::parseLong;
+            case BIT:
+            case BOOLEAN:
+                return Boolean::parseBoolean;
+            case CHAR:
+            case CLOB:
+            case VARCHAR:
+            case LONGVARCHAR:
+                if (dbms.getEmptyStringIsNull()) {
+                    return v -> v.isEmpty() ? " " : v;
+                }
+                return v -> v;
+            case DATE:
+                return Date::valueOf;
+            case DECIMAL:
+            case NUMERIC:
+                return BigDecimal::new;
+            case DOUBLE:
+                return Double::parseDouble;
+            case INTEGER:
+                return Integer::parseInt;
+            case BINARY:
+            case BLOB:
+            case LONGVARBINARY:
+            case VARBINARY:
+                return v -> Base64.getDecoder().decode(v);
+            case NULL:
+                return v -> null;
+            case SMALLINT:
+                return Short::parseShort;
+            case TIME:
+                return Time::valueOf;
+            case TINYINT:
+                return Byte::parseByte;
+            case TIMESTAMP:
+            case TIMESTAMP_WITH_TIMEZONE:
+                return Timestamp::valueOf;
+            default:
+                return v -> {
+                    throw new IllegalArgumentException("cannot convert JDBCType " + jdbcType);
+                };
+        }
+    }
+}
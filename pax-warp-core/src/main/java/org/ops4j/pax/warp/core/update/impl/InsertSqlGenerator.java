@@ -18,44 +18,82 @@
 package org.ops4j.pax.warp.core.update.impl;
 
 import java.io.StringWriter;
-import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
-import java.sql.Date;
-import java.sql.JDBCType;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.Time;
-import java.sql.Timestamp;
-import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 
 import org.ops4j.pax.warp.core.changelog.impl.BaseSqlGenerator;
+import org.ops4j.pax.warp.core.dbms.BulkLoader;
 import org.ops4j.pax.warp.core.dbms.DbmsProfile;
 import org.ops4j.pax.warp.exc.WarpException;
 import org.ops4j.pax.warp.jaxb.WarpJaxbContext;
 import org.ops4j.pax.warp.jaxb.gen.ChangeSet;
 import org.ops4j.pax.warp.jaxb.gen.ColumnValue;
+import org.ops4j.pax.warp.jaxb.gen.DataColumn;
 import org.ops4j.pax.warp.jaxb.gen.Insert;
 import org.ops4j.pax.warp.jaxb.gen.ObjectFactory;
+import org.ops4j.pax.warp.jaxb.gen.Row;
+import org.ops4j.pax.warp.jaxb.gen.RowValue;
+import org.ops4j.pax.warp.jaxb.gen.TableData;
 import org.ops4j.pax.warp.jaxb.gen.visitor.VisitorAction;
 
 /**
  * SQL generator for INSERT actions.
+ * <p>
+ * Rows are inserted by cached {@link InsertPlan}s, compiled once per table and column signature,
+ * so the insert statement is rendered and the value converters are selected only once. For
+ * consecutive inserts with the same signature, the plan is found without a map lookup.
+ * <p>
+ * Rows are inserted by JDBC batches of a configurable size. A batch is continued by consecutive
+ * inserts with the same statement, i.e. for the same table and columns. Any other statement
+ * executes the pending rows first. The generator must be closed to release the prepared
+ * statements, after {@link #flush()} for completing the last batch.
  *
  * @author Harald Wellmann
  *
  */
-public class InsertSqlGenerator extends BaseSqlGenerator {
+public class InsertSqlGenerator extends BaseSqlGenerator implements AutoCloseable {
 
     private WarpJaxbContext context;
 
+    private Map<String, List<String>> replacedKeys = Collections.emptyMap();
+
+    private int batchSize = 1;
+
+    private int commitInterval;
+
+    private long uncommittedRows;
+
+    private Map<String, Long> committedRows = new LinkedHashMap<>();
+
+    private Map<String, TableProgress> progress = new LinkedHashMap<>();
+
+    private Map<String, Long> resumedRows = Collections.emptyMap();
+
+    private Consumer<Map<String, Long>> checkpoint;
+
+    private BulkLoader bulkLoader;
+
+    private InsertBatch batch;
+
+    private Map<String, InsertPlan> plans = new LinkedHashMap<>();
+
+    private InsertPlan lastPlan;
+
     protected InsertSqlGenerator(DbmsProfile dbms, Connection dbc, Consumer<PreparedStatement> consumer,
         WarpJaxbContext context) {
         super(dbms, dbc, consumer);
@@ -66,19 +104,70 @@ public class InsertSqlGenerator extends BaseSqlGenerator {
         if (dbms.getTableNameIsCaseSensitive()) {
             action.setTableName(action.getTableName().toLowerCase());
         }
-        String rawSql = engine.renderTemplate("insert", action);
-        try (PreparedStatement st = dbc.prepareStatement(rawSql)) {
-            int i = 1;
-            for (ColumnValue columnValue : action.getColumn()) {
-                JDBCType jdbcType = JDBCType.valueOf(columnValue.getType());
-                Object value = convertValue(columnValue);
-                if (value == null) {
-                    st.setNull(i, jdbcType.getVendorTypeNumber());
+        List<ColumnValue> columns = action.getColumn();
+        InsertPlan plan = lastPlan;
+        if (plan == null || !plan.matches(action.getTableName(), columns)) {
+            plan = getPlan(action.getTableName(),
+                columns.stream().map(ColumnValue::getName).collect(Collectors.toList()),
+                columns.stream().map(ColumnValue::getType).collect(Collectors.toList()), action);
+            lastPlan = plan;
+        }
+        if (!plan.getProgress().nextRow()) {
+            return VisitorAction.SKIP;
+        }
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            ColumnValue columnValue = columns.get(i);
+            values[i] = columnValue.isNull() ? null : plan.convert(i, columnValue.getValue());
+        }
+        try {
+            prepareBatch(plan);
+            batch.addRow(values);
+            rowAdded();
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+        return VisitorAction.SKIP;
+    }
+
+    /**
+     * Inserts all rows of a table data action, reusing the prepared statement of the batch.
+     *
+     * @param action
+     *            table data action
+     * @return visitor action
+     */
+    protected VisitorAction generateTableData(TableData action) {
+        if (dbms.getTableNameIsCaseSensitive()) {
+            action.setTableName(action.getTableName().toLowerCase());
+        }
+        List<DataColumn> columns = action.getColumn();
+        InsertPlan plan = getPlan(action.getTableName(),
+            columns.stream().map(DataColumn::getName).collect(Collectors.toList()),
+            columns.stream().map(DataColumn::getType).collect(Collectors.toList()), action);
+        int numColumns = columns.size();
+        TableProgress tableProgress = plan.getProgress();
+        try {
+            prepareBatch(plan);
+            for (Row row : action.getRow()) {
+                if (!tableProgress.nextRow()) {
+                    continue;
+                }
+                List<RowValue> rowValues = row.getV();
+                if (rowValues.size() != numColumns) {
+                    throw new WarpException(String.format(
+                        "table data row for %s has %d values, expected %d",
+                        action.getTableName(), rowValues.size(), numColumns));
                 }
-                st.setObject(i, value);
-                i++;
+                Object[] values = new Object[numColumns];
+                for (int i = 0; i < numColumns; i++) {
+                    RowValue rowValue = rowValues.get(i);
+                    values[i] = rowValue.isNull() ? null : plan.convert(i, rowValue.getValue());
+                }
+                batch.addRow(values);
+                rowAdded();
             }
-            consumer.accept(st);
         }
         catch (SQLException exc) {
             throw new WarpException(exc);
@@ -86,58 +175,225 @@ public class InsertSqlGenerator extends BaseSqlGenerator {
         return VisitorAction.SKIP;
     }
 
+    private void prepareBatch(InsertPlan plan) throws SQLException {
+        if (batch == null) {
+            batch = new InsertBatch(dbc, batchSize, bulkLoader);
+        }
+        batch.prepare(plan);
+        commitIfDue();
+    }
+
     /**
-     * @param columnValue
-     * @return
+     * Counts an added row and commits when the batch has been executed and the commit interval is
+     * exceeded.
      */
-    private Object convertValue(ColumnValue columnValue) {
-        if (columnValue.isNull()) {
-            return null;
-        }
-        JDBCType jdbcType = JDBCType.valueOf(columnValue.getType());
-        String value = columnValue.getValue();
-        switch (jdbcType) {
-            case BIGINT:
-                return Long.parseLong(value);
-            case BIT:
-            case BOOLEAN:
-                return Boolean.parseBoolean(value);
-            case CHAR:
-            case CLOB:
-            case VARCHAR:
-            case LONGVARCHAR:
-                if (value.isEmpty() && dbms.getEmptyStringIsNull()) {
-                    return " ";
-                }
-                return value;
-            case DATE:
-                return Date.valueOf(value);
-            case DECIMAL:
-            case NUMERIC:
-                return new BigDecimal(value);
-            case DOUBLE:
-                return Double.parseDouble(value);
-            case INTEGER:
-                return Integer.parseInt(value);
-            case BINARY:
-            case BLOB:
-            case LONGVARBINARY:
-            case VARBINARY:
-                return Base64.getDecoder().decode(value);
-            case NULL:
-                return null;
-            case SMALLINT:
-                return Short.parseShort(value);
-            case TIME:
-                return Time.valueOf(value);
-            case TINYINT:
-                return Byte.parseByte(value);
-            case TIMESTAMP:
-            case TIMESTAMP_WITH_TIMEZONE:
-                return Timestamp.valueOf(value);
-            default:
-                throw new IllegalArgumentException("cannot convert JDBCType " + jdbcType.toString());
+    private void rowAdded() {
+        uncommittedRows++;
+        commitIfDue();
+    }
+
+    /**
+     * Commits when the batch has been executed and the commit interval is exceeded. A bulk loader
+     * committing on its own has committed the rows of each executed batch already, so the
+     * generator commits after each batch to keep track of the committed rows.
+     */
+    private void commitIfDue() {
+        int interval = (bulkLoader == null || bulkLoader.isTransactional()) ? commitInterval : 1;
+        if (interval > 0 && uncommittedRows >= interval && batch.isEmpty()) {
+            commit();
+        }
+    }
+
+    /**
+     * Gets the cached plan for inserting rows with the given columns into the given table, or
+     * compiles a new one, rendering the insert statement for the given action. For tables with
+     * replaced keys, each row is deleted before being inserted.
+     */
+    private InsertPlan getPlan(String tableName, List<String> columnNames,
+        List<String> columnTypes, Object action) {
+        String signature = InsertPlan.signature(tableName, columnNames, columnTypes);
+        InsertPlan plan = plans.get(signature);
+        if (plan != null) {
+            return plan;
+        }
+        plan = new InsertPlan(tableName, columnNames, columnTypes,
+            engine.renderTemplate("insert", action), dbms);
+        plan.setProgress(progress.computeIfAbsent(tableName.toUpperCase(),
+            t -> new TableProgress(tableName, resumedRows.getOrDefault(t, 0L))));
+        List<String> keyColumns = replacedKeys.get(tableName.toUpperCase());
+        if (keyColumns != null) {
+            int[] keyIndexes = new int[keyColumns.size()];
+            for (int k = 0; k < keyIndexes.length; k++) {
+                keyIndexes[k] = findColumn(tableName, columnNames, keyColumns.get(k));
+            }
+            Map<String, Object> params = new HashMap<>();
+            params.put("tableName", tableName);
+            params.put("keyColumns", keyColumns);
+            plan.setReplacedKey(engine.renderTemplate("deleteRow", params), keyIndexes);
+        }
+        plans.put(signature, plan);
+        return plan;
+    }
+
+    /**
+     * Sets the primary keys of tables whose imported rows replace existing rows. Before a row is
+     * inserted into one of these tables, any row with the same key is deleted.
+     *
+     * @param replacedKeys
+     *            map of primary key column names, indexed by upper case table names
+     */
+    public void setReplacedKeys(Map<String, List<String>> replacedKeys) {
+        this.replacedKeys = replacedKeys;
+        plans.clear();
+        lastPlan = null;
+    }
+
+    /**
+     * Sets the maximum number of rows inserted by a single JDBC batch. Consecutive rows for the
+     * same table and columns are collected in a batch, which is executed when it is full, before
+     * any other statement, and by {@link #flush()}. The default is 1, so that each row is inserted
+     * immediately.
+     *
+     * @param batchSize
+     *            batch size
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets a native bulk loader of the DBMS, which loads the rows of each batch instead of
+     * inserting them by a JDBC batch. Rows replacing existing rows are always inserted by JDBC
+     * batches. A bulk loader which is not transactional must only be used when the import may
+     * commit before it is complete, since the generator then commits after each batch. By
+     * default, there is no bulk loader.
+     *
+     * @param bulkLoader
+     *            bulk loader, or null
+     */
+    public void setBulkLoader(BulkLoader bulkLoader) {
+        this.bulkLoader = bulkLoader;
+    }
+
+    /**
+     * Sets the minimum number of rows inserted by a transaction. When a batch has been executed
+     * and at least this number of rows has been inserted since the last commit, the generator
+     * commits. The default is 0, so that the generator never commits on its own.
+     *
+     * @param commitInterval
+     *            commit interval, or 0
+     */
+    public void setCommitInterval(int commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    /**
+     * Sets the number of rows of each table committed by a previous import of the same change
+     * log. These rows are skipped, i.e. the first rows of each table in change log order.
+     *
+     * @param resumedRows
+     *            map of row counts, indexed by upper case table names
+     */
+    public void setResumedRows(Map<String, Long> resumedRows) {
+        this.resumedRows = resumedRows;
+    }
+
+    /**
+     * Sets a checkpoint handler which is called by {@link #commit()} before committing, with the
+     * number of rows of each table read so far, including rows skipped when resuming. The handler
+     * may save these numbers in the current transaction, so that they are committed together with
+     * the rows.
+     *
+     * @param checkpoint
+     *            checkpoint handler
+     */
+    public void setCheckpoint(Consumer<Map<String, Long>> checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Inserts all pending rows and commits the transaction.
+     */
+    public void commit() {
+        flush();
+        Map<String, Long> rows = new LinkedHashMap<>();
+        for (TableProgress tableProgress : progress.values()) {
+            rows.put(tableProgress.getTableName(), tableProgress.getNumRows());
+        }
+        if (checkpoint != null) {
+            checkpoint.accept(rows);
         }
+        try {
+            dbc.commit();
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+        uncommittedRows = 0;
+        committedRows = rows;
+    }
+
+    /**
+     * Gets the number of rows committed by {@link #commit()} for each table, including rows
+     * committed by a resumed import.
+     *
+     * @return map of row counts, indexed by table name, in the order of the first insert
+     */
+    public Map<String, Long> getCommittedRows() {
+        return committedRows;
+    }
+
+    /**
+     * Inserts all pending rows.
+     */
+    public void flush() {
+        if (batch == null) {
+            return;
+        }
+        try {
+            batch.execute();
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    /**
+     * Discards all pending rows and closes the prepared statements for inserting rows.
+     */
+    @Override
+    public void close() {
+        if (batch != null) {
+            batch.close();
+            batch = null;
+        }
+    }
+
+    @Override
+    protected void runStatement(String sql) {
+        flush();
+        super.runStatement(sql);
+    }
+
+    @Override
+    protected void runSimpleStatement(String sql) {
+        flush();
+        super.runSimpleStatement(sql);
+    }
+
+    private static int findColumn(String tableName, List<String> columnNames,
+        String columnName) {
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        throw missingKeyColumn(tableName, columnName);
+    }
+
+    private static WarpException missingKeyColumn(String tableName, String columnName) {
+        return new WarpException(
+            String.format("primary key column %s missing in data for %s", columnName, tableName));
     }
 
     protected String computeChecksum(ChangeSet changeSet) {
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.update.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+import org.ops4j.pax.warp.core.jdbc.ConnectionFactory;
+import org.ops4j.pax.warp.exc.WarpException;
+import org.ops4j.pax.warp.jaxb.WarpJaxbContext;
+import org.ops4j.pax.warp.jaxb.gen.Insert;
+import org.ops4j.pax.warp.jaxb.gen.TableData;
+import org.ops4j.pax.warp.jaxb.gen.visitor.VisitorAction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SQL generator for the {@code importData} command, importing multiple tables concurrently.
+ * <p>
+ * Each table is assigned to one of a given number of workers, each with a thread, a connection and
+ * an {@link ImportDataSqlGenerator} of its own. Inserts and table data read by the current thread
+ * are passed to the worker of their table. The number of changes pending for a worker is
+ * limited, so a slow worker blocks the reader instead of using up memory. Tables imported by
+ * {@link #importTable(String, Consumer)}, e.g. chunks of a dump directory, are read by the
+ * workers.
+ * <p>
+ * The rows of all workers are committed by {@link #finishTables()} when all workers are done.
+ * When a worker fails, all workers stop, and the failure is thrown to the current thread. Rows
+ * committed by workers before a failure are reported by {@link #getCommittedRows()}.
+ */
+class ParallelImportSqlGenerator extends ImportDataSqlGenerator {
+
+    /**
+     * Maximum number of changes pending for a worker.
+     */
+    private static final int MAX_PENDING_CHANGES = 16;
+
+    private static final Runnable END = () -> {
+    };
+
+    private static Logger log = LoggerFactory.getLogger(ParallelImportSqlGenerator.class);
+
+    private List<Worker> workers = new ArrayList<>();
+
+    private Map<String, Worker> assignedWorkers = new HashMap<>();
+
+    private ExecutorService executor;
+
+    private AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    private boolean stopped;
+
+    /**
+     * Creates a parallel import generator and starts the workers.
+     *
+     * @param dbms
+     *            DBMS profile
+     * @param dbc
+     *            main database connection
+     * @param consumer
+     *            prepared statement consumer for the main connection
+     * @param context
+     *            JAXB context for Warp schema
+     * @param connectionFactory
+     *            opens worker connections
+     * @param numThreads
+     *            number of workers
+     * @param generatorFactory
+     *            creates the generator of a worker for the given connection
+     */
+    ParallelImportSqlGenerator(DbmsProfile dbms, Connection dbc,
+        Consumer<PreparedStatement> consumer, WarpJaxbContext context,
+        ConnectionFactory connectionFactory, int numThreads,
+        Function<Connection, ImportDataSqlGenerator> generatorFactory) {
+        super(dbms, dbc, consumer, context);
+        this.executor = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread thread = new Thread(r, "warp-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int i = 0; i < numThreads; i++) {
+                Worker worker = new Worker(connectionFactory.getConnection());
+                workers.add(worker);
+                worker.dbc.setAutoCommit(false);
+                worker.generator = generatorFactory.apply(worker.dbc);
+            }
+        }
+        catch (SQLException | RuntimeException exc) {
+            close();
+            throw (exc instanceof RuntimeException) ? (RuntimeException) exc
+                : new WarpException(exc);
+        }
+        workers.forEach(executor::execute);
+    }
+
+    @Override
+    public VisitorAction enter(Insert action) {
+        submit(action.getTableName(), g -> action.accept(g), true);
+        return VisitorAction.SKIP;
+    }
+
+    @Override
+    public VisitorAction enter(TableData action) {
+        submit(action.getTableName(), g -> action.accept(g), true);
+        return VisitorAction.SKIP;
+    }
+
+    /**
+     * Passes the given importer to the worker of the given table, without limiting the number of
+     * pending importers, since each importer is expected to read its rows by itself.
+     */
+    @Override
+    protected void importTable(String tableName, Consumer<ImportDataSqlGenerator> importer) {
+        submit(tableName, importer, false);
+    }
+
+    /**
+     * Waits for all workers to insert their pending rows and commits the rows of all workers.
+     */
+    @Override
+    protected void finishTables() {
+        stopWorkers();
+        checkFailure();
+        for (Worker worker : workers) {
+            worker.generator.commit();
+        }
+    }
+
+    /**
+     * Gets the number of rows committed by the workers for each table. Workers still running are
+     * stopped first, so the numbers are final.
+     *
+     * @return map of row counts, indexed by table name
+     */
+    @Override
+    public Map<String, Long> getCommittedRows() {
+        stopWorkers();
+        Map<String, Long> committedRows = new LinkedHashMap<>();
+        for (Worker worker : workers) {
+            if (worker.generator != null) {
+                committedRows.putAll(worker.generator.getCommittedRows());
+            }
+        }
+        return committedRows;
+    }
+
+    /**
+     * Stops all workers, discards their uncommitted rows and closes their connections.
+     */
+    @Override
+    public void close() {
+        stopWorkers();
+        workers.forEach(Worker::close);
+        super.close();
+    }
+
+    private void submit(String tableName, Consumer<ImportDataSqlGenerator> importer,
+        boolean limited) {
+        checkFailure();
+        Worker worker = assignedWorkers.computeIfAbsent(tableName.toUpperCase(),
+            t -> workers.get(assignedWorkers.size() % workers.size()));
+        try {
+            if (limited) {
+                worker.permits.acquire();
+            }
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new WarpException(exc);
+        }
+        worker.tasks.add(() -> {
+            try {
+                worker.runTask(importer);
+            }
+            finally {
+                if (limited) {
+                    worker.permits.release();
+                }
+            }
+        });
+    }
+
+    private void checkFailure() {
+        if (failure.get() != null) {
+            stopWorkers();
+            throw failure.get();
+        }
+    }
+
+    /**
+     * Lets all workers complete their pending tasks and waits for them to terminate. After a
+     * failure, the workers skip their pending tasks.
+     */
+    private void stopWorkers() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        workers.forEach(w -> w.tasks.add(END));
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.debug("waiting for import workers");
+            }
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, new WarpException(exc));
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Imports the tables assigned to it on a connection of its own.
+     */
+    private class Worker implements Runnable {
+
+        private Connection dbc;
+
+        private ImportDataSqlGenerator generator;
+
+        private BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+
+        private Semaphore permits = new Semaphore(MAX_PENDING_CHANGES);
+
+        Worker(Connection dbc) {
+            this.dbc = dbc;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Runnable task;
+                while ((task = tasks.take()) != END) {
+                    task.run();
+                }
+                runTask(ImportDataSqlGenerator::flush);
+            }
+            catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, new WarpException(exc));
+            }
+        }
+
+        /**
+         * Runs the given importer, unless any worker has failed.
+         */
+        private void runTask(Consumer<ImportDataSqlGenerator> importer) {
+            if (failure.get() != null) {
+                return;
+            }
+            try {
+                importer.accept(generator);
+            }
+            catch (RuntimeException exc) {
+                log.error("worker failed", exc);
+                failure.compareAndSet(null, exc);
+            }
+        }
+
+        private void close() {
+            if (generator != null) {
+                generator.close();
+            }
+            try (Connection c = dbc) {
+                if (!c.getAutoCommit()) {
+                    c.rollback();
+                }
+            }
+            catch (SQLException exc) {
+                log.warn("cannot close worker connection", exc);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.update.impl;
+
+/**
+ * Progress of importing a table. Counts the rows of the table read from a change log, so that a
+ * resumed import can skip the rows committed by a previous import of the same change log. Rows
+ * are identified by their ordinal among the rows of their table, in change log order.
+ */
+class TableProgress {
+
+    private String tableName;
+
+    private long skippedRows;
+
+    private long numRows;
+
+    /**
+     * Creates the progress of a table.
+     *
+     * @param tableName
+     *            table name
+     * @param skippedRows
+     *            number of leading rows to be skipped
+     */
+    TableProgress(String tableName, long skippedRows) {
+        this.tableName = tableName;
+        this.skippedRows = skippedRows;
+    }
+
+    /**
+     * Counts the next row of the table.
+     *
+     * @return true if the row is to be inserted, false if it is to be skipped
+     */
+    boolean nextRow() {
+        numRows++;
+        return numRows > skippedRows;
+    }
+
+    /**
+     * Gets the table name.
+     *
+     * @return table name
+     */
+    String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Gets the number of rows read so far, including skipped rows.
+     *
+     * @return number of rows
+     */
+    long getNumRows() {
+        return numRows;
+    }
+}
@@ -20,33 +20,59 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Named;
-import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.ops4j.pax.warp.core.changelog.ChangeLogReader;
 import org.ops4j.pax.warp.core.changelog.ChangeLogWriter;
 import org.ops4j.pax.warp.core.changelog.impl.ChangeLogService;
+import org.ops4j.pax.warp.core.dbms.BulkLoader;
 import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+import org.ops4j.pax.warp.core.dump.DumpService;
 import org.ops4j.pax.warp.core.history.ChangeSetHistory;
 import org.ops4j.pax.warp.core.history.ChangeSetHistoryService;
+import org.ops4j.pax.warp.core.history.ImportCheckpointService;
+import org.ops4j.pax.warp.core.history.WatermarkService;
+import org.ops4j.pax.warp.core.io.Checksums;
+import org.ops4j.pax.warp.core.io.Compression;
+import org.ops4j.pax.warp.core.jdbc.ConnectionFactory;
 import org.ops4j.pax.warp.core.jdbc.DatabaseModel;
 import org.ops4j.pax.warp.core.jdbc.DatabaseModelBuilder;
 import org.ops4j.pax.warp.core.schema.SchemaHandler;
+import org.ops4j.pax.warp.core.update.CopyOptions;
+import org.ops4j.pax.warp.core.update.ImportOptions;
 import org.ops4j.pax.warp.core.update.UpdateService;
 import org.ops4j.pax.warp.exc.WarpException;
 import org.ops4j.pax.warp.jaxb.WarpJaxbContext;
+import org.ops4j.pax.warp.jaxb.gen.AddPrimaryKey;
 import org.ops4j.pax.warp.jaxb.gen.ChangeLog;
 import org.ops4j.pax.warp.jaxb.gen.ChangeSet;
+import org.ops4j.pax.warp.jaxb.gen.CreateIndex;
 import org.ops4j.pax.warp.jaxb.gen.CreateTable;
+import org.ops4j.pax.warp.jaxb.gen.DumpChunk;
+import org.ops4j.pax.warp.jaxb.gen.DumpManifest;
+import org.ops4j.pax.warp.jaxb.gen.DumpTable;
+import org.ops4j.pax.warp.jaxb.gen.TruncateTable;
 import org.ops4j.pax.warp.scope.CdiDependent;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
@@ -77,6 +103,9 @@ public class UpdateServiceImpl implements UpdateService {
     @Inject
     private WarpJaxbContext context;
 
+    @Inject
+    private ImportCheckpointService checkpointService;
+
     @Override
     public void migrate(Connection dbc, InputStream is, DbmsProfile dbms, Optional<String> schema) {
         boolean autoCommit = false;
@@ -91,54 +120,320 @@ public class UpdateServiceImpl implements UpdateService {
             migrateInternal(dbc, is, dbms);
             dbc.setAutoCommit(autoCommit);
         }
-        catch (SQLException | JAXBException exc) {
+        catch (SQLException exc) {
             throw new WarpException(exc);
         }
     }
 
     /**
+     * Applies a change log. Change sets are read and applied one at a time, since the generator
+     * needs the complete change set for computing its checksum.
+     *
      * @param dbc
      * @param is
      * @param dbms
-     * @throws JAXBException
      */
-    private void migrateInternal(Connection dbc, InputStream is, DbmsProfile dbms)
-        throws JAXBException {
-        UpdateSqlGenerator generator = new UpdateSqlGenerator(dbms, dbc, s -> runUpdate(s),
-            context);
-        if (!historyService.hasMetaDataTable(dbc)) {
-            CreateTable action = historyService.createHistoryTableAction();
-            action.accept(generator);
-        }
-
-        ChangeSetHistory history = historyService.readChangeSetHistory(dbc);
-        generator.setChangeLogHistory(history);
-        generator.setChangeSetFilter(c -> !history.containsKey(c.getId()));
+    private void migrateInternal(Connection dbc, InputStream is, DbmsProfile dbms) {
+        try (UpdateSqlGenerator generator = new UpdateSqlGenerator(dbms, dbc,
+            s -> runUpdate(s), context)) {
+            generator.setBatchSize(ImportOptions.DEFAULT_BATCH_SIZE);
+            if (!historyService.hasMetaDataTable(dbc)) {
+                CreateTable action = historyService.createHistoryTableAction();
+                action.accept(generator);
+            }
 
-        ChangeLog changeLog = readChangeLog(is);
-        changeLog.accept(generator);
-    }
+            ChangeSetHistory history = historyService.readChangeSetHistory(dbc);
+            generator.setChangeLogHistory(history);
+            generator.setChangeSetFilter(c -> !history.containsKey(c.getId()));
 
-    private void importDataInternal(ImportDataSqlGenerator generator, InputStream is, String schema) {
-        try {
-            ChangeLog changeLog = readChangeLog(is);
-            changeLog.accept(generator);
-            generator.resetSequences(schema);
-        }
-        catch (JAXBException exc) {
-            throw new WarpException(exc);
+            readChangeLog(is, reader -> changeLogReader.parse(reader, generator));
         }
     }
 
     @Override
     public void importData(Connection dbc, InputStream is, DbmsProfile dbms, Optional<String> schema,
         List<String> excludedTables) {
+        importData(dbc, is, dbms, schema, excludedTables, new ImportOptions());
+    }
+
+    @Override
+    public void importData(Connection dbc, InputStream is, DbmsProfile dbms, Optional<String> schema,
+        List<String> excludedTables, ImportOptions options) {
+        importData(dbc, null, is, dbms, schema, excludedTables, options);
+    }
+
+    @Override
+    public void importData(Connection dbc, ConnectionFactory connectionFactory, InputStream is,
+        DbmsProfile dbms, Optional<String> schema, List<String> excludedTables,
+        ImportOptions options) {
+        if (options.isResumable()) {
+            throw new WarpException(
+                "resumable imports require a change log file or a dump directory");
+        }
+        importData(dbc, connectionFactory, is, dbms, schema, excludedTables, options, null);
+    }
+
+    private void importData(Connection dbc, ConnectionFactory connectionFactory, InputStream is,
+        DbmsProfile dbms, Optional<String> schema, List<String> excludedTables,
+        ImportOptions options, String sourceHash) {
         String currentSchema = new SchemaHandler(dbms.getSubprotocol()).getCurrentSchema(dbc);
         String schemaName = schema.orElse(currentSchema);
         DatabaseModelBuilder inspector = new DatabaseModelBuilder(dbc, null, schemaName);
         DatabaseModel database = inspector.buildDatabaseModel();
         excludedTables.forEach(t -> database.removeTable(t));
+        removeMetadataTables(database);
+
+        importData(dbc, connectionFactory, dbms, schemaName, database, Collections.emptySet(),
+            options, sourceHash, generator -> importChangeLog(generator, is));
+    }
+
+    @Override
+    public void importData(Connection dbc, File manifestOrDirectory, DbmsProfile dbms,
+        Optional<String> schema, ImportOptions options) {
+        importData(dbc, null, manifestOrDirectory, dbms, schema, options);
+    }
+
+    @Override
+    public void importData(Connection dbc, ConnectionFactory connectionFactory,
+        File manifestOrDirectory, DbmsProfile dbms, Optional<String> schema,
+        ImportOptions options) {
+        if (manifestOrDirectory.isFile() && isChangeLog(manifestOrDirectory)) {
+            importChangeLogFile(dbc, connectionFactory, manifestOrDirectory, dbms, schema,
+                options);
+            return;
+        }
+        File manifestFile = manifestOrDirectory.isDirectory()
+            ? new File(manifestOrDirectory, DumpService.MANIFEST_FILE) : manifestOrDirectory;
+        DumpManifest manifest = readManifest(manifestFile);
+        File directory = manifestFile.getAbsoluteFile().getParentFile();
+        List<DumpTable> tables = selectTables(manifest, options);
+        verifyChecksums(directory, tables);
+
+        String currentSchema = new SchemaHandler(dbms.getSubprotocol()).getCurrentSchema(dbc);
+        String schemaName = schema.orElse(currentSchema);
+        DatabaseModelBuilder inspector = new DatabaseModelBuilder(dbc, null, schemaName);
+        DatabaseModel database = inspector.buildDatabaseModel();
+        Set<String> importedTables = tables.stream().map(t -> t.getTableName().toUpperCase())
+            .collect(Collectors.toSet());
+        database.getTables().stream().map(CreateTable::getTableName)
+            .filter(t -> !importedTables.contains(t.toUpperCase())).collect(Collectors.toList())
+            .forEach(t -> database.removeTable(t));
+
+        Set<String> incrementalTables = manifest.isIncremental()
+            ? tables.stream().filter(t -> t.getWatermarkColumn() != null)
+                .map(t -> t.getTableName().toUpperCase()).collect(Collectors.toSet())
+            : Collections.emptySet();
+
+        String sourceHash = options.isResumable() ? sha256(manifestFile) : null;
+        importData(dbc, connectionFactory, dbms, schemaName, database, incrementalTables, options,
+            sourceHash, generator -> {
+                for (DumpTable table : tables) {
+                    for (DumpChunk chunk : table.getChunk()) {
+                        generator.importTable(table.getTableName(),
+                            g -> importChunk(g, directory, chunk));
+                    }
+                }
+            });
+    }
+
+    @Override
+    public void copyData(Connection source, DbmsProfile sourceDbms, Connection target,
+        DbmsProfile targetDbms, CopyOptions options) {
+        String sourceSchema = new SchemaHandler(sourceDbms.getSubprotocol())
+            .getCurrentSchema(source);
+        DatabaseModel sourceModel = new DatabaseModelBuilder(source, null, sourceSchema)
+            .buildDatabaseModel();
+        Map<String, CreateTable> sourceTables = new HashMap<>();
+        for (CreateTable table : sourceModel.getTables()) {
+            if (!isWarpTable(table.getTableName())) {
+                sourceTables.put(table.getTableName().toUpperCase(), table);
+            }
+        }
+        Set<String> copiedTables = options.getTables().isEmpty() ? sourceTables.keySet()
+            : options.getTables().stream().map(String::toUpperCase).collect(Collectors.toSet());
+        for (String tableName : copiedTables) {
+            if (!sourceTables.containsKey(tableName)) {
+                throw new WarpException("table not found in source database: " + tableName);
+            }
+        }
+
+        String schemaName = new SchemaHandler(targetDbms.getSubprotocol()).getCurrentSchema(target);
+        DatabaseModel database = new DatabaseModelBuilder(target, null, schemaName)
+            .buildDatabaseModel();
+        database.getTables().stream().map(CreateTable::getTableName)
+            .filter(t -> !copiedTables.contains(t.toUpperCase())).collect(Collectors.toList())
+            .forEach(t -> database.removeTable(t));
+        List<CreateTable> targetTables = new ArrayList<>(database.getTables());
+        if (targetTables.size() < copiedTables.size()) {
+            Set<String> missingTables = new HashSet<>(copiedTables);
+            targetTables.forEach(t -> missingTables.remove(t.getTableName().toUpperCase()));
+            throw new WarpException("tables not found in target database: " + missingTables);
+        }
+
+        DataCopy copy = new DataCopy(source, sourceDbms, target, targetDbms, options);
+        importData(target, null, targetDbms, schemaName, database, Collections.emptySet(),
+            new ImportOptions(), null, generator -> readSource(source, sourceDbms, () -> {
+                for (CreateTable targetTable : targetTables) {
+                    CreateTable sourceTable = sourceTables
+                        .get(targetTable.getTableName().toUpperCase());
+                    copy.copyTable(sourceTable, targetTable);
+                }
+            }));
+    }
+
+    private boolean isWarpTable(String tableName) {
+        return tableName.equalsIgnoreCase("warp_history")
+            || tableName.equalsIgnoreCase(WatermarkService.WATERMARK_TABLE)
+            || tableName.equalsIgnoreCase(ImportCheckpointService.CHECKPOINT_TABLE);
+    }
 
+    /**
+     * Runs the given action reading from the given source connection. If the driver needs a
+     * transaction for streaming result sets and the connection is in auto-commit mode,
+     * auto-commit is disabled while reading and restored afterwards.
+     */
+    private void readSource(Connection source, DbmsProfile sourceDbms, Runnable action) {
+        try {
+            boolean ownTransaction = sourceDbms.getCursorRequiresTransaction()
+                && source.getAutoCommit();
+            if (ownTransaction) {
+                source.setAutoCommit(false);
+            }
+            try {
+                action.run();
+            }
+            finally {
+                if (ownTransaction) {
+                    source.commit();
+                    source.setAutoCommit(true);
+                }
+            }
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    /**
+     * The watermark and checkpoint tables belong to the database and are never imported.
+     */
+    private void removeMetadataTables(DatabaseModel database) {
+        database.getTables().stream().map(CreateTable::getTableName)
+            .filter(t -> t.equalsIgnoreCase(WatermarkService.WATERMARK_TABLE)
+                || t.equalsIgnoreCase(ImportCheckpointService.CHECKPOINT_TABLE))
+            .collect(Collectors.toList()).forEach(t -> database.removeTable(t));
+    }
+
+    /**
+     * Imports a change log file. For a resumable import, the file is identified by its hash.
+     */
+    private void importChangeLogFile(Connection dbc, ConnectionFactory connectionFactory,
+        File changeLogFile, DbmsProfile dbms, Optional<String> schema, ImportOptions options) {
+        String sourceHash = options.isResumable() ? sha256(changeLogFile) : null;
+        try (InputStream is = new FileInputStream(changeLogFile)) {
+            importData(dbc, connectionFactory, is, dbms, schema, Collections.emptyList(), options,
+                sourceHash);
+        }
+        catch (IOException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    /**
+     * Checks if the given file is a change log, possibly compressed, and not a manifest.
+     */
+    private boolean isChangeLog(File file) {
+        try (InputStream is = Compression.decompressIfNeeded(new FileInputStream(file))) {
+            XMLStreamReader reader = XMLInputFactory.newFactory().createXMLStreamReader(is);
+            try {
+                reader.nextTag();
+                return reader.getLocalName().equals("changeLog");
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (IOException | XMLStreamException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    private static String sha256(File file) {
+        try {
+            return Checksums.sha256(file);
+        }
+        catch (IOException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    /**
+     * Reads the checkpoint of a resumable import of the given source. Without a checkpoint for
+     * the source, any checkpoint of a different import is deleted, since this import invalidates
+     * it, and the checkpoint table is created for a resumable import.
+     *
+     * @return number of committed rows per upper case table name
+     */
+    private Map<String, Long> readCheckpoint(Connection dbc, DbmsProfile dbms,
+        String sourceHash) {
+        Map<String, Long> resumedRows = (sourceHash == null) ? Collections.emptyMap()
+            : checkpointService.readCheckpoint(dbc, dbms, sourceHash);
+        if (resumedRows.isEmpty()) {
+            if (sourceHash != null) {
+                checkpointService.createCheckpointTable(dbc, dbms);
+            }
+            checkpointService.deleteCheckpoint(dbc, dbms);
+            try {
+                dbc.commit();
+            }
+            catch (SQLException exc) {
+                throw new WarpException(exc);
+            }
+        }
+        return resumedRows;
+    }
+
+    /**
+     * Drops all foreign keys and truncates all tables of the given database model, lets the given
+     * importer insert the data, and recreates the foreign keys, even when the import fails.
+     * <p>
+     * Incremental tables are not truncated. Instead, imported rows replace existing rows with the
+     * same primary key.
+     * <p>
+     * Rows are inserted by JDBC batches of the size given by the options, and committed according
+     * to the commit interval of the options. Auto-commit is disabled during the import. On
+     * failure, uncommitted rows are rolled back before restoring the foreign keys.
+     * <p>
+     * If a source hash is given, the import is resumable. Tables with rows committed by a
+     * previous import of the same source are not truncated, and their committed rows are
+     * skipped.
+     * <p>
+     * With a connection factory and multiple threads in the options, tables are imported
+     * concurrently on additional connections.
+     */
+    private void importData(Connection dbc, ConnectionFactory connectionFactory,
+        DbmsProfile dbms, String schemaName, DatabaseModel database,
+        Set<String> incrementalTables, ImportOptions options, String sourceHash,
+        Consumer<ImportDataSqlGenerator> importer) {
+        if (sourceHash != null && isParallel(connectionFactory, options)) {
+            throw new WarpException("resumable imports cannot be parallel");
+        }
+        boolean autoCommit = getAutoCommit(dbc);
+        setAutoCommit(dbc, false);
+        try {
+            Map<String, Long> resumedRows = readCheckpoint(dbc, dbms, sourceHash);
+            importData(dbc, connectionFactory, dbms, schemaName, database, incrementalTables,
+                options, sourceHash, resumedRows, importer);
+        }
+        finally {
+            setAutoCommit(dbc, autoCommit);
+        }
+    }
+
+    private void importData(Connection dbc, ConnectionFactory connectionFactory,
+        DbmsProfile dbms, String schemaName, DatabaseModel database,
+        Set<String> incrementalTables, ImportOptions options, String sourceHash,
+        Map<String, Long> resumedRows, Consumer<ImportDataSqlGenerator> importer) {
         ChangeLog changeLog = new ChangeLog();
         changeLog.setVersion("0.1");
         changeLog.getChangeSet();
@@ -149,6 +444,12 @@ public class UpdateServiceImpl implements UpdateService {
         List<Object> changes = changeSet.getChanges();
         changeLogService.dropForeignKeys(changes, database);
         changeLogService.truncateTables(changes, database);
+        changes.removeIf(c -> c instanceof TruncateTable
+            && isResumedOrIncremental(((TruncateTable) c).getTableName().toUpperCase(),
+                resumedRows, incrementalTables));
+        List<CreateIndex> secondaryIndexes = options.isRebuildIndexes()
+            ? getSecondaryIndexes(database, dbms) : Collections.emptyList();
+        changeLogService.dropIndexes(changes, secondaryIndexes);
 
         boolean hasPreChanges = !changes.isEmpty();
 
@@ -168,17 +469,264 @@ public class UpdateServiceImpl implements UpdateService {
             changeLogWriter.writeChangeLog(changeLog, preInsertFile);
             update(dbc, preInsertFile, dbms);
         }
-        try {
-            ImportDataSqlGenerator generator = new ImportDataSqlGenerator(dbms, dbc, s -> runUpdate(s),
-                context);
+        RuntimeException failure = null;
+        Map<String, List<String>> replacedKeys = getPrimaryKeys(database, incrementalTables);
+        try (ImportDataSqlGenerator generator = createImportGenerator(dbc, connectionFactory,
+            dbms, options, replacedKeys)) {
+            generator.setResumedRows(resumedRows);
+            if (sourceHash != null) {
+                generator.setCheckpoint(
+                    rows -> checkpointService.saveCheckpoint(dbc, dbms, sourceHash, rows));
+            }
 
-            importDataInternal(generator, is, schemaName);
+            try {
+                importer.accept(generator);
+                generator.finishTables();
+                generator.resetSequences(schemaName);
+                generator.commit();
+                if (sourceHash != null) {
+                    checkpointService.deleteCheckpoint(dbc, dbms);
+                    dbc.commit();
+                }
+            }
+            catch (SQLException exc) {
+                failure = importFailed(dbc, new WarpException(exc), generator.getCommittedRows());
+                throw failure;
+            }
+            catch (RuntimeException exc) {
+                failure = importFailed(dbc, exc, generator.getCommittedRows());
+                throw failure;
+            }
         }
         finally {
+            if (!secondaryIndexes.isEmpty()) {
+                rebuildIndexes(dbc, connectionFactory, dbms, options, secondaryIndexes, failure);
+            }
             if (hasPostChanges) {
-                File postInsertFile = createTempFile();
-                changeLogWriter.writeChangeLog(postChangeLog, postInsertFile);
-                update(dbc, postInsertFile, dbms);
+                restoreForeignKeys(dbc, dbms, postChangeLog, failure);
+            }
+        }
+    }
+
+    /**
+     * Gets the secondary indexes of the tables of the given model, i.e. all non-unique indexes
+     * not generated by the DBMS. Unique indexes are kept, since they may back constraints.
+     */
+    private static List<CreateIndex> getSecondaryIndexes(DatabaseModel database,
+        DbmsProfile dbms) {
+        return database.getIndexes().stream()
+            .filter(i -> !Boolean.TRUE.equals(i.isUnique())
+                && !dbms.isGeneratedIndex(i.getIndexName())
+                && database.getTable(i.getTableName()) != null)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Rebuilds the indexes dropped before importing, concurrently if enabled by the options.
+     * When the import has failed, an exception while rebuilding is suppressed by the import
+     * failure, which is the root cause.
+     */
+    private void rebuildIndexes(Connection dbc, ConnectionFactory connectionFactory,
+        DbmsProfile dbms, ImportOptions options, List<CreateIndex> indexes,
+        RuntimeException failure) {
+        try {
+            IndexBuilder indexBuilder = new IndexBuilder(dbms, dbc, s -> runUpdate(s), context,
+                connectionFactory, options.getThreads());
+            indexBuilder.buildIndexes(indexes);
+        }
+        catch (RuntimeException exc) {
+            if (failure == null) {
+                throw exc;
+            }
+            failure.addSuppressed(exc);
+        }
+    }
+
+    /**
+     * Creates a generator inserting rows on the given connection, or a parallel generator
+     * inserting rows on additional connections, if enabled by the options.
+     */
+    private ImportDataSqlGenerator createImportGenerator(Connection dbc,
+        ConnectionFactory connectionFactory, DbmsProfile dbms, ImportOptions options,
+        Map<String, List<String>> replacedKeys) {
+        if (!isParallel(connectionFactory, options)) {
+            return createImportGenerator(dbc, dbms, options, replacedKeys);
+        }
+        return new ParallelImportSqlGenerator(dbms, dbc, s -> runUpdate(s), context,
+            connectionFactory, options.getThreads(),
+            c -> createImportGenerator(c, dbms, options, replacedKeys));
+    }
+
+    private ImportDataSqlGenerator createImportGenerator(Connection dbc, DbmsProfile dbms,
+        ImportOptions options, Map<String, List<String>> replacedKeys) {
+        ImportDataSqlGenerator generator = new ImportDataSqlGenerator(dbms, dbc,
+            s -> runUpdate(s), context);
+        generator.setReplacedKeys(replacedKeys);
+        generator.setBatchSize(options.getBatchSize());
+        generator.setCommitInterval(options.getCommitInterval());
+        generator.setBulkLoader(getBulkLoader(dbc, dbms, options));
+        return generator;
+    }
+
+    /**
+     * Gets the bulk loader of the DBMS, if enabled and supported on the given connection. A bulk
+     * loader which is not transactional is only used when the import may commit before it is
+     * complete.
+     */
+    private static BulkLoader getBulkLoader(Connection dbc, DbmsProfile dbms,
+        ImportOptions options) {
+        BulkLoader bulkLoader = options.isBulkLoad() ? dbms.getBulkLoader() : null;
+        if (bulkLoader == null) {
+            return null;
+        }
+        if (!bulkLoader.isTransactional()
+            && (options.getCommitInterval() <= 0 || options.isResumable())) {
+            return null;
+        }
+        try {
+            return bulkLoader.isSupported(dbc) ? bulkLoader : null;
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    private static boolean isParallel(ConnectionFactory connectionFactory,
+        ImportOptions options) {
+        return connectionFactory != null && options.getThreads() > 1;
+    }
+
+    private static boolean isResumedOrIncremental(String tableName,
+        Map<String, Long> resumedRows, Set<String> incrementalTables) {
+        return resumedRows.containsKey(tableName) || incrementalTables.contains(tableName);
+    }
+
+    /**
+     * Rolls back the rows inserted since the last commit after a failed import, so that the
+     * foreign keys are restored in a clean transaction. The resulting exception lists the rows
+     * committed before the failure, if any.
+     */
+    private RuntimeException importFailed(Connection dbc, RuntimeException exc,
+        Map<String, Long> committedRows) {
+        try {
+            dbc.rollback();
+        }
+        catch (SQLException rollbackExc) {
+            exc.addSuppressed(rollbackExc);
+        }
+        if (committedRows.isEmpty()) {
+            return exc;
+        }
+        return new WarpException(
+            String.format("import failed, committed rows per table: %s", committedRows), exc);
+    }
+
+    /**
+     * Restores the foreign keys dropped before importing. When the import has failed, an
+     * exception while restoring is suppressed by the import failure, which is the root cause.
+     */
+    private void restoreForeignKeys(Connection dbc, DbmsProfile dbms, ChangeLog postChangeLog,
+        RuntimeException failure) {
+        try {
+            File postInsertFile = createTempFile();
+            changeLogWriter.writeChangeLog(postChangeLog, postInsertFile);
+            update(dbc, postInsertFile, dbms);
+        }
+        catch (RuntimeException exc) {
+            if (failure == null) {
+                throw exc;
+            }
+            failure.addSuppressed(exc);
+        }
+    }
+
+    private static boolean getAutoCommit(Connection dbc) {
+        try {
+            return dbc.getAutoCommit();
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    private static void setAutoCommit(Connection dbc, boolean autoCommit) {
+        try {
+            dbc.setAutoCommit(autoCommit);
+        }
+        catch (SQLException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    private Map<String, List<String>> getPrimaryKeys(DatabaseModel database,
+        Set<String> tableNames) {
+        Map<String, List<String>> primaryKeys = new HashMap<>();
+        for (AddPrimaryKey primaryKey : database.getPrimaryKeys()) {
+            String tableName = primaryKey.getTableName().toUpperCase();
+            if (tableNames.contains(tableName)) {
+                primaryKeys.put(tableName, primaryKey.getColumn());
+            }
+        }
+        return primaryKeys;
+    }
+
+    /**
+     * Imports a data change log. Changes are read and applied one at a time, so memory usage does
+     * not depend on the size of the change log.
+     */
+    private void importChangeLog(ImportDataSqlGenerator generator, InputStream is) {
+        readChangeLog(is, reader -> changeLogReader.parseChanges(reader, generator));
+    }
+
+    private void importChunk(ImportDataSqlGenerator generator, File directory, DumpChunk chunk) {
+        try (InputStream is = new FileInputStream(new File(directory, chunk.getFile()))) {
+            importChangeLog(generator, is);
+        }
+        catch (IOException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    private DumpManifest readManifest(File manifestFile) {
+        try (Reader reader = new InputStreamReader(new FileInputStream(manifestFile),
+            StandardCharsets.UTF_8)) {
+            return changeLogReader.parseManifest(reader);
+        }
+        catch (IOException exc) {
+            throw new WarpException(exc);
+        }
+    }
+
+    private List<DumpTable> selectTables(DumpManifest manifest, ImportOptions options) {
+        if (options.getTables().isEmpty()) {
+            return manifest.getTable();
+        }
+        List<DumpTable> tables = new ArrayList<>();
+        for (String tableName : options.getTables()) {
+            DumpTable table = manifest.getTable().stream()
+                .filter(t -> t.getTableName().equalsIgnoreCase(tableName)).findFirst()
+                .orElseThrow(() -> new WarpException("table not found in manifest: " + tableName));
+            tables.add(table);
+        }
+        return tables;
+    }
+
+    /**
+     * Verifies the checksums of all chunks of the given tables, so that we do not start an import
+     * which is bound to fail.
+     */
+    private void verifyChecksums(File directory, List<DumpTable> tables) {
+        for (DumpTable table : tables) {
+            for (DumpChunk chunk : table.getChunk()) {
+                try {
+                    String checksum = Checksums.sha256(new File(directory, chunk.getFile()));
+                    if (!checksum.equals(chunk.getSha256())) {
+                        throw new WarpException("checksum mismatch for " + chunk.getFile());
+                    }
+                }
+                catch (IOException exc) {
+                    throw new WarpException(exc);
+                }
             }
         }
     }
@@ -210,9 +758,18 @@ public class UpdateServiceImpl implements UpdateService {
         }
     }
 
-    private ChangeLog readChangeLog(InputStream is) throws JAXBException {
-        InputStreamReader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
-        return changeLogReader.parse(reader);
+    /**
+     * Reads a change log, which may be GZIP compressed. Compression is detected automatically.
+     */
+    private void readChangeLog(InputStream is, Consumer<Reader> parser) {
+        try {
+            InputStreamReader reader = new InputStreamReader(Compression.decompressIfNeeded(is),
+                StandardCharsets.UTF_8);
+            parser.accept(reader);
+        }
+        catch (IOException exc) {
+            throw new WarpException(exc);
+        }
     }
 
     /**
@@ -248,4 +805,15 @@ public class UpdateServiceImpl implements UpdateService {
         this.context = context;
     }
 
+    /**
+     * Injects the import checkpoint service.
+     *
+     * @param checkpointService
+     *            the checkpointService to set
+     */
+    @Reference
+    public void setCheckpointService(ImportCheckpointService checkpointService) {
+        this.checkpointService = checkpointService;
+    }
+
 }
@@ -47,6 +47,7 @@ import org.ops4j.pax.warp.jaxb.gen.Insert;
 import org.ops4j.pax.warp.jaxb.gen.RenameColumn;
 import org.ops4j.pax.warp.jaxb.gen.RenameTable;
 import org.ops4j.pax.warp.jaxb.gen.RunSql;
+import org.ops4j.pax.warp.jaxb.gen.TableData;
 import org.ops4j.pax.warp.jaxb.gen.TruncateTable;
 import org.ops4j.pax.warp.jaxb.gen.visitor.VisitorAction;
 import org.trimou.util.ImmutableMap;
@@ -203,6 +204,11 @@ public class UpdateSqlGenerator extends InsertSqlGenerator {
         return generateInsert(action);
     }
 
+    @Override
+    public VisitorAction enter(TableData action) {
+        return generateTableData(action);
+    }
+
     @Override
     public VisitorAction enter(TruncateTable action) {
         return produceStatement("truncateTable", action);
@@ -264,6 +270,7 @@ public class UpdateSqlGenerator extends InsertSqlGenerator {
         if (changeSetSkipped) {
             return VisitorAction.CONTINUE;
         }
+        flush();
         try {
             PreparedStatement st = dbc
                 .prepareStatement("insert into warp_history (id, checksum, executed) values (?, ?, ?)");
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.changelog.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.warp.exc.WarpException;
+import org.ops4j.pax.warp.jaxb.WarpJaxbContext;
+import org.ops4j.pax.warp.jaxb.gen.ChangeLog;
+import org.ops4j.pax.warp.jaxb.gen.ChangeSet;
+import org.ops4j.pax.warp.jaxb.gen.ColumnValue;
+import org.ops4j.pax.warp.jaxb.gen.DataColumn;
+import org.ops4j.pax.warp.jaxb.gen.Insert;
+import org.ops4j.pax.warp.jaxb.gen.Row;
+import org.ops4j.pax.warp.jaxb.gen.RowValue;
+import org.ops4j.pax.warp.jaxb.gen.TableData;
+import org.ops4j.pax.warp.jaxb.gen.TruncateTable;
+import org.ops4j.pax.warp.jaxb.gen.visitor.BaseVisitor;
+import org.ops4j.pax.warp.jaxb.gen.visitor.VisitorAction;
+
+/**
+ * Tests streaming change logs to visitors.
+ */
+public class JaxbChangeLogReaderTest {
+
+    /**
+     * Records visited elements, skipping the given change set.
+     */
+    private static class RecordingVisitor extends BaseVisitor {
+
+        private List<String> events = new ArrayList<>();
+
+        private int maxChanges;
+
+        private String skippedChangeSet;
+
+        RecordingVisitor(String skippedChangeSet) {
+            this.skippedChangeSet = skippedChangeSet;
+        }
+
+        @Override
+        public VisitorAction enter(ChangeLog changeLog) {
+            events.add("changeLog " + changeLog.getVersion() + " " + changeLog.isIncremental());
+            return VisitorAction.CONTINUE;
+        }
+
+        @Override
+        public VisitorAction leave(ChangeLog changeLog) {
+            events.add("/changeLog");
+            return VisitorAction.CONTINUE;
+        }
+
+        @Override
+        public VisitorAction enter(ChangeSet changeSet) {
+            events.add("changeSet " + changeSet.getId() + " " + changeSet.getComment());
+            maxChanges = Math.max(maxChanges, changeSet.getChanges().size());
+            return changeSet.getId().equals(skippedChangeSet) ? VisitorAction.SKIP
+                : VisitorAction.CONTINUE;
+        }
+
+        @Override
+        public VisitorAction leave(ChangeSet changeSet) {
+            events.add("/changeSet");
+            return VisitorAction.CONTINUE;
+        }
+
+        @Override
+        public VisitorAction enter(Insert action) {
+            events.add("insert " + action.getColumn().get(0).getValue());
+            return VisitorAction.CONTINUE;
+        }
+
+        @Override
+        public VisitorAction enter(TableData action) {
+            events.add("tableData " + action.getRow().size());
+            return VisitorAction.CONTINUE;
+        }
+
+        @Override
+        public VisitorAction enter(TruncateTable action) {
+            events.add("truncateTable " + action.getTableName());
+            return VisitorAction.CONTINUE;
+        }
+    }
+
+    private WarpJaxbContext context;
+
+    private JaxbChangeLogReader reader;
+
+    @Before
+    public void before() {
+        context = new WarpJaxbContext();
+        reader = new JaxbChangeLogReader();
+        reader.setContext(context);
+    }
+
+    private String createChangeLog() {
+        ChangeLog changeLog = new ChangeLog();
+        changeLog.setVersion("0.1");
+        for (int i = 1; i <= 3; i++) {
+            ChangeSet changeSet = new ChangeSet();
+            changeSet.setId(Integer.toString(i));
+            changeSet.setComment(i == 2 ? null : "change set " + i);
+            TruncateTable truncateTable = new TruncateTable();
+            truncateTable.setTableName("foo");
+            changeSet.getChanges().add(truncateTable);
+            for (int j = 0; j < 3; j++) {
+                Insert insert = new Insert();
+                insert.setTableName("foo");
+                ColumnValue column = new ColumnValue();
+                column.setName("name");
+                column.setType("VARCHAR");
+                column.setValue(" value " + i + "." + j + " ");
+                insert.getColumn().add(column);
+                changeSet.getChanges().add(insert);
+            }
+            TableData tableData = new TableData();
+            tableData.setTableName("foo");
+            DataColumn column = new DataColumn();
+            column.setName("name");
+            column.setType("VARCHAR");
+            tableData.getColumn().add(column);
+            for (int j = 0; j < i; j++) {
+                Row row = new Row();
+                RowValue value = new RowValue();
+                value.setValue("row " + j);
+                row.getV().add(value);
+                tableData.getRow().add(row);
+            }
+            changeSet.getChanges().add(tableData);
+            changeLog.getChangeSet().add(changeSet);
+        }
+
+        JaxbChangeLogWriter writer = new JaxbChangeLogWriter();
+        writer.setContext(context);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        writer.writeChangeLog(changeLog, os);
+        return new String(os.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private List<String> visitTree(String xml, String skippedChangeSet) {
+        RecordingVisitor visitor = new RecordingVisitor(skippedChangeSet);
+        reader.parse(new StringReader(xml)).accept(visitor);
+        return visitor.events;
+    }
+
+    @Test
+    public void shouldStreamChangeSets() {
+        String xml = createChangeLog();
+        RecordingVisitor visitor = new RecordingVisitor("2");
+        reader.parse(new StringReader(xml), visitor);
+        assertThat(visitor.events, is(visitTree(xml, "2")));
+        assertThat(visitor.maxChanges, is(5));
+    }
+
+    @Test
+    public void shouldStreamChanges() {
+        String xml = createChangeLog();
+        RecordingVisitor visitor = new RecordingVisitor("2");
+        reader.parseChanges(new StringReader(xml), visitor);
+        assertThat(visitor.events, is(visitTree(xml, "2")));
+        assertThat(visitor.events.contains("tableData 3"), is(true));
+        assertThat(visitor.maxChanges, is(0));
+    }
+
+    @Test(expected = WarpException.class)
+    public void shouldValidateStreamedChangeLog() {
+        String xml = createChangeLog().replace("tableName=\"foo\"", "table=\"foo\"");
+        reader.parseChanges(new StringReader(xml), new RecordingVisitor(null));
+    }
+}
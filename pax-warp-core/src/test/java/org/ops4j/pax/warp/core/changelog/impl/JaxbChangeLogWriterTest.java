@@ -20,19 +20,29 @@ package org.ops4j.pax.warp.core.changelog.impl;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
+import javax.xml.bind.UnmarshalException;
 import javax.xml.bind.Unmarshaller;
 
 import org.junit.Test;
+import org.ops4j.pax.warp.core.changelog.StreamingChangeLogWriter;
 import org.ops4j.pax.warp.jaxb.WarpJaxbContext;
 import org.ops4j.pax.warp.jaxb.gen.ChangeLog;
 import org.ops4j.pax.warp.jaxb.gen.ChangeSet;
 import org.ops4j.pax.warp.jaxb.gen.ColumnValue;
+import org.ops4j.pax.warp.jaxb.gen.DataColumn;
 import org.ops4j.pax.warp.jaxb.gen.Insert;
+import org.ops4j.pax.warp.jaxb.gen.Row;
+import org.ops4j.pax.warp.jaxb.gen.RowValue;
+import org.ops4j.pax.warp.jaxb.gen.TableData;
+import org.ops4j.pax.warp.jaxb.gen.TruncateTable;
 
 /**
  * Tests whitespace preservation on marshalling and unmarshalling change logs.
@@ -79,4 +89,152 @@ public class JaxbChangeLogWriterTest {
         value = ins.getColumn().get(0).getValue();
         assertThat(value, is("  One\r\nTwo\r\n  "));
     }
+
+    @Test
+    public void streamChangeLog() throws Exception {
+        JaxbChangeLogWriter writer = new JaxbChangeLogWriter();
+        WarpJaxbContext context = new WarpJaxbContext();
+        writer.setContext(context);
+        File outputFile = new File("target/streamed.xml");
+        try (OutputStream os = new FileOutputStream(outputFile);
+            StreamingChangeLogWriter streamingWriter = writer.openChangeLog(os)) {
+            streamingWriter.startChangeSet("1");
+            TruncateTable truncateTable = new TruncateTable();
+            truncateTable.setTableName("foo");
+            streamingWriter.writeChange(truncateTable);
+            streamingWriter.endChangeSet();
+
+            streamingWriter.startChangeSet("2");
+            for (int i = 0; i < 3; i++) {
+                Insert insert = new Insert();
+                insert.setTableName("foo");
+                ColumnValue column = new ColumnValue();
+                column.setName("name");
+                column.setType("VARCHAR");
+                column.setValue("  value " + i + "\r\n");
+                insert.getColumn().add(column);
+                streamingWriter.writeChange(insert);
+            }
+            streamingWriter.endChangeSet();
+        }
+
+        Unmarshaller unmarshaller = context.createValidatingUnmarshaller();
+        ChangeLog cl = (ChangeLog) unmarshaller.unmarshal(outputFile);
+        assertThat(cl.getChangeSet().size(), is(2));
+        assertThat(cl.getChangeSet().get(0).getChanges().get(0) instanceof TruncateTable, is(true));
+        ChangeSet changeSet = cl.getChangeSet().get(1);
+        assertThat(changeSet.getId(), is("2"));
+        assertThat(changeSet.getChanges().size(), is(3));
+        Insert ins = (Insert) changeSet.getChanges().get(2);
+        assertThat(ins.getColumn().get(0).getValue(), is("  value 2\r\n"));
+    }
+
+    private static final String[][] ROWS = { { "1", "<One> & \"Two\"\r\n" }, { "22", null },
+        { "333", "" } };
+
+    private String streamRows(boolean asChanges) {
+        JaxbChangeLogWriter writer = new JaxbChangeLogWriter();
+        writer.setContext(new WarpJaxbContext());
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (StreamingChangeLogWriter streamingWriter = writer.openChangeLog(os)) {
+            streamingWriter.startChangeSet("1");
+            if (asChanges) {
+                for (String[] values : ROWS) {
+                    Insert insert = createInsert();
+                    for (int i = 0; i < values.length; i++) {
+                        ColumnValue column = insert.getColumn().get(i);
+                        column.setValue(values[i]);
+                        column.setNull(values[i] == null ? true : null);
+                    }
+                    streamingWriter.writeChange(insert);
+                }
+                TableData tableData = createTableData();
+                for (String[] values : ROWS) {
+                    Row row = new Row();
+                    for (String value : values) {
+                        RowValue rowValue = new RowValue();
+                        rowValue.setValue(value);
+                        rowValue.setNull(value == null ? true : null);
+                        row.getV().add(rowValue);
+                    }
+                    tableData.getRow().add(row);
+                }
+                streamingWriter.writeChange(tableData);
+            }
+            else {
+                writeRows(streamingWriter, createInsert());
+                writeRows(streamingWriter, createTableData());
+            }
+            streamingWriter.endChangeSet();
+        }
+        return new String(os.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private void writeRows(StreamingChangeLogWriter streamingWriter, Object template) {
+        streamingWriter.startRows(template);
+        for (String[] values : ROWS) {
+            streamingWriter.startRow();
+            char[] id = values[0].toCharArray();
+            streamingWriter.writeValue(id, 0, id.length);
+            if (values[1] == null) {
+                streamingWriter.writeNull();
+            }
+            else {
+                streamingWriter.writeValue(values[1]);
+            }
+            streamingWriter.endRow();
+        }
+        streamingWriter.endRows();
+    }
+
+    private Insert createInsert() {
+        Insert insert = new Insert();
+        insert.setSchemaName("bar");
+        insert.setTableName("foo");
+        for (String name : new String[] { "id", "name" }) {
+            ColumnValue column = new ColumnValue();
+            column.setName(name);
+            column.setType("VARCHAR");
+            insert.getColumn().add(column);
+        }
+        return insert;
+    }
+
+    private TableData createTableData() {
+        TableData tableData = new TableData();
+        tableData.setSchemaName("bar");
+        tableData.setTableName("foo");
+        for (String name : new String[] { "id", "name" }) {
+            DataColumn column = new DataColumn();
+            column.setName(name);
+            column.setType("VARCHAR");
+            tableData.getColumn().add(column);
+        }
+        return tableData;
+    }
+
+    @Test
+    public void streamRowsLikeChanges() {
+        String expected = streamRows(true);
+        assertThat(streamRows(false), is(expected));
+    }
+
+    @Test(expected = UnmarshalException.class)
+    public void abortedChangeLogIsNotWellFormed() throws Exception {
+        JaxbChangeLogWriter writer = new JaxbChangeLogWriter();
+        WarpJaxbContext context = new WarpJaxbContext();
+        writer.setContext(context);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (StreamingChangeLogWriter streamingWriter = writer.openChangeLog(os)) {
+            streamingWriter.startChangeSet("1");
+            TruncateTable truncateTable = new TruncateTable();
+            truncateTable.setTableName("foo");
+            streamingWriter.writeChange(truncateTable);
+            streamingWriter.endChangeSet();
+            streamingWriter.abort();
+        }
+
+        Unmarshaller unmarshaller = context.createValidatingUnmarshaller();
+        unmarshaller.unmarshal(new ByteArrayInputStream(os.toByteArray()));
+    }
 }
@@ -18,20 +18,42 @@
 package org.ops4j.pax.warp.core.command;
 
 import static org.hamcrest.CoreMatchers.anyOf;
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import javax.inject.Inject;
 
@@ -40,7 +62,17 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.MethodSorters;
 import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.warp.core.changelog.ChangeLogReader;
+import org.ops4j.pax.warp.core.changelog.ChangeLogWriter;
 import org.ops4j.pax.warp.core.dbms.DbmsAdapter;
+import org.ops4j.pax.warp.core.dump.DumpOptions;
+import org.ops4j.pax.warp.core.dump.TableRow;
+import org.ops4j.pax.warp.core.update.CopyOptions;
+import org.ops4j.pax.warp.core.update.ImportOptions;
+import org.ops4j.pax.warp.exc.WarpException;
+import org.ops4j.pax.warp.jaxb.gen.DumpChunk;
+import org.ops4j.pax.warp.jaxb.gen.DumpManifest;
+import org.ops4j.pax.warp.jaxb.gen.DumpTable;
 
 
 /**
@@ -51,9 +83,20 @@ import org.ops4j.pax.warp.core.dbms.DbmsAdapter;
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public abstract class AbstractCommandRunnerTest {
 
+    /**
+     * Size of large LOB values in bytes or characters.
+     */
+    private static final int LARGE_LOB_SIZE = 8 * 1024 * 1024;
+
     @Inject
     private CommandRunner commandRunner;
 
+    @Inject
+    private ChangeLogReader changeLogReader;
+
+    @Inject
+    private ChangeLogWriter changeLogWriter;
+
     private DbmsAdapter dbms;
 
     protected AbstractCommandRunnerTest(DbmsAdapter dbms) {
@@ -73,6 +116,390 @@ public abstract class AbstractCommandRunnerTest {
         dbc.close();
     }
 
+    /**
+     * Creates the structure of changelog1.xml with the data of data1.xml and data2.xml in a new
+     * database.
+     */
+    protected void createTestData() throws SQLException, IOException {
+        dropAndCreateDatabase();
+        updateStructure();
+        insertData1();
+        insertData2();
+    }
+
+    protected void dumpData(String path) throws SQLException, IOException {
+        try (Connection dbc = getConnection();
+            OutputStream os = new FileOutputStream(path)) {
+            commandRunner.dumpData(dbc, os);
+        }
+    }
+
+    private void dumpDataOnlyWithFetchSize() throws SQLException, IOException {
+        Connection dbc = getConnection();
+        OutputStream os = new FileOutputStream("target/fetchSize2.xml");
+        DumpOptions options = new DumpOptions();
+        options.setFetchSize(1);
+        commandRunner.dumpData(dbc, os, options);
+        os.close();
+        dbc.close();
+
+        assertSameChangeLog("target/fetchSize2.xml", "target/fetchSize1.xml");
+    }
+
+    private void dumpDataOnlyInParallel() throws SQLException, IOException {
+        OutputStream os = new FileOutputStream("target/parallel2.xml");
+        DumpOptions options = new DumpOptions();
+        options.setThreads(3);
+        commandRunner.dumpData(getJdbcUrl(), "warp", "warp", os, options);
+        os.close();
+
+        assertSameChangeLog("target/parallel2.xml", "target/parallel1.xml");
+    }
+
+    private void dumpDataOnlyInPages() throws SQLException, IOException {
+        Connection dbc = getConnection();
+        dbc.setAutoCommit(false);
+        OutputStream os = new FileOutputStream("target/pages2.xml");
+        DumpOptions options = new DumpOptions();
+        options.setPageSize(2);
+        commandRunner.dumpData(dbc, os, options);
+        os.close();
+        dbc.commit();
+        dbc.close();
+
+        assertSameChangeLog("target/pages2.xml", "target/pages1.xml");
+    }
+
+    private void dumpDataInPagesInParallel() throws SQLException, IOException {
+        OutputStream os = new FileOutputStream("target/pages3.xml");
+        DumpOptions options = new DumpOptions();
+        options.setPageSize(2);
+        options.setThreads(3);
+        commandRunner.dumpData(getJdbcUrl(), "warp", "warp", os, options);
+        os.close();
+
+        assertSameChangeLog("target/pages3.xml", "target/pages1.xml");
+    }
+
+    private void dumpIncrementallyInPages() throws SQLException, IOException {
+        File directory = new File("target/pagedDelta");
+        deleteRecursively(directory.toPath());
+        DumpOptions options = new DumpOptions();
+        options.setIncremental(true);
+        options.setPageSize(2);
+        Connection dbc = getConnection();
+        int numRows = countRows(dbc, "numbers");
+        dbc.setAutoCommit(false);
+        commandRunner.dumpData(dbc, directory, options);
+        dbc.commit();
+        dbc.close();
+
+        // all rows of the numbers table up to the watermark
+        String manifest = new String(Files.readAllBytes(new File(directory, "manifest.xml")
+            .toPath()), StandardCharsets.UTF_8);
+        assertThat(manifest.matches("(?s).*<table rows=\"" + numRows
+            + "\" watermarkColumn=\"(?i:id)\"[^>]* tableName=\"(?i:numbers)\".*"), is(true));
+    }
+
+    private void dumpSelectedData() throws SQLException, IOException {
+        Connection dbc = getConnection();
+        OutputStream os = new FileOutputStream("target/selected.xml");
+        DumpOptions options = new DumpOptions();
+        options.setIncludeTables(Arrays.asList("num*", "str?ngs"));
+        options.setExcludeTables(Collections.singletonList("*_strings"));
+        options.setTableConditions(Collections.singletonMap("numbers", "id > 1"));
+        options.setSamplePercent(50);
+        commandRunner.dumpData(dbc, os, options);
+        os.close();
+
+        int numRows;
+        try (Statement st = dbc.createStatement();
+            ResultSet rs = st.executeQuery(
+                "SELECT COUNT(*) FROM numbers WHERE id > 1 AND MOD(id, 2) = 0")) {
+            rs.next();
+            numRows = rs.getInt(1);
+        }
+        dbc.close();
+
+        String changeLog = new String(Files.readAllBytes(Paths.get("target/selected.xml")),
+            StandardCharsets.UTF_8);
+        assertThat(changeLog.split("tableName=\"(?i:numbers)\"").length - 1, is(numRows));
+        assertThat(changeLog.matches("(?s).*tableName=\"(?i:strings)\".*"), is(true));
+        assertThat(changeLog.matches("(?s).*tableName=\"(?i:binaries)\".*"), is(false));
+    }
+
+    private void dumpSubset() throws SQLException, IOException {
+        Connection dbc = getConnection();
+        int id = maxId(dbc, "numbers");
+        try (Statement st = dbc.createStatement()) {
+            st.executeUpdate("INSERT INTO numbers_strings (number_id, string_id) VALUES (" + id
+                + ", 'id4711')");
+        }
+        OutputStream os = new FileOutputStream("target/subset1.xml");
+        DumpOptions options = new DumpOptions();
+        options.getSubsetRoots().put("numbers", "id = " + id);
+        commandRunner.dumpData(dbc, os, options);
+        os.close();
+        try (Statement st = dbc.createStatement()) {
+            st.executeUpdate("DELETE FROM numbers_strings");
+        }
+        dbc.close();
+
+        // root row, its child and the parent of the child, with parents preceding children
+        String changeLog = new String(Files.readAllBytes(Paths.get("target/subset1.xml")),
+            StandardCharsets.UTF_8);
+        assertThat(changeLog.split("<insert ").length - 1, is(3));
+        assertThat(changeLog.matches("(?s).*tableName=\"(?i:numbers)\".*"
+            + "tableName=\"(?i:numbers_strings)\".*"), is(true));
+        assertThat(changeLog.matches("(?s).*tableName=\"(?i:strings)\".*"
+            + "tableName=\"(?i:numbers_strings)\".*"), is(true));
+        assertThat(changeLog.contains(">id4711<"), is(true));
+    }
+
+    private void dumpCompactDataOnly() throws SQLException, IOException {
+        Connection dbc = getConnection();
+        OutputStream os = new FileOutputStream("target/compact2.xml");
+        DumpOptions options = new DumpOptions();
+        options.setCompactData(true);
+        commandRunner.dumpData(dbc, os, options);
+        os.close();
+        dbc.close();
+
+        assertThat(Files.size(Paths.get("target/compact2.xml")) < Files
+            .size(Paths.get("target/compact1.xml")), is(true));
+    }
+
+    private void dumpCompressedDataOnly() throws SQLException, IOException {
+        Connection dbc = getConnection();
+        OutputStream os = new FileOutputStream("target/compressed2.xml.gz");
+        DumpOptions options = new DumpOptions();
+        options.setCompress(true);
+        options.setCompressionThreads(2);
+        commandRunner.dumpData(dbc, os, options);
+        os.close();
+        dbc.close();
+
+        try (InputStream is = new GZIPInputStream(
+            new FileInputStream("target/compressed2.xml.gz"))) {
+            Files.copy(is, Paths.get("target/compressed2.xml"),
+                StandardCopyOption.REPLACE_EXISTING);
+        }
+        assertSameChangeLog("target/compressed2.xml", "target/compressed1.xml");
+    }
+
+    private void dumpDataToDirectory() throws SQLException, IOException {
+        Connection dbc = getConnection();
+        DumpOptions options = new DumpOptions();
+        options.setMaxChunkSize(500);
+        commandRunner.dumpData(dbc, new File("target/dataDir1"), options);
+        dbc.close();
+
+        // 4 non-empty tables, the numbers table is split into multiple chunks
+        String manifest = new String(Files.readAllBytes(Paths.get("target/dataDir1/manifest.xml")),
+            StandardCharsets.UTF_8);
+        assertThat(manifest.split("<chunk ").length - 1 > 4, is(true));
+    }
+
+    private void dumpCompressedDataToDirectoryInParallel() throws SQLException, IOException {
+        DumpOptions options = new DumpOptions();
+        options.setMaxChunkSize(500);
+        options.setThreads(3);
+        options.setCompress(true);
+        commandRunner.dumpAll(getJdbcUrl(), "warp", "warp", new File("target/dataDir2"), options);
+
+        assertThat(new File("target/dataDir2/manifest.xml").exists(), is(true));
+        assertThat(new File("target/dataDir2/structure.xml.gz").exists(), is(true));
+    }
+
+    private void dumpIncrementallyToDirectory() throws SQLException, IOException {
+        DumpOptions options = new DumpOptions();
+        options.setIncremental(true);
+        Connection dbc = getConnection();
+        commandRunner.dumpData(dbc, new File("target/delta1"), options);
+        try (Statement st = dbc.createStatement()) {
+            // explicit key, since earlier imports do not advance the identity counter
+            int id = maxId(dbc, "numbers") + 1;
+            st.executeUpdate("INSERT INTO numbers (id, i8, i16, i32, i64, d) VALUES (" + id
+                + ", 1, 2, 3, 4, 5)");
+        }
+        commandRunner.dumpData(dbc, new File("target/delta2"), options);
+        dbc.close();
+
+        String manifest = new String(Files.readAllBytes(Paths.get("target/delta2/manifest.xml")),
+            StandardCharsets.UTF_8);
+        assertThat(manifest.contains("incremental=\"true\""), is(true));
+        // only the new row of the numbers table, which has an integer primary key
+        assertThat(manifest.matches("(?s).*<table rows=\"1\" watermarkColumn=\"(?i:id)\" "
+            + "watermark=\"\\d+\"[^>]* tableName=\"(?i:numbers)\".*"), is(true));
+    }
+
+    private void dumpToChunkStore() throws SQLException, IOException {
+        File store = new File("target/store");
+        deleteRecursively(store.toPath());
+        DumpOptions options = new DumpOptions();
+        options.setMaxChunkSize(2048);
+        options.setChunkStore(true);
+        Connection dbc = getConnection();
+        commandRunner.dumpData(dbc, store, options);
+        int numObjects = countObjects(store);
+        assertThat(numObjects > 0, is(true));
+
+        // unchanged data are not stored again
+        commandRunner.dumpData(dbc, store, options);
+        assertThat(countObjects(store), is(numObjects));
+        assertThat(findManifests(store).size(), is(2));
+
+        // a changed row only produces new chunks around it
+        int id = maxId(dbc, "numbers");
+        try (Statement st = dbc.createStatement()) {
+            st.executeUpdate("UPDATE numbers SET i8 = i8 + 1 WHERE id = " + id);
+            commandRunner.dumpData(dbc, store, options);
+            st.executeUpdate("UPDATE numbers SET i8 = i8 - 1 WHERE id = " + id);
+        }
+        dbc.close();
+
+        String manifest = new String(Files.readAllBytes(Paths.get("target/store/manifest.xml")),
+            StandardCharsets.UTF_8);
+        int numChunks = manifest.split("<chunk ").length - 1;
+        int numNewObjects = countObjects(store) - numObjects;
+        assertThat(numNewObjects >= 1, is(true));
+        assertThat(numNewObjects < numChunks, is(true));
+    }
+
+    private void dumpResumably(int pageSize) throws SQLException, IOException {
+        File directory = new File("target/resumable");
+        deleteRecursively(directory.toPath());
+        DumpOptions options = new DumpOptions();
+        options.setMaxChunkSize(512);
+        options.setPageSize(pageSize);
+        options.setResume(true);
+        Connection dbc = getConnection();
+        commandRunner.dumpData(dbc, directory, options);
+        File manifestFile = new File(directory, "manifest.xml");
+        File checkpointFile = new File(directory, "checkpoint.xml");
+        byte[] expected = Files.readAllBytes(manifestFile.toPath());
+        assertThat(checkpointFile.exists(), is(false));
+
+        // simulate an interruption after the first chunk of the largest table
+        DumpManifest checkpoint;
+        try (Reader reader = Files.newBufferedReader(manifestFile.toPath())) {
+            checkpoint = changeLogReader.parseManifest(reader);
+        }
+        DumpTable interrupted = checkpoint.getTable().stream()
+            .max(Comparator.comparing(t -> t.getChunk().size())).get();
+        assertThat(interrupted.getChunk().size() > 1, is(true));
+        List<DumpChunk> chunks = interrupted.getChunk();
+        DumpChunk firstChunk = chunks.get(0);
+        assertThat(firstChunk.getKey().isEmpty(), is(false));
+        for (DumpChunk chunk : chunks.subList(1, chunks.size())) {
+            Files.delete(new File(directory, chunk.getFile()).toPath());
+        }
+        chunks.subList(1, chunks.size()).clear();
+        interrupted.setRows(firstChunk.getRows());
+        interrupted.setComplete(false);
+        File firstFile = new File(directory, firstChunk.getFile());
+        assertThat(firstFile.setLastModified(0), is(true));
+        changeLogWriter.writeManifest(checkpoint, checkpointFile);
+        Files.delete(manifestFile.toPath());
+
+        // the resumed dump keeps the first chunk and writes the same chunks as before
+        commandRunner.dumpData(dbc, directory, options);
+        dbc.close();
+        assertThat(firstFile.lastModified(), is(0L));
+        assertThat(checkpointFile.exists(), is(false));
+        assertThat(Arrays.equals(Files.readAllBytes(manifestFile.toPath()), expected), is(true));
+    }
+
+    private int countObjects(File store) throws IOException {
+        try (Stream<Path> paths = Files.walk(new File(store, "objects").toPath())) {
+            return (int) paths.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private List<Path> findManifests(File store) throws IOException {
+        try (Stream<Path> paths = Files.list(store.toPath())) {
+            return paths.filter(p -> p.getFileName().toString().startsWith("manifest-")).sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    private void streamRows() throws SQLException {
+        Connection dbc = getConnection();
+        DumpOptions options = new DumpOptions();
+        options.setIncludeTables(Arrays.asList("numbers", "strings"));
+        List<TableRow> rows;
+        try (Stream<TableRow> stream = commandRunner.streamRows(dbc, options)) {
+            rows = stream.collect(Collectors.toList());
+        }
+        List<TableRow> numbers = rows.stream()
+            .filter(r -> r.getTableName().equalsIgnoreCase("numbers"))
+            .collect(Collectors.toList());
+        assertThat(numbers.size(), is(countRows(dbc, "numbers")));
+        assertThat(rows.size() - numbers.size(), is(countRows(dbc, "strings")));
+        assertThat(numbers.get(numbers.size() - 1).getValue("ID"),
+            is((Object) (long) maxId(dbc, "numbers")));
+
+        // the stream is lazy, so a short-circuiting consumer only reads the first row
+        try (Stream<TableRow> stream = commandRunner.streamRows(dbc, options)) {
+            assertThat(stream.findFirst().get().getValue(0), is(rows.get(0).getValue(0)));
+        }
+        dbc.close();
+    }
+
+    private void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    private void copyToOtherDatabase() throws SQLException, IOException {
+        String copyUrl = dbms.getCopyJdbcUrl();
+        if (copyUrl == null) {
+            return;
+        }
+        Connection dbc = getConnection();
+        ByteArrayOutputStream structure = new ByteArrayOutputStream();
+        commandRunner.dumpStructure(dbc, structure);
+        try (Connection target = DriverManager.getConnection(copyUrl, "warp", "warp")) {
+            commandRunner.migrate(target, new ByteArrayInputStream(structure.toByteArray()));
+            CopyOptions options = new CopyOptions();
+            options.setBatchSize(2);
+            options.setQueueSize(1);
+            commandRunner.copy(dbc, target, options);
+            // existing rows are deleted
+            commandRunner.copy(dbc, target, options);
+
+            // the change set history is not copied
+            DumpOptions dumpOptions = new DumpOptions();
+            dumpOptions.setExcludeTables(Collections.singletonList("warp_history"));
+            try (OutputStream os = new FileOutputStream("target/copySource.xml")) {
+                commandRunner.dumpData(dbc, os, dumpOptions);
+            }
+            try (OutputStream os = new FileOutputStream("target/copyTarget.xml")) {
+                commandRunner.dumpData(target, os, dumpOptions);
+            }
+        }
+        dbc.close();
+        assertSameChangeLog("target/copyTarget.xml", "target/copySource.xml");
+    }
+
+    /**
+     * Dumps of the same data only differ by the random change set IDs.
+     */
+    private void assertSameChangeLog(String actualPath, String expectedPath) throws IOException {
+        assertThat(readWithoutIds(actualPath), is(readWithoutIds(expectedPath)));
+    }
+
+    private String readWithoutIds(String path) throws IOException {
+        String changeLog = new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
+        return changeLog.replaceAll("id=\"[^\"]*\"", "");
+    }
+
     private void dumpStructure() throws  SQLException, IOException {
         Connection dbc = getConnection();
         OutputStream os = new FileOutputStream("target/structure1.xml");
@@ -131,6 +558,306 @@ public abstract class AbstractCommandRunnerTest {
         dbc.close();
     }
 
+    /**
+     * Imports the given change log and checks a CLOB value of data2.xml.
+     */
+    private void importDumpedData(String changeLog) throws SQLException, IOException {
+        try (Connection dbc = getConnection()) {
+            try (InputStream is = new FileInputStream(changeLog)) {
+                commandRunner.importData(dbc, is);
+            }
+            try (Statement st = dbc.createStatement();
+                ResultSet rs = st.executeQuery("SELECT t FROM strings WHERE id = 'id4711'")) {
+                assertThat(rs.next(), is(true));
+                assertThat(rs.getString(1), is("This is a CLOB column."));
+            }
+        }
+    }
+
+    private void reinsertDataInParallel() throws SQLException, IOException {
+        File directory = new File("target/parallelImportDir");
+        try (Connection dbc = getConnection()) {
+            commandRunner.dumpData(dbc, directory, new DumpOptions());
+        }
+
+        ImportOptions options = new ImportOptions();
+        options.setThreads(3);
+        options.setBatchSize(2);
+        try (InputStream is = new FileInputStream("target/parallelImport1.xml")) {
+            commandRunner.importData(getJdbcUrl(), "warp", "warp", is, Collections.emptyList(),
+                options);
+        }
+        assertSameDump("target/parallelImport2.xml", "target/parallelImport1.xml");
+
+        commandRunner.importData(getJdbcUrl(), "warp", "warp", directory, options);
+        assertSameDump("target/parallelImport3.xml", "target/parallelImport1.xml");
+    }
+
+    /**
+     * Imports the given change log with the given options as the given user, whose password
+     * equals the user name.
+     */
+    protected void importData(String path, String url, String user, ImportOptions options)
+        throws SQLException, IOException {
+        try (InputStream is = new FileInputStream(path)) {
+            commandRunner.importData(url, user, user, is, Collections.emptyList(), options);
+        }
+    }
+
+    private void reinsertDataWithBulkLoad() throws SQLException, IOException {
+        ImportOptions options = new ImportOptions();
+        assertThat(options.isBulkLoad(), is(false));
+        importData("target/bulkLoad1.xml", getJdbcUrl(), "warp", options);
+        assertSameDump("target/bulkLoad2.xml", "target/bulkLoad1.xml");
+
+        // the Derby bulk loader commits on its own and requires a commit interval
+        options.setBulkLoad(true);
+        options.setCommitInterval(1);
+        importData("target/bulkLoad1.xml", getJdbcUrl(), "warp", options);
+        assertSameDump("target/bulkLoad3.xml", "target/bulkLoad1.xml");
+    }
+
+    private void reinsertDataWithIndexRebuild() throws SQLException, IOException {
+        try (Connection dbc = getConnection(); Statement st = dbc.createStatement()) {
+            st.execute("CREATE INDEX ix_numbers_i16 ON numbers (i16)");
+            st.execute("CREATE INDEX ix_strings_v4 ON strings (v4)");
+        }
+        String structure = dumpStructureWithoutIds("target/structure2.xml");
+        assertThat(structure.toUpperCase().contains("IX_NUMBERS_I16"), is(true));
+        ImportOptions options = new ImportOptions();
+        options.setThreads(2);
+        options.setRebuildIndexes(true);
+        try (InputStream is = new FileInputStream("target/rebuild1.xml")) {
+            commandRunner.importData(getJdbcUrl(), "warp", "warp", is, Collections.emptyList(),
+                options);
+        }
+        assertSameDump("target/rebuild2.xml", "target/rebuild1.xml");
+
+        // the dropped indexes are rebuilt with the same definitions
+        assertThat(dumpStructureWithoutIds("target/structure3.xml"), is(structure));
+    }
+
+    private String dumpStructureWithoutIds(String path) throws SQLException, IOException {
+        try (Connection dbc = getConnection();
+            OutputStream os = new FileOutputStream(path)) {
+            commandRunner.dumpStructure(dbc, os);
+        }
+        return readWithoutIds(path);
+    }
+
+    protected void assertSameDump(String actualPath, String expectedPath)
+        throws SQLException, IOException {
+        try (Connection dbc = getConnection();
+            OutputStream os = new FileOutputStream(actualPath)) {
+            assertThat(dbc.getAutoCommit(), is(true));
+            commandRunner.dumpData(dbc, os);
+        }
+        // each import adds history entries for dropping and restoring the foreign keys
+        assertThat(readWithoutHistory(actualPath), is(readWithoutHistory(expectedPath)));
+    }
+
+    private List<String> readWithoutHistory(String path) throws IOException {
+        return Arrays.stream(readWithoutIds(path).split("\n"))
+            .filter(line -> !line.toUpperCase().contains("\"WARP_HISTORY\""))
+            .collect(Collectors.toList());
+    }
+
+    private void reinsertIncrementalData() throws SQLException, IOException {
+        Connection dbc = getConnection();
+        // the row added after the first dump is restored by the incremental dump
+        try (Statement st = dbc.createStatement()) {
+            st.executeUpdate("DELETE FROM numbers WHERE id = " + maxId(dbc, "numbers"));
+        }
+        int numRows = countRows(dbc, "numbers");
+        commandRunner.importData(dbc, new File("target/delta2"), new ImportOptions());
+        assertThat(countRows(dbc, "numbers"), is(numRows + 1));
+
+        // existing rows are replaced
+        commandRunner.importData(dbc, new File("target/delta2"), new ImportOptions());
+        assertThat(countRows(dbc, "numbers"), is(numRows + 1));
+        dbc.close();
+    }
+
+    /**
+     * Reads data1.xml with a duplicate of the first row appended.
+     */
+    private String readDataWithDuplicate() throws IOException {
+        String data;
+        try (Reader reader = new InputStreamReader(
+            getClass().getResourceAsStream("/changelogs/data1.xml"), StandardCharsets.UTF_8)) {
+            data = readAll(reader);
+        }
+        String firstInsert = data.substring(data.indexOf("<insert"),
+            data.indexOf("</insert>") + "</insert>".length());
+        return data.replace("</changeSet>", firstInsert + "</changeSet>");
+    }
+
+    private void insertDataWithCommitInterval() throws SQLException, IOException {
+        String data = readDataWithDuplicate();
+
+        ImportOptions options = new ImportOptions();
+        options.setBatchSize(1);
+        options.setCommitInterval(2);
+        Connection dbc = getConnection();
+        try (InputStream is = new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8))) {
+            commandRunner.importData(dbc, is, Collections.emptyList(), options);
+            fail("Expected WarpException");
+        }
+        catch (WarpException exc) {
+            assertThat(exc.getMessage().toLowerCase(), containsString("numbers=3, strings=1"));
+        }
+        assertThat(dbc.getAutoCommit(), is(true));
+        assertThat(countRows(dbc, "numbers"), is(3));
+        assertThat(countRows(dbc, "strings"), is(1));
+        dbc.close();
+    }
+
+    private void resumeInsertData() throws SQLException, IOException {
+        File changeLog = new File("target/dataDuplicate.xml");
+        Files.write(changeLog.toPath(), readDataWithDuplicate().getBytes(StandardCharsets.UTF_8));
+
+        ImportOptions options = new ImportOptions();
+        options.setBatchSize(1);
+        options.setCommitInterval(2);
+        options.setResumable(true);
+        Connection dbc = getConnection();
+        try (InputStream is = new FileInputStream(changeLog)) {
+            commandRunner.importData(dbc, is, Collections.emptyList(), options);
+            fail("Expected WarpException");
+        }
+        catch (WarpException exc) {
+            assertThat(exc.getMessage(), containsString("resumable"));
+        }
+
+        try {
+            commandRunner.importData(dbc, changeLog, options);
+            fail("Expected WarpException");
+        }
+        catch (WarpException exc) {
+            assertThat(exc.getMessage().toLowerCase(), containsString("numbers=3, strings=1"));
+        }
+        assertThat(countRows(dbc, "warp_checkpoint"), is(2));
+
+        // remove the cause of the failure, the committed rows are not imported again
+        try (Statement st = dbc.createStatement()) {
+            st.executeUpdate("DELETE FROM numbers WHERE id = 1");
+        }
+        commandRunner.importData(dbc, changeLog, options);
+        assertThat(countRows(dbc, "numbers"), is(3));
+        assertThat(countRows(dbc, "strings"), is(1));
+        assertThat(countRows(dbc, "warp_checkpoint"), is(0));
+        dbc.close();
+    }
+
+    private int countRows(Connection dbc, String tableName) throws SQLException {
+        try (Statement st = dbc.createStatement();
+            ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + tableName)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private int maxId(Connection dbc, String tableName) throws SQLException {
+        try (Statement st = dbc.createStatement();
+            ResultSet rs = st.executeQuery("SELECT MAX(id) FROM " + tableName)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private void reinsertDataFromDirectory(String manifest, ImportOptions options)
+        throws SQLException, IOException {
+        Connection dbc = getConnection();
+        commandRunner.importData(dbc, new File(manifest), options);
+
+        Statement st = dbc.createStatement();
+        ResultSet rs = st.executeQuery("SELECT t FROM strings WHERE id = 'id4711'");
+        assertThat(rs.next(), is(true));
+        assertThat(rs.getString(1), is("This is a CLOB column."));
+        rs.close();
+        st.close();
+        dbc.close();
+    }
+
+    private byte[] createLargeBinary() {
+        byte[] bytes = new byte[LARGE_LOB_SIZE + 1];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    private String createLargeText() {
+        StringBuilder sb = new StringBuilder(LARGE_LOB_SIZE + 100);
+        int line = 0;
+        while (sb.length() < LARGE_LOB_SIZE) {
+            sb.append("<line no=\"").append(line++).append("\"> & \u00e4\u00f6\u00fc\r\n");
+        }
+        return sb.toString();
+    }
+
+    private void insertLargeLobs() throws SQLException, IOException {
+        migrateChangeSet(getClass().getResourceAsStream("/changelogs/changelog5.xml"));
+        byte[] bytes = createLargeBinary();
+        String text = createLargeText();
+        try (Connection dbc = getConnection();
+            PreparedStatement ps = dbc
+                .prepareStatement("INSERT INTO lobs (id, b, t) VALUES (?, ?, ?)")) {
+            ps.setInt(1, 1);
+            ps.setBinaryStream(2, new ByteArrayInputStream(bytes), bytes.length);
+            ps.setCharacterStream(3, new StringReader(text), text.length());
+            ps.executeUpdate();
+            ps.setInt(1, 2);
+            ps.setNull(2, Types.BLOB);
+            ps.setNull(3, Types.CLOB);
+            ps.executeUpdate();
+        }
+    }
+
+    private void dumpAndReinsertLargeLobs() throws SQLException, IOException {
+        Connection dbc = getConnection();
+        try (OutputStream os = new FileOutputStream("target/lobs.xml")) {
+            commandRunner.dumpData(dbc, os);
+        }
+        try (Statement st = dbc.createStatement()) {
+            st.executeUpdate("DELETE FROM lobs");
+        }
+        try (InputStream is = new FileInputStream("target/lobs.xml")) {
+            commandRunner.importData(dbc, is);
+        }
+
+        try (Statement st = dbc.createStatement();
+            ResultSet rs = st.executeQuery("SELECT id, b, t FROM lobs ORDER BY id")) {
+            assertThat(rs.next(), is(true));
+            assertThat(Arrays.equals(readAll(rs.getBinaryStream(2)), createLargeBinary()),
+                is(true));
+            assertThat(readAll(rs.getCharacterStream(3)), is(createLargeText()));
+            assertThat(rs.next(), is(true));
+            assertThat(rs.getBytes(2) == null, is(true));
+            assertThat(rs.getString(3) == null, is(true));
+            assertThat(rs.next(), is(false));
+        }
+        dbc.close();
+    }
+
+    private byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int numBytes;
+        while ((numBytes = is.read(buffer)) != -1) {
+            baos.write(buffer, 0, numBytes);
+        }
+        return baos.toByteArray();
+    }
+
+    private String readAll(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[8192];
+        int numChars;
+        while ((numChars = reader.read(buffer)) != -1) {
+            sb.append(buffer, 0, numChars);
+        }
+        return sb.toString();
+    }
+
     private void runDropChangeSet() throws SQLException, IOException {
         migrateChangeSet(getClass().getResourceAsStream("/changelogs/changelog2.xml"));
     }
@@ -150,7 +877,7 @@ public abstract class AbstractCommandRunnerTest {
         inputStream.close();
     }
 
-    private Connection getConnection() throws SQLException {
+    protected Connection getConnection() throws SQLException {
         return DriverManager.getConnection(getJdbcUrl(), "warp", "warp");
     }
 
@@ -230,6 +957,141 @@ public abstract class AbstractCommandRunnerTest {
         connection.close();
     }
 
+    @Test
+    public void test11ShouldDumpLargeLobs() throws SQLException, IOException {
+        insertLargeLobs();
+        dumpAndReinsertLargeLobs();
+    }
+
+    @Test
+    public void test12ShouldDumpDataWithFetchSize() throws SQLException, IOException {
+        createTestData();
+        dumpData("target/fetchSize1.xml");
+        dumpDataOnlyWithFetchSize();
+    }
+
+    @Test
+    public void test13ShouldDumpDataInParallel() throws SQLException, IOException {
+        createTestData();
+        dumpData("target/parallel1.xml");
+        dumpDataOnlyInParallel();
+    }
+
+    @Test
+    public void test14ShouldDumpAndInsertCompactData() throws SQLException, IOException {
+        createTestData();
+        dumpData("target/compact1.xml");
+        dumpCompactDataOnly();
+        importDumpedData("target/compact2.xml");
+    }
+
+    @Test
+    public void test15ShouldDumpAndInsertCompressedData() throws SQLException, IOException {
+        createTestData();
+        dumpData("target/compressed1.xml");
+        dumpCompressedDataOnly();
+        importDumpedData("target/compressed2.xml.gz");
+    }
+
+    @Test
+    public void test16ShouldDumpAndInsertDataDirectory() throws SQLException, IOException {
+        createTestData();
+        dumpDataToDirectory();
+        reinsertDataFromDirectory("target/dataDir1/manifest.xml", new ImportOptions());
+        dumpCompressedDataToDirectoryInParallel();
+        ImportOptions options = new ImportOptions();
+        options.setTables(Collections.singletonList("strings"));
+        reinsertDataFromDirectory("target/dataDir2/manifest.xml", options);
+    }
+
+    @Test
+    public void test17ShouldDumpAndInsertIncrementally() throws SQLException, IOException {
+        createTestData();
+        dumpIncrementallyToDirectory();
+        reinsertIncrementalData();
+    }
+
+    @Test
+    public void test18ShouldDumpDataInPages() throws SQLException, IOException {
+        createTestData();
+        dumpData("target/pages1.xml");
+        dumpDataOnlyInPages();
+        dumpDataInPagesInParallel();
+        dumpIncrementallyInPages();
+    }
+
+    @Test
+    public void test19ShouldDumpSelectedData() throws SQLException, IOException {
+        createTestData();
+        dumpSelectedData();
+    }
+
+    @Test
+    public void test20ShouldDumpSubset() throws SQLException, IOException {
+        createTestData();
+        dumpSubset();
+    }
+
+    @Test
+    public void test21ShouldDumpAndInsertChunkStore() throws SQLException, IOException {
+        createTestData();
+        dumpToChunkStore();
+        reinsertDataFromDirectory(findManifests(new File("target/store")).get(0).toString(),
+            new ImportOptions());
+    }
+
+    @Test
+    public void test22ShouldCopyToOtherDatabase() throws SQLException, IOException {
+        createTestData();
+        copyToOtherDatabase();
+    }
+
+    @Test
+    public void test23ShouldResumeDump() throws SQLException, IOException {
+        createTestData();
+        dumpResumably(0);
+        dumpResumably(2);
+    }
+
+    @Test
+    public void test24ShouldStreamRows() throws SQLException, IOException {
+        createTestData();
+        streamRows();
+    }
+
+    @Test
+    public void test25ShouldInsertDataWithCommitInterval() throws SQLException, IOException {
+        createTestData();
+        insertDataWithCommitInterval();
+    }
+
+    @Test
+    public void test26ShouldResumeInsertData() throws SQLException, IOException {
+        createTestData();
+        resumeInsertData();
+    }
+
+    @Test
+    public void test27ShouldInsertDataInParallel() throws SQLException, IOException {
+        createTestData();
+        dumpData("target/parallelImport1.xml");
+        reinsertDataInParallel();
+    }
+
+    @Test
+    public void test28ShouldRebuildIndexes() throws SQLException, IOException {
+        createTestData();
+        dumpData("target/rebuild1.xml");
+        reinsertDataWithIndexRebuild();
+    }
+
+    @Test
+    public void test29ShouldInsertDataWithAndWithoutBulkLoad() throws SQLException, IOException {
+        createTestData();
+        dumpData("target/bulkLoad1.xml");
+        reinsertDataWithBulkLoad();
+    }
+
     /**
      * test10 should only run in h2 and oracle. The change set imported during that tests inserts
      * a single row.
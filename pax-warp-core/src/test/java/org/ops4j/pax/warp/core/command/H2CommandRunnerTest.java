@@ -15,7 +15,17 @@
  */
 package org.ops4j.pax.warp.core.command;
 
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
 import org.ops4j.pax.warp.core.dbms.H2DbmsAdapter;
+import org.ops4j.pax.warp.core.update.ImportOptions;
 
 /**
  * @author Harald Wellmann
@@ -31,4 +41,31 @@ public class H2CommandRunnerTest extends AbstractCommandRunnerTest {
     protected int expectedRowSizeAfterRunSqlChangeSet() {
         return 1;
     }
+
+    /**
+     * Newer versions of H2 require admin rights for CSVREAD, and the rows are then inserted by
+     * JDBC batches instead.
+     */
+    @Test
+    public void test30ShouldBulkLoadDataAsNonAdminUser() throws SQLException, IOException {
+        createTestData();
+        dumpData("target/nonAdmin1.xml");
+        try (Connection dbc = getConnection(); Statement st = dbc.createStatement()) {
+            List<String> tables = new ArrayList<>();
+            try (ResultSet rs = st.executeQuery("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES "
+                + "WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_TYPE = 'TABLE'")) {
+                while (rs.next()) {
+                    tables.add(rs.getString(1));
+                }
+            }
+            st.execute("CREATE USER IF NOT EXISTS loader PASSWORD 'loader'");
+            st.execute("GRANT ALL ON " + String.join(", ", tables) + " TO loader");
+        }
+        ImportOptions options = new ImportOptions();
+        options.setBulkLoad(true);
+        // settings in the URL require admin rights as well
+        String url = getJdbcUrl().substring(0, getJdbcUrl().indexOf(';'));
+        importData("target/nonAdmin1.xml", url, "loader", options);
+        assertSameDump("target/nonAdmin2.xml", "target/nonAdmin1.xml");
+    }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dbms;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.ops4j.pax.warp.core.dbms.BulkLoader.BulkLoad;
+
+public class BulkLoaderTest {
+
+    private static final String CREATE_TABLE = "create table items (id int primary key, "
+        + "name varchar(40), price decimal(10,2), active boolean, created timestamp, "
+        + "data blob)";
+
+    private static final List<String> COLUMNS = Arrays.asList("id", "name", "price", "active",
+        "created", "data");
+
+    @Test
+    public void shouldLoadRowsH2() throws SQLException {
+        shouldLoadRows(new H2BulkLoader(new H2Profile()), "jdbc:h2:mem:bulk");
+    }
+
+    @Test
+    public void shouldLoadRowsDerby() throws SQLException {
+        shouldLoadRows(new DerbyBulkLoader(), "jdbc:derby:memory:bulk;create=true");
+    }
+
+    @Test
+    public void shouldLoadInCurrentTransactionH2() throws SQLException {
+        BulkLoader loader = new H2BulkLoader(new H2Profile());
+        assertThat(loader.isTransactional(), is(true));
+        assertThat(loadAndRollback(loader, "jdbc:h2:mem:bulkTx"), is(0));
+    }
+
+    @Test
+    public void shouldCommitOnItsOwnDerby() throws SQLException {
+        BulkLoader loader = new DerbyBulkLoader();
+        assertThat(loader.isTransactional(), is(false));
+        assertThat(loadAndRollback(loader, "jdbc:derby:memory:bulkTx;create=true"), is(1));
+    }
+
+    @Test
+    public void shouldQuoteIdentifiersH2() throws SQLException {
+        shouldQuoteIdentifiers(new H2BulkLoader(new H2Profile()), "jdbc:h2:mem:bulkQuoted");
+    }
+
+    @Test
+    public void shouldQuoteIdentifiersDerby() throws SQLException {
+        shouldQuoteIdentifiers(new DerbyBulkLoader(),
+            "jdbc:derby:memory:bulkQuoted;create=true");
+    }
+
+    /**
+     * Loads rows into a table whose name and column names are reserved words.
+     */
+    private void shouldQuoteIdentifiers(BulkLoader loader, String url) throws SQLException {
+        try (Connection dbc = DriverManager.getConnection(url);
+            Statement st = dbc.createStatement()) {
+            st.execute("create table \"ORDER\" (\"GROUP\" int, \"SELECT\" varchar(10))");
+            try (BulkLoad load = loader.open(dbc, "order", Arrays.asList("group", "select"))) {
+                load.addRow(new Object[] { 1, "first" });
+                load.execute();
+            }
+            try (ResultSet rs = st.executeQuery("select * from \"ORDER\"")) {
+                rs.next();
+                assertThat(rs.getInt("GROUP"), is(1));
+                assertThat(rs.getString("SELECT"), is("first"));
+            }
+            st.execute("drop table \"ORDER\"");
+        }
+    }
+
+    private void shouldLoadRows(BulkLoader loader, String url) throws SQLException {
+        try (Connection dbc = DriverManager.getConnection(url);
+            Statement st = dbc.createStatement()) {
+            st.execute(CREATE_TABLE);
+            Timestamp created = Timestamp.valueOf("2017-03-01 12:34:56.789");
+            try (BulkLoad load = loader.open(dbc, "items", COLUMNS)) {
+                load.addRow(new Object[] { 1, "plain", new BigDecimal("12.50"), true, created,
+                    new byte[] { 0, 1, (byte) 0xFE } });
+                load.addRow(new Object[] { 2, "with \"quotes\", commas\nand lines", null, false,
+                    null, null });
+                load.execute();
+                load.addRow(new Object[] { 3, "", BigDecimal.ONE, null, created, new byte[0] });
+                load.addRow(new Object[] { 4, null, null, null, null, null });
+                load.execute();
+            }
+
+            try (ResultSet rs = st.executeQuery("select * from items order by id")) {
+                rs.next();
+                assertThat(rs.getString("name"), is("plain"));
+                assertThat(rs.getBigDecimal("price"), is(new BigDecimal("12.50")));
+                assertThat(rs.getBoolean("active"), is(true));
+                assertThat(rs.getTimestamp("created"), is(created));
+                assertThat(rs.getBytes("data"), is(new byte[] { 0, 1, (byte) 0xFE }));
+
+                rs.next();
+                assertThat(rs.getString("name"), is("with \"quotes\", commas\nand lines"));
+                assertThat(rs.getBigDecimal("price"), is(nullValue()));
+                assertThat(rs.getBoolean("active"), is(false));
+                assertThat(rs.getTimestamp("created"), is(nullValue()));
+                assertThat(rs.getBytes("data"), is(nullValue()));
+
+                rs.next();
+                assertThat(rs.getString("name"), is(""));
+
+                rs.next();
+                assertThat(rs.getInt("id"), is(4));
+                assertThat(rs.getString("name"), is(nullValue()));
+                assertThat(rs.getObject("active"), is(nullValue()));
+                assertThat(rs.next(), is(false));
+            }
+            st.execute("drop table items");
+        }
+    }
+
+    private int loadAndRollback(BulkLoader loader, String url) throws SQLException {
+        try (Connection dbc = DriverManager.getConnection(url);
+            Statement st = dbc.createStatement()) {
+            st.execute(CREATE_TABLE);
+            dbc.setAutoCommit(false);
+            try (BulkLoad load = loader.open(dbc, "items", COLUMNS)) {
+                load.addRow(new Object[] { 1, "first", null, null, null, null });
+                load.execute();
+            }
+            assertThat(countRows(st), is(1));
+            dbc.rollback();
+            int numRows = countRows(st);
+            dbc.setAutoCommit(true);
+            st.execute("drop table items");
+            return numRows;
+        }
+    }
+
+    private int countRows(Statement st) throws SQLException {
+        try (ResultSet rs = st.executeQuery("select count(*) from items")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -35,4 +35,13 @@ public interface DbmsAdapter {
 
     void dropAndCreateDatabase() throws SQLException;
 
+    /**
+     * Gets the URL of a second database for copying data, or null if not available.
+     *
+     * @return JDBC URL, or null
+     */
+    default String getCopyJdbcUrl() {
+        return null;
+    }
+
 }
@@ -32,6 +32,11 @@ public class DerbyDbmsAdapter implements DbmsAdapter {
         return "jdbc:derby:memory:warp;create=true";
     }
 
+    @Override
+    public String getCopyJdbcUrl() {
+        return "jdbc:derby:memory:warpcopy;create=true";
+    }
+
     @Override
     public String getJdbcAdminUrl() {
         return null;
@@ -31,6 +31,11 @@ public class H2DbmsAdapter implements DbmsAdapter {
         return "jdbc:h2:mem:warp;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
     }
 
+    @Override
+    public String getCopyJdbcUrl() {
+        return "jdbc:h2:mem:warpcopy;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+    }
+
     @Override
     public String getJdbcAdminUrl() {
         return null;
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.ops4j.pax.warp.jaxb.gen.CreateTable;
+
+/**
+ * Tests the chunk file names of {@link ChunkedTableWriter}.
+ */
+public class ChunkedTableWriterTest {
+
+    @Test
+    public void shouldReplaceSpecialCharacters() {
+        Map<String, String> baseNames = ChunkedTableWriter
+            .getBaseNames(createTables("order items", "A$B", "plain"));
+        assertThat(baseNames.get("order items"), is("order_items"));
+        assertThat(baseNames.get("A$B"), is("A_B"));
+        assertThat(baseNames.get("plain"), is("plain"));
+    }
+
+    @Test
+    public void shouldNotReuseBaseNames() {
+        Map<String, String> baseNames = ChunkedTableWriter
+            .getBaseNames(createTables("A_B", "A$B", "a_b", "A_B_1", "A_B_2"));
+        assertThat(baseNames.get("A_B"), is("A_B"));
+        assertThat(baseNames.get("A$B"), is("A_B_1"));
+        assertThat(baseNames.get("a_b"), is("a_b_2"));
+        assertThat(baseNames.get("A_B_1"), is("A_B_1_3"));
+        assertThat(baseNames.get("A_B_2"), is("A_B_2_4"));
+    }
+
+    private List<CreateTable> createTables(String... tableNames) {
+        return Arrays.stream(tableNames).map(tableName -> {
+            CreateTable table = new CreateTable();
+            table.setTableName(tableName);
+            return table;
+        }).collect(Collectors.toList());
+    }
+}
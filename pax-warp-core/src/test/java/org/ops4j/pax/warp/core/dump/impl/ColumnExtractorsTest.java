@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class ColumnExtractorsTest {
+
+    private String format(long value) {
+        char[] buffer = new char[20];
+        int offset = ColumnExtractors.formatLong(value, buffer);
+        return new String(buffer, offset, buffer.length - offset);
+    }
+
+    @Test
+    public void shouldFormatLongValues() {
+        long[] values = { 0, 1, -1, 9, 10, -10, 123456789, Integer.MAX_VALUE, Integer.MIN_VALUE,
+            Long.MAX_VALUE, Long.MIN_VALUE };
+        for (long value : values) {
+            assertThat(format(value), is(Long.toString(value)));
+        }
+    }
+}
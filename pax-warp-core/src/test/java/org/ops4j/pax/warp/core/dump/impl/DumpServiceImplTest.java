@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.bind.UnmarshalException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.warp.core.changelog.impl.JaxbChangeLogWriter;
+import org.ops4j.pax.warp.core.dbms.H2Profile;
+import org.ops4j.pax.warp.core.dump.DumpOptions;
+import org.ops4j.pax.warp.exc.WarpException;
+import org.ops4j.pax.warp.jaxb.WarpJaxbContext;
+
+/**
+ * Tests the output of {@link DumpServiceImpl} when reading a table fails.
+ */
+public class DumpServiceImplTest {
+
+    /**
+     * Intercepts the result of a method invoked on a proxy.
+     */
+    @FunctionalInterface
+    private interface Interceptor {
+
+        Object intercept(Method method, Object[] args, Object result) throws SQLException;
+    }
+
+    private Connection dbc;
+
+    private WarpJaxbContext context;
+
+    private DumpServiceImpl dumpService;
+
+    @Before
+    public void setUp() throws SQLException {
+        dbc = DriverManager.getConnection("jdbc:h2:mem:failing");
+        try (Statement st = dbc.createStatement()) {
+            st.execute("create table FAILING (id int primary key)");
+            for (int i = 0; i < 10; i++) {
+                st.execute("insert into FAILING values (" + i + ")");
+            }
+        }
+        context = new WarpJaxbContext();
+        JaxbChangeLogWriter changeLogWriter = new JaxbChangeLogWriter();
+        changeLogWriter.setContext(context);
+        dumpService = new DumpServiceImpl();
+        dumpService.setChangeLogWriter(changeLogWriter);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        try (Statement st = dbc.createStatement()) {
+            st.execute("drop table FAILING");
+        }
+        dbc.close();
+    }
+
+    @Test(expected = UnmarshalException.class)
+    public void failedDumpShouldNotBeWellFormed() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try {
+            dumpService.dumpAll(failAfterFirstRow(dbc), os, new H2Profile(), Optional.empty(),
+                new DumpOptions());
+            fail("dump should fail");
+        }
+        catch (WarpException exc) {
+            // expected
+        }
+
+        context.createValidatingUnmarshaller()
+            .unmarshal(new ByteArrayInputStream(os.toByteArray()));
+    }
+
+    @Test
+    public void failedDumpShouldDeleteIncompleteChunk() {
+        File directory = new File("target/failed-dump");
+        File dataDirectory = new File(directory, DumpServiceImpl.DATA_DIRECTORY);
+        if (dataDirectory.isDirectory()) {
+            Arrays.stream(dataDirectory.listFiles()).forEach(File::delete);
+        }
+        try {
+            dumpService.dumpData(failAfterFirstRow(dbc), null, directory, new H2Profile(),
+                Optional.empty(), new DumpOptions());
+            fail("dump should fail");
+        }
+        catch (WarpException exc) {
+            // expected
+        }
+
+        assertThat(dataDirectory.list().length, is(0));
+    }
+
+    /**
+     * Wraps the given connection, so reading the rows of the table fails after the first row.
+     */
+    private static Connection failAfterFirstRow(Connection connection) {
+        return proxy(Connection.class, connection, (method, args, result) -> {
+            if (method.getName().equals("prepareStatement")
+                && args[0].toString().contains("FAILING")) {
+                return proxy(PreparedStatement.class, result,
+                    (m, a, r) -> m.getName().equals("executeQuery")
+                        ? failAfterFirstRow((ResultSet) r) : r);
+            }
+            return result;
+        });
+    }
+
+    private static ResultSet failAfterFirstRow(ResultSet rs) {
+        AtomicInteger rows = new AtomicInteger();
+        return proxy(ResultSet.class, rs, (method, args, result) -> {
+            if (method.getName().equals("next") && rows.incrementAndGet() > 1) {
+                throw new SQLException("cannot read row");
+            }
+            return result;
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, Object target, Interceptor interceptor) {
+        return type.cast(Proxy.newProxyInstance(DumpServiceImplTest.class.getClassLoader(),
+            new Class<?>[] { type }, (proxy, method, args) -> {
+                Object result;
+                try {
+                    result = method.invoke(target, args);
+                }
+                catch (InvocationTargetException exc) {
+                    throw exc.getCause();
+                }
+                return interceptor.intercept(method, args, result);
+            }));
+    }
+}
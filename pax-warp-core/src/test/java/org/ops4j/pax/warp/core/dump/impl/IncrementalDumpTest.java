@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.warp.core.dbms.H2Profile;
+import org.ops4j.pax.warp.core.dump.DumpOptions;
+import org.ops4j.pax.warp.core.jdbc.DatabaseModel;
+import org.ops4j.pax.warp.core.jdbc.DatabaseModelBuilder;
+import org.ops4j.pax.warp.exc.WarpException;
+
+/**
+ * Tests the selection of watermark columns by {@link IncrementalDump}.
+ */
+public class IncrementalDumpTest {
+
+    private Connection dbc;
+
+    private DatabaseModel database;
+
+    private DumpOptions options;
+
+    @Before
+    public void setUp() throws SQLException {
+        dbc = DriverManager.getConnection("jdbc:h2:mem:incremental");
+        try (Statement st = dbc.createStatement()) {
+            st.execute("create table KEYED (id int primary key, updated int)");
+            st.execute("create table UNKEYED (id int, updated int)");
+            st.execute("insert into KEYED values (1, 10)");
+            st.execute("insert into UNKEYED values (1, 10)");
+        }
+        database = new DatabaseModelBuilder(dbc).buildDatabaseModel();
+        options = new DumpOptions();
+        options.setIncremental(true);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        try (Statement st = dbc.createStatement()) {
+            st.execute("drop table KEYED");
+            st.execute("drop table UNKEYED");
+        }
+        dbc.close();
+    }
+
+    @Test
+    public void shouldUseDefaultWatermarkColumnOfTableWithPrimaryKey() throws SQLException {
+        options.setWatermarkColumn("updated");
+        IncrementalDump.Range range = selectRange("KEYED");
+        assertThat(range.getColumn(), is("UPDATED"));
+        assertThat(range.getUpper(), is(10));
+    }
+
+    @Test
+    public void shouldDumpTableWithoutPrimaryKeyCompletely() throws SQLException {
+        options.setWatermarkColumn("updated");
+        assertThat(selectRange("UNKEYED"), is(nullValue()));
+    }
+
+    @Test(expected = WarpException.class)
+    public void shouldRejectWatermarkColumnOfTableWithoutPrimaryKey() throws SQLException {
+        options.setWatermarkColumns(Collections.singletonMap("unkeyed", "updated"));
+        selectRange("UNKEYED");
+    }
+
+    private IncrementalDump.Range selectRange(String tableName) throws SQLException {
+        IncrementalDump incremental = new IncrementalDump(database, Collections.emptyMap(),
+            options);
+        return incremental.selectRange(database.getTable(tableName), dbc, new H2Profile());
+    }
+}
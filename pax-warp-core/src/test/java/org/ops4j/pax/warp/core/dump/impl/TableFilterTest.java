@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class TableFilterTest {
+
+    @Test
+    public void shouldAcceptAllTablesWithoutPatterns() {
+        TableFilter filter = new TableFilter(Collections.emptyList(), Collections.emptyList());
+        assertThat(filter.acceptsAll(), is(true));
+        assertThat(filter.test("ORDERS"), is(true));
+    }
+
+    @Test
+    public void shouldMatchPatternsIgnoringCase() {
+        TableFilter filter = new TableFilter(Arrays.asList("order*", "cust?mer"),
+            Arrays.asList("*_audit"));
+        assertThat(filter.acceptsAll(), is(false));
+        assertThat(filter.test("ORDERS"), is(true));
+        assertThat(filter.test("order_items"), is(true));
+        assertThat(filter.test("ORDER_AUDIT"), is(false));
+        assertThat(filter.test("Customer"), is(true));
+        assertThat(filter.test("customers"), is(false));
+        assertThat(filter.test("invoices"), is(false));
+    }
+
+    @Test
+    public void shouldTreatOtherCharactersLiterally() {
+        TableFilter filter = new TableFilter(Collections.emptyList(), Arrays.asList("a.b", "x$"));
+        assertThat(filter.test("a.b"), is(false));
+        assertThat(filter.test("axb"), is(true));
+        assertThat(filter.test("X$"), is(false));
+    }
+}
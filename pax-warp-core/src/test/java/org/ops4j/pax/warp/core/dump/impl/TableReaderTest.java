@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.warp.core.changelog.StreamingChangeLogWriter;
+import org.ops4j.pax.warp.core.changelog.impl.JaxbChangeLogWriter;
+import org.ops4j.pax.warp.core.dbms.H2Profile;
+import org.ops4j.pax.warp.core.dump.DumpOptions;
+import org.ops4j.pax.warp.core.jdbc.DatabaseModel;
+import org.ops4j.pax.warp.core.jdbc.DatabaseModelBuilder;
+import org.ops4j.pax.warp.jaxb.WarpJaxbContext;
+
+/**
+ * Tests the transactions of {@link TableReader} reading tables in pages.
+ */
+public class TableReaderTest {
+
+    private Connection dbc;
+
+    private AtomicInteger commits = new AtomicInteger();
+
+    private DatabaseModel database;
+
+    private DumpOptions options;
+
+    @Before
+    public void setUp() throws SQLException {
+        dbc = DriverManager.getConnection("jdbc:h2:mem:pages");
+        try (Statement st = dbc.createStatement()) {
+            st.execute("create table PAGED (id int primary key)");
+            for (int i = 0; i < 10; i++) {
+                st.execute("insert into PAGED values (" + i + ")");
+            }
+        }
+        database = new DatabaseModelBuilder(dbc).buildDatabaseModel();
+        dbc.setAutoCommit(false);
+        options = new DumpOptions();
+        options.setPageSize(3);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        dbc.setAutoCommit(true);
+        try (Statement st = dbc.createStatement()) {
+            st.execute("drop table PAGED");
+        }
+        dbc.close();
+    }
+
+    @Test
+    public void shouldCommitAfterEachPage() throws SQLException {
+        TableReader reader = new TableReader(database, new H2Profile(), options);
+        reader.setOwnTransaction(true);
+        readTable(reader, null);
+        assertThat(commits.get(), is(4));
+    }
+
+    @Test
+    public void shouldNotCommitPagesOfCallerTransaction() throws SQLException {
+        TableReader reader = new TableReader(database, new H2Profile(), options);
+        readTable(reader, null);
+        assertThat(commits.get(), is(0));
+    }
+
+    @Test
+    public void shouldNotCommitPagesOfWatermarkRange() throws SQLException {
+        options.setIncremental(true);
+        TableReader reader = new TableReader(database, new H2Profile(), options);
+        reader.setOwnTransaction(true);
+        IncrementalDump incremental = new IncrementalDump(database, Collections.emptyMap(),
+            options);
+        IncrementalDump.Range range = incremental.selectRange(database.getTable("PAGED"), dbc,
+            new H2Profile());
+        assertThat(range.getUpper(), is(9));
+        readTable(reader, range);
+        assertThat(commits.get(), is(0));
+    }
+
+    private void readTable(TableReader reader, IncrementalDump.Range range) throws SQLException {
+        JaxbChangeLogWriter changeLogWriter = new JaxbChangeLogWriter();
+        changeLogWriter.setContext(new WarpJaxbContext());
+        try (StreamingChangeLogWriter writer = changeLogWriter
+            .openChangeLog(new ByteArrayOutputStream())) {
+            reader.readTable(writer, database.getTable("PAGED"), countCommits(dbc), range);
+        }
+    }
+
+    private Connection countCommits(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                if (method.getName().equals("commit")) {
+                    commits.incrementAndGet();
+                }
+                try {
+                    return method.invoke(connection, args);
+                }
+                catch (InvocationTargetException exc) {
+                    throw exc.getCause();
+                }
+            });
+    }
+}
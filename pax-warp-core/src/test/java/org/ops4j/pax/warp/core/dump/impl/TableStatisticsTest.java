@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.dump.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.ops4j.pax.warp.core.dbms.DbmsProfile;
+import org.ops4j.pax.warp.core.dbms.DerbyProfile;
+import org.ops4j.pax.warp.core.dbms.H2Profile;
+import org.ops4j.pax.warp.jaxb.gen.CreateTable;
+
+public class TableStatisticsTest {
+
+    @Test
+    public void shouldScheduleLargestTablesFirstH2() throws SQLException {
+        try (Connection dbc = DriverManager.getConnection("jdbc:h2:mem:statistics");
+            Statement st = dbc.createStatement()) {
+            List<CreateTable> tables = createTables(st, "PUBLIC", 20);
+
+            TableStatistics statistics = TableStatistics.read(dbc, new H2Profile(), tables);
+            assertThat(statistics.getRows(tables.get(0)), is(3L));
+            assertThat(statistics.getRows(tables.get(2)), is(20L));
+            assertSchedule(statistics, tables, "GAMMA", "ALPHA", "BETA");
+
+            dropTables(st);
+        }
+    }
+
+    @Test
+    public void shouldScheduleLargestTablesFirstDerby() throws SQLException {
+        try (Connection dbc = DriverManager
+            .getConnection("jdbc:derby:memory:statistics;create=true");
+            Statement st = dbc.createStatement()) {
+            List<CreateTable> tables = createTables(st, "APP", 2000);
+
+            TableStatistics statistics = TableStatistics.read(dbc, new DerbyProfile(), tables);
+            assertThat(statistics.getRows(tables.get(2)), is(-1L));
+            assertThat(statistics.getBytes(tables.get(0)) > 0, is(true));
+            assertThat(statistics.getBytes(tables.get(2)) > statistics.getBytes(tables.get(0)),
+                is(true));
+            assertSchedule(statistics, tables, "GAMMA", "ALPHA", "BETA");
+
+            dropTables(st);
+        }
+    }
+
+    @Test
+    public void shouldNotCountRowsWithoutCatalogStatistics() throws SQLException {
+        DbmsProfile dbms = new H2Profile() {
+
+            @Override
+            public String getSubprotocol() {
+                return "unknown";
+            }
+        };
+        try (Connection dbc = DriverManager.getConnection("jdbc:h2:mem:statistics");
+            Statement st = dbc.createStatement()) {
+            List<CreateTable> tables = createTables(st, "PUBLIC", 20);
+
+            TableStatistics statistics = TableStatistics.read(dbc, dbms, tables);
+            assertThat(statistics.getRows(tables.get(2)), is(-1L));
+            assertThat(statistics.getBytes(tables.get(2)), is(-1L));
+            assertSchedule(statistics, tables, "ALPHA", "BETA", "GAMMA");
+
+            dropTables(st);
+        }
+    }
+
+    private List<CreateTable> createTables(Statement st, String schemaName, int largeRows)
+        throws SQLException {
+        insertRows(st, "ALPHA", 3);
+        insertRows(st, "BETA", 0);
+        insertRows(st, "GAMMA", largeRows);
+        return Arrays.asList(createTable(schemaName, "ALPHA"), createTable(schemaName, "BETA"),
+            createTable(schemaName, "GAMMA"));
+    }
+
+    private void assertSchedule(TableStatistics statistics, List<CreateTable> tables,
+        String... tableNames) {
+        List<String> schedule = statistics.schedule(tables).stream()
+            .map(i -> tables.get(i).getTableName()).collect(Collectors.toList());
+        assertThat(schedule, is(Arrays.asList(tableNames)));
+    }
+
+    private void dropTables(Statement st) throws SQLException {
+        for (String tableName : Arrays.asList("ALPHA", "BETA", "GAMMA")) {
+            st.execute("drop table " + tableName);
+        }
+    }
+
+    private void insertRows(Statement st, String tableName, int numRows) throws SQLException {
+        st.execute("create table " + tableName + " (id int primary key)");
+        for (int i = 0; i < numRows; i++) {
+            st.execute("insert into " + tableName + " values (" + i + ")");
+        }
+    }
+
+    private CreateTable createTable(String schemaName, String tableName) {
+        CreateTable table = new CreateTable();
+        table.setSchemaName(schemaName);
+        table.setTableName(tableName);
+        return table;
+    }
+}
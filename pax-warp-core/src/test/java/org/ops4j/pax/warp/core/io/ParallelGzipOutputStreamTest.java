@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.io;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+public class ParallelGzipOutputStreamTest {
+
+    private byte[] createData(int size) {
+        StringBuilder sb = new StringBuilder(size + 100);
+        Random random = new Random(42);
+        while (sb.length() < size) {
+            sb.append("<row><v>").append(random.nextInt(1000)).append("</v></row>\n");
+        }
+        return Arrays.copyOf(sb.toString().getBytes(UTF_8), size);
+    }
+
+    private byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int len;
+        while ((len = is.read(buffer)) != -1) {
+            baos.write(buffer, 0, len);
+        }
+        return baos.toByteArray();
+    }
+
+    private byte[] compress(byte[] data, int numThreads, int blockSize) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream os = new ParallelGzipOutputStream(baos, numThreads,
+            blockSize)) {
+            int offset = 0;
+            int chunk = 1;
+            // mix single byte writes and writes crossing block boundaries
+            while (offset < data.length) {
+                int len = Math.min(chunk, data.length - offset);
+                if (len == 1) {
+                    os.write(data[offset]);
+                }
+                else {
+                    os.write(data, offset, len);
+                }
+                offset += len;
+                chunk = (chunk * 7) % 5000 + 1;
+                if (offset % 3 == 0) {
+                    os.flush();
+                }
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    @Test
+    public void shouldCompressMultipleBlocks() throws IOException {
+        byte[] data = createData(3_000_000);
+        byte[] compressed = compress(data, 4, 64 * 1024);
+        assertThat(compressed.length < data.length / 2, is(true));
+
+        try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertThat(Arrays.equals(readAll(is), data), is(true));
+        }
+    }
+
+    @Test
+    public void shouldCompressEmptyStream() throws IOException {
+        byte[] compressed = compress(new byte[0], 2, 1024);
+        assertThat(compressed.length, is(0));
+    }
+
+    @Test
+    public void shouldDetectCompressedInput() throws IOException {
+        byte[] data = createData(100_000);
+        byte[] compressed = compress(data, 2, 16 * 1024);
+
+        try (InputStream is = Compression
+            .decompressIfNeeded(new ByteArrayInputStream(compressed))) {
+            assertThat(Arrays.equals(readAll(is), data), is(true));
+        }
+        try (InputStream is = Compression.decompressIfNeeded(new ByteArrayInputStream(data))) {
+            assertThat(Arrays.equals(readAll(is), data), is(true));
+        }
+        try (InputStream is = Compression.decompressIfNeeded(new ByteArrayInputStream(new byte[0]))) {
+            assertThat(readAll(is).length, is(0));
+        }
+    }
+}
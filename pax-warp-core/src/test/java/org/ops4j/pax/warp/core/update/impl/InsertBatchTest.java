@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.update.impl;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.ops4j.pax.warp.core.dbms.BulkLoader;
+import org.ops4j.pax.warp.core.dbms.H2Profile;
+import org.ops4j.pax.warp.exc.WarpException;
+
+public class InsertBatchTest {
+
+    private static final String INSERT = "insert into items (id, name) values (?, ?)";
+
+    private InsertPlan createPlan() {
+        return new InsertPlan("items", Arrays.asList("id", "name"),
+            Arrays.asList("INTEGER", "VARCHAR"), INSERT, new H2Profile());
+    }
+
+    @Test
+    public void shouldInsertRowsInBatchesH2() throws SQLException {
+        shouldInsertRowsInBatches("jdbc:h2:mem:batch");
+    }
+
+    @Test
+    public void shouldInsertRowsInBatchesDerby() throws SQLException {
+        shouldInsertRowsInBatches("jdbc:derby:memory:batch;create=true");
+    }
+
+    @Test
+    public void shouldReportFailingRowH2() throws SQLException {
+        shouldReportFailingRow("jdbc:h2:mem:batchFailure");
+    }
+
+    @Test
+    public void shouldReportFailingRowDerby() throws SQLException {
+        shouldReportFailingRow("jdbc:derby:memory:batchFailure;create=true");
+    }
+
+    @Test
+    public void shouldFallBackToBatchesWithoutBulkLoadPrivileges() throws SQLException {
+        try (Connection dbc = DriverManager.getConnection("jdbc:h2:mem:batchFallback");
+            Statement st = dbc.createStatement()) {
+            st.execute("create table items (id int primary key, name varchar(20))");
+            try (InsertBatch batch = new InsertBatch(dbc, 2, new UnavailableBulkLoader())) {
+                batch.prepare(createPlan());
+                for (int i = 1; i <= 3; i++) {
+                    batch.addRow(new Object[] { i, "item" + i });
+                }
+                batch.execute();
+            }
+            assertThat(countRows(st), is(3));
+            st.execute("drop table items");
+        }
+    }
+
+    /**
+     * Bulk loader failing like a loader requiring privileges not granted to the user.
+     */
+    private static class UnavailableBulkLoader implements BulkLoader {
+
+        private boolean failed;
+
+        @Override
+        public boolean isUnavailable(SQLException exc) {
+            return exc.getSQLState().equals("42000");
+        }
+
+        @Override
+        public BulkLoad open(Connection dbc, String tableName, List<String> columnNames) {
+            if (failed) {
+                throw new IllegalStateException("bulk loader used after failure");
+            }
+            return new BulkLoad() {
+
+                @Override
+                public void addRow(Object[] values) {
+                    // rows are not loaded
+                }
+
+                @Override
+                public void execute() throws SQLException {
+                    failed = true;
+                    throw new SQLException("privileges required", "42000");
+                }
+
+                @Override
+                public void close() {
+                    // nothing to release
+                }
+            };
+        }
+    }
+
+    private void shouldInsertRowsInBatches(String url) throws SQLException {
+        try (Connection dbc = DriverManager.getConnection(url);
+            Statement st = dbc.createStatement()) {
+            st.execute("create table items (id int primary key, name varchar(20))");
+            try (InsertBatch batch = new InsertBatch(dbc, 3, null)) {
+                batch.prepare(createPlan());
+                for (int i = 1; i <= 4; i++) {
+                    batch.addRow(new Object[] { i, "item" + i });
+                }
+                // a full batch is executed, the last row is pending
+                assertThat(countRows(st), is(3));
+
+                // replacing rows deletes the existing row with the same key first
+                InsertPlan replacingPlan = createPlan();
+                replacingPlan.setReplacedKey("delete from items where id = ?", new int[] { 0 });
+                batch.prepare(replacingPlan);
+                assertThat(countRows(st), is(4));
+                batch.addRow(new Object[] { 2, "replaced" });
+                batch.addRow(new Object[] { 5, null });
+                batch.execute();
+            }
+            assertThat(countRows(st), is(5));
+            try (ResultSet rs = st.executeQuery("select name from items where id = 2")) {
+                rs.next();
+                assertThat(rs.getString(1), is("replaced"));
+            }
+            st.execute("drop table items");
+        }
+    }
+
+    private void shouldReportFailingRow(String url) throws SQLException {
+        try (Connection dbc = DriverManager.getConnection(url);
+            Statement st = dbc.createStatement()) {
+            st.execute("create table items (id int primary key, name varchar(20))");
+            try (InsertBatch batch = new InsertBatch(dbc, 10, null)) {
+                batch.prepare(createPlan());
+                batch.addRow(new Object[] { 1, "first" });
+                batch.addRow(new Object[] { 2, "second" });
+                batch.addRow(new Object[] { 1, "duplicate" });
+                batch.execute();
+                fail("expected WarpException");
+            }
+            catch (WarpException exc) {
+                assertThat(exc.getMessage(), containsString("row 3 of batch into items"));
+                assertThat(exc.getMessage(), containsString("id=1, name=duplicate"));
+            }
+            st.execute("drop table items");
+        }
+    }
+
+    private int countRows(Statement st) throws SQLException {
+        try (ResultSet rs = st.executeQuery("select count(*) from items")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 Harald Wellmann.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.warp.core.update.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.ops4j.pax.warp.core.dbms.H2Profile;
+import org.ops4j.pax.warp.core.dbms.OracleProfile;
+import org.ops4j.pax.warp.jaxb.gen.ColumnValue;
+
+public class InsertPlanTest {
+
+    private static final String INSERT = "insert into items (id, name) values (?, ?)";
+
+    @Test
+    public void shouldConvertValues() {
+        InsertPlan plan = new InsertPlan("items",
+            Arrays.asList("id", "amount", "flag", "name", "data"),
+            Arrays.asList("BIGINT", "DECIMAL", "BOOLEAN", "VARCHAR", "BLOB"), INSERT,
+            new OracleProfile());
+        assertThat(plan.convert(0, "42"), is((Object) 42L));
+        assertThat(plan.convert(1, "1.50"), is((Object) new BigDecimal("1.50")));
+        assertThat(plan.convert(2, "true"), is((Object) true));
+        // Oracle treats empty strings as null
+        assertThat(plan.convert(3, ""), is((Object) " "));
+        assertThat(plan.convert(4, "AQI="), is((Object) new byte[] { 1, 2 }));
+        assertThat(plan.convert(0, null), is(nullValue()));
+    }
+
+    @Test
+    public void shouldMatchColumnSignature() {
+        InsertPlan plan = new InsertPlan("items", Arrays.asList("id", "name"),
+            Arrays.asList("INTEGER", "VARCHAR"), INSERT, new H2Profile());
+        assertThat(plan.matches("items", Arrays.asList(column("id", "INTEGER"),
+            column("name", "VARCHAR"))), is(true));
+        assertThat(plan.matches("items", Arrays.asList(column("id", "BIGINT"),
+            column("name", "VARCHAR"))), is(false));
+        assertThat(plan.matches("items", Arrays.asList(column("id", "INTEGER"))), is(false));
+        assertThat(plan.matches("other", Arrays.asList(column("id", "INTEGER"),
+            column("name", "VARCHAR"))), is(false));
+    }
+
+    private ColumnValue column(String name, String type) {
+        ColumnValue column = new ColumnValue();
+        column.setName(name);
+        column.setType(type);
+        return column;
+    }
+}
@@ -20,7 +20,10 @@ package org.ops4j.pax.warp.jaxb;
 import static javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Singleton;
@@ -28,21 +31,28 @@ import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElements;
+import javax.xml.namespace.QName;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.ValidatorHandler;
 
 import org.ops4j.pax.warp.exc.WarpException;
 import org.ops4j.pax.warp.jaxb.gen.ChangeLog;
+import org.ops4j.pax.warp.jaxb.gen.ChangeSet;
+import org.ops4j.pax.warp.jaxb.gen.DumpManifest;
+import org.ops4j.pax.warp.jaxb.gen.ObjectFactory;
 import org.ops4j.pax.warp.scope.CdiApplicationScoped;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.xml.sax.SAXException;
 
 /**
- * Wraps a JAXB context for the change log model and provides validating marshallers and
- * unmarshallers.
+ * Wraps a JAXB context for the change log and dump manifest model and provides validating
+ * marshallers and unmarshallers.
  * <p>
  * Given that a JAXB context is thread-safe and rather expensive to build, this class is a singleton
  * (or application scoped in CDI).
@@ -55,8 +65,14 @@ import org.xml.sax.SAXException;
 @CdiApplicationScoped
 public class WarpJaxbContext {
 
+    /**
+     * XML namespace of change logs.
+     */
+    public static final String NAMESPACE = "urn:org.ops4j.pax.warp:changelog";
+
     private JAXBContext context;
     private Schema schema;
+    private Map<Class<?>, QName> changeElementNames;
     private boolean initialized;
 
     /**
@@ -69,11 +85,14 @@ public class WarpJaxbContext {
     @PostConstruct
     protected void init() {
         try {
-            context = JAXBContext.newInstance(ChangeLog.class);
+            // the object factory declares the changeSet element for unmarshalling fragments
+            context = JAXBContext.newInstance(ChangeLog.class, DumpManifest.class,
+                ObjectFactory.class);
             loadSchema();
+            loadChangeElementNames();
             initialized = true;
         }
-        catch (JAXBException | SAXException | IOException exc) {
+        catch (JAXBException | SAXException | IOException | NoSuchFieldException exc) {
             throw new WarpException(exc);
         }
     }
@@ -93,6 +112,41 @@ public class WarpJaxbContext {
         schema = schemaFactory.newSchema(new Source[] { new StreamSource(url.openStream()) });
     }
 
+    /**
+     * Maps each change type to the name of the element representing this change type within a
+     * change set. The element names are not declared globally in the schema, so we have to look
+     * them up from the JAXB annotations of the change set model.
+     *
+     * @throws NoSuchFieldException
+     *             if the generated change set model does not match our expectations
+     */
+    private void loadChangeElementNames() throws NoSuchFieldException {
+        changeElementNames = new HashMap<>();
+        Field field = ChangeSet.class.getDeclaredField("changes");
+        for (XmlElement element : field.getAnnotation(XmlElements.class).value()) {
+            changeElementNames.put(element.type(), new QName(NAMESPACE, element.name()));
+        }
+    }
+
+    /**
+     * Gets the qualified name of the element representing the given change type within a change
+     * set.
+     *
+     * @param changeType
+     *            change model class, e.g. {@code Insert}
+     * @return element name
+     * @throws WarpException
+     *             if the given class is not a change type
+     */
+    public QName getChangeElementName(Class<?> changeType) {
+        initIfNeeded();
+        QName elementName = changeElementNames.get(changeType);
+        if (elementName == null) {
+            throw new WarpException("not a change type: " + changeType.getName());
+        }
+        return elementName;
+    }
+
     /**
      * Creates a validating unmarshaller for change logs.
      *
@@ -107,6 +161,31 @@ public class WarpJaxbContext {
         return unmarshaller;
     }
 
+    /**
+     * Creates a non-validating unmarshaller for change log fragments. This unmarshaller can be
+     * used for fragments of a document which is validated by a {@link #createValidatorHandler()
+     * validator handler}.
+     *
+     * @return unmarshaller
+     * @throws JAXBException
+     *             if the unmarshaller cannot be created
+     */
+    public Unmarshaller createFragmentUnmarshaller() throws JAXBException {
+        initIfNeeded();
+        return context.createUnmarshaller();
+    }
+
+    /**
+     * Creates a SAX content handler validating change logs against the XML schema while
+     * streaming.
+     *
+     * @return validator handler
+     */
+    public ValidatorHandler createValidatorHandler() {
+        initIfNeeded();
+        return schema.newValidatorHandler();
+    }
+
     /**
      * Creates a validating pretty-printing marshaller for change logs.
      *